@@ -25,6 +25,7 @@ import com.idevicesinc.sweetblue.annotations.Nullable;
 import com.idevicesinc.sweetblue.annotations.Nullable.Prevalence;
 import com.idevicesinc.sweetblue.utils.BleScanInfo;
 import com.idevicesinc.sweetblue.utils.BleScanRecord;
+import com.idevicesinc.sweetblue.utils.ChunkedData;
 import com.idevicesinc.sweetblue.utils.Distance;
 import com.idevicesinc.sweetblue.utils.EmptyIterator;
 import com.idevicesinc.sweetblue.utils.EpochTime;
@@ -1879,23 +1880,31 @@ public final class BleDevice extends BleNode
     final P_BleDevice_Listeners m_listeners;
     private final P_DeviceStateTracker m_stateTracker;
     private final P_DeviceStateTracker m_stateTracker_shortTermReconnect;
-    private final P_PollManager m_pollMngr;
 
     final P_TransactionManager m_txnMngr;
-    private final P_ReconnectManager m_reconnectMngr_longTerm;
-    private final P_ReconnectManager m_reconnectMngr_shortTerm;
     private final P_ConnectionFailManager m_connectionFailMngr;
-    private final P_RssiPollManager m_rssiPollMngr;
-    private final P_RssiPollManager m_rssiPollMngr_auto;
-    private final P_Task_Disconnect m_dummyDisconnectTask;
-    private final P_HistoricalDataManager m_historicalDataMngr;
     final P_BondManager m_bondMngr;
 
+    //--- These are only needed once the app actually does something with the device (connects, polls, reads historical data, etc.),
+    //--- which most devices seen in a scan never get to, so they're created on first use. See the accessors further down.
+    private final Object m_subsystemLock = new Object();
+    private volatile P_PollManager m_pollMngr;
+    private volatile P_ReconnectManager m_reconnectMngr_longTerm;
+    private volatile P_ReconnectManager m_reconnectMngr_shortTerm;
+    private volatile P_RssiPollManager m_rssiPollMngr;
+    private volatile P_RssiPollManager m_rssiPollMngr_auto;
+    private volatile P_Task_Disconnect m_dummyDisconnectTask;
+    private volatile P_HistoricalDataManager m_historicalDataMngr;
+    private volatile P_ReliableWriteManager m_reliableWriteMngr;
+    private volatile P_RawNotificationManager m_rawNotificationMngr;
+    private volatile P_CallbackDispatcher.Lane m_callbackLane;
+
     private com.idevicesinc.sweetblue.ReadWriteListener m_defaultReadWriteListener = null;
     private NotificationListener m_defaultNotificationListener = null;
 
     private TimeEstimator m_writeTimeEstimator;
     private TimeEstimator m_readTimeEstimator;
+    private WriteThroughput m_lastStripedWriteThroughput = null;
 
     private final PA_Task.I_StateListener m_taskStateListener;
 
@@ -1910,6 +1919,8 @@ public final class BleDevice extends BleNode
 
     private BleScanInfo m_scanInfo = new BleScanInfo();
     private BleScanRecord m_bleScanRecord = new BleScanRecord();
+    //--- True when m_bleScanRecord was parsed from m_scanRecord, so later scan records can be applied as a diff against it.
+    private boolean m_bleScanRecordParsed = false;
 
     private boolean m_useAutoConnect = false;
     private boolean m_alwaysUseAutoConnect = false;
@@ -1928,8 +1939,6 @@ public final class BleDevice extends BleNode
 
     private final boolean m_isNull;
 
-    final P_ReliableWriteManager m_reliableWriteMngr;
-
 
 
     BleDevice(BleManager mngr, P_NativeDeviceLayer device_native, String name_normalized, String name_native, BleDeviceOrigin origin, BleDeviceConfig config_nullable, boolean isNull)
@@ -1944,45 +1953,29 @@ public final class BleDevice extends BleNode
 
         if (isNull)
         {
-            m_rssiPollMngr = null;
-            m_rssiPollMngr_auto = null;
             // setConfig(config_nullable);
             m_nativeWrapper = new P_NativeDeviceWrapper(this, m_deviceLayer, name_normalized, name_native);
             m_listeners = null;
             m_stateTracker = new P_DeviceStateTracker(this, /*forShortTermReconnect=*/false);
             m_stateTracker_shortTermReconnect = null;
             m_bondMngr = new P_BondManager(this);
-            m_pollMngr = new P_PollManager(this);
             m_txnMngr = new P_TransactionManager(this);
             m_taskStateListener = null;
-            m_reconnectMngr_longTerm = null;
-            m_reconnectMngr_shortTerm = null;
             m_connectionFailMngr = new P_ConnectionFailManager(this);
-            m_dummyDisconnectTask = null;
-            m_historicalDataMngr = null;
-            m_reliableWriteMngr = null;
             stateTracker().set(E_Intent.UNINTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE, BleDeviceState.NULL, true);
         }
         else
         {
             m_deviceLayer.updateBleDevice(this);
-            m_rssiPollMngr = new P_RssiPollManager(this);
-            m_rssiPollMngr_auto = new P_RssiPollManager(this);
             setConfig(config_nullable);
             m_nativeWrapper = new P_NativeDeviceWrapper(this, m_deviceLayer, name_normalized, name_native);
             m_listeners = new P_BleDevice_Listeners(this);
             m_stateTracker = new P_DeviceStateTracker(this, /*forShortTermReconnect=*/false);
             m_stateTracker_shortTermReconnect = new P_DeviceStateTracker(this, /*forShortTermReconnect=*/true);
             m_bondMngr = new P_BondManager(this);
-            m_pollMngr = new P_PollManager(this);
             m_txnMngr = new P_TransactionManager(this);
             m_taskStateListener = m_listeners.m_taskStateListener;
-            m_reconnectMngr_longTerm = new P_ReconnectManager(this, /*isShortTerm=*/false);
-            m_reconnectMngr_shortTerm = new P_ReconnectManager(this, /*isShortTerm=*/true);
             m_connectionFailMngr = new P_ConnectionFailManager(this);
-            m_dummyDisconnectTask = new P_Task_Disconnect(this, null, /*explicit=*/false, PE_TaskPriority.FOR_EXPLICIT_BONDING_AND_CONNECTING, /*cancellable=*/true);
-            m_historicalDataMngr = new P_HistoricalDataManager(this, getMacAddress());
-            m_reliableWriteMngr = new P_ReliableWriteManager(this);
             final Object[] bondStates = m_bondMngr.getNativeBondingStateOverrides();
             stateTracker().set(E_Intent.UNINTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE, BleDeviceState.UNDISCOVERED, true, BleDeviceState.DISCONNECTED, true, bondStates);
         }
@@ -1996,7 +1989,7 @@ public final class BleDevice extends BleNode
     public final @Nullable(Prevalence.NEVER) ReadWriteEvent reliableWrite_begin(final ReadWriteListener listener)
     {
 
-        return m_reliableWriteMngr.begin(listener);
+        return reliableWriteMngr().begin(listener);
     }
 
     /**
@@ -2006,7 +1999,7 @@ public final class BleDevice extends BleNode
     public final @Nullable(Prevalence.NEVER) ReadWriteEvent reliableWrite_abort()
     {
 
-        return m_reliableWriteMngr.abort();
+        return reliableWriteMngr().abort();
     }
 
     /**
@@ -2016,7 +2009,7 @@ public final class BleDevice extends BleNode
     public final @Nullable(Prevalence.NEVER) ReadWriteEvent reliableWrite_execute()
     {
 
-        return m_reliableWriteMngr.execute();
+        return reliableWriteMngr().execute();
     }
 
     /**
@@ -2064,12 +2057,190 @@ public final class BleDevice extends BleNode
     {
         if (stateTracker_main().checkBitMatch(BleDeviceState.RECONNECTING_SHORT_TERM, true))
         {
-            return m_reconnectMngr_shortTerm;
+            return reconnectMngr_shortTerm();
         }
         else
         {
-            return m_reconnectMngr_longTerm;
+            return reconnectMngr_longTerm();
+        }
+    }
+
+    private P_ReconnectManager reconnectMngr_longTerm()
+    {
+        if (m_reconnectMngr_longTerm == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_reconnectMngr_longTerm == null)
+                {
+                    m_reconnectMngr_longTerm = new P_ReconnectManager(this, /*isShortTerm=*/false);
+                }
+            }
+        }
+        return m_reconnectMngr_longTerm;
+    }
+
+    private P_ReconnectManager reconnectMngr_shortTerm()
+    {
+        if (m_reconnectMngr_shortTerm == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_reconnectMngr_shortTerm == null)
+                {
+                    m_reconnectMngr_shortTerm = new P_ReconnectManager(this, /*isShortTerm=*/true);
+                }
+            }
+        }
+        return m_reconnectMngr_shortTerm;
+    }
+
+    private boolean isReconnecting_longTerm()
+    {
+        return m_reconnectMngr_longTerm != null && m_reconnectMngr_longTerm.isRunning();
+    }
+
+    private boolean isReconnecting_shortTerm()
+    {
+        return m_reconnectMngr_shortTerm != null && m_reconnectMngr_shortTerm.isRunning();
+    }
+
+    private void stopReconnecting_longTerm()
+    {
+        if (m_reconnectMngr_longTerm != null) m_reconnectMngr_longTerm.stop();
+    }
+
+    private void stopReconnecting_shortTerm()
+    {
+        if (m_reconnectMngr_shortTerm != null) m_reconnectMngr_shortTerm.stop();
+    }
+
+    private P_RssiPollManager rssiPollMngr()
+    {
+        if (m_rssiPollMngr == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_rssiPollMngr == null)
+                {
+                    m_rssiPollMngr = new P_RssiPollManager(this);
+                }
+            }
+        }
+        return m_rssiPollMngr;
+    }
+
+    private P_RssiPollManager rssiPollMngr_auto()
+    {
+        if (m_rssiPollMngr_auto == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_rssiPollMngr_auto == null)
+                {
+                    m_rssiPollMngr_auto = new P_RssiPollManager(this);
+                }
+            }
+        }
+        return m_rssiPollMngr_auto;
+    }
+
+    private P_HistoricalDataManager historicalDataMngr()
+    {
+        if (m_historicalDataMngr == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_historicalDataMngr == null)
+                {
+                    m_historicalDataMngr = new P_HistoricalDataManager(this, getMacAddress());
+                }
+            }
+        }
+        return m_historicalDataMngr;
+    }
+
+    //--- Doesn't create the manager, for callers that only care about historical data that's already been added.
+    final P_HistoricalDataManager historicalDataMngr_nullable()
+    {
+        return m_historicalDataMngr;
+    }
+
+    final P_ReliableWriteManager reliableWriteMngr()
+    {
+        if (m_reliableWriteMngr == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_reliableWriteMngr == null)
+                {
+                    m_reliableWriteMngr = new P_ReliableWriteManager(this);
+                }
+            }
+        }
+        return m_reliableWriteMngr;
+    }
+
+    //--- Doesn't create the manager, for callers that have nothing to do if reliable write was never used.
+    final P_ReliableWriteManager reliableWriteMngr_nullable()
+    {
+        return m_reliableWriteMngr;
+    }
+
+    final P_RawNotificationManager rawNotificationMngr()
+    {
+        if (m_rawNotificationMngr == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_rawNotificationMngr == null)
+                {
+                    m_rawNotificationMngr = new P_RawNotificationManager(this, P_RawNotificationManager.DEFAULT_CAPACITY);
+                }
+            }
         }
+        return m_rawNotificationMngr;
+    }
+
+    /**
+     * Returns <code>null</code> if no {@link RawNotificationListener} has ever been set, so the native callback can skip it cheaply.
+     */
+    final P_RawNotificationManager rawNotificationMngr_nullable()
+    {
+        return m_rawNotificationMngr;
+    }
+
+    /**
+     * Keeps this device's callbacks in order when {@link BleManagerConfig#callbackExecutor} is set.
+     */
+    final P_CallbackDispatcher.Lane callbackLane(final P_CallbackDispatcher dispatcher)
+    {
+        if (m_callbackLane == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_callbackLane == null)
+                {
+                    m_callbackLane = new P_CallbackDispatcher.Lane(dispatcher);
+                }
+            }
+        }
+        return m_callbackLane;
+    }
+
+    private P_Task_Disconnect dummyDisconnectTask()
+    {
+        if (m_dummyDisconnectTask == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_dummyDisconnectTask == null)
+                {
+                    m_dummyDisconnectTask = new P_Task_Disconnect(this, null, /*explicit=*/false, PE_TaskPriority.FOR_EXPLICIT_BONDING_AND_CONNECTING, /*cancellable=*/true);
+                }
+            }
+        }
+        return m_dummyDisconnectTask;
     }
 
     private void clear_discovery()
@@ -2125,11 +2296,11 @@ public final class BleDevice extends BleNode
 
         final Interval autoRssiPollRate = BleDeviceConfig.interval(conf_device().rssiAutoPollRate, conf_mngr().rssiAutoPollRate);
 
-        if (!m_rssiPollMngr.isRunning() && !Interval.isDisabled(autoRssiPollRate))
+        if ((m_rssiPollMngr == null || !m_rssiPollMngr.isRunning()) && !Interval.isDisabled(autoRssiPollRate))
         {
-            m_rssiPollMngr_auto.start(autoRssiPollRate.secs(), null);
+            rssiPollMngr_auto().start(autoRssiPollRate.secs(), null);
         }
-        else
+        else if (m_rssiPollMngr_auto != null)
         {
             m_rssiPollMngr_auto.stop();
         }
@@ -2359,6 +2530,24 @@ public final class BleDevice extends BleNode
         m_defaultNotificationListener = listener_nullable;
     }
 
+    /**
+     * Sets a {@link RawNotificationListener} for the given characteristic, or removes it if <code>null</code>. While one is set, notifications
+     * and indications for that characteristic go only to it. They no longer reach the {@link ReadWriteListener}s, {@link NotificationListener}s
+     * or historical data that {@link #enableNotify(UUID, ReadWriteListener)} and friends would otherwise feed. You still need to call
+     * {@link #enableNotify(UUID, ReadWriteListener)} to turn notifications on, and its listener is still called for that.
+     * <br><br>
+     * This is meant for characteristics that notify many times a second, where creating an event for each notification adds up.
+     */
+    @com.idevicesinc.sweetblue.annotations.Advanced
+    public final void setListener_RawNotification(final UUID charUuid, @Nullable(Prevalence.NORMAL) final RawNotificationListener listener_nullable)
+    {
+        if (isNull()) return;
+
+        if (listener_nullable == null && m_rawNotificationMngr == null) return;
+
+        rawNotificationMngr().setListener(charUuid, listener_nullable);
+    }
+
     /**
      * Sets a default backup {@link BleNode.HistoricalDataLoadListener} that will be invoked
      * for all historical data loads to memory for all uuids.
@@ -2367,7 +2556,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.setListener(listener_nullable);
+        historicalDataMngr().setListener(listener_nullable);
     }
 
     /**
@@ -2428,6 +2617,24 @@ public final class BleDevice extends BleNode
         return m_writeTimeEstimator != null ? Interval.secs(m_writeTimeEstimator.getRunningAverage()) : Interval.ZERO;
     }
 
+    /**
+     * Returns the throughput of the last write that was striped over multiple chunks (see {@link BleDeviceConfig#autoStripeWrites}), or
+     * <code>null</code> if no striped write has succeeded yet. This may be useful for tuning {@link BleDeviceConfig#stripedWriteNoResponseWindow}
+     * and {@link #setConnectionPriority(BleConnectionPriority)} for firmware updates or other large transfers.
+     */
+    @Advanced
+    public final @Nullable(Prevalence.NORMAL) WriteThroughput getLastStripedWriteThroughput()
+    {
+        return m_lastStripedWriteThroughput;
+    }
+
+    final void onStripedWriteFinished(final WriteThroughput throughput)
+    {
+        m_lastStripedWriteThroughput = throughput;
+
+        logger().i("Striped write finished. " + throughput);
+    }
+
     /**
      * Returns the raw RSSI retrieved from when the device was discovered,
      * rediscovered, or when you call {@link #readRssi()} or {@link #startRssiPoll(Interval)}.
@@ -2521,6 +2728,11 @@ public final class BleDevice extends BleNode
     @Deprecated
     public final @Nullable(Prevalence.NEVER) BleScanInfo getScanInfo()
     {
+        //--- Only built when asked for, as the scan record can change many times a second while scanning.
+        if (m_scanInfo == null)
+        {
+            m_scanInfo = new BleScanInfo(m_bleScanRecord);
+        }
         return m_scanInfo;
     }
 
@@ -2537,7 +2749,7 @@ public final class BleDevice extends BleNode
      */
     public final int getAdvertisingFlags()
     {
-        final int flags = (m_scanInfo != null && m_scanInfo.getAdvFlags() != null) ? m_scanInfo.getAdvFlags().value : 0;
+        final int flags = (m_bleScanRecord != null && m_bleScanRecord.getAdvFlags() != null) ? m_bleScanRecord.getAdvFlags().value : 0;
         return flags;
     }
 
@@ -2546,8 +2758,9 @@ public final class BleDevice extends BleNode
      */
     public final @Nullable(Prevalence.NEVER) UUID[] getAdvertisedServices()
     {
-        final UUID[] toReturn = m_scanInfo.getServiceUUIDS().size() > 0 ? new UUID[m_scanInfo.getServiceUUIDS().size()] : P_Const.EMPTY_UUID_ARRAY;
-        return m_scanInfo.getServiceUUIDS().toArray(toReturn);
+        final List<UUID> serviceUuids = m_bleScanRecord.getServiceUUIDS();
+        final UUID[] toReturn = serviceUuids.size() > 0 ? new UUID[serviceUuids.size()] : P_Const.EMPTY_UUID_ARRAY;
+        return serviceUuids.toArray(toReturn);
     }
 
     /**
@@ -2555,7 +2768,7 @@ public final class BleDevice extends BleNode
      */
     public final @Nullable(Prevalence.NEVER) byte[] getManufacturerData()
     {
-        final byte[] toReturn = m_scanInfo.getManufacturerData() != null ? m_scanInfo.getManufacturerData().clone() : P_Const.EMPTY_BYTE_ARRAY;
+        final byte[] toReturn = m_bleScanRecord.getManufacturerData() != null ? m_bleScanRecord.getManufacturerData().clone() : P_Const.EMPTY_BYTE_ARRAY;
 
         return toReturn;
     }
@@ -2565,7 +2778,7 @@ public final class BleDevice extends BleNode
      */
     public final int getManufacturerId()
     {
-        final int toReturn = m_scanInfo.getManufacturerId();
+        final int toReturn = m_bleScanRecord.getManufacturerId();
 
         return toReturn;
     }
@@ -2577,7 +2790,7 @@ public final class BleDevice extends BleNode
     {
         final Map<UUID, byte[]> toReturn = new HashMap<UUID, byte[]>();
 
-        toReturn.putAll(m_scanInfo.getServiceData());
+        toReturn.putAll(m_bleScanRecord.getServiceData());
 
         return toReturn;
     }
@@ -2612,7 +2825,19 @@ public final class BleDevice extends BleNode
     @Advanced
     public final @Nullable(Nullable.Prevalence.NEVER) HistoricalDataCursor getHistoricalData_cursor(final UUID uuid, final EpochTimeRange range)
     {
-        return m_historicalDataMngr.getCursor(uuid, range);
+        return historicalDataMngr().getCursor(uuid, range);
+    }
+
+    /**
+     * Returns a snapshot of how much historical data for this device has been queued, written, and dropped, and how much is still waiting
+     * to be written. Only counts anything while {@link BleNodeConfig#historicalDataQueueBatchSize} is 2 or more.
+     */
+    @Advanced
+    public final @Nullable(Nullable.Prevalence.NEVER) HistoricalDataIngestStats getHistoricalDataIngestStats()
+    {
+        final P_HistoricalDataManager historicalDataMngr = historicalDataMngr_nullable();
+
+        return historicalDataMngr != null ? historicalDataMngr.getIngestStats() : new HistoricalDataIngestStats(0, 0, 0, 0);
     }
 
     /**
@@ -2650,7 +2875,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.load(uuid, listener);
+        historicalDataMngr().load(uuid, listener);
     }
 
     /**
@@ -2660,7 +2885,7 @@ public final class BleDevice extends BleNode
     @Advanced
     public final boolean isHistoricalDataLoading()
     {
-        return m_historicalDataMngr.isLoading(null);
+        return historicalDataMngr().isLoading(null);
     }
 
     /**
@@ -2670,7 +2895,7 @@ public final class BleDevice extends BleNode
     @Advanced
     public final boolean isHistoricalDataLoading(final UUID uuid)
     {
-        return m_historicalDataMngr.isLoading(uuid);
+        return historicalDataMngr().isLoading(uuid);
     }
 
     /**
@@ -2683,7 +2908,7 @@ public final class BleDevice extends BleNode
     @Advanced
     public final boolean isHistoricalDataLoaded()
     {
-        return m_historicalDataMngr.isLoaded(null);
+        return historicalDataMngr().isLoaded(null);
     }
 
     /**
@@ -2695,7 +2920,7 @@ public final class BleDevice extends BleNode
     @Advanced
     public final boolean isHistoricalDataLoaded(final UUID uuid)
     {
-        return m_historicalDataMngr.isLoaded(uuid);
+        return historicalDataMngr().isLoaded(uuid);
     }
 
     /**
@@ -2737,7 +2962,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return new EmptyIterator<HistoricalData>();
 
-        return m_historicalDataMngr.getIterator(uuid, EpochTimeRange.denull(range));
+        return historicalDataMngr().getIterator(uuid, EpochTimeRange.denull(range));
     }
 
     /**
@@ -2765,7 +2990,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return false;
 
-        return m_historicalDataMngr.doForEach(uuid, EpochTimeRange.denull(range), forEach);
+        return historicalDataMngr().doForEach(uuid, EpochTimeRange.denull(range), forEach);
     }
 
     /**
@@ -2793,7 +3018,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return false;
 
-        return m_historicalDataMngr.doForEach(uuid, EpochTimeRange.denull(range), forEach);
+        return historicalDataMngr().doForEach(uuid, EpochTimeRange.denull(range), forEach);
     }
 
     /**
@@ -2821,7 +3046,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return HistoricalData.NULL;
 
-        return m_historicalDataMngr.getWithOffset(uuid, EpochTimeRange.denull(range), offsetFromStart);
+        return historicalDataMngr().getWithOffset(uuid, EpochTimeRange.denull(range), offsetFromStart);
     }
 
     /**
@@ -2848,7 +3073,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return 0;
 
-        return m_historicalDataMngr.getCount(uuid, EpochTimeRange.denull(range));
+        return historicalDataMngr().getCount(uuid, EpochTimeRange.denull(range));
     }
 
     /**
@@ -2874,7 +3099,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return false;
 
-        return m_historicalDataMngr.hasHistoricalData(range);
+        return historicalDataMngr().hasHistoricalData(range);
     }
 
     /**
@@ -2919,7 +3144,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return false;
 
-        return m_historicalDataMngr.hasHistoricalData(uuid, range);
+        return historicalDataMngr().hasHistoricalData(uuid, range);
     }
 
     /**
@@ -2936,7 +3161,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.add_single(uuid, data, epochTime, BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
+        historicalDataMngr().add_single(uuid, data, epochTime, BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
     }
 
     /**
@@ -2959,7 +3184,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.add_single(uuid, data, new EpochTime(), BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
+        historicalDataMngr().add_single(uuid, data, new EpochTime(), BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
     }
 
     /**
@@ -2973,7 +3198,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.add_single(uuid, historicalData, BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
+        historicalDataMngr().add_single(uuid, historicalData, BleNodeConfig.HistoricalDataLogFilter.Source.SINGLE_MANUAL_ADDITION);
     }
 
     /**
@@ -2987,7 +3212,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.add_multiple(uuid, historicalData);
+        historicalDataMngr().add_multiple(uuid, historicalData);
     }
 
     /**
@@ -3013,7 +3238,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.add_multiple(uuid, historicalData);
+        historicalDataMngr().add_multiple(uuid, historicalData);
     }
 
     /**
@@ -3692,7 +3917,7 @@ public final class BleDevice extends BleNode
 
     private void clearForExplicitDisconnect()
     {
-        m_pollMngr.clear();
+        if (m_pollMngr != null) m_pollMngr.clear();
         clearMtu();
     }
 
@@ -3772,7 +3997,7 @@ public final class BleDevice extends BleNode
     {
         final UUID serviceUuid = null;
 
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/false, /*usingNotify=*/false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/false, /*usingNotify=*/false);
     }
 
     /**
@@ -3790,7 +4015,7 @@ public final class BleDevice extends BleNode
      */
     public final void startPoll(final UUID serviceUuid, final UUID characteristicUuid, final Interval interval, final ReadWriteListener listener)
     {
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/false, /*usingNotify=*/false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/false, /*usingNotify=*/false);
     }
 
     /**
@@ -3798,7 +4023,7 @@ public final class BleDevice extends BleNode
      */
     public final void startPoll(final UUID serviceUuid, final UUID characteristicUuid, final DescriptorFilter descriptorFilter, final Interval interval, final ReadWriteListener listener)
     {
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, descriptorFilter, Interval.secs(interval), listener, false, false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, descriptorFilter, Interval.secs(interval), listener, false, false);
     }
 
     /**
@@ -3917,7 +4142,7 @@ public final class BleDevice extends BleNode
     {
         final UUID serviceUuid = null;
 
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
     }
 
     /**
@@ -3925,7 +4150,7 @@ public final class BleDevice extends BleNode
      */
     public final void startChangeTrackingPoll(final UUID serviceUuid, final UUID characteristicUuid, final Interval interval, final ReadWriteListener listener)
     {
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, null, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
     }
 
     /**
@@ -3933,7 +4158,7 @@ public final class BleDevice extends BleNode
      */
     public final void startChangeTrackingPoll(final UUID serviceUuid, final UUID characteristicUuid, final DescriptorFilter descriptorFilter, final Interval interval, final ReadWriteListener listener)
     {
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, descriptorFilter, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, descriptorFilter, Interval.secs(interval), listener, /*trackChanges=*/true, /*usingNotify=*/false);
     }
 
     /**
@@ -4744,9 +4969,9 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_rssiPollMngr.start(interval.secs(), listener);
+        rssiPollMngr().start(interval.secs(), listener);
 
-        m_rssiPollMngr_auto.stop();
+        if (m_rssiPollMngr_auto != null) m_rssiPollMngr_auto.stop();
     }
 
     /**
@@ -4756,13 +4981,13 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_rssiPollMngr.stop();
+        if (m_rssiPollMngr != null) m_rssiPollMngr.stop();
 
         final Interval autoPollRate = BleDeviceConfig.interval(conf_device().rssiAutoPollRate, conf_mngr().rssiAutoPollRate);
 
         if (!Interval.isDisabled(autoPollRate))
         {
-            m_rssiPollMngr_auto.start(autoPollRate.secs(), null);
+            rssiPollMngr_auto().start(autoPollRate.secs(), null);
         }
     }
 
@@ -4793,7 +5018,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.clearEverything();
+        historicalDataMngr().clearEverything();
     }
 
     /**
@@ -4831,7 +5056,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.delete_all(range, count, /*memoryOnly=*/false);
+        historicalDataMngr().delete_all(range, count, /*memoryOnly=*/false);
     }
 
     /**
@@ -4898,7 +5123,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.delete(uuid, range, count, /*memoryOnly=*/false);
+        historicalDataMngr().delete(uuid, range, count, /*memoryOnly=*/false);
     }
 
     /**
@@ -4948,7 +5173,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.delete_all(range, count, /*memoryOnly=*/true);
+        historicalDataMngr().delete_all(range, count, /*memoryOnly=*/true);
     }
 
     /**
@@ -5002,7 +5227,7 @@ public final class BleDevice extends BleNode
     {
         if (isNull()) return;
 
-        m_historicalDataMngr.delete(characteristicUuid, range, count, /*memoryOnly=*/true);
+        historicalDataMngr().delete(characteristicUuid, range, count, /*memoryOnly=*/true);
     }
 
     /**
@@ -5193,7 +5418,7 @@ public final class BleDevice extends BleNode
 
         final UUID serviceUuid = null;
 
-        final int/*__E_NotifyState*/ notifyState = m_pollMngr.getNotifyState(serviceUuid, uuid);
+        final int/*__E_NotifyState*/ notifyState = getPollManager().getNotifyState(serviceUuid, uuid);
 
         return notifyState == P_PollManager.E_NotifyState__ENABLED;
     }
@@ -5209,7 +5434,7 @@ public final class BleDevice extends BleNode
 
         final UUID serviceUuid = null;
 
-        final int/*__E_NotifyState*/ notifyState = m_pollMngr.getNotifyState(serviceUuid, uuid);
+        final int/*__E_NotifyState*/ notifyState = getPollManager().getNotifyState(serviceUuid, uuid);
 
         return notifyState == P_PollManager.E_NotifyState__ENABLING;
     }
@@ -5379,7 +5604,7 @@ public final class BleDevice extends BleNode
             }
         }
 
-        final int/*__E_NotifyState*/ notifyState = m_pollMngr.getNotifyState(serviceUuid, characteristicUuid);
+        final int/*__E_NotifyState*/ notifyState = getPollManager().getNotifyState(serviceUuid, characteristicUuid);
         final boolean shouldSendOutNotifyEnable = notifyState == P_PollManager.E_NotifyState__NOT_ENABLED && (earlyOutResult.m_readWriteEvent == null || earlyOutResult.m_readWriteEvent.status() != ReadWriteListener.Status.OPERATION_NOT_SUPPORTED);
 
         final ReadWriteEvent result;
@@ -5401,7 +5626,7 @@ public final class BleDevice extends BleNode
             }
             queue().add(task);
 
-            m_pollMngr.onNotifyStateChange(serviceUuid, characteristicUuid, P_PollManager.E_NotifyState__ENABLING);
+            getPollManager().onNotifyStateChange(serviceUuid, characteristicUuid, P_PollManager.E_NotifyState__ENABLING);
 
             result = NULL_READWRITE_EVENT();
         }
@@ -5409,7 +5634,7 @@ public final class BleDevice extends BleNode
         {
             if (listener != null && isConnected)
             {
-                result = m_pollMngr.newAlreadyEnabledEvent(earlyOutResult.m_characteristicWrapper.getCharacteristic(), serviceUuid, characteristicUuid, descriptorFilter);
+                result = getPollManager().newAlreadyEnabledEvent(earlyOutResult.m_characteristicWrapper.getCharacteristic(), serviceUuid, characteristicUuid, descriptorFilter);
 
                 invokeReadWriteCallback(listener, result);
             }
@@ -5428,7 +5653,7 @@ public final class BleDevice extends BleNode
             result = NULL_READWRITE_EVENT();
         }
 
-        m_pollMngr.startPoll(serviceUuid, characteristicUuid, descriptorFilter, forceReadTimeout.secs(), listener, /*trackChanges=*/true, /*usingNotify=*/true);
+        getPollManager().startPoll(serviceUuid, characteristicUuid, descriptorFilter, forceReadTimeout.secs(), listener, /*trackChanges=*/true, /*usingNotify=*/true);
 
         return result;
     }
@@ -5749,6 +5974,16 @@ public final class BleDevice extends BleNode
 
     final P_PollManager getPollManager()
     {
+        if (m_pollMngr == null)
+        {
+            synchronized (m_subsystemLock)
+            {
+                if (m_pollMngr == null)
+                {
+                    m_pollMngr = new P_PollManager(this);
+                }
+            }
+        }
         return m_pollMngr;
     }
 
@@ -5767,7 +6002,7 @@ public final class BleDevice extends BleNode
 
         m_nativeWrapper.updateNativeDeviceOnly(device_native);
 
-        onDiscovered_private(scanEvent_nullable, rssi, scanRecord_nullable);
+        onDiscovered_private(scanEvent_nullable, rssi, scanRecord_nullable, /*scanRecordUnchanged=*/false);
 
         stateTracker_main().update(E_Intent.UNINTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE, m_bondMngr.getNativeBondingStateOverrides(), UNDISCOVERED, false, DISCOVERED, true, ADVERTISING, origin == BleDeviceOrigin.FROM_DISCOVERY, DISCONNECTED, true);
     }
@@ -5776,9 +6011,11 @@ public final class BleDevice extends BleNode
     {
         m_origin_latest = origin;
 
-        m_nativeWrapper.updateNativeDevice(device_native, scanRecord_nullable, Arrays.equals(m_scanRecord, scanRecord_nullable));
+        final boolean scanRecordUnchanged = Arrays.equals(m_scanRecord, scanRecord_nullable);
+
+        m_nativeWrapper.updateNativeDevice(device_native, scanRecord_nullable, scanRecordUnchanged);
 
-        onDiscovered_private(scanEvent_nullable, rssi, scanRecord_nullable);
+        onDiscovered_private(scanEvent_nullable, rssi, scanRecord_nullable, scanRecordUnchanged);
 
         stateTracker_main().update(PA_StateTracker.E_Intent.UNINTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE, m_bondMngr.getNativeBondingStateOverrides(), ADVERTISING, true);
     }
@@ -5806,7 +6043,7 @@ public final class BleDevice extends BleNode
         return m_timeSinceLastDiscovery;
     }
 
-    private void onDiscovered_private(final BleManagerConfig.ScanFilter.ScanEvent scanEvent_nullable, final int rssi, byte[] scanRecord_nullable)
+    private void onDiscovered_private(final BleManagerConfig.ScanFilter.ScanEvent scanEvent_nullable, final int rssi, byte[] scanRecord_nullable, final boolean scanRecordUnchanged)
     {
         m_lastDiscoveryTime = EpochTime.now();
         m_timeSinceLastDiscovery = 0.0;
@@ -5833,16 +6070,26 @@ public final class BleDevice extends BleNode
             m_bleScanRecord.clearServiceData();
             m_bleScanRecord.addServiceData(scanEvent_nullable.serviceData());
 
-            m_scanInfo = new BleScanInfo(m_bleScanRecord);
+            m_bleScanRecordParsed = false;
+            m_scanInfo = null;
         }
         else if (scanRecord_nullable != null)
         {
-            m_scanRecord = scanRecord_nullable;
+            if (!m_bleScanRecordParsed)
+            {
+                m_bleScanRecord = Utils_ScanRecord.parseScanRecord(scanRecord_nullable);
+                m_bleScanRecordParsed = true;
+                m_scanInfo = null;
+            }
+            // If the bytes are the same, there's nothing to do. Otherwise, only the AD structures that changed are parsed again.
+            else if (!scanRecordUnchanged && Utils_ScanRecord.updateScanRecord(m_bleScanRecord, m_scanRecord, scanRecord_nullable))
+            {
+                m_scanInfo = null;
+            }
 
-            m_bleScanRecord = Utils_ScanRecord.parseScanRecord(scanRecord_nullable);
-            m_scanInfo = new BleScanInfo(m_bleScanRecord);
+            m_scanRecord = scanRecord_nullable;
 
-            updateKnownTxPower(m_scanInfo.getTxPower().value);
+            updateKnownTxPower(m_bleScanRecord.getTxPower().value);
         }
     }
 
@@ -5856,10 +6103,15 @@ public final class BleDevice extends BleNode
 
     final void updateRssi(final int rssi, boolean fromScan)
     {
+        final boolean changed = m_rssi != rssi;
         m_rssi = rssi;
+        if (changed)
+        {
+            getManager().m_deviceMngr.onSortKeyChanged(this);
+        }
         // If this update is from a scan, it will not call the event from the rssi poll (if running). So we have to manually
         // tell the poll manager that we got an rssi update.
-        if (fromScan)
+        if (fromScan && m_rssiPollMngr != null)
         {
             m_rssiPollMngr.onScanRssiUpdate(rssi);
         }
@@ -5946,11 +6198,11 @@ public final class BleDevice extends BleNode
     {
         m_timeSinceLastDiscovery += timeStep;
 
-        m_pollMngr.update(timeStep);
+        if (m_pollMngr != null) m_pollMngr.update(timeStep);
         m_txnMngr.update(timeStep);
-        m_reconnectMngr_longTerm.update(timeStep);
-        m_reconnectMngr_shortTerm.update(timeStep);
-        m_rssiPollMngr.update(timeStep);
+        if (m_reconnectMngr_longTerm != null) m_reconnectMngr_longTerm.update(timeStep);
+        if (m_reconnectMngr_shortTerm != null) m_reconnectMngr_shortTerm.update(timeStep);
+        if (m_rssiPollMngr != null) m_rssiPollMngr.update(timeStep);
     }
 
     final void bond_justAddTheTask(E_TransactionLockBehavior lockBehavior, boolean isDirect)
@@ -6146,7 +6398,7 @@ public final class BleDevice extends BleNode
                 //--- DRK > We're stopping the reconnect process (if it's running) because the user has decided to explicitly connect
                 //--- for whatever reason. Making a judgement call that the user would then expect reconnect to stop.
                 //--- In other words it's not stopped for any hard technical reasons...it could go on.
-                m_reconnectMngr_longTerm.stop();
+                stopReconnecting_longTerm();
                 intent = E_Intent.INTENTIONAL;
                 stateTracker().update(intent, BluetoothGatt.GATT_SUCCESS, RECONNECTING_LONG_TERM, false, CONNECTING, bleConnect, CONNECTING_OVERALL, true, DISCONNECTED, false, ADVERTISING, false, extraBondingStates);
             }
@@ -6196,7 +6448,7 @@ public final class BleDevice extends BleNode
         //--- case shouldn't really come up much or at all with that in place.
         if (!getManager().hasDevice(getMacAddress()))
         {
-            getManager().onDiscovered_fromRogueAutoConnect(this, /*newlyDiscovered=*/true, m_scanInfo.getServiceUUIDS(), getScanRecord(), getRssi());
+            getManager().onDiscovered_fromRogueAutoConnect(this, /*newlyDiscovered=*/true, m_bleScanRecord.getServiceUUIDS(), getScanRecord(), getRssi());
         }
 
         //--- DRK > Some trapdoor logic for bad android ble bug.
@@ -6323,6 +6575,8 @@ public final class BleDevice extends BleNode
 
     final void onServicesDiscovered()
     {
+        serviceMngr_device().buildIndex();
+
         boolean autoNegotiateMtu = BleDeviceConfig.bool(conf_device().autoNegotiateMtuOnReconnect, conf_mngr().autoNegotiateMtuOnReconnect);
         if (autoNegotiateMtu && m_mtu > BleNodeConfig.DEFAULT_MTU_SIZE)
         {
@@ -6345,8 +6599,8 @@ public final class BleDevice extends BleNode
 
     final void onFullyInitialized(final int gattStatus, Object... extraFlags)
     {
-        m_reconnectMngr_longTerm.stop();
-        m_reconnectMngr_shortTerm.stop();
+        stopReconnecting_longTerm();
+        stopReconnecting_shortTerm();
         m_connectionFailMngr.onFullyInitialized();
 
         //--- DRK > Saving last disconnect as unintentional here in case for some
@@ -6448,7 +6702,7 @@ public final class BleDevice extends BleNode
 
                     if (explicit)
                     {
-                        m_reconnectMngr_shortTerm.stop();
+                        stopReconnecting_shortTerm();
                     }
 
                     if (cancelled)
@@ -6521,7 +6775,7 @@ public final class BleDevice extends BleNode
 
                         if (!attemptingReconnect_longTerm)
                         {
-                            m_reconnectMngr_longTerm.stop();
+                            stopReconnecting_longTerm();
                         }
                     }
 //		else
@@ -6593,7 +6847,10 @@ public final class BleDevice extends BleNode
             saveLastDisconnect(wasExplicit);
         }
 
-        m_pollMngr.resetNotifyStates();
+        if (m_pollMngr != null) m_pollMngr.resetNotifyStates();
+
+        //--- Services have to be discovered again on the next connection, and may not be the same.
+        serviceMngr_device().clearIndex();
 
 //		if( attemptShortTermReconnect )
         {
@@ -6606,12 +6863,12 @@ public final class BleDevice extends BleNode
 
         if (attemptShortTermReconnect)
         {
-            if (!wasExplicit && wasInitialized && !m_reconnectMngr_shortTerm.isRunning())
+            if (!wasExplicit && wasInitialized && !isReconnecting_shortTerm())
             {
                 m_stateTracker_shortTermReconnect.sync(stateTracker_main());
-                m_reconnectMngr_shortTerm.attemptStart(gattStatus);
+                reconnectMngr_shortTerm().attemptStart(gattStatus);
 
-                if (m_reconnectMngr_shortTerm.isRunning())
+                if (isReconnecting_shortTerm())
                 {
                     stateTracker_main().append(BleDeviceState.RECONNECTING_SHORT_TERM, E_Intent.INTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE);
                 }
@@ -6678,7 +6935,7 @@ public final class BleDevice extends BleNode
         final boolean isConnectingOverall_1 = is_internal(CONNECTING_OVERALL);
         final boolean isStillAttemptingReconnect_longTerm = is_internal(RECONNECTING_LONG_TERM);
         final ConnectionFailListener.Status connectionFailReason_nullable;
-        if (!m_reconnectMngr_shortTerm.isRunning() && wasConnectingOverall && !wasExplicit)
+        if (!isReconnecting_shortTerm() && wasConnectingOverall && !wasExplicit)
         {
             if (getManager().isAny(BleManagerState.TURNING_OFF, BleManagerState.OFF))
             {
@@ -6716,7 +6973,7 @@ public final class BleDevice extends BleNode
 
         final int retrying__PE_Please;
 
-        if (!isConnectingOverall_1 && !m_reconnectMngr_shortTerm.isRunning())
+        if (!isConnectingOverall_1 && !isReconnecting_shortTerm())
         {
             if (connectionFailReason_nullable != null && wasExplicit)
             {
@@ -6753,11 +7010,11 @@ public final class BleDevice extends BleNode
         //--- DRK > Again, technically user could have called connect() in callbacks above....bad form but we need to account for it.
         final boolean isConnectingOverall_2 = is_internal(CONNECTING_OVERALL);
 
-        if (!m_reconnectMngr_shortTerm.isRunning() && !m_reconnectMngr_longTerm.isRunning() && !wasExplicit && wasInitialized && !isConnectingOverall_2)
+        if (!isReconnecting_shortTerm() && !isReconnecting_longTerm() && !wasExplicit && wasInitialized && !isConnectingOverall_2)
         {
-            m_reconnectMngr_longTerm.attemptStart(gattStatus);
+            reconnectMngr_longTerm().attemptStart(gattStatus);
 
-            if (m_reconnectMngr_longTerm.isRunning())
+            if (isReconnecting_longTerm())
             {
                 stateTracker_main().append(RECONNECTING_LONG_TERM, E_Intent.INTENTIONAL, BleStatuses.GATT_STATUS_NOT_APPLICABLE);
             }
@@ -6766,7 +7023,7 @@ public final class BleDevice extends BleNode
         //--- DRK > Throwing in one last disconnect if it looks like we just came out of a short term reconnect
         //---		that was connected and (e.g.) getting services and so this method was called but no long term reconnect was started
         //---		so we have to bail out.
-        if (is(DISCONNECTED) && !is(RECONNECTING_LONG_TERM) && m_reconnectMngr_longTerm.isRunning() == false && m_reconnectMngr_shortTerm.isRunning() == false)
+        if (is(DISCONNECTED) && !is(RECONNECTING_LONG_TERM) && isReconnecting_longTerm() == false && isReconnecting_shortTerm() == false)
         {
             if (m_nativeWrapper.isNativelyConnectingOrConnected())
             {
@@ -6792,14 +7049,15 @@ public final class BleDevice extends BleNode
 
     private void softlyCancelTasks(final int overrideOrdinal)
     {
-        m_dummyDisconnectTask.setOverrideOrdinal(overrideOrdinal);
-        queue().softlyCancelTasks(m_dummyDisconnectTask);
+        final P_Task_Disconnect dummyDisconnectTask = dummyDisconnectTask();
+        dummyDisconnectTask.setOverrideOrdinal(overrideOrdinal);
+        queue().softlyCancelTasks(dummyDisconnectTask);
         queue().clearQueueOf(PA_Task_RequiresConnection.class, this, overrideOrdinal);
     }
 
     private void stopPoll_private(final UUID serviceUuid, final UUID characteristicUuid, final DescriptorFilter descriptorFilter, final Double interval, final ReadWriteListener listener)
     {
-        m_pollMngr.stopPoll(serviceUuid, characteristicUuid, descriptorFilter, interval, listener, /* usingNotify= */false);
+        getPollManager().stopPoll(serviceUuid, characteristicUuid, descriptorFilter, interval, listener, /* usingNotify= */false);
     }
 
     final ReadWriteListener.ReadWriteEvent read_internal(final UUID serviceUuid, final UUID characteristicUuid, final UUID descriptorUuid, final Type type, DescriptorFilter descriptorFilter, final ReadWriteListener listener)
@@ -6848,6 +7106,8 @@ public final class BleDevice extends BleNode
 
         if (earlyOutResult.earlyOut())
         {
+            P_DeviceServiceManager.closeIfChunked(wb.data);
+
             invokeReadWriteCallback(wb.readWriteListener, earlyOutResult.m_readWriteEvent);
 
             return earlyOutResult.m_readWriteEvent;
@@ -6869,10 +7129,20 @@ public final class BleDevice extends BleNode
         return NULL_READWRITE_EVENT();
     }
 
+    private static int getWriteLength(FutureData data)
+    {
+        // Streamed data knows its length up front, so there's no need to read it all in here
+        if (data instanceof ChunkedData)
+        {
+            return ((ChunkedData) data).length();
+        }
+        return data.getData().length;
+    }
+
     private void addWriteDescriptorTasks(BluetoothGattDescriptor descriptor, FutureData data, boolean requiresBonding, ReadWriteListener listener)
     {
         int mtuSize = getEffectiveWriteMtuSize();
-        if (!conf_device().autoStripeWrites || data.getData().length < mtuSize)
+        if (!conf_device().autoStripeWrites || getWriteLength(data) < mtuSize)
         {
             queue().add(new P_Task_WriteDescriptor(this, descriptor, data, requiresBonding, listener, m_txnMngr.getCurrent(), getOverrideReadWritePriority()));
         }
@@ -6886,7 +7156,7 @@ public final class BleDevice extends BleNode
     private void addWriteTasks(BluetoothGattCharacteristic characteristic, FutureData data, boolean requiresBonding, Type writeType, DescriptorFilter filter, ReadWriteListener listener)
     {
         int mtuSize = getEffectiveWriteMtuSize();
-        if (!conf_device().autoStripeWrites || data.getData().length <= mtuSize)
+        if (!conf_device().autoStripeWrites || getWriteLength(data) <= mtuSize)
         {
             final P_Task_Write task_write;
             if (filter == null)
@@ -6932,7 +7202,7 @@ public final class BleDevice extends BleNode
             queue().add(task);
         }
 
-        m_pollMngr.stopPoll(serviceUuid, characteristicUuid, descriptorFilter, forceReadTimeout, listener, /* usingNotify= */true);
+        getPollManager().stopPoll(serviceUuid, characteristicUuid, descriptorFilter, forceReadTimeout, listener, /* usingNotify= */true);
 
         return NULL_READWRITE_EVENT();
     }
@@ -6970,7 +7240,7 @@ public final class BleDevice extends BleNode
             final EpochTime timestamp = new EpochTime();
             final BleNodeConfig.HistoricalDataLogFilter.Source source = event.type().toHistoricalDataSource();
 
-            m_historicalDataMngr.add_single(event.charUuid(), event.data(), timestamp, source);
+            historicalDataMngr().add_single(event.charUuid(), event.data(), timestamp, source);
         }
 
         m_txnMngr.onReadWriteResult(event);
@@ -7234,7 +7504,7 @@ public final class BleDevice extends BleNode
                     }
                 });
             }
-            else
+            else if (!getManager().getPostManager().dispatchCallbackEvent(listener, event))
             {
                 getManager().getPostManager().postCallback(new Runnable()
                 {
@@ -92,6 +92,11 @@ public class BleDeviceConfig extends BleNodeConfig implements Cloneable
 	 */
 	public static final int DEFAULT_MAX_BOND_RETRIES = 3;
 
+	/**
+	 * The default value of {@link #stripedWriteNoResponseWindow}, which keeps striped writes going out one chunk at a time.
+	 */
+	public static final int DEFAULT_STRIPED_WRITE_NO_RESPONSE_WINDOW = 1;
+
 
 
 	/**
@@ -413,6 +418,18 @@ public class BleDeviceConfig extends BleNodeConfig implements Cloneable
 	@com.idevicesinc.sweetblue.annotations.Advanced
 	@Nullable(Prevalence.NORMAL)
 	public Integer		nForAverageRunningReadTime				= DEFAULT_RUNNING_AVERAGE_N;
+
+	/**
+	 * Default is {@link #DEFAULT_STRIPED_WRITE_NO_RESPONSE_WINDOW} - the number of chunks that are kept queued up at once when a write larger than
+	 * the MTU is striped (see {@link BleNodeConfig#autoStripeWrites}) using {@link BleDevice.ReadWriteListener.Type#WRITE_NO_RESPONSE}. Normally the next
+	 * chunk only gets queued after the previous one has come back, which leaves most of each connection interval unused. With a larger window, the next
+	 * chunk is ready to go as soon as the native stack accepts the previous one, and if the stack reports it's busy, the chunk is retried after a short
+	 * back-off while the window shrinks back down. Use {@link BleDevice#getLastStripedWriteThroughput()} to compare settings for your device.
+	 * Values less than 2 disable this, and have no effect on writes which require a response.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Prevalence.NORMAL)
+	public Integer		stripedWriteNoResponseWindow			= DEFAULT_STRIPED_WRITE_NO_RESPONSE_WINDOW;
 	
 	/**
 	 * Default is {@link #DEFAULT_TX_POWER} - this value is used if we can't establish a device's calibrated transmission power from the device itself,
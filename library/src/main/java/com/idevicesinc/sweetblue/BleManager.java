@@ -3,11 +3,14 @@ package com.idevicesinc.sweetblue;
 import static com.idevicesinc.sweetblue.BleManagerState.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Future;
 import android.Manifest;
 import android.app.Activity;
 import android.app.Application;
@@ -47,12 +50,17 @@ import com.idevicesinc.sweetblue.annotations.Nullable.Prevalence;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase;
 import com.idevicesinc.sweetblue.compat.M_Util;
 import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
 import com.idevicesinc.sweetblue.utils.Event;
 import com.idevicesinc.sweetblue.utils.ForEach_Breakable;
+import com.idevicesinc.sweetblue.utils.ForEach_Returning;
 import com.idevicesinc.sweetblue.utils.ForEach_Void;
 import com.idevicesinc.sweetblue.utils.GattDatabase;
 import com.idevicesinc.sweetblue.utils.GenericListener_Void;
 import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataAggregate;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.HistoricalDataQuery;
 import com.idevicesinc.sweetblue.utils.Interval;
 import com.idevicesinc.sweetblue.utils.Percent;
 import com.idevicesinc.sweetblue.utils.State;
@@ -775,7 +783,7 @@ public final class BleManager
 
 	private final Context m_context;
 	private UpdateRunnable m_updateRunnable;
-	private final P_ScanFilterManager m_filterMngr;
+	final P_ScanFilterManager m_filterMngr;
 	final P_BluetoothCrashResolver m_crashResolver;
 	private			P_Logger m_logger;
 			  BleManagerConfig m_config;
@@ -903,7 +911,12 @@ public final class BleManager
 
 	private void initLogger(BleManager mgr)
 	{
-		m_logger = new P_Logger(mgr, m_config.debugThreadNames, m_config.uuidNameMaps, m_config.loggingEnabled, m_config.logger);
+		if (m_logger != null)
+		{
+			m_logger.shutdown();
+		}
+
+		m_logger = new P_Logger(mgr, m_config.debugThreadNames, m_config.uuidNameMaps, m_config.loggingEnabled, m_config.asyncLogging, m_config.logger);
 	}
 
 	private void initConfigDependentMembers()
@@ -2062,6 +2075,25 @@ public final class BleManager
 		return isAny(SCANNING, SCANNING_PAUSED, BOOST_SCANNING, STARTING_SCAN);
 	}
 
+	/**
+	 * Returns a snapshot of how many scan results have come in from the native stack, and how many of them were coalesced, dropped,
+	 * or actually processed. Useful for tuning {@link BleManagerConfig#autoUpdateRate} or {@link BleManagerConfig#scanReportDelay}
+	 * in crowded environments.
+	 */
+	public final @Nullable(Prevalence.NEVER) ScanIngestStats getScanIngestStats()
+	{
+		return m_scanManager.getIngestStats();
+	}
+
+	/**
+	 * Returns a snapshot of how many callbacks have been delivered to the main thread in batches, how many are waiting, and how long they
+	 * waited. Only counts anything while {@link BleManagerConfig#callbackBatchInterval} is enabled.
+	 */
+	public final @Nullable(Prevalence.NEVER) CallbackBatchStats getCallbackBatchStats()
+	{
+		return m_postManager.getCallbackBatchStats();
+	}
+
 	/**
 	 * Returns <code>true</code> if location is enabled to a degree that allows scanning on {@link android.os.Build.VERSION_CODES#M} and above.
 	 * If this returns <code>false</code> it means you're on Android M and you either (A) do not have {@link android.Manifest.permission#ACCESS_COARSE_LOCATION}
@@ -2203,6 +2235,8 @@ public final class BleManager
 		m_postManager.quit();
 		m_wakeLockMngr.clear();
 		m_listeners.onDestroy();
+		m_diskOptionsMngr.shutdown();
+		m_logger.shutdown();
 		s_instance = null;
 	}
 
@@ -2317,17 +2351,7 @@ public final class BleManager
 	 */
 	public final @Nullable(Prevalence.NEVER) BleDevice getDevice(BleDeviceState state)
 	{
-		for( int i = 0; i < m_deviceMngr.getCount(); i++ )
-		{
-			BleDevice device = m_deviceMngr.get(i);
-
-			if( device.is(state) )
-			{
-				return device;
-			}
-		}
-
-		return BleDevice.NULL;
+		return m_deviceMngr.getDevice_first(state.bit());
 	}
 
 	/**
@@ -2497,7 +2521,28 @@ public final class BleManager
 	 */
 	public final @Nullable(Prevalence.NEVER) List<BleDevice> getDevices_List_sorted()
 	{
-		return (List<BleDevice>) m_deviceMngr.getList_sorted().clone();
+		final Comparator<BleDevice> comparator = m_config.defaultListComparator;
+
+		//--- The view only keeps up with name and rssi changes, so a custom comparator could be sorting on something it doesn't know changed.
+		if (comparator == null || comparator.getClass() == BleManagerConfig.DeviceNameComparator.class)
+		{
+			return m_deviceMngr.getSortedView().getDevices();
+		}
+
+		final List<BleDevice> sorted = getDevices_List();
+		Collections.sort(sorted, comparator);
+
+		return sorted;
+	}
+
+	/**
+	 * Returns a live view of the devices, kept sorted by {@link BleManagerConfig#defaultListComparator} as devices are discovered,
+	 * undiscovered, or change their name or rssi. Use this instead of calling {@link #getDevices_List_sorted()} over and over, for example
+	 * to back a list in your UI.
+	 */
+	public final @Nullable(Prevalence.NEVER) SortedDeviceView getSortedDeviceView()
+	{
+		return m_deviceMngr.getSortedView();
 	}
 
 	/**
@@ -2653,7 +2698,7 @@ public final class BleManager
 	 */
 	public final @Nullable(Prevalence.NEVER) BleDeviceIterator getDevices(final BleDeviceState state)
 	{
-		return new BleDeviceIterator(getDevices_List(), state, true);
+		return new BleDeviceIterator(m_deviceMngr.getMatching_List(state.bit()));
 	}
 
 	/**
@@ -2702,7 +2747,7 @@ public final class BleManager
 	 */
 	public final @Nullable(Prevalence.NEVER) BleDeviceIterator getDevices(final int mask_BleDeviceState)
 	{
-		return new BleDeviceIterator(getDevices_List(), mask_BleDeviceState);
+		return new BleDeviceIterator(m_deviceMngr.getMatching_List(mask_BleDeviceState));
 	}
 
 	/**
@@ -2778,6 +2823,50 @@ public final class BleManager
 		}
 	}
 
+	/**
+	 * Overload of {@link #aggregateHistoricalData(UUID, EpochTimeRange, HistoricalDataQuery.DataDecoder, int)} that uses
+	 * {@link HistoricalDataQuery#UNSIGNED_LITTLE_ENDIAN} and as many threads as there are cores.
+	 */
+	@Advanced
+	public final @Nullable(Prevalence.NEVER) Future<HistoricalDataAggregate> aggregateHistoricalData(final UUID uuid, final EpochTimeRange range)
+	{
+		return aggregateHistoricalData(uuid, range, null, 0);
+	}
+
+	/**
+	 * Computes the count, min, max, and average of the historical data for the given characteristic across every device in {@link #getDevices_List()},
+	 * for example the average battery level of a fleet of devices over the last day. The work is split up between up to <code>parallelism</code>
+	 * background threads (all cores if 0 or less), each of which reads whole devices at a time through a {@link HistoricalDataCursor} like the one
+	 * from {@link BleDevice#getHistoricalData_cursor(UUID, EpochTimeRange)}, and the partial results are merged once at the end. Each device's data
+	 * comes from one place: the database if any of it has been persisted, otherwise what's in memory, either way including anything still queued.
+	 * Use {@link Future#get()} to wait for the result and {@link Future#cancel(boolean)} to stop early, which returns once the background threads have stopped.
+	 */
+	@Advanced
+	public final @Nullable(Prevalence.NEVER) Future<HistoricalDataAggregate> aggregateHistoricalData(final UUID uuid, final EpochTimeRange range, @Nullable(Prevalence.NORMAL) final HistoricalDataQuery.DataDecoder decoder_nullable, final int parallelism)
+	{
+		final List<BleDevice> devices = getDevices_List();
+		final EpochTimeRange range_nonnull = EpochTimeRange.denull(range);
+
+		final P_HistoricalDataAggregation aggregation = new P_HistoricalDataAggregation(devices.size(), new ForEach_Returning<HistoricalDataCursor>()
+		{
+			@Override public HistoricalDataCursor next(final int index)
+			{
+				final BleDevice device = devices.get(index);
+				final P_HistoricalDataManager historicalDataMngr = device.historicalDataMngr_nullable();
+
+				//--- Nothing's been added or loaded for this device yet, so whatever there is lives on disk, no need to spin up a manager for it.
+				if( historicalDataMngr == null )
+				{
+					return m_historicalDatabase.getCursor(device.getMacAddress(), uuid, range_nonnull);
+				}
+
+				return historicalDataMngr.getCursor_everything(uuid, range_nonnull);
+			}
+		}, decoder_nullable, parallelism);
+
+		return aggregation.start();
+	}
+
 	/**
 	 * Overload of {@link #getServer(BleServer.IncomingListener)} without any initial set-up parameters.
 	 */
@@ -3110,6 +3199,8 @@ public final class BleManager
 
 			if (device_sweetblue == null)
 			{
+				if (false == m_filterMngr.precheck(entry.device(), entry.rssi(), entry.record())) continue;
+
 				final String rawDeviceName;
 
 				try
@@ -3280,7 +3371,7 @@ public final class BleManager
 					}
 				});
 			}
-			else
+			else if (!m_postManager.dispatchCallbackEvent(listener, event))
 			{
 				m_postManager.postCallback(new Runnable()
 				{
@@ -3318,6 +3409,13 @@ public final class BleManager
 					}
 				});
 			}
+			else if (events.size() > 0 && m_postManager.dispatchCallbackEvent(listener, events.get(0)))
+			{
+				for (int i = 1; i < events.size(); i++)
+				{
+					m_postManager.dispatchCallbackEvent(listener, events.get(i));
+				}
+			}
 			else
 			{
 				m_postManager.postCallback(new Runnable()
@@ -3452,6 +3550,8 @@ public final class BleManager
 
 		m_uhOhThrottler.update(timeStep_seconds);
 
+		m_postManager.checkCallbackTimeBudget();
+
 		if (m_taskQueue.update(timeStep_seconds, currentTime))
 		{
 			m_lastTaskExecution = currentTime;
@@ -7,7 +7,9 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
@@ -18,6 +20,7 @@ import com.idevicesinc.sweetblue.annotations.Extendable;
 import com.idevicesinc.sweetblue.annotations.Immutable;
 import com.idevicesinc.sweetblue.annotations.Nullable;
 import com.idevicesinc.sweetblue.annotations.Nullable.Prevalence;
+import com.idevicesinc.sweetblue.utils.AdvertisingCursor;
 import com.idevicesinc.sweetblue.utils.BleScanInfo;
 import com.idevicesinc.sweetblue.utils.BleScanRecord;
 import com.idevicesinc.sweetblue.utils.Event;
@@ -81,6 +84,11 @@ public class BleManagerConfig extends BleDeviceConfig
 	 */
 	public static final double DEFAULT_SCAN_REPORT_DELAY				= .5;
 
+	/**
+	 * Default value for {@link #callbackTimeBudget}.
+	 */
+	public static final double DEFAULT_CALLBACK_TIME_BUDGET				= .1;
+
 	/**
 	 * Default value for {@link #infiniteScanInterval}
 	 */
@@ -95,6 +103,11 @@ public class BleManagerConfig extends BleDeviceConfig
 	 * Default value for {@link #defaultStatePollRate}
 	 */
 	public static final double DEFAULT_MANAGER_STATE_POLL_RATE			= .1;
+
+	/**
+	 * Default value for {@link #maxConcurrentTasks}
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_TASKS				= 4;
 	
 	static final BleManagerConfig NULL = new BleManagerConfigNull();
 
@@ -128,6 +141,16 @@ public class BleManagerConfig extends BleDeviceConfig
 	 */
 	@com.idevicesinc.sweetblue.annotations.Advanced
 	public SweetLogger logger						= new DefaultLogger();
+
+	/**
+	 * Default is <code>false</code> - if set to <code>true</code>, log statements are put in a fixed-size buffer, and passed on to {@link #logger}
+	 * from a separate background thread, instead of from whichever thread they were logged on. This keeps logging from slowing down SweetBlue's
+	 * threads, so it's worth turning on if you leave {@link #loggingEnabled} on in release builds. The trade-off is that your {@link SweetLogger}
+	 * gets called a little later, and if log statements come in faster than they can be written out, some of them will be dropped (how many gets
+	 * logged once there's room again). If {@link #loggingEnabled} is not set, then this option will not affect anything.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	public boolean asyncLogging						= false;
 	
 	/**
 	 * Default is <code>false</code> - this option may help mitigate crashes with "Unfortunately,
@@ -231,6 +254,47 @@ public class BleManagerConfig extends BleDeviceConfig
 	 * internal thread is already the main thread to begin with.
 	 */
 	public boolean postCallbacksToMainThread						= true;
+
+	/**
+	 * Default is {@link Interval#DISABLED} - if set, and {@link #postCallbacksToMainThread} is <code>true</code>, callbacks of all kinds
+	 * (discovery, state, read/write, notification, etc.) that would otherwise be posted to the main thread one message each are instead
+	 * queued up and called together, in one message at most this often. Something like 16ms (about once a frame) can keep the main thread's
+	 * message queue from flooding when you have a lot of devices or notifications. Callbacks are still called in the order they happened.
+	 * See {@link BleManager#getCallbackBatchStats()} for how well it's keeping up.
+	 * <br><br>
+	 * NOTE: This only has an effect if {@link #runOnMainThread} is <code>false</code>. Otherwise SweetBlue already runs on the main thread,
+	 * so callbacks are called directly and there's nothing to batch.
+	 */
+	@Advanced
+	public Interval callbackBatchInterval							= Interval.DISABLED;
+
+	/**
+	 * Default is <code>null</code> - characteristics for which only the latest notification matters, like a sensor reading that's displayed
+	 * as-is. When {@link #callbackBatchInterval} is enabled, a successful notification for one of these replaces the one for the same
+	 * device and characteristic that's still waiting in the batch for a listener, rather than being queued up after it.
+	 */
+	@Advanced
+	@Nullable(Prevalence.NORMAL)
+	public Set<UUID> latestValueOnlyNotificationUuids				= null;
+
+	/**
+	 * Default is <code>null</code> - if set, callbacks of all kinds are called on this {@link Executor} (for instance a small thread pool)
+	 * instead of on the main thread or SweetBlue's update thread, so a slow listener can't hold up processing for every device. Callbacks for
+	 * the same {@link BleDevice} are still called one at a time, in the order they happened, while callbacks for different devices can run at the
+	 * same time. Callbacks that aren't for a particular device are likewise called one at a time. If set, this takes precedence over
+	 * {@link #postCallbacksToMainThread} and {@link #callbackBatchInterval}. Your listeners will need to be thread-safe and post to the main
+	 * thread themselves for any UI work.
+	 */
+	@Advanced
+	@Nullable(Prevalence.NORMAL)
+	public Executor callbackExecutor								= null;
+
+	/**
+	 * Default is {@link #DEFAULT_CALLBACK_TIME_BUDGET} seconds - when {@link #callbackExecutor} is set, any callback that runs longer than this
+	 * is logged as a warning, along with the listener and event types, while it's still running. Use {@link Interval#DISABLED} to turn this off.
+	 */
+	@Advanced
+	public Interval callbackTimeBudget								= Interval.secs(DEFAULT_CALLBACK_TIME_BUDGET);
 	
 	/**
 	 * Default is <code>true</code> - requires the {@link android.Manifest.permission#WAKE_LOCK} permission in your app's manifest file.
@@ -380,6 +444,26 @@ public class BleManagerConfig extends BleDeviceConfig
 	@Advanced
 	public Interval delayBetweenTasks						= Interval.DISABLED;
 
+	/**
+	 * Default is <code>false</code> - By default, SweetBlue runs every task one at a time, in a single queue shared by every {@link BleDevice}. This means
+	 * a read on one device will hold up a write on another, even though both devices have their own connection. If set to <code>true</code>, reads, writes,
+	 * notification toggles, MTU/connection priority requests, RSSI reads, and transaction locks get queued in a separate "lane" for each {@link BleDevice}.
+	 * Each lane runs one task at a time, with the same priority and interruption rules as the global queue, but lanes for different devices run alongside each
+	 * other. Scanning, bonding, turning BLE on/off, connecting, and disconnecting still go through the global queue, one at a time.
+	 *
+	 * @see #maxConcurrentTasks
+	 */
+	@Advanced
+	public boolean useDeviceTaskLanes						= false;
+
+	/**
+	 * Default is {@value #DEFAULT_MAX_CONCURRENT_TASKS} - The maximum number of tasks that can be in flight at one time (counting the global queue's current task,
+	 * and every device lane's current task). This is only used if {@link #useDeviceTaskLanes} is <code>true</code>. Some Android phones don't deal well with
+	 * too many GATT operations going on at once, so you may want to tune this for the phones you are targeting. Values less than 1 are treated as 1.
+	 */
+	@Advanced
+	public int maxConcurrentTasks							= DEFAULT_MAX_CONCURRENT_TASKS;
+
 	/**
 	 * Default is <code>false</code><br></br>
 	 * <br></br>
@@ -416,6 +500,15 @@ public class BleManagerConfig extends BleDeviceConfig
 	 */
 	@Nullable(Prevalence.NORMAL)
 	public ScanFilter defaultScanFilter						= null;
+
+	/**
+	 * Default is <code>false</code> - If <code>true</code>, and every active {@link ScanFilter} is a {@link DeclarativeScanFilter}, the filters
+	 * are also handed down to the native stack as {@link android.bluetooth.le.ScanFilter}s when a {@link BleScanApi#POST_LOLLIPOP} scan is started,
+	 * so that the app doesn't even get woken up for devices that don't match. Note that the native filters are only updated when the native scan
+	 * is (re)started, so a {@link ScanFilter} that's added while a scan is already running may miss devices the previous filters didn't let through.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	public boolean useNativeScanFilters						= false;
 	
 	/**
 	 * Default is <code>null</code> - can also be set post-construction with {@link BleManager#setListener_Discovery(DiscoveryListener)},
@@ -577,8 +670,8 @@ public class BleManagerConfig extends BleDeviceConfig
 			 * A list of {@link UUID}s parsed from {@link #scanRecord()} as a convenience. May be empty, notably
 			 * if {@link BleManagerConfig#revertToClassicDiscoveryIfNeeded} is invoked.
 			 */
-			public List<UUID> advertisedServices(){  return m_advertisedServices;  }
-			private final List<UUID> m_advertisedServices;
+			public List<UUID> advertisedServices(){  parseIfNeeded();  return m_advertisedServices;  }
+			private List<UUID> m_advertisedServices;
 
 			/**
 			 * The unaltered device name retrieved from the native bluetooth stack.
@@ -608,8 +701,8 @@ public class BleManagerConfig extends BleDeviceConfig
 			/**
 			 * Returns the transmission power of the device in decibels, or {@link BleNodeConfig#INVALID_TX_POWER} if device is not advertising its transmission power.
 			 */
-			public int txPower(){  return m_txPower;  }
-			private final int m_txPower;
+			public int txPower(){  parseIfNeeded();  return m_txPower;  }
+			private int m_txPower;
 
 			/**
 			 * Returns the mac address of the discovered device.
@@ -629,17 +722,18 @@ public class BleManagerConfig extends BleDeviceConfig
 			/**
 			 * Returns the advertising flags, if any, parsed from {@link #scanRecord()}.
 			 */
-			public int advertisingFlags()  {  return m_advertisingFlags;  }
-			private final int m_advertisingFlags;
+			public int advertisingFlags()  {  parseIfNeeded();  return m_advertisingFlags;  }
+			private int m_advertisingFlags;
 
             /**
              * Returns a {@link List} of {@link ManufacturerData} instances that were parsed from the scan record. This is handy if the peripheral
              * has more than one manufacturer data inside the scan record/advertising data.
              */
 			public List<ManufacturerData> manufacturerDataList() {
+				parseIfNeeded();
 			    return m_manufacturerDataList;
             }
-            private final List<ManufacturerData> m_manufacturerDataList;
+            private List<ManufacturerData> m_manufacturerDataList;
 
 			/**
 			 * Returns the manufacturer-specific data, if any, parsed from {@link #scanRecord()}.
@@ -652,17 +746,37 @@ public class BleManagerConfig extends BleDeviceConfig
 			@Deprecated
 			private final SparseArray<byte[]> m_manufacturerCombinedData;
 
-			public byte[] manufacturerData(){ return m_manufacturerData;}
+			public byte[] manufacturerData(){ parseIfNeeded(); return m_manufacturerData;}
 			private byte[] m_manufacturerData;
 
-			public int manufacturerId(){ return m_manufacturerId;}
+			public int manufacturerId(){ parseIfNeeded(); return m_manufacturerId;}
 			private int m_manufacturerId;
 
 			/**
 			 * Returns the service data, if any, parsed from {@link #scanRecord()}.
 			 */
-			public Map<UUID, byte[]> serviceData()  {  return m_serviceData;  }
-			private final Map<UUID, byte[]> m_serviceData;
+			public Map<UUID, byte[]> serviceData()  {  parseIfNeeded();  return m_serviceData;  }
+			private Map<UUID, byte[]> m_serviceData;
+
+			/**
+			 * Returns an {@link AdvertisingCursor} over {@link #scanRecord()}, positioned before the first AD structure. Checking the scan record
+			 * through this doesn't allocate anything, and as long as none of the other scan record accessors above are called, the scan record
+			 * never gets fully parsed. So if your filter only checks for a service {@link UUID} or manufacturer id, this is the fastest way to do it.
+			 * The same instance is returned every time (rewound), so don't hold onto it after {@link ScanFilter#onEvent(ScanEvent)} returns.
+			 */
+			public AdvertisingCursor advertisingCursor()
+			{
+				if( m_cursor == null )
+				{
+					m_cursor = new AdvertisingCursor(m_scanRecord);
+				}
+
+				return m_cursor.rewind();
+			}
+			private AdvertisingCursor m_cursor;
+
+			//--- The scan record is only fully parsed the first time something that needs it is asked for.
+			private boolean m_parsed;
 
 			ScanEvent(
 					BluetoothDevice nativeInstance, String rawDeviceName,
@@ -671,29 +785,47 @@ public class BleManagerConfig extends BleDeviceConfig
 			)
 			{
 				this.m_nativeInstance = nativeInstance;
-				this.m_advertisedServices = scanInfo != null ? scanInfo.getServiceUUIDS() : new ArrayList<UUID>(0);
 				this.m_rawDeviceName = rawDeviceName != null ? rawDeviceName : "";
 				this.m_normalizedDeviceName = normalizedDeviceName;
 				this.m_scanRecord = scanRecord != null ? scanRecord : P_Const.EMPTY_BYTE_ARRAY;
 				this.m_rssi = rssi;
 				this.m_lastDisconnectIntent = lastDisconnectIntent;
-				this.m_txPower = scanInfo != null ? scanInfo.getTxPower().value : 0;
-				this.m_advertisingFlags = scanInfo != null ? scanInfo.getAdvFlags().value : 0;
-				this.m_manufacturerData = scanInfo != null ? scanInfo.getManufacturerData() : P_Const.EMPTY_BYTE_ARRAY;
-				this.m_manufacturerId = scanInfo != null ? scanInfo.getManufacturerId() : 0;
-				this.m_serviceData = scanInfo != null ? scanInfo.getServiceData() : new HashMap<UUID, byte[]>(0);
 
 				this.m_manufacturerCombinedData = new SparseArray<>();
-				this.m_manufacturerDataList = scanInfo != null ? scanInfo.getManufacturerDataList() : new ArrayList<ManufacturerData>(0);
+
+				if( scanInfo != null )
+				{
+					setScanInfo(scanInfo);
+				}
+			}
+
+			private void parseIfNeeded()
+			{
+				if( m_parsed )  return;
+
+				setScanInfo(Utils_ScanRecord.parseScanRecord(m_scanRecord));
+			}
+
+			private void setScanInfo(final BleScanRecord scanInfo)
+			{
+				this.m_advertisedServices = scanInfo.getServiceUUIDS();
+				this.m_txPower = scanInfo.getTxPower().value;
+				this.m_advertisingFlags = scanInfo.getAdvFlags().value;
+				this.m_manufacturerData = scanInfo.getManufacturerData();
+				this.m_manufacturerId = scanInfo.getManufacturerId();
+				this.m_serviceData = scanInfo.getServiceData();
+				this.m_manufacturerDataList = scanInfo.getManufacturerDataList();
+
+				m_parsed = true;
 			}
 
 			/*package*/ static ScanEvent fromScanRecord(final BluetoothDevice device_native, final String rawDeviceName, final String normalizedDeviceName, final int rssi, final State.ChangeIntent lastDisconnectIntent, final byte[] scanRecord)
 			{
 				final String name = rawDeviceName != null ? rawDeviceName : Utils_ScanRecord.parseName(scanRecord);
 
-				BleScanRecord scanInfo = Utils_ScanRecord.parseScanRecord(scanRecord);
-
-				final ScanEvent e = new ScanEvent(device_native, name, normalizedDeviceName, scanRecord, rssi, lastDisconnectIntent, scanInfo);
+				//--- The scan record isn't parsed here, as most filters reject most devices, and may not need to look at more than a single field
+				//--- to do so (see advertisingCursor()).
+				final ScanEvent e = new ScanEvent(device_native, name, normalizedDeviceName, scanRecord, rssi, lastDisconnectIntent, null);
 
 				return e;
 			}
@@ -856,7 +988,17 @@ public class BleManagerConfig extends BleDeviceConfig
 		 */
 		@Override public Please onEvent(final ScanEvent e)
 		{
-			return Please.acknowledgeIf( Utils.haveMatchingIds(e.advertisedServices(), m_whitelist) );
+			final AdvertisingCursor cursor = e.advertisingCursor();
+
+			for( int i = 0; i < m_whitelist.size(); i++ )
+			{
+				if( cursor.hasServiceUuid(m_whitelist.get(i)) )
+				{
+					return Please.acknowledge();
+				}
+			}
+
+			return Please.ignore();
 		}
 	}
 
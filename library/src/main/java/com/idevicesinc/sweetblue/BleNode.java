@@ -1011,6 +1011,23 @@ public abstract class BleNode implements UsesCustomNull
 		}
 	}
 
+	/**
+	 * Same as {@link HistoricalDataQuery#go()} but performs the query on a background thread and returns the result back on the main thread
+	 * through the provided {@link BleNode.HistoricalDataQueryListener}. This is what {@link HistoricalDataQuery#go(HistoricalDataQueryListener)} uses.
+	 */
+	public void queryHistoricalData(final HistoricalDataQuery query, final HistoricalDataQueryListener listener)
+	{
+		P_HistoricalDataManager.post(new Runnable()
+		{
+			@Override public void run()
+			{
+				final BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent e = query.go();
+
+				getManager().postEvent(listener, e);
+			}
+		});
+	}
+
 	/**
 	 * Provides a way to perform a statically checked SQL query by chaining method calls.
 	 */
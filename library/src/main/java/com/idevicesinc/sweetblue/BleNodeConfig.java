@@ -74,6 +74,26 @@ public class BleNodeConfig
 	 */
 	public static final int DEFAULT_MAX_CONNECTION_FAIL_HISTORY_SIZE	= 25;
 
+	/**
+	 * Default value for {@link #historicalDataListMemoryBudget}, 1MB.
+	 */
+	public static final int DEFAULT_HISTORICAL_DATA_LIST_MEMORY_BUDGET	= 1024 * 1024;
+
+	/**
+	 * Suggested value for {@link #historicalDataQueueBatchSize}, which is off by default.
+	 */
+	public static final int DEFAULT_HISTORICAL_DATA_QUEUE_BATCH_SIZE	= 64;
+
+	/**
+	 * Default value for {@link #historicalDataQueueCapacity}.
+	 */
+	public static final int DEFAULT_HISTORICAL_DATA_QUEUE_CAPACITY		= 4096;
+
+	/**
+	 * Default value for {@link #historicalDataQueueFlushRate}.
+	 */
+	public static final double DEFAULT_HISTORICAL_DATA_QUEUE_FLUSH_RATE	= 0.5;
+
 	/**
 	 * Default is <code>false</code> - see the <code>boolean autoConnect</code> parameters of
 	 * {@link BluetoothDevice#connectGatt(Context, boolean, android.bluetooth.BluetoothGattCallback)}
@@ -165,6 +185,58 @@ public class BleNodeConfig
 		}
 	};
 
+	/**
+	 * Default is {@link #DEFAULT_HISTORICAL_DATA_LIST_MEMORY_BUDGET} - the most memory, in bytes, that historical data kept in memory for each
+	 * characteristic can use before its oldest data is dropped from memory (it stays on disk if it was persisted). Compressed data is counted by
+	 * its compressed size. Only used by {@link com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File}, and only read when
+	 * a characteristic's historical data is first accessed.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Nullable.Prevalence.NORMAL)
+	public Integer historicalDataListMemoryBudget							= DEFAULT_HISTORICAL_DATA_LIST_MEMORY_BUDGET;
+
+	/**
+	 * Default is <code>null</code>, which writes each read and notification that {@link #historicalDataLogFilter} lets through right away,
+	 * on the update thread. Set this to 2 or more (for example {@link #DEFAULT_HISTORICAL_DATA_QUEUE_BATCH_SIZE}) to queue them up per
+	 * characteristic instead, and write them to memory and disk in batches off the update thread. A batch is written once this many are
+	 * queued, or once {@link #historicalDataQueueFlushRate} has passed since the first one was queued, whichever comes first.
+	 * <br><br>
+	 * Reads through {@link BleDevice}'s historical data methods include what's queued without writing it out, and deletes take it out of the
+	 * queue, so the queue isn't visible from the outside. A read or delete that comes in while a batch is being written waits for that
+	 * batch though, so reading historical data from the main thread can still mean waiting on the disk. See
+	 * {@link BleDevice#getHistoricalDataIngestStats()} for how much is usually waiting.
+	 *
+	 * @see #historicalDataQueueCapacity
+	 * @see #historicalDataQueueOverflow
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Nullable.Prevalence.NORMAL)
+	public Integer historicalDataQueueBatchSize								= null;
+
+	/**
+	 * Default is {@link #DEFAULT_HISTORICAL_DATA_QUEUE_CAPACITY} - the most historical data that can be queued for a single characteristic
+	 * while waiting to be written, see {@link #historicalDataQueueBatchSize}. What happens when the queue is full is decided by {@link #historicalDataQueueOverflow}.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Nullable.Prevalence.NORMAL)
+	public Integer historicalDataQueueCapacity								= DEFAULT_HISTORICAL_DATA_QUEUE_CAPACITY;
+
+	/**
+	 * Default is {@link #DEFAULT_HISTORICAL_DATA_QUEUE_FLUSH_RATE} - the longest that historical data sits in the queue before it's written,
+	 * see {@link #historicalDataQueueBatchSize}.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Nullable.Prevalence.NORMAL)
+	public Interval historicalDataQueueFlushRate							= Interval.secs(DEFAULT_HISTORICAL_DATA_QUEUE_FLUSH_RATE);
+
+	/**
+	 * Default is {@link HistoricalDataQueueOverflow#BLOCK} - what to do when more historical data comes in than can be written,
+	 * see {@link #historicalDataQueueCapacity}.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Advanced
+	@Nullable(Nullable.Prevalence.NORMAL)
+	public HistoricalDataQueueOverflow historicalDataQueueOverflow			= HistoricalDataQueueOverflow.BLOCK;
+
 	/**
 	 * Default is an instance of {@link DefaultReconnectFilter} using the timings that are <code>public static final</code> members thereof - set your own implementation here to
 	 * have fine-grain control over reconnect behavior while a device is {@link BleDeviceState#RECONNECTING_LONG_TERM} or {@link BleDeviceState#RECONNECTING_SHORT_TERM}.
@@ -499,6 +571,23 @@ public class BleNodeConfig
 		}
 	}
 
+	/**
+	 * Enumeration used with {@link #historicalDataQueueOverflow}.
+	 */
+	public static enum HistoricalDataQueueOverflow
+	{
+		/**
+		 * The thread adding data writes out the queue itself before adding more, so nothing is lost but the update thread is
+		 * slowed down to however fast the backend can keep up.
+		 */
+		BLOCK,
+
+		/**
+		 * The oldest queued data is thrown away to make room, so the update thread is never held up.
+		 */
+		DROP_OLDEST
+	}
+
 	/**
 	 * Provide an instance to {@link #historicalDataFactory} to return custom subclasses
 	 * of {@link com.idevicesinc.sweetblue.utils.HistoricalData} if you would like. For example
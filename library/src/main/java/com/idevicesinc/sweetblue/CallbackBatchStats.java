@@ -0,0 +1,113 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+/**
+ * Counters for callbacks delivered to the main thread in batches, from when the {@link BleManager} was created. Only counts anything while
+ * {@link BleManagerConfig#callbackBatchInterval} is enabled. See {@link BleManager#getCallbackBatchStats()}.
+ */
+public final class CallbackBatchStats
+{
+	private final long m_queued;
+	private final long m_coalesced;
+	private final long m_dispatched;
+	private final long m_batches;
+	private final int m_queueDepth;
+	private final int m_maxQueueDepth;
+	private final Interval m_averageLatency;
+	private final Interval m_maxLatency;
+
+
+	CallbackBatchStats(final long queued, final long coalesced, final long dispatched, final long batches, final int queueDepth, final int maxQueueDepth, final Interval averageLatency, final Interval maxLatency)
+	{
+		m_queued = queued;
+		m_coalesced = coalesced;
+		m_dispatched = dispatched;
+		m_batches = batches;
+		m_queueDepth = queueDepth;
+		m_maxQueueDepth = maxQueueDepth;
+		m_averageLatency = averageLatency;
+		m_maxLatency = maxLatency;
+	}
+
+	/**
+	 * The total number of callbacks that were queued up for a batch.
+	 */
+	public final long queued()
+	{
+		return m_queued;
+	}
+
+	/**
+	 * The number of callbacks that replaced one still waiting in the queue, see {@link BleManagerConfig#latestValueOnlyNotificationUuids}.
+	 */
+	public final long coalesced()
+	{
+		return m_coalesced;
+	}
+
+	/**
+	 * The number of callbacks that have actually been called.
+	 */
+	public final long dispatched()
+	{
+		return m_dispatched;
+	}
+
+	/**
+	 * The number of main thread messages used to call {@link #dispatched()} callbacks.
+	 */
+	public final long batches()
+	{
+		return m_batches;
+	}
+
+	/**
+	 * The number of callbacks currently waiting for the next batch.
+	 */
+	public final int queueDepth()
+	{
+		return m_queueDepth;
+	}
+
+	/**
+	 * The largest {@link #queueDepth()} seen so far.
+	 */
+	public final int maxQueueDepth()
+	{
+		return m_maxQueueDepth;
+	}
+
+	/**
+	 * The average time between a callback being queued and being called.
+	 */
+	public final Interval averageLatency()
+	{
+		return m_averageLatency;
+	}
+
+	/**
+	 * The longest time between a callback being queued and being called.
+	 */
+	public final Interval maxLatency()
+	{
+		return m_maxLatency;
+	}
+
+	@Override public final String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"queued", queued(),
+			"coalesced", coalesced(),
+			"dispatched", dispatched(),
+			"batches", batches(),
+			"queueDepth", queueDepth(),
+			"maxQueueDepth", maxQueueDepth(),
+			"averageLatency", averageLatency(),
+			"maxLatency", maxLatency()
+		);
+	}
+}
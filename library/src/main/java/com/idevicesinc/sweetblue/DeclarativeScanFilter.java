@@ -0,0 +1,515 @@
+package com.idevicesinc.sweetblue;
+
+import android.bluetooth.le.ScanFilter;
+
+import com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter.Please;
+import com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter.ScanEvent;
+import com.idevicesinc.sweetblue.compat.L_Util;
+import com.idevicesinc.sweetblue.utils.AdvertisingCursor;
+import com.idevicesinc.sweetblue.utils.P_Const;
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BleManagerConfig.ScanFilter} that's described up front instead of written as code, so that SweetBlue can evaluate it as early and
+ * as cheaply as possible. A device passes if it matches every kind of criteria that was added - for instance, if both service {@link UUID}s and
+ * a name prefix were added, the device has to advertise one of the {@link UUID}s <i>and</i> have a name with one of the prefixes. Kinds of
+ * criteria that weren't added are ignored.
+ * <br><br>
+ * When every active filter is one of these, new devices that don't match are thrown out right as they come in from the native stack, before
+ * their name is normalized, any disk lookups are done, or a {@link ScanEvent} is created. If {@link BleManagerConfig#useNativeScanFilters}
+ * is <code>true</code>, the filter is also handed down to the native stack (as one or more {@link android.bluetooth.le.ScanFilter}s) when
+ * possible, so non-matching devices don't even wake up the app.
+ * <br><br>
+ * <pre>
+ * final DeclarativeScanFilter filter = new DeclarativeScanFilter()
+ *         .addServiceUuid(MY_SERVICE_UUID)
+ *         .addManufacturerData(MY_COMPANY_ID, new byte[]{ 0x01 }, new byte[]{ (byte) 0xFF })
+ *         .setMinRssi(-80);
+ * bleManager.startScan(filter);
+ * </pre>
+ */
+public final class DeclarativeScanFilter implements BleManagerConfig.ScanFilter
+{
+	//--- 00000000-0000-1000-8000-00805F9B34FB, which 16 and 32 bit UUIDs are offsets from.
+	private static final long BASE_UUID_MSB_LOW_BITS	= 0x0000000000001000L;
+	private static final long BASE_UUID_LSB				= 0x800000805F9B34FBL;
+
+	//--- A full mac address, i.e. "AA:BB:CC:DD:EE:FF", which is the only kind of mac filter the native stack understands.
+	private static final int MAC_ADDRESS_LENGTH = 17;
+
+
+	private final ArrayList<String> m_macPrefixes = new ArrayList<>();
+	private final ArrayList<UUID> m_serviceUuids = new ArrayList<>();
+	private final ArrayList<ManufacturerPattern> m_manufacturerPatterns = new ArrayList<>();
+	private final ArrayList<String> m_namePrefixes = new ArrayList<>();
+	private Pattern m_namePattern = null;
+	private int m_minRssi = Integer.MIN_VALUE;
+
+	private volatile Compiled m_compiled = null;
+
+
+	/**
+	 * Only lets through devices whose mac address starts with the given prefix, for instance "C4:BE:84". Case doesn't matter.
+	 */
+	public final DeclarativeScanFilter addMacPrefix(final String macPrefix)
+	{
+		if( macPrefix == null )  return this;
+
+		synchronized (this)
+		{
+			m_macPrefixes.add(macPrefix.toUpperCase());
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Only lets through devices that advertise the given service {@link UUID}, in any of the 16, 32, or 128 bit service {@link UUID} lists.
+	 */
+	public final DeclarativeScanFilter addServiceUuid(final UUID serviceUuid)
+	{
+		if( serviceUuid == null )  return this;
+
+		synchronized (this)
+		{
+			m_serviceUuids.add(serviceUuid);
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Convenience overload of {@link #addServiceUuid(UUID)} which adds all {@link UUID}s in the given {@link Collection}.
+	 */
+	public final DeclarativeScanFilter addServiceUuids(final Collection<UUID> serviceUuids)
+	{
+		if( serviceUuids == null )  return this;
+
+		for( UUID uuid : serviceUuids )
+		{
+			addServiceUuid(uuid);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Only lets through devices that advertise manufacturer data with the given manufacturer id, whatever the data itself is.
+	 */
+	public final DeclarativeScanFilter addManufacturerId(final int manufacturerId)
+	{
+		return addManufacturerData(manufacturerId, null, null);
+	}
+
+	/**
+	 * Only lets through devices that advertise manufacturer data with the given manufacturer id, where the data (not counting the id itself)
+	 * starts with the given bytes. If a mask is provided, it must be the same length as the data, and only the bits that are set in the mask
+	 * are compared. This is the same as how {@link android.bluetooth.le.ScanFilter.Builder#setManufacturerData(int, byte[], byte[])} works.
+	 */
+	public final DeclarativeScanFilter addManufacturerData(final int manufacturerId, final byte[] data_nullable, final byte[] mask_nullable)
+	{
+		if( data_nullable != null && mask_nullable != null && data_nullable.length != mask_nullable.length )
+		{
+			throw new IllegalArgumentException("Manufacturer data mask must be the same length as the data.");
+		}
+
+		synchronized (this)
+		{
+			m_manufacturerPatterns.add(new ManufacturerPattern(manufacturerId & 0xFFFF, data_nullable, mask_nullable));
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Only lets through devices whose name (see {@link ScanEvent#name_native()}) starts with the given prefix. Case doesn't matter.
+	 */
+	public final DeclarativeScanFilter addNamePrefix(final String namePrefix)
+	{
+		if( namePrefix == null )  return this;
+
+		synchronized (this)
+		{
+			m_namePrefixes.add(namePrefix);
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Only lets through devices whose name (see {@link ScanEvent#name_native()}) matches the given regular expression. If name prefixes
+	 * were also added, a device passes if its name either has one of the prefixes or matches this.
+	 */
+	public final DeclarativeScanFilter setNamePattern(final String regex_nullable)
+	{
+		synchronized (this)
+		{
+			m_namePattern = regex_nullable != null ? Pattern.compile(regex_nullable) : null;
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Only lets through devices that were discovered with at least the given RSSI.
+	 */
+	public final DeclarativeScanFilter setMinRssi(final int minRssi)
+	{
+		synchronized (this)
+		{
+			m_minRssi = minRssi;
+			m_compiled = null;
+		}
+
+		return this;
+	}
+
+	@Override public Please onEvent(final ScanEvent e)
+	{
+		final Compiled compiled = compiled();
+
+		return Please.acknowledgeIf(compiled.matchesAdvertisement(e.macAddress(), e.rssi(), e.advertisingCursor()) && compiled.matchesName(e.name_native()));
+	}
+
+	/**
+	 * Checks everything except the name, which can be expensive to get from the native stack. See {@link #matchesName(String)}.
+	 */
+	final boolean matchesAdvertisement(final String macAddress, final int rssi, final AdvertisingCursor cursor)
+	{
+		return compiled().matchesAdvertisement(macAddress, rssi, cursor);
+	}
+
+	final boolean hasNameCriteria()
+	{
+		return compiled().hasNameCriteria();
+	}
+
+	final boolean matchesName(final String name_nullable)
+	{
+		return compiled().matchesName(name_nullable);
+	}
+
+	/**
+	 * Adds native filters to the given list that let through at least every device this filter lets through. Returns <code>false</code> if that
+	 * isn't possible, for instance if this only filters by name prefix or RSSI, in which case the native scan has to be unfiltered.
+	 */
+	final boolean addNativeFilters(final List<ScanFilter> filters)
+	{
+		final Compiled compiled = compiled();
+
+		//--- Any one kind of criteria is enough, as all of them have to match anyway. Service UUIDs are the most common, so they're checked first.
+		if( compiled.m_serviceUuids.length > 0 )
+		{
+			for( int i = 0; i < compiled.m_serviceUuids.length; i++ )
+			{
+				filters.add(L_Util.newServiceUuidFilter(compiled.m_serviceUuids[i]));
+			}
+
+			return true;
+		}
+		else if( compiled.m_manufacturerIds.length > 0 )
+		{
+			for( int i = 0; i < compiled.m_manufacturerIds.length; i++ )
+			{
+				final ManufacturerPattern[] patterns = compiled.m_manufacturerPatterns[i];
+
+				for( int j = 0; j < patterns.length; j++ )
+				{
+					filters.add(L_Util.newManufacturerDataFilter(compiled.m_manufacturerIds[i], patterns[j].m_data, patterns[j].m_mask));
+				}
+			}
+
+			return true;
+		}
+		else if( compiled.m_macPrefixes.length > 0 )
+		{
+			for( int i = 0; i < compiled.m_macPrefixes.length; i++ )
+			{
+				if( compiled.m_macPrefixes[i].length() != MAC_ADDRESS_LENGTH )  return false;
+			}
+
+			for( int i = 0; i < compiled.m_macPrefixes.length; i++ )
+			{
+				filters.add(L_Util.newDeviceAddressFilter(compiled.m_macPrefixes[i]));
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private Compiled compiled()
+	{
+		final Compiled compiled = m_compiled;
+
+		if( compiled != null )  return compiled;
+
+		synchronized (this)
+		{
+			if( m_compiled == null )
+			{
+				m_compiled = new Compiled(this);
+			}
+
+			return m_compiled;
+		}
+	}
+
+	@Override public final String toString()
+	{
+		synchronized (this)
+		{
+			return Utils_String.toString
+			(
+				this.getClass(),
+				"macPrefixes", m_macPrefixes,
+				"serviceUuids", m_serviceUuids,
+				"manufacturerPatterns", m_manufacturerPatterns.size(),
+				"namePrefixes", m_namePrefixes,
+				"namePattern", m_namePattern,
+				"minRssi", m_minRssi
+			);
+		}
+	}
+
+
+	private static final class ManufacturerPattern
+	{
+		private final int m_manufacturerId;
+		private final byte[] m_data;
+		private final byte[] m_mask;
+
+		private ManufacturerPattern(final int manufacturerId, final byte[] data_nullable, final byte[] mask_nullable)
+		{
+			m_manufacturerId = manufacturerId;
+			m_data = data_nullable != null ? data_nullable.clone() : P_Const.EMPTY_BYTE_ARRAY;
+			m_mask = mask_nullable != null ? mask_nullable.clone() : null;
+		}
+
+		private boolean matches(final AdvertisingCursor cursor)
+		{
+			//--- Manufacturer data starts after the 2 byte id.
+			if( cursor.length() - 2 < m_data.length )  return false;
+
+			for( int i = 0; i < m_data.length; i++ )
+			{
+				final int mask = m_mask != null ? m_mask[i] : 0xFF;
+
+				if( (cursor.byteAt(2 + i) & mask) != (m_data[i] & mask) )  return false;
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the criteria, laid out so that checking a scan record is a single pass over its AD structures with no allocations.
+	 */
+	private static final class Compiled
+	{
+		private final String[] m_macPrefixes;
+		private final UUID[] m_serviceUuids;
+		//--- Sorted, so they can be binary searched. 16 and 32 bit UUIDs (and 128 bit ones that are really 16 or 32 bit UUIDs) end up here...
+		private final int[] m_shortUuids;
+		//--- ...and the rest end up here.
+		private final long[] m_fullUuidMsbs;
+		private final long[] m_fullUuidLsbs;
+		//--- Sorted, with the patterns for each id at the same index.
+		private final int[] m_manufacturerIds;
+		private final ManufacturerPattern[][] m_manufacturerPatterns;
+		private final String[] m_namePrefixes;
+		private final Pattern m_namePattern;
+		private final int m_minRssi;
+
+		private Compiled(final DeclarativeScanFilter filter)
+		{
+			m_macPrefixes = filter.m_macPrefixes.toArray(new String[filter.m_macPrefixes.size()]);
+			m_serviceUuids = filter.m_serviceUuids.toArray(new UUID[filter.m_serviceUuids.size()]);
+			m_namePrefixes = filter.m_namePrefixes.toArray(new String[filter.m_namePrefixes.size()]);
+			m_namePattern = filter.m_namePattern;
+			m_minRssi = filter.m_minRssi;
+
+			final int[] shortUuids = new int[m_serviceUuids.length];
+			final long[] fullUuidMsbs = new long[m_serviceUuids.length];
+			final long[] fullUuidLsbs = new long[m_serviceUuids.length];
+			int shortCount = 0;
+			int fullCount = 0;
+
+			for( int i = 0; i < m_serviceUuids.length; i++ )
+			{
+				final long msb = m_serviceUuids[i].getMostSignificantBits();
+				final long lsb = m_serviceUuids[i].getLeastSignificantBits();
+
+				if( isShortUuid(msb, lsb) )
+				{
+					shortUuids[shortCount++] = (int) (msb >>> 32);
+				}
+				else
+				{
+					fullUuidMsbs[fullCount] = msb;
+					fullUuidLsbs[fullCount] = lsb;
+					fullCount++;
+				}
+			}
+
+			m_shortUuids = Arrays.copyOf(shortUuids, shortCount);
+			Arrays.sort(m_shortUuids);
+			m_fullUuidMsbs = Arrays.copyOf(fullUuidMsbs, fullCount);
+			m_fullUuidLsbs = Arrays.copyOf(fullUuidLsbs, fullCount);
+
+			final int[] ids = new int[filter.m_manufacturerPatterns.size()];
+			for( int i = 0; i < ids.length; i++ )
+			{
+				ids[i] = filter.m_manufacturerPatterns.get(i).m_manufacturerId;
+			}
+			Arrays.sort(ids);
+
+			int idCount = 0;
+			for( int i = 0; i < ids.length; i++ )
+			{
+				if( idCount == 0 || ids[idCount - 1] != ids[i] )
+				{
+					ids[idCount++] = ids[i];
+				}
+			}
+
+			m_manufacturerIds = Arrays.copyOf(ids, idCount);
+			m_manufacturerPatterns = new ManufacturerPattern[idCount][];
+
+			for( int i = 0; i < idCount; i++ )
+			{
+				final ArrayList<ManufacturerPattern> patterns = new ArrayList<>();
+
+				for( int j = 0; j < filter.m_manufacturerPatterns.size(); j++ )
+				{
+					if( filter.m_manufacturerPatterns.get(j).m_manufacturerId == m_manufacturerIds[i] )
+					{
+						patterns.add(filter.m_manufacturerPatterns.get(j));
+					}
+				}
+
+				m_manufacturerPatterns[i] = patterns.toArray(new ManufacturerPattern[patterns.size()]);
+			}
+		}
+
+		private static boolean isShortUuid(final long msb, final long lsb)
+		{
+			return lsb == BASE_UUID_LSB && (msb & 0xFFFFFFFFL) == BASE_UUID_MSB_LOW_BITS;
+		}
+
+		private boolean hasNameCriteria()
+		{
+			return m_namePrefixes.length > 0 || m_namePattern != null;
+		}
+
+		private boolean matchesAdvertisement(final String macAddress, final int rssi, final AdvertisingCursor cursor)
+		{
+			if( rssi < m_minRssi )  return false;
+
+			if( m_macPrefixes.length > 0 && !matchesMacAddress(macAddress) )  return false;
+
+			boolean servicesMatched = m_serviceUuids.length == 0;
+			boolean manufacturerMatched = m_manufacturerIds.length == 0;
+
+			if( servicesMatched && manufacturerMatched )  return true;
+
+			cursor.rewind();
+
+			while( cursor.next() )
+			{
+				if( !servicesMatched && cursor.uuidSize() != 0 )
+				{
+					servicesMatched = matchesServiceUuids(cursor);
+				}
+				else if( !manufacturerMatched && cursor.type() == AdvertisingCursor.TYPE_MANUFACTURER_DATA )
+				{
+					manufacturerMatched = matchesManufacturerData(cursor);
+				}
+
+				if( servicesMatched && manufacturerMatched )  return true;
+			}
+
+			return false;
+		}
+
+		private boolean matchesMacAddress(final String macAddress)
+		{
+			if( macAddress == null )  return false;
+
+			for( int i = 0; i < m_macPrefixes.length; i++ )
+			{
+				if( macAddress.regionMatches(true, 0, m_macPrefixes[i], 0, m_macPrefixes[i].length()) )  return true;
+			}
+
+			return false;
+		}
+
+		private boolean matchesServiceUuids(final AdvertisingCursor cursor)
+		{
+			final int count = cursor.length() / cursor.uuidSize();
+
+			for( int i = 0; i < count; i++ )
+			{
+				final long msb = cursor.uuidMsbAt(i);
+				final long lsb = cursor.uuidLsbAt(i);
+
+				if( isShortUuid(msb, lsb) )
+				{
+					if( Arrays.binarySearch(m_shortUuids, (int) (msb >>> 32)) >= 0 )  return true;
+				}
+				else
+				{
+					for( int j = 0; j < m_fullUuidMsbs.length; j++ )
+					{
+						if( m_fullUuidMsbs[j] == msb && m_fullUuidLsbs[j] == lsb )  return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private boolean matchesManufacturerData(final AdvertisingCursor cursor)
+		{
+			final int index = Arrays.binarySearch(m_manufacturerIds, cursor.manufacturerId());
+
+			if( index < 0 )  return false;
+
+			final ManufacturerPattern[] patterns = m_manufacturerPatterns[index];
+
+			for( int i = 0; i < patterns.length; i++ )
+			{
+				if( patterns[i].matches(cursor) )  return true;
+			}
+
+			return false;
+		}
+
+		private boolean matchesName(final String name_nullable)
+		{
+			if( !hasNameCriteria() )  return true;
+
+			final String name = name_nullable != null ? name_nullable : "";
+
+			for( int i = 0; i < m_namePrefixes.length; i++ )
+			{
+				if( name.regionMatches(true, 0, m_namePrefixes[i], 0, m_namePrefixes[i].length()) )  return true;
+			}
+
+			return m_namePattern != null && m_namePattern.matcher(name).matches();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+/**
+ * Counters for historical data going through the write queue of a single {@link BleDevice}, from when the device first had historical data
+ * added. Only counts anything while {@link BleNodeConfig#historicalDataQueueBatchSize} is 2 or more. See {@link BleDevice#getHistoricalDataIngestStats()}.
+ */
+public final class HistoricalDataIngestStats
+{
+	private final long m_queued;
+	private final long m_flushed;
+	private final long m_dropped;
+	private final int m_queueDepth;
+
+
+	HistoricalDataIngestStats(final long queued, final long flushed, final long dropped, final int queueDepth)
+	{
+		m_queued = queued;
+		m_flushed = flushed;
+		m_dropped = dropped;
+		m_queueDepth = queueDepth;
+	}
+
+	/**
+	 * The total number of historical data points that were queued up to be written.
+	 */
+	public final long queued()
+	{
+		return m_queued;
+	}
+
+	/**
+	 * The number of queued historical data points that have actually been written to memory and disk.
+	 */
+	public final long flushed()
+	{
+		return m_flushed;
+	}
+
+	/**
+	 * The number of historical data points that were thrown away because the queue was full, see {@link BleNodeConfig#historicalDataQueueOverflow}.
+	 */
+	public final long dropped()
+	{
+		return m_dropped;
+	}
+
+	/**
+	 * The number of historical data points currently waiting to be written, across all characteristics.
+	 */
+	public final int queueDepth()
+	{
+		return m_queueDepth;
+	}
+
+	@Override public final String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"queued", queued(),
+			"flushed", flushed(),
+			"dropped", dropped(),
+			"queueDepth", queueDepth()
+		);
+	}
+}
@@ -17,6 +17,10 @@ import java.util.UUID;
 abstract class PA_ServiceManager
 {
 
+    //--- Only set while the node's services are known to be stable, e.g. between service discovery and disconnect. Lookups fall back to scanning the native lists when it's null.
+    private volatile P_GattAttributeIndex m_index = null;
+
+
     PA_ServiceManager()
     {
     }
@@ -26,8 +30,44 @@ abstract class PA_ServiceManager
     protected abstract List<BluetoothGattService> getNativeServiceList_original();
 
 
+    /**
+     * (Re)builds the attribute index from the current native service list. Should be called once the service list is complete,
+     * and paired with {@link #clearIndex()} whenever it could change.
+     */
+    void buildIndex()
+    {
+        try
+        {
+            m_index = P_GattAttributeIndex.build(getNativeServiceList_original());
+        }
+        catch (RuntimeException e)
+        {
+            //--- The native list was probably changed out from under us, so just keep scanning it until the next discovery.
+            m_index = null;
+        }
+    }
+
+    void clearIndex()
+    {
+        m_index = null;
+    }
+
+    final P_GattAttributeIndex getIndex()
+    {
+        return m_index;
+    }
+
     public BleCharacteristicWrapper getCharacteristic(final UUID serviceUuid_nullable, final UUID charUuid)
     {
+        final P_GattAttributeIndex index = m_index;
+
+        if (index != null)
+        {
+            final P_GattAttributeIndex.Entry[] entries = index.get(serviceUuid_nullable, charUuid);
+
+            return entries.length > 0 ? entries[0].m_characteristic : BleCharacteristicWrapper.NULL;
+        }
+
         if (serviceUuid_nullable == null)
         {
             final List<BluetoothGattService> serviceList_native = getNativeServiceList_original();
@@ -57,6 +97,25 @@ abstract class PA_ServiceManager
 
     public BleCharacteristicWrapper getCharacteristic(final UUID serviceUuid_nullable, final UUID charUuid, final DescriptorFilter filter)
     {
+        final P_GattAttributeIndex index = m_index;
+
+        if (index != null)
+        {
+            final P_GattAttributeIndex.Entry[] entries = index.get(serviceUuid_nullable, charUuid);
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                final P_GattAttributeIndex.Entry entry = entries[i];
+
+                if (filter == null || accepts(entry.m_service.getService(), entry.m_characteristic.getCharacteristic(), filter))
+                {
+                    return entry.m_characteristic;
+                }
+            }
+
+            return BleCharacteristicWrapper.NULL;
+        }
+
         if (serviceUuid_nullable == null)
         {
             final List<BluetoothGattService> serviceList_native = getNativeServiceList_original();
@@ -117,37 +176,10 @@ abstract class PA_ServiceManager
 
                 if (char_jth.getUuid().equals(charUuid))
                 {
-
-                    if (filter == null)
+                    if (filter == null || accepts(service.getService(), char_jth, filter))
                     {
                         return new BleCharacteristicWrapper(char_jth);
                     }
-                    else
-                    {
-                        final UUID descUuid = filter.descriptorUuid();
-                        if (descUuid != null)
-                        {
-                            final BluetoothGattDescriptor desc = char_jth.getDescriptor(filter.descriptorUuid());
-                            if (desc != null)
-                            {
-                                final DescriptorFilter.DescriptorEvent event = new DescriptorFilter.DescriptorEvent(service.getService(), char_jth, desc, new PresentData(desc.getValue()));
-                                final DescriptorFilter.Please please = filter.onEvent(event);
-                                if (please.isAccepted())
-                                {
-                                    return new BleCharacteristicWrapper(char_jth);
-                                }
-                            }
-                        }
-                        else
-                        {
-                            final DescriptorFilter.DescriptorEvent event = new DescriptorFilter.DescriptorEvent(service.getService(), char_jth, null, P_Const.EMPTY_FUTURE_DATA);
-                            final DescriptorFilter.Please please = filter.onEvent(event);
-                            if (please.isAccepted())
-                            {
-                                return new BleCharacteristicWrapper(char_jth);
-                            }
-                        }
-                    }
                 }
             }
             return BleCharacteristicWrapper.NULL;
@@ -158,6 +190,31 @@ abstract class PA_ServiceManager
         }
     }
 
+    private static boolean accepts(final BluetoothGattService service, final BluetoothGattCharacteristic characteristic, final DescriptorFilter filter)
+    {
+        final UUID descUuid = filter.descriptorUuid();
+        if (descUuid != null)
+        {
+            final BluetoothGattDescriptor desc = characteristic.getDescriptor(descUuid);
+            if (desc != null)
+            {
+                final DescriptorFilter.DescriptorEvent event = new DescriptorFilter.DescriptorEvent(service, characteristic, desc, new PresentData(desc.getValue()));
+                final DescriptorFilter.Please please = filter.onEvent(event);
+
+                return please.isAccepted();
+            }
+
+            return false;
+        }
+        else
+        {
+            final DescriptorFilter.DescriptorEvent event = new DescriptorFilter.DescriptorEvent(service, characteristic, null, P_Const.EMPTY_FUTURE_DATA);
+            final DescriptorFilter.Please please = filter.onEvent(event);
+
+            return please.isAccepted();
+        }
+    }
+
     private List<BluetoothGattService> getNativeServiceList_cloned()
     {
         final List<BluetoothGattService> list_native = getNativeServiceList_original();
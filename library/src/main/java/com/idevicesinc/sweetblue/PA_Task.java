@@ -12,6 +12,8 @@ abstract class PA_Task
 		void onStateChange(PA_Task task, PE_TaskState state);
 	}
 
+	private static final String TAG = PA_Task.class.getSimpleName();
+
 	private static final int ORDINAL_NOT_YET_ASSIGNED = -1;
 	
 	private static final BleNodeConfig.TaskTimeoutRequestFilter.TaskTimeoutRequestEvent s_timeoutRequestEvent = new BleNodeConfig.TaskTimeoutRequestFilter.TaskTimeoutRequestEvent();
@@ -140,7 +142,7 @@ abstract class PA_Task
 					logText += " - " + m_queue.getUpdateCount();
 				}
 
-				getLogger().i(logText);
+				getLogger().i(TAG, "{}", logText);
 			}
 			else if (m_state == PE_TaskState.EXECUTING )
 			{
@@ -500,4 +502,13 @@ abstract class PA_Task
 	{
 		return false;
 	}
+
+	/**
+	 * Returns <code>true</code> if this task only needs an existing connection to its {@link BleDevice}, which means it can be queued in that device's
+	 * own lane when {@link BleManagerConfig#useDeviceTaskLanes} is enabled.
+	 */
+	protected boolean isDeviceLaneTask()
+	{
+		return false;
+	}
 }
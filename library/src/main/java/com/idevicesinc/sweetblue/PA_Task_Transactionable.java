@@ -140,6 +140,11 @@ abstract class PA_Task_Transactionable extends PA_Task_RequiresConnection
 		return m_priority;
 	}
 	
+	@Override protected boolean isDeviceLaneTask()
+	{
+		return true;
+	}
+	
 	@Override protected boolean isArmable()
 	{
 		if( getDevice().is(BleDeviceState.RECONNECTING_SHORT_TERM ) )
@@ -4,6 +4,7 @@ import android.content.Context;
 
 import com.idevicesinc.sweetblue.backend.Backend_Modules;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_Default;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_Default;
@@ -18,7 +19,7 @@ final class PU_HistoricalData
 {
 	private static final BleDeviceConfig.HistoricalDataLogFilter.Please DO_NOT_LOG = BleDeviceConfig.HistoricalDataLogFilter.Please.doNotLog();
 
-	static Backend_HistoricalDataList newList(final Backend_HistoricalDatabase database, final UpdateLoop updateLoop, final String macAddress, UUID uuid, final String uuidName, final boolean doesTableExist)
+	static Backend_HistoricalDataList newList(final Backend_HistoricalDatabase database, final UpdateLoop updateLoop, final String macAddress, UUID uuid, final String uuidName, final boolean doesTableExist, final long memoryBudget)
 	{
 		final Class<? extends Backend_HistoricalDataList> listClass = Backend_Modules.HISTORICAL_DATA_LIST;
 
@@ -40,6 +41,11 @@ final class PU_HistoricalData
 
 		newList = newList != null ? newList : new Backend_HistoricalDataList_Default();
 
+		if( newList instanceof Backend_HistoricalDataList_File )
+		{
+			((Backend_HistoricalDataList_File) newList).setMemoryBudget(memoryBudget);
+		}
+
 		newList.init(database, updateLoop, macAddress, uuid, uuidName, doesTableExist);
 
 		return newList;
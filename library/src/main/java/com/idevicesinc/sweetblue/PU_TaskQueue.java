@@ -10,21 +10,69 @@ import java.util.List;
  */
 final class PU_TaskQueue
 {
-	static int findSoonestSpot(List<PA_Task> taskList, PA_Task taskToAdd)
+	/**
+	 * Task classes which some {@link PA_Task#isMoreImportantThan(PA_Task)} override compares against by something other than priority. If a new
+	 * override special-cases another class, it needs to be added here, otherwise {@link #findSoonestSpot(P_TaskList, PA_Task)} won't know to check it.
+	 */
+	private static final Class<?>[] CLASSES_WITH_CUSTOM_IMPORTANCE = { P_Task_TxnLock.class, P_Task_Scan.class, P_Task_Unbond.class };
+
+	/**
+	 * Returns the index of the first queued task which the given task is more important than, or -1 if there isn't one (meaning the task should
+	 * go to the back of the queue). Rather than asking every queued task, this only looks at tasks of {@link #CLASSES_WITH_CUSTOM_IMPORTANCE}, and
+	 * otherwise finds the first task with a lower priority through {@link P_TaskList#firstIndexBelow(PE_TaskPriority, int)}.
+	 */
+	static int findSoonestSpot(P_TaskList taskList, PA_Task taskToAdd)
 	{
 		if( taskList.size() == 0 )  return 0;
-		
-		for( int i = 0; i < taskList.size(); i++ )
+
+		int soonestSpot = -1;
+
+		for( int i = 0; i < CLASSES_WITH_CUSTOM_IMPORTANCE.length; i++ )
 		{
-			PA_Task ithQueuedTask = taskList.get(i);
-			
-			if( taskToAdd.isMoreImportantThan(ithQueuedTask) )
+			final List<PA_Task> tasks = taskList.getAll((Class<? extends PA_Task>) CLASSES_WITH_CUSTOM_IMPORTANCE[i]);
+
+			for( int j = 0; j < tasks.size(); j++ )
 			{
-				return i;
+				if( taskToAdd.isMoreImportantThan(tasks.get(j)) )
+				{
+					final int index = taskList.indexOf(tasks.get(j));
+
+					soonestSpot = soonestSpot == -1 ? index : Math.min(soonestSpot, index);
+
+					//--- Tasks are in queue order, so no need to look at the rest of this class.
+					break;
+				}
 			}
 		}
-		
-		return -1;
+
+		int index = taskList.firstIndexBelow(taskToAdd.getPriority(), 0);
+
+		while( index != -1 && (soonestSpot == -1 || index < soonestSpot) )
+		{
+			final PA_Task ithQueuedTask = taskList.get(index);
+
+			if( !hasCustomImportance(ithQueuedTask) && taskToAdd.isMoreImportantThan(ithQueuedTask) )
+			{
+				return index;
+			}
+
+			index = taskList.firstIndexBelow(taskToAdd.getPriority(), index + 1);
+		}
+
+		return soonestSpot;
+	}
+
+	private static boolean hasCustomImportance(PA_Task task)
+	{
+		for( int i = 0; i < CLASSES_WITH_CUSTOM_IMPORTANCE.length; i++ )
+		{
+			if( CLASSES_WITH_CUSTOM_IMPORTANCE[i] == task.getClass() )
+			{
+				return true;
+			}
+		}
+
+		return false;
 	}
 	
 	static boolean isMatch(PA_Task task, Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable )
@@ -20,6 +20,8 @@ import com.idevicesinc.sweetblue.utils.Utils;
 
 final class P_BleDevice_Listeners extends BluetoothGattCallback
 {
+    private static final String TAG = P_BleDevice_Listeners.class.getSimpleName();
+
     private final BleDevice m_device;
 //    private final P_Logger m_logger;
     private final P_TaskQueue m_queue;
@@ -284,7 +286,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
 
     private void onServicesDiscovered_updateThread(final BluetoothGatt gatt, final int gattStatus)
     {
-        logger().log_status(gattStatus);
+        logger().status(TAG, gattStatus, "onServicesDiscovered()", null);
 
         if (Utils.isSuccess(gattStatus))
         {
@@ -319,8 +321,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
     private void onCharacteristicRead_updateThread(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic, final int gattStatus, final byte[] value)
     {
         final UUID uuid = characteristic.getUuid();
-        logger().i(logger().charName(uuid));
-        logger().log_status(gattStatus);
+        logger().status(TAG, gattStatus, "onCharacteristicRead() - char={}", uuid);
 
         final P_Task_Read readTask = m_queue.getCurrent(P_Task_Read.class, m_device);
 
@@ -360,8 +361,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
     private void onCharacteristicWrite_updateThread(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic, final byte[] data, final int gattStatus)
     {
         final UUID uuid = characteristic.getUuid();
-        logger().i(logger().charName(uuid));
-        logger().log_status(gattStatus);
+        logger().status(TAG, gattStatus, "onCharacteristicWrite() - char={}", uuid);
 
         final P_Task_Write task = m_queue.getCurrent(P_Task_Write.class, m_device);
 
@@ -436,7 +436,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
 
     private void onReliableWriteCompleted_updateThread(final BluetoothGatt gatt, final int gattStatus)
     {
-        logger().log_status(gattStatus);
+        logger().status(TAG, gattStatus, "onReliableWriteCompleted()", null);
 
         final P_Task_ExecuteReliableWrite task = m_queue.getCurrent(P_Task_ExecuteReliableWrite.class, m_device);
 
@@ -446,7 +446,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
         }
         else
         {
-            m_device.m_reliableWriteMngr.onReliableWriteCompleted_unsolicited(gatt, gattStatus);
+            m_device.reliableWriteMngr().onReliableWriteCompleted_unsolicited(gatt, gattStatus);
         }
     }
 
@@ -500,8 +500,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
     private void onDescriptorWrite_updateThread(final BluetoothGatt gatt, final BluetoothGattDescriptor descriptor, final byte[] data, final int gattStatus)
     {
         final UUID uuid = descriptor.getUuid();
-        logger().i(logger().descriptorName(uuid));
-        logger().log_status(gattStatus);
+        logger().status(TAG, gattStatus, "onDescriptorWrite() - descriptor={}", uuid);
 
         final P_Task_WriteDescriptor task_write = m_queue.getCurrent(P_Task_WriteDescriptor.class, m_device);
 
@@ -575,6 +574,13 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
     @Override
     public final void onCharacteristicChanged(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic)
     {
+        final P_RawNotificationManager rawNotificationMngr = m_device.rawNotificationMngr_nullable();
+
+        if (rawNotificationMngr != null && rawNotificationMngr.onCharacteristicChanged(characteristic.getUuid(), characteristic.getValue()))
+        {
+            return;
+        }
+
         final byte[] value = characteristic.getValue() == null ? null : characteristic.getValue().clone();
 
         m_device.getManager().getPostManager().runOrPostToUpdateThread(new Runnable()
@@ -592,7 +598,7 @@ final class P_BleDevice_Listeners extends BluetoothGattCallback
         final UUID characteristicUuid = characteristic.getUuid();
         final UUID serviceUuid = characteristic.getService().getUuid();
 
-        logger().d("characteristic=" + characteristicUuid.toString());
+        logger().d(TAG, "onCharacteristicChanged() - characteristic={}", characteristicUuid);
 
         m_device.getPollManager().onCharacteristicChangedFromNativeNotify(serviceUuid, characteristicUuid, value);
     }
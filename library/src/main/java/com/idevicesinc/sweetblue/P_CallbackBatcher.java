@@ -0,0 +1,260 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Event;
+import com.idevicesinc.sweetblue.utils.GenericListener_Void;
+import com.idevicesinc.sweetblue.utils.Interval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Queues up callbacks headed for the main thread and calls them together, in one message at most every {@link BleManagerConfig#callbackBatchInterval},
+ * instead of posting a message per event. Callbacks are called in the order they were queued. Optionally, successful notifications for some characteristics
+ * replace the one that's already waiting for the same listener, device, and characteristic, see {@link BleManagerConfig#latestValueOnlyNotificationUuids}.
+ * <br><br>
+ * {@link #post(GenericListener_Void, Event, long, Set)} and {@link #getStats()} can be called from any thread.
+ */
+final class P_CallbackBatcher
+{
+
+    private final P_SweetHandler m_uiHandler;
+    private final Object m_lock = new Object();
+
+    //--- Guarded by m_lock.
+    private ArrayList<Entry> m_pending = new ArrayList<>();
+    private final HashMap<CoalesceKey, Entry> m_pendingByKey = new HashMap<>();
+    private boolean m_dispatchPosted = false;
+    private long m_lastDispatchTime = 0;
+    private long m_queued = 0;
+    private long m_coalesced = 0;
+    private long m_dispatched = 0;
+    private long m_batches = 0;
+    private int m_maxQueueDepth = 0;
+    private long m_totalLatency = 0;
+    private long m_maxLatency = 0;
+
+    //--- Only touched by the main thread, swapped with m_pending for each batch so neither list has to be reallocated.
+    private ArrayList<Entry> m_dispatching = new ArrayList<>();
+    private int m_dispatchIndex = 0;
+
+    private final Runnable m_dispatchRunnable = new Runnable()
+    {
+        @Override public void run()
+        {
+            dispatch();
+        }
+    };
+
+
+    P_CallbackBatcher(final P_SweetHandler uiHandler)
+    {
+        m_uiHandler = uiHandler;
+    }
+
+    /**
+     * Queues the event for the next batch, and makes sure a batch is coming.
+     */
+    final void post(final GenericListener_Void listener, final Event event, final long intervalMillis, final Set<UUID> latestValueOnlyUuids_nullable)
+    {
+        final CoalesceKey key = newCoalesceKey(listener, event, latestValueOnlyUuids_nullable);
+        final long now = System.nanoTime();
+        final long delay;
+
+        synchronized (m_lock)
+        {
+            m_queued++;
+
+            final Entry existing = key != null ? m_pendingByKey.get(key) : null;
+
+            if (existing != null)
+            {
+                //--- Keeps its place in the queue, and the time it was first queued, so its latency still counts from then.
+                existing.m_event = event;
+                m_coalesced++;
+
+                return;
+            }
+
+            final Entry entry = new Entry(listener, event, now);
+
+            m_pending.add(entry);
+            m_maxQueueDepth = Math.max(m_maxQueueDepth, m_pending.size());
+
+            if (key != null)
+            {
+                m_pendingByKey.put(key, entry);
+            }
+
+            if (m_dispatchPosted) return;
+
+            m_dispatchPosted = true;
+
+            //--- If it's been a while since the last batch, this one goes out right away.
+            final long sinceLastDispatch = (now - m_lastDispatchTime) / 1000000;
+
+            delay = Math.max(0, Math.min(intervalMillis - sinceLastDispatch, intervalMillis));
+        }
+
+        if (delay > 0)
+        {
+            m_uiHandler.postDelayed(m_dispatchRunnable, delay);
+        }
+        else
+        {
+            m_uiHandler.post(m_dispatchRunnable);
+        }
+    }
+
+    private void dispatch()
+    {
+        final ArrayList<Entry> batch;
+        final long now = System.nanoTime();
+
+        synchronized (m_lock)
+        {
+            batch = m_pending;
+            m_pending = m_dispatching;
+            m_dispatching = batch;
+            m_pendingByKey.clear();
+            m_dispatchPosted = false;
+            m_lastDispatchTime = now;
+            m_batches++;
+            m_dispatched += batch.size();
+
+            for (int i = 0; i < batch.size(); i++)
+            {
+                final long latency = now - batch.get(i).m_queueTime;
+
+                m_totalLatency += latency;
+                m_maxLatency = Math.max(m_maxLatency, latency);
+            }
+        }
+
+        //--- A listener that throws shouldn't cost the rest of the batch its callbacks. The first exception is rethrown once they've all been called,
+        //--- so it still surfaces the same way it would have if the callback had been posted on its own.
+        RuntimeException thrown = null;
+
+        while (m_dispatchIndex < batch.size())
+        {
+            final Entry ith = batch.get(m_dispatchIndex++);
+
+            try
+            {
+                ith.m_listener.onEvent(ith.m_event);
+            }
+            catch (RuntimeException e)
+            {
+                if (thrown == null)
+                {
+                    thrown = e;
+                }
+            }
+        }
+
+        batch.clear();
+        m_dispatchIndex = 0;
+
+        if (thrown != null)
+        {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Whether anything queued is still waiting to be called, including the rest of a batch that's being called right now. Only call this
+     * from the main thread.
+     */
+    final boolean hasPending_mainThread()
+    {
+        if (m_dispatchIndex < m_dispatching.size())  return true;
+
+        synchronized (m_lock)
+        {
+            return !m_pending.isEmpty();
+        }
+    }
+
+    final CallbackBatchStats getStats()
+    {
+        synchronized (m_lock)
+        {
+            final Interval averageLatency = m_dispatched > 0 ? Interval.millis(m_totalLatency / m_dispatched / 1000000) : Interval.ZERO;
+
+            return new CallbackBatchStats(m_queued, m_coalesced, m_dispatched, m_batches, m_pending.size(), m_maxQueueDepth, averageLatency, Interval.millis(m_maxLatency / 1000000));
+        }
+    }
+
+    private static CoalesceKey newCoalesceKey(final GenericListener_Void listener, final Event event, final Set<UUID> latestValueOnlyUuids_nullable)
+    {
+        if (latestValueOnlyUuids_nullable == null || latestValueOnlyUuids_nullable.isEmpty()) return null;
+
+        if (event instanceof BleDevice.ReadWriteListener.ReadWriteEvent)
+        {
+            final BleDevice.ReadWriteListener.ReadWriteEvent e = (BleDevice.ReadWriteListener.ReadWriteEvent) event;
+
+            if (e.type().isNotification() && e.wasSuccess() && latestValueOnlyUuids_nullable.contains(e.charUuid()))
+            {
+                return new CoalesceKey(listener, e.device(), e.charUuid());
+            }
+        }
+        else if (event instanceof NotificationListener.NotificationEvent)
+        {
+            final NotificationListener.NotificationEvent e = (NotificationListener.NotificationEvent) event;
+            final NotificationListener.Type type = e.type();
+            final boolean isNotification = type == NotificationListener.Type.NOTIFICATION || type == NotificationListener.Type.INDICATION || type == NotificationListener.Type.PSUEDO_NOTIFICATION;
+
+            if (isNotification && e.wasSuccess() && latestValueOnlyUuids_nullable.contains(e.charUuid()))
+            {
+                return new CoalesceKey(listener, e.device(), e.charUuid());
+            }
+        }
+
+        return null;
+    }
+
+
+    private static final class Entry
+    {
+        private final GenericListener_Void m_listener;
+        private Event m_event;
+        private final long m_queueTime;
+
+        private Entry(final GenericListener_Void listener, final Event event, final long queueTime)
+        {
+            m_listener = listener;
+            m_event = event;
+            m_queueTime = queueTime;
+        }
+    }
+
+    private static final class CoalesceKey
+    {
+        private final GenericListener_Void m_listener;
+        private final BleDevice m_device;
+        private final UUID m_charUuid;
+
+        private CoalesceKey(final GenericListener_Void listener, final BleDevice device, final UUID charUuid)
+        {
+            m_listener = listener;
+            m_device = device;
+            m_charUuid = charUuid;
+        }
+
+        @Override public boolean equals(final Object object)
+        {
+            if (!(object instanceof CoalesceKey)) return false;
+
+            final CoalesceKey other = (CoalesceKey) object;
+
+            return m_listener == other.m_listener && m_device == other.m_device && m_charUuid.equals(other.m_charUuid);
+        }
+
+        @Override public int hashCode()
+        {
+            return (System.identityHashCode(m_listener) * 31 + System.identityHashCode(m_device)) * 31 + m_charUuid.hashCode();
+        }
+    }
+}
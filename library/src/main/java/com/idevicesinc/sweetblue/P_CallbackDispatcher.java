@@ -0,0 +1,258 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Event;
+import com.idevicesinc.sweetblue.utils.GenericListener_Void;
+import com.idevicesinc.sweetblue.utils.Interval;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Calls listeners on {@link BleManagerConfig#callbackExecutor} instead of the main or update thread. Each {@link BleDevice} gets its own {@link Lane},
+ * which only ever has one callback on the executor at a time, so callbacks for a device are called one after the other in the order they happened,
+ * while different devices can run in parallel. Callbacks that aren't for a particular device share a lane of their own.
+ * <br><br>
+ * {@link #checkTimeBudget(Interval)} is the watchdog. It's called from the update loop and logs callbacks that are taking longer than
+ * {@link BleManagerConfig#callbackTimeBudget}.
+ * <br><br>
+ * If the executor rejects a lane, e.g. because it was shut down or its queue is full, the lane is posted to wherever callbacks would have gone
+ * without an executor (the main thread or the update thread, see {@link BleManagerConfig#postCallbacksToMainThread}) so it's never stuck
+ * waiting for a run that isn't coming. It's never run on the thread that tried to hand it off, which may well be the update thread in the middle
+ * of something. The executor is tried again for the lane's next callback.
+ */
+final class P_CallbackDispatcher
+{
+
+    private final BleManager m_manager;
+    private final Lane m_managerLane;
+    //--- Lanes that have something queued or running, so the watchdog doesn't have to look at every device. Only changed while holding the lane's lock.
+    private final Set<Lane> m_activeLanes = Collections.newSetFromMap(new ConcurrentHashMap<Lane, Boolean>());
+
+
+    P_CallbackDispatcher(final BleManager manager)
+    {
+        m_manager = manager;
+        m_managerLane = new Lane(this);
+    }
+
+    /**
+     * Queues the event on its device's lane. A callback that finishes over the given budget is logged once it's done, if the watchdog hasn't already.
+     */
+    final void dispatch(final GenericListener_Void listener, final Event event, final Executor executor, final Interval budget)
+    {
+        laneFor(event).execute(new Task(listener, event, budget), executor);
+    }
+
+    private Lane laneFor(final Event event)
+    {
+        final BleDevice device = deviceOf(event);
+
+        return device != null && !device.isNull() ? device.callbackLane(this) : m_managerLane;
+    }
+
+    private static BleDevice deviceOf(final Event event)
+    {
+        if (event instanceof BleDevice.ReadWriteListener.ReadWriteEvent)  return ((BleDevice.ReadWriteListener.ReadWriteEvent) event).device();
+        if (event instanceof NotificationListener.NotificationEvent)  return ((NotificationListener.NotificationEvent) event).device();
+        if (event instanceof BleDevice.StateListener.StateEvent)  return ((BleDevice.StateListener.StateEvent) event).device();
+        if (event instanceof BleDevice.ConnectionFailListener.ConnectionFailEvent)  return ((BleDevice.ConnectionFailListener.ConnectionFailEvent) event).device();
+        if (event instanceof BleDevice.BondListener.BondEvent)  return ((BleDevice.BondListener.BondEvent) event).device();
+        if (event instanceof BleManager.DiscoveryListener.DiscoveryEvent)  return ((BleManager.DiscoveryListener.DiscoveryEvent) event).device();
+
+        //--- SortedDeviceView.ChangeEvent positions depend on every earlier change to the view, whatever device it was for, so they stay on the shared lane.
+        return null;
+    }
+
+    /**
+     * Logs any callback that's been running for longer than the given budget, once per callback.
+     */
+    final void checkTimeBudget(final Interval budget)
+    {
+        if (Interval.isDisabled(budget) || m_activeLanes.isEmpty()) return;
+
+        final long budget_nanos = budget.millis() * 1000000;
+        final long now = System.nanoTime();
+
+        for (Lane lane : m_activeLanes)
+        {
+            final Task running = lane.m_running;
+
+            if (running != null && !running.m_reported && now - running.m_startTime > budget_nanos)
+            {
+                running.m_reported = true;
+
+                reportOverBudget(running, now - running.m_startTime, budget, /*finished=*/false);
+            }
+        }
+    }
+
+    private void onTaskFinished(final Task task, final long elapsed_nanos)
+    {
+        final Interval budget = task.m_budget;
+
+        if (!task.m_reported && !Interval.isDisabled(budget) && elapsed_nanos > budget.millis() * 1000000)
+        {
+            task.m_reported = true;
+
+            reportOverBudget(task, elapsed_nanos, budget, /*finished=*/true);
+        }
+    }
+
+    private void onRejected(final RejectedExecutionException e, final Lane lane)
+    {
+        final boolean toMain = m_manager.m_config.postCallbacksToMainThread;
+        final P_PostManager postManager = m_manager.getPostManager();
+
+        m_manager.getLogger().w(
+            "BleManagerConfig.callbackExecutor rejected a callback (" + e.getMessage() + "), so it's being posted to the " + (toMain ? "main" : "update") + " thread instead."
+        );
+
+        (toMain ? postManager.getUIHandler() : postManager.getUpdateHandler()).post(lane);
+    }
+
+    private void reportOverBudget(final Task task, final long elapsed_nanos, final Interval budget, final boolean finished)
+    {
+        final Thread thread = task.m_thread;
+
+        m_manager.getLogger().w(
+            task.m_listener.getClass().getName() + (finished ? " took " : " has been running for ") + elapsed_nanos / 1000000 + "ms handling a " +
+            task.m_event.getClass().getSimpleName() + (thread != null ? " on " + thread.getName() : "") + ", over the " + budget.millis() + "ms callback time budget."
+        );
+    }
+
+
+    private static final class Task
+    {
+        private final GenericListener_Void m_listener;
+        private final Event m_event;
+        private final Interval m_budget;
+
+        //--- Set by the executor thread just before the listener is called, read by the watchdog.
+        private volatile long m_startTime;
+        private volatile Thread m_thread;
+        private volatile boolean m_reported = false;
+
+        private Task(final GenericListener_Void listener, final Event event, final Interval budget)
+        {
+            m_listener = listener;
+            m_event = event;
+            m_budget = budget;
+        }
+    }
+
+    /**
+     * A serial executor on top of {@link BleManagerConfig#callbackExecutor}.
+     */
+    static final class Lane implements Runnable
+    {
+        private final P_CallbackDispatcher m_dispatcher;
+
+        //--- Guarded by this.
+        private final ArrayDeque<Task> m_tasks = new ArrayDeque<>();
+        private boolean m_active = false;
+        private Executor m_executor = null;
+
+        private volatile Task m_running = null;
+
+        Lane(final P_CallbackDispatcher dispatcher)
+        {
+            m_dispatcher = dispatcher;
+        }
+
+        private void execute(final Task task, final Executor executor)
+        {
+            synchronized (this)
+            {
+                m_tasks.add(task);
+                m_executor = executor;
+
+                if (m_active) return;
+
+                m_active = true;
+                m_dispatcher.m_activeLanes.add(this);
+            }
+
+            submit(executor);
+        }
+
+        //--- Only called while the lane is active, so nothing else will submit it or call anything in the meantime. That holds while it's
+        //--- posted after a rejection too, since it stays active until run() finds it empty.
+        private void submit(final Executor executor)
+        {
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                m_dispatcher.onRejected(e, this);
+            }
+        }
+
+        @Override public void run()
+        {
+            try
+            {
+                callNext();
+            }
+            finally
+            {
+                final Executor next = deactivateIfEmpty();
+
+                //--- One callback per run so a busy device doesn't hog a thread that other devices are waiting on.
+                if (next != null)
+                {
+                    submit(next);
+                }
+            }
+        }
+
+        private void callNext()
+        {
+            final Task task;
+
+            synchronized (this)
+            {
+                task = m_tasks.poll();
+            }
+
+            if (task == null) return;
+
+            task.m_thread = Thread.currentThread();
+            task.m_startTime = System.nanoTime();
+            m_running = task;
+
+            try
+            {
+                task.m_listener.onEvent(task.m_event);
+            }
+            finally
+            {
+                m_running = null;
+                m_dispatcher.onTaskFinished(task, System.nanoTime() - task.m_startTime);
+            }
+        }
+
+        //--- Returns the executor to submit to again if there's more to do, or null if the lane was deactivated.
+        private Executor deactivateIfEmpty()
+        {
+            synchronized (this)
+            {
+                if (m_tasks.isEmpty())
+                {
+                    m_active = false;
+                    m_dispatcher.m_activeLanes.remove(this);
+
+                    return null;
+                }
+
+                return m_executor;
+            }
+        }
+    }
+}
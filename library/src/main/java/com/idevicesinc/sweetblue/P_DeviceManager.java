@@ -4,8 +4,8 @@ package com.idevicesinc.sweetblue;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import com.idevicesinc.sweetblue.BleDevice.BondListener;
 import com.idevicesinc.sweetblue.BleDevice.ConnectionFailListener;
 import com.idevicesinc.sweetblue.BleDevice.ConnectionFailListener.Status;
@@ -15,7 +15,6 @@ import com.idevicesinc.sweetblue.PA_StateTracker.E_Intent;
 import com.idevicesinc.sweetblue.utils.ForEach_Breakable;
 import com.idevicesinc.sweetblue.utils.ForEach_Void;
 import com.idevicesinc.sweetblue.utils.Interval;
-import com.idevicesinc.sweetblue.utils.Pointer;
 
 
 final class P_DeviceManager
@@ -23,6 +22,16 @@ final class P_DeviceManager
     private final HashMap<String, BleDevice> m_map = new HashMap<String, BleDevice>();
     private final ArrayList<BleDevice> m_list = new ArrayList<BleDevice>();
 
+    //--- Copy of m_list that's swapped out whenever the list changes, so iterating doesn't have to copy the list every time.
+    private volatile BleDevice[] m_snapshot = EMPTY;
+    //--- Slot of each device in m_snapshot, and which slots are in which state. Guarded by m_stateIndex.
+    private final IdentityHashMap<BleDevice, Integer> m_slots = new IdentityHashMap<>();
+    private final P_DeviceStateIndex m_stateIndex = new P_DeviceStateIndex();
+
+    private static final BleDevice[] EMPTY = new BleDevice[0];
+
+    private final SortedDeviceView m_sortedView;
+
     private final BleManager m_mngr;
 
     private boolean m_updating = false;
@@ -31,6 +40,7 @@ final class P_DeviceManager
     P_DeviceManager(BleManager mngr)
     {
         m_mngr = mngr;
+        m_sortedView = new SortedDeviceView(mngr);
     }
 
     private P_Logger logger()
@@ -40,30 +50,128 @@ final class P_DeviceManager
 
     public ArrayList<BleDevice> getList()
     {
-        return getList_private(false);
+        return m_list;
     }
 
-    public ArrayList<BleDevice> getList_sorted()
+    SortedDeviceView getSortedView()
     {
-        return getList_private(true);
+        return m_sortedView;
     }
 
-    private ArrayList<BleDevice> getList_private(boolean sort)
+    /**
+     * Called when something that could change where the device goes in {@link #getSortedView()} changed, like its name or rssi.
+     */
+    void onSortKeyChanged(final BleDevice device)
     {
-        if (sort && m_mngr.m_config.defaultListComparator != null)
-            Collections.sort(m_list, m_mngr.m_config.defaultListComparator);
-        return m_list;
+        m_sortedView.onSortKeyChanged(device);
+    }
+
+    /**
+     * Rebuilds the snapshot and state index. Called whenever {@link #m_list} is added to or removed from, which is
+     * much rarer than the list getting iterated over or a device changing state.
+     */
+    private void onListChanged()
+    {
+        synchronized (m_stateIndex)
+        {
+            final BleDevice[] snapshot = m_list.toArray(new BleDevice[m_list.size()]);
+
+            m_slots.clear();
+            m_stateIndex.reset(snapshot.length);
+
+            for (int i = 0; i < snapshot.length; i++)
+            {
+                m_slots.put(snapshot[i], i);
+                m_stateIndex.set(i, snapshot[i].getStateMask());
+            }
+
+            m_snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Called by {@link P_DeviceStateTracker} whenever a device's state changes, to keep the state index up to date.
+     */
+    void onDeviceStateChange(final BleDevice device, final int newStateMask)
+    {
+        synchronized (m_stateIndex)
+        {
+            final Integer slot = m_slots.get(device);
+
+            if (slot == null) return;
+
+            m_stateIndex.set(slot, newStateMask);
+        }
+    }
+
+    /**
+     * Returns the devices whose state overlaps the given mask, in list order. Only looks at the devices that match.
+     */
+    private BleDevice[] getMatching(final int mask_BleDeviceState)
+    {
+        synchronized (m_stateIndex)
+        {
+            final BleDevice[] snapshot = m_snapshot;
+            final BleDevice[] matching = new BleDevice[m_stateIndex.count(mask_BleDeviceState)];
+
+            for (int i = 0, slot = m_stateIndex.nextMatch(mask_BleDeviceState, 0); slot >= 0; slot = m_stateIndex.nextMatch(mask_BleDeviceState, slot + 1))
+            {
+                matching[i++] = snapshot[slot];
+            }
+
+            return matching;
+        }
+    }
+
+    /**
+     * Same as {@link #getMatching(int)}, but returns a {@link List}. Used to back the {@link BleDeviceIterator}s returned by {@link BleManager}.
+     */
+    List<BleDevice> getMatching_List(final int mask_BleDeviceState)
+    {
+        final BleDevice[] matching = getMatching(mask_BleDeviceState);
+        final ArrayList<BleDevice> toReturn = new ArrayList<>(matching.length);
+
+        Collections.addAll(toReturn, matching);
+
+        return toReturn;
+    }
+
+    private static int getMask(final BleDeviceState... states)
+    {
+        int mask = 0x0;
+
+        for (int i = 0; i < states.length; i++)
+        {
+            mask |= states[i].bit();
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns the state bit if the query is just asking for devices in one state (i.e. <code>STATE, true</code>), otherwise 0x0.
+     */
+    private static int getMask_simpleQuery(final Object[] query)
+    {
+        if (query.length == 2 && query[0] instanceof BleDeviceState && Boolean.TRUE.equals(query[1]))
+        {
+            return ((BleDeviceState) query[0]).bit();
+        }
+
+        return 0x0;
     }
 
     void forEach(final Object forEach, final Object... query)
     {
         final boolean isQueryValid = query != null && query.length > 0;
+        final int simpleMask = isQueryValid ? getMask_simpleQuery(query) : 0x0;
 
-        final List<BleDevice> cloneList = new ArrayList<>(m_list);
+        //--- If the query is just for one state, let the index do the filtering.
+        final BleDevice[] devices = simpleMask != 0x0 ? getMatching(simpleMask) : m_snapshot;
 
-        for (int i = 0; i < cloneList.size(); i++)
+        for (int i = 0; i < devices.length; i++)
         {
-            final BleDevice ith = cloneList.get(i);
+            final BleDevice ith = devices[i];
 
             if (isQueryValid)
             {
@@ -181,21 +289,20 @@ final class P_DeviceManager
 
     public BleDevice getDevice(final int mask_BleDeviceState)
     {
-        final Pointer<BleDevice> toReturn = new Pointer<>(BleDevice.NULL);
-        forEach_breaking(new ForEach_Breakable<BleDevice>()
+        final BleDevice[] matching = getMatching(mask_BleDeviceState);
+
+        //--- Going from the back of the list here, same as the other lookups below.
+        return matching.length > 0 ? matching[matching.length - 1] : BleDevice.NULL;
+    }
+
+    BleDevice getDevice_first(final int mask_BleDeviceState)
+    {
+        synchronized (m_stateIndex)
         {
-            @Override
-            public Please next(BleDevice device)
-            {
-                if (device.isAny(mask_BleDeviceState))
-                {
-                    toReturn.value = device;
-                    return Please.doBreak();
-                }
-                return Please.doContinue();
-            }
-        });
-        return toReturn.value;
+            final int slot = m_stateIndex.nextMatch(mask_BleDeviceState, 0);
+
+            return slot >= 0 ? m_snapshot[slot] : BleDevice.NULL;
+        }
     }
 
     public List<BleDevice> getDevices_List(boolean sort, final Object... query)
@@ -217,33 +324,17 @@ final class P_DeviceManager
 
     public List<BleDevice> getDevices_List(boolean sort, final BleDeviceState state)
     {
-        final ArrayList<BleDevice> toReturn = new ArrayList<BleDevice>();
-        forEach(new ForEach_Void<BleDevice>()
-        {
-            @Override
-            public void next(BleDevice device)
-            {
-                if (device.is(state))
-                    toReturn.add(device);
-            }
-        });
-        if (sort && m_mngr.m_config.defaultListComparator != null)
-            Collections.sort(toReturn, m_mngr.m_config.defaultListComparator);
-        return toReturn;
+        return getDevices_List(sort, state.bit());
     }
 
     public List<BleDevice> getDevices_List(boolean sort, final int mask_BleDeviceState)
     {
-        final ArrayList<BleDevice> toReturn = new ArrayList<BleDevice>();
-        forEach(new ForEach_Void<BleDevice>()
+        final BleDevice[] matching = getMatching(mask_BleDeviceState);
+        final ArrayList<BleDevice> toReturn = new ArrayList<BleDevice>(matching.length);
+        for (int i = matching.length - 1; i >= 0; i--)
         {
-            @Override
-            public void next(BleDevice device)
-            {
-                if (device.isAny(mask_BleDeviceState))
-                    toReturn.add(device);
-            }
-        });
+            toReturn.add(matching[i]);
+        }
         if (sort && m_mngr.m_config.defaultListComparator != null)
             Collections.sort(toReturn, m_mngr.m_config.defaultListComparator);
         return toReturn;
@@ -251,15 +342,10 @@ final class P_DeviceManager
 
     public boolean has(BleDevice device)
     {
-        List<BleDevice> cloneList = new ArrayList<>(m_list);
-        for (int i = 0; i < cloneList.size(); i++)
+        synchronized (m_stateIndex)
         {
-            BleDevice device_ith = cloneList.get(i);
-
-            if (device_ith == device) return true;
+            return m_slots.containsKey(device);
         }
-
-        return false;
     }
 
     public BleDevice get(int i)
@@ -269,32 +355,22 @@ final class P_DeviceManager
 
     int getCount(final Object[] query)
     {
-        final AtomicInteger count = new AtomicInteger(0);
-        forEach(new ForEach_Void<BleDevice>()
+        final BleDevice[] devices = m_snapshot;
+        int count = 0;
+        for (int i = 0; i < devices.length; i++)
         {
-            @Override
-            public void next(BleDevice device)
-            {
-                if (device.is(query))
-                    count.incrementAndGet();
-            }
-        });
-        return count.get();
+            if (devices[i].is(query))
+                count++;
+        }
+        return count;
     }
 
     int getCount(final BleDeviceState state)
     {
-        final AtomicInteger count = new AtomicInteger(0);
-        forEach(new ForEach_Void<BleDevice>()
+        synchronized (m_stateIndex)
         {
-            @Override
-            public void next(BleDevice device)
-            {
-                if (device.is(state))
-                    count.incrementAndGet();
-            }
-        });
-        return count.get();
+            return m_stateIndex.count(state.bit());
+        }
     }
 
     int getCount()
@@ -321,6 +397,8 @@ final class P_DeviceManager
 
                 m_list.add(device);
                 m_map.put(device.getMacAddress(), device);
+                onListChanged();
+                m_sortedView.add(device);
             }
         });
     }
@@ -362,6 +440,8 @@ final class P_DeviceManager
 
         m_list.remove(device);
         m_map.remove(device.getMacAddress());
+        onListChanged();
+        m_sortedView.remove(device);
 
         final boolean cacheDevice = BleDeviceConfig.bool(device.conf_device().cacheDeviceOnUndiscovery, device.conf_mngr().cacheDeviceOnUndiscovery);
 
@@ -392,14 +472,12 @@ final class P_DeviceManager
 
         m_updating = true;
 
-        forEach(new ForEach_Void<BleDevice>()
+        //--- Not going through forEach() here to avoid allocating a new listener every tick.
+        final BleDevice[] devices = m_snapshot;
+        for (int i = devices.length - 1; i >= 0; i--)
         {
-            @Override
-            public void next(BleDevice device)
-            {
-                device.update(timeStep);
-            }
-        });
+            devices[i].update(timeStep);
+        }
 
         m_updating = false;
     }
@@ -604,40 +682,20 @@ final class P_DeviceManager
             return m_list.size() > 0;
         }
 
-        List<BleDevice> cloneList = new ArrayList<>(m_list);
-
-        for (int i = cloneList.size() - 1; i >= 0; i--)
+        synchronized (m_stateIndex)
         {
-            BleDevice device = cloneList.get(i);
-
-            if (device.isAny(filter))
-            {
-                return true;
-            }
+            return m_stateIndex.nextMatch(getMask(filter), 0) >= 0;
         }
-
-        return false;
     }
 
 
 
     private void forEach(ForEach_Void<BleDevice> forEach_void)
     {
-        final List<BleDevice> cloneList = new ArrayList<>(m_list);
-        for (int i = cloneList.size() -1; i >=0; i--)
-        {
-            forEach_void.next(cloneList.get(i));
-        }
-    }
-
-    private void forEach_breaking(ForEach_Breakable<BleDevice> forEach_breakable)
-    {
-        final List<BleDevice> cloneList = new ArrayList<>(m_list);
-        for (int i = cloneList.size() -1; i >=0; i--)
+        final BleDevice[] devices = m_snapshot;
+        for (int i = devices.length -1; i >=0; i--)
         {
-            ForEach_Breakable.Please please = forEach_breakable.next(cloneList.get(i));
-            if (please.shouldBreak())
-                return;
+            forEach_void.next(devices[i]);
         }
     }
 
@@ -9,6 +9,7 @@ import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.ReadWriteEvent;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Status;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Target;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Type;
+import com.idevicesinc.sweetblue.utils.ChunkedData;
 import com.idevicesinc.sweetblue.utils.FutureData;
 import com.idevicesinc.sweetblue.utils.P_Const;
 
@@ -47,6 +48,24 @@ final class P_DeviceServiceManager extends PA_ServiceManager
 		return new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, type, target, data, status, gattStatus, 0.0, 0.0, /*solicited=*/true);
 	}
 
+	private static byte[] getEarlyOutData(final FutureData futureData)
+	{
+		//--- Don't read a whole streamed payload (a firmware image, for instance) into memory just to report that it wasn't sent.
+		return futureData instanceof ChunkedData ? P_Const.EMPTY_BYTE_ARRAY : futureData.getData();
+	}
+
+	/**
+	 * Releases whatever is backing a {@link ChunkedData} once a write that didn't go through a striped write is done with it (the striped write
+	 * transaction closes its own). Does nothing for any other kind of {@link FutureData}.
+	 */
+	static void closeIfChunked(final FutureData futureData)
+	{
+		if( futureData instanceof ChunkedData )
+		{
+			((ChunkedData) futureData).close();
+		}
+	}
+
 	final ReadWriteEarlyOutResult getEarlyOutEvent(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid, DescriptorFilter descriptorFilter, FutureData futureData, BleDevice.ReadWriteListener.Type type, final Target target)
 	{
 		final int gattStatus = BleStatuses.GATT_STATUS_NOT_APPLICABLE;
@@ -55,7 +74,7 @@ final class P_DeviceServiceManager extends PA_ServiceManager
 		
 		if( m_device.isNull() )
 		{
-			result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, type, target, futureData.getData(), Status.NULL_DEVICE, gattStatus, 0.0, 0.0, /*solicited=*/true);
+			result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, type, target, getEarlyOutData(futureData), Status.NULL_DEVICE, gattStatus, 0.0, 0.0, /*solicited=*/true);
 			return result;
 		}
 		
@@ -63,7 +82,7 @@ final class P_DeviceServiceManager extends PA_ServiceManager
 		{
 			if( type != BleDevice.ReadWriteListener.Type.ENABLING_NOTIFICATION && type != BleDevice.ReadWriteListener.Type.DISABLING_NOTIFICATION)
 			{
-				result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, type, target, futureData.getData(), Status.NOT_CONNECTED, gattStatus, 0.0, 0.0, /*solicited=*/true);
+				result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, type, target, getEarlyOutData(futureData), Status.NOT_CONNECTED, gattStatus, 0.0, 0.0, /*solicited=*/true);
 				return result;
 			}
 			else
@@ -90,12 +109,12 @@ final class P_DeviceServiceManager extends PA_ServiceManager
 				{
 					uhoh = descriptor.getUhOh();
 				}
-				result.m_readWriteEvent = newExceptionEvent(type, target, futureData.getData(), serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, uhoh);
+				result.m_readWriteEvent = newExceptionEvent(type, target, getEarlyOutData(futureData), serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter, uhoh);
 				return result;
 			}
 			else
 			{
-				result.m_readWriteEvent = newNoMatchingTargetEvent(type, target, futureData.getData(), serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter);
+				result.m_readWriteEvent = newNoMatchingTargetEvent(type, target, getEarlyOutData(futureData), serviceUuid, characteristicUuid, descriptorUuid, descriptorFilter);
 				return result;
 			}
 		}
@@ -121,7 +140,7 @@ final class P_DeviceServiceManager extends PA_ServiceManager
 			if( (characteristic.getCharacteristic().getProperties() & property) == 0x0 )
 			{
 				//TODO: Use correct gatt status even though we never reach gatt layer?
-				result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, null, descriptorFilter, type, target, futureData.getData(), Status.OPERATION_NOT_SUPPORTED, gattStatus, 0.0, 0.0, /*solicited=*/true);
+				result.m_readWriteEvent = new ReadWriteEvent(m_device, serviceUuid, characteristicUuid, null, descriptorFilter, type, target, getEarlyOutData(futureData), Status.OPERATION_NOT_SUPPORTED, gattStatus, 0.0, 0.0, /*solicited=*/true);
 
 				return result;
 			}
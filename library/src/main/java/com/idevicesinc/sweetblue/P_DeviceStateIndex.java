@@ -0,0 +1,142 @@
+package com.idevicesinc.sweetblue;
+
+
+import java.util.BitSet;
+
+/**
+ * Keeps track of which slots (indices into {@link P_DeviceManager}'s device snapshot) are in which state, so that looking up devices
+ * by {@link BleDeviceState} only has to touch the devices that actually match. There's one bit set per state bit, and one mask per slot.
+ * <br><br>
+ * This class is not thread safe, {@link P_DeviceManager} takes care of synchronizing access to it.
+ */
+final class P_DeviceStateIndex
+{
+
+    private final BitSet[] m_slotsByState = new BitSet[Integer.SIZE];
+    private int[] m_masks = new int[0];
+    private int m_size = 0;
+
+
+    /**
+     * Clears out the index, and sets it up to hold the given number of slots, all with an empty state mask.
+     */
+    final void reset(final int size)
+    {
+        for (int i = 0; i < m_slotsByState.length; i++)
+        {
+            if (m_slotsByState[i] != null)
+            {
+                m_slotsByState[i].clear();
+            }
+        }
+
+        if (m_masks.length < size)
+        {
+            m_masks = new int[size];
+        }
+        else
+        {
+            for (int i = 0; i < m_size; i++)
+            {
+                m_masks[i] = 0x0;
+            }
+        }
+
+        m_size = size;
+    }
+
+    final int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Updates the state mask for the given slot. Only the state bits that actually changed are touched.
+     */
+    final void set(final int slot, final int mask)
+    {
+        int changed = m_masks[slot] ^ mask;
+
+        while (changed != 0x0)
+        {
+            final int bitIndex = Integer.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+
+            if ((mask & (0x1 << bitIndex)) != 0x0)
+            {
+                slotsFor(bitIndex).set(slot);
+            }
+            else
+            {
+                slotsFor(bitIndex).clear(slot);
+            }
+        }
+
+        m_masks[slot] = mask;
+    }
+
+    final int getMask(final int slot)
+    {
+        return m_masks[slot];
+    }
+
+    /**
+     * Returns the first slot at or after <code>fromSlot</code> whose mask overlaps the given mask, or -1 if there isn't one.
+     */
+    final int nextMatch(final int mask, final int fromSlot)
+    {
+        int next = -1;
+        int remaining = mask;
+
+        while (remaining != 0x0)
+        {
+            final int bitIndex = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+
+            final BitSet slots = m_slotsByState[bitIndex];
+
+            if (slots == null) continue;
+
+            final int ith = slots.nextSetBit(fromSlot);
+
+            if (ith >= 0 && (next < 0 || ith < next))
+            {
+                next = ith;
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * Returns how many slots have a mask that overlaps the given mask.
+     */
+    final int count(final int mask)
+    {
+        if (mask != 0x0 && (mask & (mask - 1)) == 0x0)
+        {
+            final BitSet slots = m_slotsByState[Integer.numberOfTrailingZeros(mask)];
+
+            return slots != null ? slots.cardinality() : 0;
+        }
+
+        int count = 0;
+
+        for (int slot = nextMatch(mask, 0); slot >= 0; slot = nextMatch(mask, slot + 1))
+        {
+            count++;
+        }
+
+        return count;
+    }
+
+    private BitSet slotsFor(final int bitIndex)
+    {
+        if (m_slotsByState[bitIndex] == null)
+        {
+            m_slotsByState[bitIndex] = new BitSet();
+        }
+
+        return m_slotsByState[bitIndex];
+    }
+}
@@ -12,10 +12,24 @@ import com.idevicesinc.sweetblue.utils.EmptyIterator;
 import com.idevicesinc.sweetblue.utils.State;
 
 
+/**
+ * Keeps track of the few per-device options that SweetBlue persists across app sessions. Writes are write-behind: the value is kept in memory
+ * straight away, and a background thread batches up whatever changed and commits it to {@link SharedPreferences} a little later, so the
+ * update thread never waits on an fsync. The same thread also preloads everything that's already on disk when this is created, so loading
+ * options during discovery doesn't have to touch the disk either. Call {@link #flush()} to force any pending writes out, which is done on
+ * {@link BleManager#shutdown()}.
+ */
 final class P_DiskOptionsManager
 {
 	private static final int ACCESS_MODE = Context.MODE_PRIVATE;
 
+	//--- How long to wait after something changes before writing, so that a burst of changes (i.e. a bunch of devices disconnecting
+	//---		at once) goes out as one commit per namespace.
+	private static final long WRITE_DELAY = 250;
+
+	//--- Marks a key that should be removed from disk.
+	private static final Object REMOVED = new Object();
+
 	//--- DRK > Just adding some salt to these to mitigate any possible conflict.
 	private static enum E_Namespace
 	{
@@ -36,17 +50,33 @@ final class P_DiskOptionsManager
 			return m_key;
 		}
 	}
-	
+
 	private final Context m_context;
-	
+
 	private final HashMap<String, Integer> m_inMemoryDb_lastDisconnect = new HashMap<String, Integer>();
 	private final HashMap<String, Boolean> m_inMemoryDb_needsBonding = new HashMap<String, Boolean>();
 	private final HashMap<String, String> m_inMemoryDb_name = new HashMap<String, String>();
 
 	private final HashMap[] m_inMemoryDbs = new HashMap[E_Namespace.values().length];
 
+	//--- What's on disk (or about to be), for each namespace. Only valid once m_loaded is true for that namespace.
+	private final HashMap<String, Object>[] m_diskMirrors = new HashMap[E_Namespace.values().length];
+	private final boolean[] m_loaded = new boolean[E_Namespace.values().length];
+
+	//--- Changes that haven't been written yet, and whether the namespace should be wiped before they are.
+	private final HashMap<String, Object>[] m_dirty = new HashMap[E_Namespace.values().length];
+	private final boolean[] m_clearPending = new boolean[E_Namespace.values().length];
+	private boolean m_hasDirty = false;
+
 	private final SharedPreferences[] m_prefsInstances = new SharedPreferences[E_Namespace.values().length];
 
+	//--- Guards all the maps above. m_writeLock makes sure only one thread at a time is committing.
+	private final Object m_lock = new Object();
+	private final Object m_writeLock = new Object();
+
+	private final Thread m_thread;
+	private volatile boolean m_running = true;
+
 
 	public P_DiskOptionsManager(Context context)
 	{
@@ -66,126 +96,154 @@ final class P_DiskOptionsManager
 			{
 				throw new Error("Expected in-memory DB to be not null");
 			}
+
+			m_diskMirrors[i] = new HashMap<String, Object>();
+			m_dirty[i] = new HashMap<String, Object>();
 		}
+
+		m_thread = new Thread(new Runnable()
+		{
+			@Override public void run()
+			{
+				preload();
+				writeLoop();
+			}
+		}, "SweetBlue Disk");
+		m_thread.setDaemon(true);
+		m_thread.start();
 	}
-	
+
 	private SharedPreferences prefs(E_Namespace namespace)
 	{
-		SharedPreferences prefs = m_prefsInstances[namespace.ordinal()];
-		if (prefs == null)
+		synchronized (m_prefsInstances)
 		{
-			prefs = m_context.getSharedPreferences(namespace.key(), ACCESS_MODE);
-			m_prefsInstances[namespace.ordinal()] = prefs;
+			SharedPreferences prefs = m_prefsInstances[namespace.ordinal()];
+			if (prefs == null)
+			{
+				prefs = m_context.getSharedPreferences(namespace.key(), ACCESS_MODE);
+				m_prefsInstances[namespace.ordinal()] = prefs;
+			}
+
+			return prefs;
 		}
-		
-		return prefs;
 	}
 
-	
+
 	public void saveLastDisconnect(final String mac, final State.ChangeIntent changeIntent, final boolean hitDisk)
 	{
 		final int diskValue = State.ChangeIntent.toDiskValue(changeIntent);
-		m_inMemoryDb_lastDisconnect.put(mac, diskValue);
-		
-		if( !hitDisk )  return;
 
-		prefs(E_Namespace.LAST_DISCONNECT).edit().putInt(mac, diskValue).commit();
+		synchronized (m_lock)
+		{
+			m_inMemoryDb_lastDisconnect.put(mac, diskValue);
+
+			if( !hitDisk )  return;
+
+			markDirty(E_Namespace.LAST_DISCONNECT, mac, diskValue);
+		}
+
+		writeIfShutDown();
 	}
-	
+
 	public State.ChangeIntent loadLastDisconnect(final String mac, final boolean hitDisk)
 	{
-		final Integer value_memory = m_inMemoryDb_lastDisconnect.get(mac);
-		
-		if( value_memory != null )
+		final Object value = load(E_Namespace.LAST_DISCONNECT, mac, hitDisk);
+
+		if( value instanceof Integer )
 		{
-			final State.ChangeIntent lastDisconnect_memory = State.ChangeIntent.fromDiskValue(value_memory);
-			
-			return lastDisconnect_memory;
+			return State.ChangeIntent.fromDiskValue((Integer) value);
 		}
-		
-		if( !hitDisk )  return State.ChangeIntent.NULL;
-		
-		final SharedPreferences prefs = prefs(E_Namespace.LAST_DISCONNECT);
-		
-		final int value_disk = prefs.getInt(mac, State.ChangeIntent.NULL.toDiskValue());
-		
-		final State.ChangeIntent lastDisconnect = State.ChangeIntent.fromDiskValue(value_disk);
-		
-		return lastDisconnect;
-	}
-	
+
+		return State.ChangeIntent.NULL;
+	}
+
 	public void saveNeedsBonding(final String mac, final boolean hitDisk)
 	{
-		m_inMemoryDb_needsBonding.put(mac, true);
-		
-		if( !hitDisk )  return;
-		
-		prefs(E_Namespace.NEEDS_BONDING).edit().putBoolean(mac, true).commit();
+		synchronized (m_lock)
+		{
+			m_inMemoryDb_needsBonding.put(mac, true);
+
+			if( !hitDisk )  return;
+
+			markDirty(E_Namespace.NEEDS_BONDING, mac, true);
+		}
+
+		writeIfShutDown();
 	}
-	
+
 	public boolean loadNeedsBonding(final String mac, final boolean hitDisk)
 	{
-		final Boolean value_memory = m_inMemoryDb_needsBonding.get(mac);
-		
-		if( value_memory != null )
-		{
-			return value_memory;
-		}
-		
-		if( !hitDisk )  return false;
-		
-		final SharedPreferences prefs = prefs(E_Namespace.NEEDS_BONDING);
-		
-		final boolean value_disk = prefs.getBoolean(mac, false);
-		
-		return value_disk;
+		final Object value = load(E_Namespace.NEEDS_BONDING, mac, hitDisk);
+
+		return value instanceof Boolean ? (Boolean) value : false;
 	}
 
 	public void saveName(final String mac, final String name, final boolean hitDisk)
 	{
 		final String name_override = name != null ? name : "";
 
-		m_inMemoryDb_name.put(mac, name_override);
+		synchronized (m_lock)
+		{
+			m_inMemoryDb_name.put(mac, name_override);
 
-		if( !hitDisk )  return;
+			if( !hitDisk )  return;
 
-		prefs(E_Namespace.DEVICE_NAME).edit().putString(mac, name_override).commit();
+			markDirty(E_Namespace.DEVICE_NAME, mac, name_override);
+		}
+
+		writeIfShutDown();
 	}
 
 	public String loadName(final String mac, final boolean hitDisk)
 	{
-		final String value_memory = m_inMemoryDb_name.get(mac);
+		final Object value = load(E_Namespace.DEVICE_NAME, mac, hitDisk);
+
+		return value instanceof String ? (String) value : null;
+	}
+
+	/**
+	 * Returns the in-memory value if there is one, otherwise what's on disk if <code>hitDisk</code> is <code>true</code>. Once the preload is done
+	 * that comes from the disk mirror, so this only goes to {@link SharedPreferences} if it's called right after startup.
+	 */
+	private Object load(final E_Namespace namespace, final String mac, final boolean hitDisk)
+	{
+		final int ordinal = namespace.ordinal();
 
-		if( value_memory != null )
+		synchronized (m_lock)
 		{
-			return value_memory;
-		}
+			final Object value_memory = m_inMemoryDbs[ordinal].get(mac);
 
-		if( !hitDisk )  return null;
+			if( value_memory != null )  return value_memory;
 
-		final SharedPreferences prefs = prefs(E_Namespace.DEVICE_NAME);
+			if( !hitDisk )  return null;
 
-		final String value_disk = prefs.getString(mac, null);
+			//--- The mirror has everything written this session even before the preload is done.
+			if( m_loaded[ordinal] || m_diskMirrors[ordinal].containsKey(mac) )  return m_diskMirrors[ordinal].get(mac);
 
-		return value_disk;
+			if( m_clearPending[ordinal] || m_dirty[ordinal].get(mac) == REMOVED )  return null;
+		}
+
+		return prefs(namespace).getAll().get(mac);
 	}
 
 	void clear()
 	{
 		final E_Namespace[] values = E_Namespace.values();
 
-		for( int i = 0; i < values.length; i++ )
+		synchronized (m_lock)
 		{
-			final SharedPreferences prefs = prefs(values[i]);
-			prefs.edit().clear().commit();
-
-			final HashMap ith = m_inMemoryDbs[i];
-
-			if( ith != null )
+			for( int i = 0; i < values.length; i++ )
 			{
-				ith.clear();
+				m_inMemoryDbs[i].clear();
+				m_diskMirrors[i].clear();
+				m_dirty[i].clear();
+				m_clearPending[i] = true;
 			}
+
+			onDirty();
 		}
+
+		writeIfShutDown();
 	}
 
 	void clearName(final String macAddress)
@@ -197,16 +255,14 @@ final class P_DiskOptionsManager
 
 	private void clearNamespace(final String macAddress, final E_Namespace namespace)
 	{
-		final int ordinal = namespace.ordinal();
-		final SharedPreferences prefs = prefs(namespace);
-		prefs.edit().remove(macAddress).commit();
-
-		final HashMap ith = m_inMemoryDbs[ordinal];
-
-		if( ith != null )
+		synchronized (m_lock)
 		{
-			ith.remove(macAddress);
+			m_inMemoryDbs[namespace.ordinal()].remove(macAddress);
+
+			markDirty(namespace, macAddress, REMOVED);
 		}
+
+		writeIfShutDown();
 	}
 
 	void clear(final String macAddress)
@@ -221,9 +277,24 @@ final class P_DiskOptionsManager
 
 	Iterator<String> getPreviouslyConnectedDevices()
 	{
+		final int ordinal = E_Namespace.LAST_DISCONNECT.ordinal();
+		Map<String, ?> map;
+
+		synchronized (m_lock)
+		{
+			map = m_loaded[ordinal] ? m_diskMirrors[ordinal] : null;
+
+			if( map != null )
+			{
+				List<String> keys = new ArrayList<String>(map.keySet());
+				Collections.sort(keys);
+				return keys.iterator();
+			}
+		}
+
 		final SharedPreferences prefs = prefs(E_Namespace.LAST_DISCONNECT);
 
-		Map<String, ?> map = prefs.getAll();
+		map = prefs.getAll();
 
 		if( map != null )
 		{
@@ -236,4 +307,192 @@ final class P_DiskOptionsManager
 			return new EmptyIterator<String>();
 		}
 	}
+
+	/**
+	 * Writes out anything that's pending right now, on the calling thread.
+	 */
+	void flush()
+	{
+		writeDirty();
+	}
+
+	/**
+	 * Flushes, then stops the background thread. Any later changes are written straight away.
+	 */
+	void shutdown()
+	{
+		m_running = false;
+
+		synchronized (m_lock)
+		{
+			m_lock.notifyAll();
+		}
+
+		flush();
+	}
+
+	//--- Must be called while holding m_lock.
+	private void markDirty(final E_Namespace namespace, final String mac, final Object value)
+	{
+		final int ordinal = namespace.ordinal();
+
+		m_dirty[ordinal].put(mac, value);
+
+		if( value == REMOVED )
+		{
+			m_diskMirrors[ordinal].remove(mac);
+		}
+		else
+		{
+			m_diskMirrors[ordinal].put(mac, value);
+		}
+
+		onDirty();
+	}
+
+	//--- Must be called while holding m_lock.
+	private void onDirty()
+	{
+		m_hasDirty = true;
+
+		m_lock.notifyAll();
+	}
+
+	//--- Must be called without holding m_lock. Once the background thread is gone there's nobody left to write changes, so do it now.
+	private void writeIfShutDown()
+	{
+		if( !m_running )
+		{
+			flush();
+		}
+	}
+
+	private void preload()
+	{
+		final E_Namespace[] values = E_Namespace.values();
+
+		//--- Holding the write lock so nothing gets committed between reading the disk and merging it in, otherwise a newer value could get
+		//---		replaced with the old one we just read.
+		synchronized (m_writeLock)
+		{
+			for( int i = 0; i < values.length; i++ )
+			{
+				final Map<String, ?> onDisk = prefs(values[i]).getAll();
+
+				synchronized (m_lock)
+				{
+					//--- Anything changed or cleared since startup is newer than what we just read.
+					if( onDisk != null && !m_clearPending[i] )
+					{
+						for( Map.Entry<String, ?> entry : onDisk.entrySet() )
+						{
+							if( !m_diskMirrors[i].containsKey(entry.getKey()) && !m_dirty[i].containsKey(entry.getKey()) )
+							{
+								m_diskMirrors[i].put(entry.getKey(), entry.getValue());
+							}
+						}
+					}
+
+					m_loaded[i] = true;
+				}
+			}
+		}
+	}
+
+	private void writeLoop()
+	{
+		while( m_running )
+		{
+			synchronized (m_lock)
+			{
+				while( !m_hasDirty && m_running )
+				{
+					try
+					{
+						m_lock.wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+
+			if( !m_running )  break;
+
+			try
+			{
+				Thread.sleep(WRITE_DELAY);
+			}
+			catch (InterruptedException e)
+			{
+			}
+
+			writeDirty();
+		}
+	}
+
+	private void writeDirty()
+	{
+		synchronized (m_writeLock)
+		{
+			final E_Namespace[] values = E_Namespace.values();
+			final HashMap<String, Object>[] dirty = new HashMap[values.length];
+			final boolean[] clear = new boolean[values.length];
+
+			synchronized (m_lock)
+			{
+				if( !m_hasDirty )  return;
+
+				for( int i = 0; i < values.length; i++ )
+				{
+					dirty[i] = m_dirty[i];
+					m_dirty[i] = new HashMap<String, Object>();
+					clear[i] = m_clearPending[i];
+					m_clearPending[i] = false;
+				}
+
+				m_hasDirty = false;
+			}
+
+			for( int i = 0; i < values.length; i++ )
+			{
+				if( dirty[i].isEmpty() && !clear[i] )  continue;
+
+				final SharedPreferences.Editor editor = prefs(values[i]).edit();
+
+				if( clear[i] )
+				{
+					editor.clear();
+				}
+
+				for( Map.Entry<String, Object> entry : dirty[i].entrySet() )
+				{
+					put(editor, entry.getKey(), entry.getValue());
+				}
+
+				editor.commit();
+			}
+		}
+	}
+
+	private static void put(final SharedPreferences.Editor editor, final String key, final Object value)
+	{
+		if( value == REMOVED )
+		{
+			editor.remove(key);
+		}
+		else if( value instanceof Integer )
+		{
+			editor.putInt(key, (Integer) value);
+		}
+		else if( value instanceof Boolean )
+		{
+			editor.putBoolean(key, (Boolean) value);
+		}
+		else if( value instanceof String )
+		{
+			editor.putString(key, (String) value);
+		}
+	}
 }
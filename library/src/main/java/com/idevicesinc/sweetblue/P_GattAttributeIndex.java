@@ -0,0 +1,170 @@
+package com.idevicesinc.sweetblue;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+
+/**
+ * Snapshot of a connection's discovered services that maps service and characteristic {@link UUID}s straight to prebuilt wrappers,
+ * so that lookups done for every read, write, and notification don't have to walk the native service and characteristic lists.
+ * Characteristics that share a {@link UUID} (see {@link DescriptorFilter}) are all kept, in the same order the native stack gives them.
+ */
+final class P_GattAttributeIndex
+{
+
+    static final Entry[] EMPTY = new Entry[0];
+
+
+    /**
+     * A characteristic along with the service it was found in.
+     */
+    static final class Entry
+    {
+        final BleServiceWrapper m_service;
+        final BleCharacteristicWrapper m_characteristic;
+
+        private Entry(final BleServiceWrapper service, final BleCharacteristicWrapper characteristic)
+        {
+            m_service = service;
+            m_characteristic = characteristic;
+        }
+    }
+
+
+    //--- Every characteristic with a given uuid, across all services.
+    private final HashMap<UUID, Entry[]> m_byCharUuid;
+
+    //--- Characteristics by service uuid, then characteristic uuid. Like BluetoothGatt.getService(), only the first service with a given uuid is used.
+    private final HashMap<UUID, HashMap<UUID, Entry[]>> m_byServiceUuid;
+
+    private final int m_characteristicCount;
+
+
+    private P_GattAttributeIndex(final HashMap<UUID, Entry[]> byCharUuid, final HashMap<UUID, HashMap<UUID, Entry[]>> byServiceUuid, final int characteristicCount)
+    {
+        m_byCharUuid = byCharUuid;
+        m_byServiceUuid = byServiceUuid;
+        m_characteristicCount = characteristicCount;
+    }
+
+    /**
+     * Builds an index of the given native services. This reads the native lists, so like any other access of them it can throw
+     * if the stack changes them at the same time.
+     */
+    static P_GattAttributeIndex build(final List<BluetoothGattService> serviceList_native)
+    {
+        final HashMap<UUID, List<Entry>> byCharUuid = new HashMap<>();
+        final HashMap<UUID, HashMap<UUID, List<Entry>>> byServiceUuid = new HashMap<>();
+        int characteristicCount = 0;
+
+        for (int i = 0; i < serviceList_native.size(); i++)
+        {
+            final BluetoothGattService service_ith = serviceList_native.get(i);
+
+            if (service_ith == null) continue;
+
+            final List<BluetoothGattCharacteristic> charList_native = service_ith.getCharacteristics();
+            final BleServiceWrapper service = new BleServiceWrapper(service_ith);
+            final HashMap<UUID, List<Entry>> byCharUuid_forService = byServiceUuid.containsKey(service_ith.getUuid()) ? null : new HashMap<UUID, List<Entry>>();
+
+            if (byCharUuid_forService != null)
+            {
+                byServiceUuid.put(service_ith.getUuid(), byCharUuid_forService);
+            }
+
+            if (charList_native == null) continue;
+
+            for (int j = 0; j < charList_native.size(); j++)
+            {
+                final BluetoothGattCharacteristic char_jth = charList_native.get(j);
+
+                if (char_jth == null) continue;
+
+                final Entry entry = new Entry(service, new BleCharacteristicWrapper(char_jth));
+
+                add(byCharUuid, char_jth.getUuid(), entry);
+
+                if (byCharUuid_forService != null)
+                {
+                    add(byCharUuid_forService, char_jth.getUuid(), entry);
+                }
+
+                characteristicCount++;
+            }
+        }
+
+        final HashMap<UUID, HashMap<UUID, Entry[]>> byServiceUuid_arrays = new HashMap<>(byServiceUuid.size() * 2);
+
+        for (UUID serviceUuid : byServiceUuid.keySet())
+        {
+            byServiceUuid_arrays.put(serviceUuid, toArrays(byServiceUuid.get(serviceUuid)));
+        }
+
+        return new P_GattAttributeIndex(toArrays(byCharUuid), byServiceUuid_arrays, characteristicCount);
+    }
+
+    /**
+     * Returns every characteristic matching the given uuids in native order, or {@link #EMPTY} if there are none.
+     * If <code>serviceUuid_nullable</code> is <code>null</code> then all services are included.
+     */
+    Entry[] get(final UUID serviceUuid_nullable, final UUID charUuid)
+    {
+        final Entry[] entries;
+
+        if (serviceUuid_nullable == null)
+        {
+            entries = m_byCharUuid.get(charUuid);
+        }
+        else
+        {
+            final HashMap<UUID, Entry[]> byCharUuid = m_byServiceUuid.get(serviceUuid_nullable);
+
+            entries = byCharUuid != null ? byCharUuid.get(charUuid) : null;
+        }
+
+        return entries != null ? entries : EMPTY;
+    }
+
+    int getServiceCount()
+    {
+        return m_byServiceUuid.size();
+    }
+
+    int getCharacteristicCount()
+    {
+        return m_characteristicCount;
+    }
+
+    private static void add(final HashMap<UUID, List<Entry>> map, final UUID uuid, final Entry entry)
+    {
+        List<Entry> entries = map.get(uuid);
+
+        if (entries == null)
+        {
+            //--- Nearly every uuid only has the one characteristic.
+            entries = new ArrayList<>(1);
+            map.put(uuid, entries);
+        }
+
+        entries.add(entry);
+    }
+
+    private static HashMap<UUID, Entry[]> toArrays(final HashMap<UUID, List<Entry>> map)
+    {
+        final HashMap<UUID, Entry[]> toReturn = new HashMap<>(map.size() * 2);
+
+        for (UUID uuid : map.keySet())
+        {
+            final List<Entry> entries = map.get(uuid);
+
+            toReturn.put(uuid, entries.toArray(new Entry[entries.size()]));
+        }
+
+        return toReturn;
+    }
+}
@@ -0,0 +1,266 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.ForEach_Returning;
+import com.idevicesinc.sweetblue.utils.HistoricalDataAggregate;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.HistoricalDataQuery;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregates historical data from many sources (one per device) in parallel. Up to <code>parallelism</code> workers run on a shared pool,
+ * each one repeatedly claiming the next source that hasn't been started, so a few devices with lots of data don't hold everything up.
+ * Each worker keeps its own partial aggregate in primitives and they're only merged once, as each worker finishes.
+ */
+final class P_HistoricalDataAggregation implements Future<HistoricalDataAggregate>
+{
+	//--- How many rows are read between checks for cancellation.
+	private static final int CANCEL_CHECK_ROWS = 4096;
+
+	private static final int CORE_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	private static ThreadPoolExecutor s_executor = null;
+
+	private final int m_sourceCount;
+	private final ForEach_Returning<HistoricalDataCursor> m_sources;
+	private final HistoricalDataQuery.DataDecoder m_decoder;
+	private final int m_workerCount;
+
+	private final AtomicInteger m_nextSource = new AtomicInteger(0);
+	private final CountDownLatch m_done;
+
+	//--- Tells the workers to stop, either because of cancel() or because one of them failed.
+	private volatile boolean m_stop = false;
+
+	private boolean m_cancelled = false;
+
+	private HistoricalDataAggregate m_result = HistoricalDataAggregate.EMPTY;
+	private Throwable m_error = null;
+
+	/**
+	 * @param sources	Called from the worker threads with an index from 0 to <code>sourceCount</code>, may return <code>null</code> to skip that one.
+	 */
+	P_HistoricalDataAggregation(final int sourceCount, final ForEach_Returning<HistoricalDataCursor> sources, final HistoricalDataQuery.DataDecoder decoder_nullable, final int parallelism)
+	{
+		m_sourceCount = sourceCount;
+		m_sources = sources;
+		m_decoder = decoder_nullable != null ? decoder_nullable : HistoricalDataQuery.UNSIGNED_LITTLE_ENDIAN;
+		m_workerCount = Math.max(0, Math.min(sourceCount, Math.min(parallelism > 0 ? parallelism : CORE_COUNT, CORE_COUNT)));
+		m_done = new CountDownLatch(m_workerCount);
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor()
+	{
+		if( s_executor == null )
+		{
+			final ThreadFactory threadFactory = new ThreadFactory()
+			{
+				private final AtomicInteger m_threadCount = new AtomicInteger(0);
+
+				@Override public Thread newThread(final Runnable runnable)
+				{
+					final Thread thread = new Thread(runnable, "SweetBlue historical aggregation " + m_threadCount.incrementAndGet());
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			};
+
+			s_executor = new ThreadPoolExecutor(CORE_COUNT, CORE_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+			s_executor.allowCoreThreadTimeOut(true);
+		}
+
+		return s_executor;
+	}
+
+	/**
+	 * Number of workers this will use, which is the parallelism asked for but no more than the number of sources or cores.
+	 */
+	int getWorkerCount()
+	{
+		return m_workerCount;
+	}
+
+	P_HistoricalDataAggregation start()
+	{
+		for( int i = 0; i < m_workerCount; i++ )
+		{
+			getExecutor().execute(new Runnable()
+			{
+				@Override public void run()
+				{
+					work();
+				}
+			});
+		}
+
+		return this;
+	}
+
+	private void work()
+	{
+		int deviceCount = 0;
+		long count = 0;
+		long valueCount = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0.0;
+
+		Throwable error = null;
+
+		try
+		{
+			for( int source = m_nextSource.getAndIncrement(); source < m_sourceCount && !m_stop; source = m_nextSource.getAndIncrement() )
+			{
+				final HistoricalDataCursor cursor = m_sources.next(source);
+
+				if( cursor == null )  continue;
+
+				try
+				{
+					if( cursor.getCount() > 0 )  deviceCount++;
+
+					int untilCancelCheck = CANCEL_CHECK_ROWS;
+
+					while( cursor.moveToNext() )
+					{
+						count++;
+
+						final double value = m_decoder.decode(cursor.getBlob());
+
+						if( !Double.isNaN(value) )
+						{
+							valueCount++;
+							min = Math.min(min, value);
+							max = Math.max(max, value);
+							sum += value;
+						}
+
+						if( --untilCancelCheck == 0 )
+						{
+							if( m_stop )  break;
+
+							untilCancelCheck = CANCEL_CHECK_ROWS;
+						}
+					}
+				}
+				finally
+				{
+					cursor.close();
+				}
+			}
+		}
+		catch(Throwable e)
+		{
+			error = e;
+			m_stop = true;
+		}
+
+		synchronized(this)
+		{
+			if( error != null && m_error == null )
+			{
+				m_error = error;
+			}
+
+			if( count > 0 )
+			{
+				m_result = m_result.merge(new HistoricalDataAggregate(deviceCount, count, valueCount, valueCount > 0 ? min : Double.NaN, valueCount > 0 ? max : Double.NaN, sum));
+			}
+		}
+
+		m_done.countDown();
+	}
+
+	/**
+	 * Stops the workers and waits for them to finish what they're reading, which is at most {@link #CANCEL_CHECK_ROWS} rows each,
+	 * so once this returns <code>true</code> nothing is running anymore. <code>mayInterruptIfRunning</code> is ignored.
+	 */
+	@Override public boolean cancel(final boolean mayInterruptIfRunning)
+	{
+		synchronized(this)
+		{
+			if( m_cancelled || m_done.getCount() == 0 )  return false;
+
+			m_cancelled = true;
+		}
+
+		m_stop = true;
+
+		awaitWorkers();
+
+		return true;
+	}
+
+	private void awaitWorkers()
+	{
+		boolean interrupted = false;
+
+		while( true )
+		{
+			try
+			{
+				m_done.await();
+
+				break;
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if( interrupted )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override public boolean isCancelled()
+	{
+		synchronized(this)
+		{
+			return m_cancelled;
+		}
+	}
+
+	@Override public boolean isDone()
+	{
+		return m_done.getCount() == 0;
+	}
+
+	@Override public HistoricalDataAggregate get() throws InterruptedException, ExecutionException
+	{
+		m_done.await();
+
+		return getResult();
+	}
+
+	@Override public HistoricalDataAggregate get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		if( !m_done.await(timeout, unit) )  throw new TimeoutException();
+
+		return getResult();
+	}
+
+	private HistoricalDataAggregate getResult() throws ExecutionException
+	{
+		synchronized(this)
+		{
+			if( m_cancelled )  throw new CancellationException();
+
+			if( m_error != null )  throw new ExecutionException(m_error);
+
+			return m_result;
+		}
+	}
+}
@@ -7,14 +7,19 @@ import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase;
 import com.idevicesinc.sweetblue.utils.EmptyIterator;
 import com.idevicesinc.sweetblue.utils.EpochTime;
 import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Breakable;
 import com.idevicesinc.sweetblue.utils.ForEach_Returning;
+import com.idevicesinc.sweetblue.utils.ForEach_Void;
 import com.idevicesinc.sweetblue.utils.HistoricalData;
 import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.Interval;
 import com.idevicesinc.sweetblue.utils.P_Const;
 import com.idevicesinc.sweetblue.utils.UpdateLoop;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 final class P_HistoricalDataManager
@@ -24,6 +29,7 @@ final class P_HistoricalDataManager
 	private final Object LIST_CREATE_MUTEX = new Object();
 
 	private final HashMap<UUID, Backend_HistoricalDataList> m_lists = new HashMap<UUID, Backend_HistoricalDataList>();
+	private final HashMap<UUID, P_HistoricalDataManager_Queue> m_queues = new HashMap<UUID, P_HistoricalDataManager_Queue>();
 	private final BleNode m_endPoint;
 	private final String m_macAddress;
 	private static final UpdateLoop s_updateLoop = UpdateLoop.newAnonThreadLoop();
@@ -32,6 +38,15 @@ final class P_HistoricalDataManager
 
 	private final P_HistoricalDataManager_PreviousUuids m_previousUuidsWithDataAdded;
 
+	//--- So queued rows still go through BleNode#newHistoricalData, whatever the config is by the time they're written.
+	private final BleNodeConfig.HistoricalDataFactory m_factory = new BleNodeConfig.HistoricalDataFactory()
+	{
+		@Override public HistoricalData newHistoricalData(final byte[] data, final EpochTime epochTime)
+		{
+			return m_endPoint.newHistoricalData(data, epochTime);
+		}
+	};
+
 	P_HistoricalDataManager(final BleNode endpoint, final String macAddress)
 	{
 		m_endPoint = endpoint;
@@ -75,7 +90,7 @@ final class P_HistoricalDataManager
 				if( tableExists )
 				{
 					final String uuidName = m_endPoint.getManager().getLogger().charName(uuid);
-					final Backend_HistoricalDataList newList = PU_HistoricalData.newList(getDatabase(), s_updateLoop, m_macAddress, uuid, uuidName, tableExists);
+					final Backend_HistoricalDataList newList = PU_HistoricalData.newList(getDatabase(), s_updateLoop, m_macAddress, uuid, uuidName, tableExists, getListMemoryBudget());
 					m_lists.put(uuid, newList);
 
 					return newList;
@@ -98,7 +113,7 @@ final class P_HistoricalDataManager
 				final boolean tableExists = getDatabase().doesDataExist(m_macAddress, uuid);
 				final String uuidName = m_endPoint.getManager().getLogger().charName(uuid);
 
-				final Backend_HistoricalDataList newList = PU_HistoricalData.newList(getDatabase(), s_updateLoop, m_macAddress, uuid, uuidName, tableExists);
+				final Backend_HistoricalDataList newList = PU_HistoricalData.newList(getDatabase(), s_updateLoop, m_macAddress, uuid, uuidName, tableExists, getListMemoryBudget());
 				m_lists.put(uuid, newList);
 
 				return newList;
@@ -110,6 +125,107 @@ final class P_HistoricalDataManager
 		}
 	}
 
+	private long getListMemoryBudget()
+	{
+		return BleNodeConfig.integer(m_endPoint.conf_node().historicalDataListMemoryBudget, m_endPoint.conf_mngr().historicalDataListMemoryBudget, BleNodeConfig.DEFAULT_HISTORICAL_DATA_LIST_MEMORY_BUDGET);
+	}
+
+	private P_HistoricalDataManager_Queue getQueue_createIfNotExists(final UUID uuid, final Backend_HistoricalDataList list)
+	{
+		synchronized(LIST_CREATE_MUTEX)
+		{
+			P_HistoricalDataManager_Queue queue = m_queues.get(uuid);
+
+			if( queue == null )
+			{
+				queue = new P_HistoricalDataManager_Queue(list, m_factory);
+				m_queues.put(uuid, queue);
+			}
+
+			return queue;
+		}
+	}
+
+	private P_HistoricalDataManager_Queue getQueue_doNotCreate(final UUID uuid)
+	{
+		synchronized(LIST_CREATE_MUTEX)
+		{
+			return m_queues.get(uuid);
+		}
+	}
+
+	/**
+	 * Writes out anything queued for the given characteristic, on the calling thread. Only manual additions do this, since they write
+	 * on the calling thread anyway and their rows have to go in after what's already queued. Reads and deletes take a snapshot of the
+	 * queue instead, see {@link P_HistoricalDataManager_MergedCursor}.
+	 */
+	private void flushQueue(final UUID uuid)
+	{
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		if( queue != null )
+		{
+			queue.flush();
+		}
+	}
+
+	private void enqueue(final UUID uuid, final Backend_HistoricalDataList list, final byte[] data, final EpochTime epochTime, final Please please, final int batchSize)
+	{
+		final P_HistoricalDataManager_Queue queue = getQueue_createIfNotExists(uuid, list);
+
+		final int capacity = BleNodeConfig.integer(m_endPoint.conf_node().historicalDataQueueCapacity, m_endPoint.conf_mngr().historicalDataQueueCapacity, BleNodeConfig.DEFAULT_HISTORICAL_DATA_QUEUE_CAPACITY);
+		final BleNodeConfig.HistoricalDataQueueOverflow overflow = BleNodeConfig.filter(m_endPoint.conf_node().historicalDataQueueOverflow, m_endPoint.conf_mngr().historicalDataQueueOverflow);
+		final boolean dropOldest = overflow == BleNodeConfig.HistoricalDataQueueOverflow.DROP_OLDEST;
+
+		int size = queue.offer(epochTime.toMilliseconds(), data, please.m_persistenceLevel, please.getLimit(), capacity, dropOldest);
+
+		while( size == P_HistoricalDataManager_Queue.FULL )
+		{
+			//--- Back-pressure, the backend isn't keeping up so the caller does the writing.
+			queue.flush();
+
+			size = queue.offer(epochTime.toMilliseconds(), data, please.m_persistenceLevel, please.getLimit(), capacity, dropOldest);
+		}
+
+		final Interval flushRate = BleNodeConfig.interval(m_endPoint.conf_node().historicalDataQueueFlushRate, m_endPoint.conf_mngr().historicalDataQueueFlushRate);
+
+		if( size >= batchSize || Interval.isDisabled(flushRate) )
+		{
+			if( queue.claimFlushPost() )
+			{
+				post(queue.m_flushRunnable);
+			}
+		}
+		else
+		{
+			if( queue.claimTimerPost() )
+			{
+				s_updateLoop.getHandler().postDelayed(queue.m_timerRunnable, flushRate.millis());
+			}
+		}
+	}
+
+	HistoricalDataIngestStats getIngestStats()
+	{
+		long queued = 0;
+		long flushed = 0;
+		long dropped = 0;
+		int queueDepth = 0;
+
+		synchronized(LIST_CREATE_MUTEX)
+		{
+			for( P_HistoricalDataManager_Queue queue : m_queues.values() )
+			{
+				queued += queue.getQueuedCount();
+				flushed += queue.getFlushedCount();
+				dropped += queue.getDroppedCount();
+				queueDepth += queue.size();
+			}
+		}
+
+		return new HistoricalDataIngestStats(queued, flushed, dropped, queueDepth);
+	}
+
 	//GOOD
 	public void add_single(final UUID uuid, final byte[] data, final EpochTime epochTime, final BleNodeConfig.HistoricalDataLogFilter.Source source)
 	{
@@ -117,13 +233,45 @@ final class P_HistoricalDataManager
 
 		final BleNodeConfig.HistoricalDataLogFilter.Please please = PU_HistoricalData.getPlease(m_endPoint, m_macAddress, uuid, data, epochTime, source);
 
-		if( PU_HistoricalData.add_earlyOut(list, please) )  return;
+		if( please.m_persistenceLevel == PersistenceLevel_NONE && please.getLimit() != Long.MAX_VALUE )
+		{
+			final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
 
-		final HistoricalData historicalData = m_endPoint.newHistoricalData(PU_HistoricalData.getAmendedData(data, please), PU_HistoricalData.getAmendedTimestamp(epochTime, please));
+			if( queue != null && queue.size() > 0 )
+			{
+				//--- The limit is applied to what's already been written, so it goes in line behind the flush of what's queued.
+				post(new Runnable()
+				{
+					@Override public void run()
+					{
+						queue.flush();
+
+						PU_HistoricalData.add_earlyOut(list, please);
+					}
+				});
+
+				return;
+			}
+		}
+
+		if( PU_HistoricalData.add_earlyOut(list, please) )  return;
 
 		m_previousUuidsWithDataAdded.addUuid(uuid);
 
-		list.add_single(historicalData, please.m_persistenceLevel, please.getLimit());
+		final int batchSize = BleNodeConfig.integerOrZero(BleNodeConfig.integer(m_endPoint.conf_node().historicalDataQueueBatchSize, m_endPoint.conf_mngr().historicalDataQueueBatchSize));
+
+		if( batchSize >= 2 )
+		{
+			enqueue(uuid, list, PU_HistoricalData.getAmendedData(data, please), PU_HistoricalData.getAmendedTimestamp(epochTime, please), please, batchSize);
+		}
+		else
+		{
+			flushQueue(uuid);
+
+			final HistoricalData historicalData = m_endPoint.newHistoricalData(PU_HistoricalData.getAmendedData(data, please), PU_HistoricalData.getAmendedTimestamp(epochTime, please));
+
+			list.add_single(historicalData, please.m_persistenceLevel, please.getLimit());
+		}
 	}
 
 	//GOOD
@@ -148,6 +296,8 @@ final class P_HistoricalDataManager
 
 		m_previousUuidsWithDataAdded.addUuid(uuid);
 
+		flushQueue(uuid);
+
 		list.add_single(historicalData_override, please.m_persistenceLevel, please.getLimit());
 	}
 
@@ -162,6 +312,8 @@ final class P_HistoricalDataManager
 
 		m_previousUuidsWithDataAdded.addUuid(uuid);
 
+		flushQueue(uuid);
+
 		list.add_multiple(historicalData, please.m_persistenceLevel, please.getLimit());
 	}
 
@@ -176,6 +328,8 @@ final class P_HistoricalDataManager
 
 		m_previousUuidsWithDataAdded.addUuid(uuid);
 
+		flushQueue(uuid);
+
 		list.add_multiple(historicalData, please.m_persistenceLevel, please.getLimit());
 	}
 
@@ -188,17 +342,78 @@ final class P_HistoricalDataManager
 		{
 			return HistoricalData.NULL;
 		}
-		else
+		else if( !hasQueued(uuid) )
 		{
 			return list.get(range, offset);
 		}
+		else
+		{
+			final HistoricalDataCursor cursor = getCursor(uuid, list, range);
+
+			final HistoricalData historicalData = cursor.moveToPosition(offset) ? cursor.getHistoricalData() : HistoricalData.NULL;
+
+			cursor.close();
+
+			return historicalData;
+		}
+	}
+
+	private boolean hasQueued(final UUID uuid)
+	{
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		return queue != null && queue.size() > 0;
+	}
+
+	//--- What's in the list plus what's still queued for it, without flushing the queue.
+	private HistoricalDataCursor getCursor(final UUID uuid, final Backend_HistoricalDataList list, final EpochTimeRange range)
+	{
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		if( queue == null )  return list.getCursor(range);
+
+		synchronized(queue.m_flushLock)
+		{
+			final List<HistoricalData> queued = queue.snapshot(range, P_HistoricalDataManager_Queue.ROWS_IN_MEMORY);
+			final HistoricalDataCursor written = list.getCursor(range);
+
+			return queued.isEmpty() ? written : new P_HistoricalDataManager_MergedCursor(written, queued);
+		}
 	}
 
 	//GOOD
 	public void delete(final UUID uuid, final EpochTimeRange range, final long limit, final boolean memoryOnly)
 	{
 		final Backend_HistoricalDataList list = getList_doNotCreate(uuid);
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		if( queue == null )
+		{
+			delete_written(uuid, list, range, limit, memoryOnly);
+
+			return;
+		}
+
+		synchronized(queue.m_flushLock)
+		{
+			//--- Queued rows come after everything already written, so they only count toward the limit once that's all gone.
+			final long written = limit != Long.MAX_VALUE ? getWrittenCount(uuid, list, range, memoryOnly) : 0;
+
+			delete_written(uuid, list, range, limit, memoryOnly);
+
+			queue.delete(range, limit - Math.min(limit, written), memoryOnly);
+		}
+	}
+
+	private long getWrittenCount(final UUID uuid, final Backend_HistoricalDataList list_nullable, final EpochTimeRange range, final boolean memoryOnly)
+	{
+		final long inMemory = list_nullable != null ? list_nullable.getCount(range) : 0;
 
+		return memoryOnly ? inMemory : Math.max(inMemory, getDatabase().getCount(m_macAddress, uuid, range));
+	}
+
+	private void delete_written(final UUID uuid, final Backend_HistoricalDataList list, final EpochTimeRange range, final long limit, final boolean memoryOnly)
+	{
 		if( memoryOnly )
 		{
 			if( list != null )
@@ -253,13 +468,23 @@ final class P_HistoricalDataManager
 
 			if( list == null )  continue;
 
-			if( memoryOnly )
+			final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(ith);
+
+			if( queue == null )
 			{
-				list.delete_fromMemoryOnly(range, limit);
+				delete_all_written(list, range, limit, memoryOnly);
+
+				continue;
 			}
-			else
+
+			synchronized(queue.m_flushLock)
 			{
-				list.delete_fromMemoryOnlyForNowButDatabaseSoon(range, limit);
+				final long written = limit != Long.MAX_VALUE ? list.getCount(range) : 0;
+
+				delete_all_written(list, range, limit, memoryOnly);
+
+				//--- Anything queued in range is deleted from disk below anyway, so the limit only applies to memory.
+				queue.delete(range, memoryOnly ? limit - Math.min(limit, written) : Long.MAX_VALUE, memoryOnly);
 			}
 		}
 
@@ -269,6 +494,18 @@ final class P_HistoricalDataManager
 		}
 	}
 
+	private static void delete_all_written(final Backend_HistoricalDataList list, final EpochTimeRange range, final long limit, final boolean memoryOnly)
+	{
+		if( memoryOnly )
+		{
+			list.delete_fromMemoryOnly(range, limit);
+		}
+		else
+		{
+			list.delete_fromMemoryOnlyForNowButDatabaseSoon(range, limit);
+		}
+	}
+
 	//GOOD
 	public Iterator<HistoricalData> getIterator(final UUID uuid, final EpochTimeRange range)
 	{
@@ -276,7 +513,7 @@ final class P_HistoricalDataManager
 
 		if( list != null )
 		{
-			return list.getIterator(range);
+			return hasQueued(uuid) ? new CursorIterator(getCursor(uuid, list, range)) : list.getIterator(range);
 		}
 		else
 		{
@@ -291,7 +528,7 @@ final class P_HistoricalDataManager
 
 		if( list != null )
 		{
-			return list.doForEach(range, forEach);
+			return hasQueued(uuid) ? doForEach(getCursor(uuid, list, range), forEach) : list.doForEach(range, forEach);
 		}
 		else
 		{
@@ -299,12 +536,52 @@ final class P_HistoricalDataManager
 		}
 	}
 
+	//--- Same as Backend_HistoricalDataList_File#doForEach(), but over the cursor. The cursor's closed once the callbacks are done.
+	private static boolean doForEach(final HistoricalDataCursor cursor, final Object forEach)
+	{
+		if( !(forEach instanceof ForEach_Void) && !(forEach instanceof ForEach_Breakable) )
+		{
+			cursor.close();
+
+			return false;
+		}
+
+		final boolean hasData = cursor.getCount() > 0;
+
+		while( cursor.moveToNext() )
+		{
+			if( forEach instanceof ForEach_Void )
+			{
+				((ForEach_Void) forEach).next(cursor.getHistoricalData());
+			}
+			else
+			{
+				final ForEach_Breakable.Please please = ((ForEach_Breakable) forEach).next(cursor.getHistoricalData());
+
+				if( please == null || !please.shouldContinue() )  break;
+			}
+		}
+
+		cursor.close();
+
+		return hasData;
+	}
+
 	//GOOD
 	public int getCount(UUID uuid, final EpochTimeRange range)
 	{
 		final Backend_HistoricalDataList list = getList_onlyCreateIfDataIsOnDisk(uuid);
 
-		return list != null ? list.getCount(range) : 0;
+		if( list == null )  return 0;
+
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		if( queue == null )  return list.getCount(range);
+
+		synchronized(queue.m_flushLock)
+		{
+			return list.getCount(range) + queue.count(range, P_HistoricalDataManager_Queue.ROWS_IN_MEMORY);
+		}
 	}
 
 	//GOOD
@@ -314,7 +591,7 @@ final class P_HistoricalDataManager
 
 		if( list != null )
 		{
-			return list.getCursor(range);
+			return getCursor(uuid, list, range);
 		}
 		else
 		{
@@ -322,6 +599,33 @@ final class P_HistoricalDataManager
 		}
 	}
 
+	/**
+	 * Cursor over everything there is for the characteristic, for {@link BleManager#aggregateHistoricalData(UUID, EpochTimeRange)}. That's the
+	 * database if anything's been persisted, since the list may only hold the most recent part of it (see {@link BleNodeConfig#historicalDataListMemoryBudget}),
+	 * and the list otherwise. Either way it includes what's still queued to go there.
+	 */
+	HistoricalDataCursor getCursor_everything(final UUID uuid, final EpochTimeRange range)
+	{
+		final Backend_HistoricalDataList list = getList_doNotCreate(uuid);
+
+		if( list != null && !getDatabase().doesDataExist(m_macAddress, uuid) )
+		{
+			return getCursor(uuid, list, range);
+		}
+
+		final P_HistoricalDataManager_Queue queue = getQueue_doNotCreate(uuid);
+
+		if( queue == null )  return getDatabase().getCursor(m_macAddress, uuid, range);
+
+		synchronized(queue.m_flushLock)
+		{
+			final List<HistoricalData> queued = queue.snapshot(range, P_HistoricalDataManager_Queue.ROWS_ON_DISK);
+			final HistoricalDataCursor written = getDatabase().getCursor(m_macAddress, uuid, range);
+
+			return queued.isEmpty() ? written : new P_HistoricalDataManager_MergedCursor(written, queued);
+		}
+	}
+
 	//GOOD
 	public boolean hasHistoricalData(final UUID uuid, final EpochTimeRange range)
 	{
@@ -338,6 +642,20 @@ final class P_HistoricalDataManager
 		{
 			final UUID ithUuid = previousUuids.next();
 
+			final P_HistoricalDataManager_Queue ithQueue = getQueue_doNotCreate(ithUuid);
+
+			if( ithQueue != null )
+			{
+				//--- Once the lock's released, anything that was being flushed is written, so the checks below will see it.
+				synchronized(ithQueue.m_flushLock)
+				{
+					if( ithQueue.count(range, memoryOnly ? P_HistoricalDataManager_Queue.ROWS_IN_MEMORY : P_HistoricalDataManager_Queue.ROWS_ALL) > 0 )
+					{
+						return true;
+					}
+				}
+			}
+
 			final Backend_HistoricalDataList ithList = getList_doNotCreate(ithUuid);
 
 			if( memoryOnly )
@@ -552,4 +870,38 @@ final class P_HistoricalDataManager
 	{
 		s_updateLoop.forcePost(runnable);
 	}
+
+	//--- Iterates over the cursor, closing it at the end.
+	private static final class CursorIterator implements Iterator<HistoricalData>
+	{
+		private final HistoricalDataCursor m_cursor;
+
+		CursorIterator(final HistoricalDataCursor cursor)
+		{
+			m_cursor = cursor;
+		}
+
+		@Override public boolean hasNext()
+		{
+			if( m_cursor.isClosed() )  return false;
+
+			if( m_cursor.getPosition() + 1 < m_cursor.getCount() )  return true;
+
+			m_cursor.close();
+
+			return false;
+		}
+
+		@Override public HistoricalData next()
+		{
+			if( !hasNext() || !m_cursor.moveToNext() )  throw new NoSuchElementException();
+
+			return m_cursor.getHistoricalData();
+		}
+
+		@Override public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
 }
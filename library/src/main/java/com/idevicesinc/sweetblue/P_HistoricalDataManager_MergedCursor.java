@@ -0,0 +1,188 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cursor over what's already in a {@link com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList} plus a snapshot of what's
+ * still queued for it in {@link P_HistoricalDataManager_Queue}, in time order, so reads don't have to flush the queue first. Where each queued
+ * row falls is worked out up front with a binary search of the list's cursor, after that moving around is just a lookup.
+ */
+final class P_HistoricalDataManager_MergedCursor implements HistoricalDataCursor
+{
+	private final HistoricalDataCursor m_written;
+	private final List<HistoricalData> m_queued;
+
+	//--- The position of each queued row in the merged cursor, in ascending order.
+	private final int[] m_queuedPositions;
+
+	private int m_position = -1;
+	private int m_queuedIndex = -1;
+
+	private boolean m_isClosed = false;
+
+	/**
+	 * The queued rows have to be sorted by time. Where a queued row has the same time as ones already written, it comes after them.
+	 */
+	P_HistoricalDataManager_MergedCursor(final HistoricalDataCursor written, final List<HistoricalData> queued)
+	{
+		m_written = written;
+		m_queued = queued;
+		m_queuedPositions = new int[queued.size()];
+
+		int from = 0;
+
+		for( int i = 0; i < m_queuedPositions.length; i++ )
+		{
+			from = upperBound(from, queued.get(i).getEpochTime_millis());
+
+			m_queuedPositions[i] = from + i;
+		}
+	}
+
+	//--- Index of the first written row that's newer than the given time, searching from the given index on.
+	private int upperBound(final int from, final long time)
+	{
+		int low = from;
+		int high = m_written.getCount();
+
+		while( low < high )
+		{
+			final int mid = (low + high) >>> 1;
+
+			m_written.moveToPosition(mid);
+
+			if( m_written.getEpochTime() <= time )
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	@Override public int getCount()
+	{
+		return m_written.getCount() + m_queued.size();
+	}
+
+	private boolean checkPosition(final int position)
+	{
+		return position >= 0 && position < getCount();
+	}
+
+	@Override public int getPosition()
+	{
+		return m_position;
+	}
+
+	@Override public boolean move(int offset)
+	{
+		return moveToPosition(getPosition() + offset);
+	}
+
+	@Override public boolean moveToPosition(int position)
+	{
+		//--- Same as android.database.Cursor, the position is clamped to one before the first or one after the last row.
+		m_position = Math.max(-1, Math.min(position, getCount()));
+		m_queuedIndex = -1;
+
+		if( !checkPosition(m_position) )  return false;
+
+		final int index = Arrays.binarySearch(m_queuedPositions, m_position);
+
+		if( index >= 0 )
+		{
+			m_queuedIndex = index;
+
+			return true;
+		}
+		else
+		{
+			//--- Otherwise it's a written row, offset by however many queued rows come before it.
+			return m_written.moveToPosition(m_position - (-index - 1));
+		}
+	}
+
+	@Override public boolean moveToFirst()
+	{
+		return moveToPosition(0);
+	}
+
+	@Override public boolean moveToLast()
+	{
+		return moveToPosition(getCount()-1);
+	}
+
+	@Override public boolean moveToNext()
+	{
+		return moveToPosition(getPosition()+1);
+	}
+
+	@Override public boolean moveToPrevious()
+	{
+		return moveToPosition(getPosition()-1);
+	}
+
+	@Override public boolean isFirst()
+	{
+		return getCount() > 0 && getPosition() == 0;
+	}
+
+	@Override public boolean isLast()
+	{
+		return getCount() > 0 && getPosition() == getCount()-1;
+	}
+
+	@Override public boolean isBeforeFirst()
+	{
+		return getCount() == 0 || m_position == -1;
+	}
+
+	@Override public boolean isAfterLast()
+	{
+		return getCount() == 0 || m_position >= getCount();
+	}
+
+	@Override public void close()
+	{
+		if( m_isClosed )  return;
+
+		m_isClosed = true;
+
+		m_written.close();
+	}
+
+	@Override public boolean isClosed()
+	{
+		return m_isClosed;
+	}
+
+	@Override public long getEpochTime()
+	{
+		if( !checkPosition(m_position) )  return HistoricalData.NULL.getEpochTime_millis();
+
+		return m_queuedIndex >= 0 ? m_queued.get(m_queuedIndex).getEpochTime_millis() : m_written.getEpochTime();
+	}
+
+	@Override public byte[] getBlob()
+	{
+		if( !checkPosition(m_position) )  return HistoricalData.NULL.getBlob();
+
+		return m_queuedIndex >= 0 ? m_queued.get(m_queuedIndex).getBlob() : m_written.getBlob();
+	}
+
+	@Override public HistoricalData getHistoricalData()
+	{
+		if( !checkPosition(m_position) )  return HistoricalData.NULL;
+
+		return m_queuedIndex >= 0 ? m_queued.get(m_queuedIndex) : m_written.getHistoricalData();
+	}
+}
@@ -0,0 +1,524 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList;
+import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Returning;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Bounded queue of historical data waiting to be written to a single {@link Backend_HistoricalDataList}. Rows are kept as primitives
+ * plus the blob, and {@link #flush()} hands them to the list in as few {@link Backend_HistoricalDataList#add_multiple(ForEach_Returning, int, long)}
+ * calls as it can, which is what lets the database batch its writes.
+ * <br><br>
+ * Safe to use from any thread. Scheduling the flushes is left to {@link P_HistoricalDataManager}. Anything that reads both the list and
+ * the queue (see {@link #snapshot(EpochTimeRange, boolean)}) has to hold {@link #m_flushLock} while it does, so a flush can't move rows
+ * from one to the other in between.
+ */
+final class P_HistoricalDataManager_Queue
+{
+	//--- Returned from offer() when the queue is full and the caller has to flush before trying again.
+	static final int FULL = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	//--- Which queued rows snapshot() and count() look at, going by where each row is meant to end up.
+	static final int ROWS_ALL		= 0;
+	static final int ROWS_IN_MEMORY	= 1;
+	static final int ROWS_ON_DISK	= 2;
+
+	//--- Held for the whole of a flush. While it's held, everything not yet in the list is in m_pending.
+	final Object m_flushLock = new Object();
+
+	final Runnable m_flushRunnable = new Runnable()
+	{
+		@Override public void run()
+		{
+			flush();
+		}
+	};
+
+	final Runnable m_timerRunnable = new Runnable()
+	{
+		@Override public void run()
+		{
+			onTimerFired();
+		}
+	};
+
+	private final Backend_HistoricalDataList m_list;
+	private final BleNodeConfig.HistoricalDataFactory m_factory;
+
+	//--- Rows being added go into m_pending, then it's swapped with m_draining (only touched while holding m_flushLock) to be written.
+	private Ring m_pending = new Ring();
+	private Ring m_draining = new Ring();
+
+	private boolean m_flushPosted = false;
+	private boolean m_timerPosted = false;
+
+	private long m_queuedCount = 0;
+	private long m_flushedCount = 0;
+	private long m_droppedCount = 0;
+
+	P_HistoricalDataManager_Queue(final Backend_HistoricalDataList list, final BleNodeConfig.HistoricalDataFactory factory)
+	{
+		m_list = list;
+		m_factory = factory;
+	}
+
+	/**
+	 * Queues a row and returns how many are now queued, or {@link #FULL} if there's no room and <code>dropOldest</code> is <code>false</code>.
+	 */
+	int offer(final long time, final byte[] blob, final int persistenceLevel, final long limit, final int capacity, final boolean dropOldest)
+	{
+		synchronized(this)
+		{
+			if( m_pending.m_size >= Math.max(1, capacity) )
+			{
+				if( !dropOldest )  return FULL;
+
+				m_pending.removeFirst();
+				m_droppedCount++;
+			}
+
+			m_pending.add(time, blob, persistenceLevel, limit);
+			m_queuedCount++;
+
+			return m_pending.m_size;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the caller should post a flush right away, i.e. one isn't already on the way.
+	 */
+	boolean claimFlushPost()
+	{
+		synchronized(this)
+		{
+			if( m_flushPosted )  return false;
+
+			m_flushPosted = true;
+
+			return true;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the caller should post a delayed flush, i.e. one isn't already on the way.
+	 */
+	boolean claimTimerPost()
+	{
+		synchronized(this)
+		{
+			if( m_timerPosted )  return false;
+
+			m_timerPosted = true;
+
+			return true;
+		}
+	}
+
+	void onTimerFired()
+	{
+		synchronized(this)
+		{
+			m_timerPosted = false;
+		}
+
+		flush();
+	}
+
+	/**
+	 * Writes everything queued so far to the list, on the calling thread. Returns how many rows were written.
+	 */
+	int flush()
+	{
+		synchronized(m_flushLock)
+		{
+			final Ring rows;
+
+			synchronized(this)
+			{
+				m_flushPosted = false;
+
+				if( m_pending.m_size == 0 )  return 0;
+
+				rows = m_pending;
+				m_pending = m_draining;
+				m_draining = rows;
+			}
+
+			final int count = rows.m_size;
+
+			try
+			{
+				writeRuns(rows);
+
+				synchronized(this)
+				{
+					m_flushedCount += count;
+				}
+			}
+			finally
+			{
+				rows.clear();
+			}
+
+			return count;
+		}
+	}
+
+	//--- Each run of rows with the same persistence level and limit goes to the list in one call.
+	private void writeRuns(final Ring rows)
+	{
+		int start = 0;
+
+		while( start < rows.m_size )
+		{
+			final int level = rows.levelAt(start);
+			final long limit = rows.limitAt(start);
+
+			int end = start + 1;
+
+			while( end < rows.m_size && rows.levelAt(end) == level && rows.limitAt(end) == limit )
+			{
+				end++;
+			}
+
+			final int from = start;
+			final int to = end;
+
+			m_list.add_multiple(new ForEach_Returning<HistoricalData>()
+			{
+				@Override public HistoricalData next(final int index)
+				{
+					final int row = from + index;
+
+					if( row >= to )  return null;
+
+					return m_factory.newHistoricalData(rows.blobAt(row), new EpochTime(rows.timeAt(row)));
+				}
+			}, level, limit);
+
+			start = end;
+		}
+	}
+
+	/**
+	 * Returns the queued rows in the given range, sorted by time. <code>rows</code> is {@link #ROWS_ALL}, {@link #ROWS_IN_MEMORY}, or {@link #ROWS_ON_DISK}.
+	 * The caller should hold {@link #m_flushLock}.
+	 */
+	List<HistoricalData> snapshot(final EpochTimeRange range, final int rows)
+	{
+		final long[] times;
+		final byte[][] blobs;
+		int count = 0;
+
+		synchronized(this)
+		{
+			times = new long[m_pending.m_size];
+			blobs = new byte[m_pending.m_size][];
+
+			for( int i = 0; i < m_pending.m_size; i++ )
+			{
+				if( !m_pending.matches(i, range, rows) )  continue;
+
+				times[count] = m_pending.timeAt(i);
+				blobs[count] = m_pending.blobAt(i);
+				count++;
+			}
+		}
+
+		final ArrayList<HistoricalData> snapshot = new ArrayList<HistoricalData>(count);
+
+		for( int i = 0; i < count; i++ )
+		{
+			snapshot.add(m_factory.newHistoricalData(blobs[i], new EpochTime(times[i])));
+		}
+
+		//--- Rows are queued in the order they come in, which isn't necessarily time order. The sort is stable, so ties keep that order.
+		sortByTime(snapshot);
+
+		return snapshot;
+	}
+
+	/**
+	 * Returns how many queued rows are in the given range, see {@link #snapshot(EpochTimeRange, int)} for <code>rows</code>.
+	 */
+	int count(final EpochTimeRange range, final int rows)
+	{
+		synchronized(this)
+		{
+			int count = 0;
+
+			for( int i = 0; i < m_pending.m_size; i++ )
+			{
+				if( m_pending.matches(i, range, rows) )
+				{
+					count++;
+				}
+			}
+
+			return count;
+		}
+	}
+
+	/**
+	 * Deletes up to <code>count</code> of the oldest queued rows in the given range, without writing them, and returns how many were deleted.
+	 * If <code>memoryOnly</code> is <code>true</code>, only rows meant to be kept in memory count, and the ones also meant for disk are
+	 * still written there. The caller should hold {@link #m_flushLock}.
+	 */
+	int delete(final EpochTimeRange range, final long count, final boolean memoryOnly)
+	{
+		synchronized(this)
+		{
+			final Integer[] inRange = new Integer[m_pending.m_size];
+			int inRangeCount = 0;
+
+			for( int i = 0; i < m_pending.m_size; i++ )
+			{
+				if( m_pending.matches(i, range, memoryOnly ? ROWS_IN_MEMORY : ROWS_ALL) )
+				{
+					inRange[inRangeCount++] = i;
+				}
+			}
+
+			if( inRangeCount == 0 || count <= 0 )  return 0;
+
+			if( count < inRangeCount )
+			{
+				Arrays.sort(inRange, 0, inRangeCount, new Comparator<Integer>()
+				{
+					@Override public int compare(final Integer lhs, final Integer rhs)
+					{
+						return compareTimes(m_pending.timeAt(lhs), m_pending.timeAt(rhs));
+					}
+				});
+			}
+
+			final int deleted = (int) Math.min(count, inRangeCount);
+			final boolean[] remove = new boolean[m_pending.m_size];
+
+			for( int i = 0; i < deleted; i++ )
+			{
+				final int row = inRange[i];
+
+				if( memoryOnly && BleNodeConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesDisk(m_pending.levelAt(row)) )
+				{
+					m_pending.setLevel(row, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_DISK);
+				}
+				else
+				{
+					remove[row] = true;
+				}
+			}
+
+			m_pending.removeAll(remove);
+
+			return deleted;
+		}
+	}
+
+	private static void sortByTime(final List<HistoricalData> rows)
+	{
+		Collections.sort(rows, new Comparator<HistoricalData>()
+		{
+			@Override public int compare(final HistoricalData lhs, final HistoricalData rhs)
+			{
+				return compareTimes(lhs.getEpochTime_millis(), rhs.getEpochTime_millis());
+			}
+		});
+	}
+
+	private static int compareTimes(final long lhs, final long rhs)
+	{
+		return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+	}
+
+	int size()
+	{
+		synchronized(this)
+		{
+			return m_pending.m_size;
+		}
+	}
+
+	long getQueuedCount()
+	{
+		synchronized(this)
+		{
+			return m_queuedCount;
+		}
+	}
+
+	long getFlushedCount()
+	{
+		synchronized(this)
+		{
+			return m_flushedCount;
+		}
+	}
+
+	long getDroppedCount()
+	{
+		synchronized(this)
+		{
+			return m_droppedCount;
+		}
+	}
+
+	/**
+	 * Ring buffer of rows in parallel arrays. Grows as needed, the capacity limit is enforced by the queue.
+	 */
+	private static final class Ring
+	{
+		private long[] m_times = new long[INITIAL_CAPACITY];
+		private byte[][] m_blobs = new byte[INITIAL_CAPACITY][];
+		private int[] m_levels = new int[INITIAL_CAPACITY];
+		private long[] m_limits = new long[INITIAL_CAPACITY];
+
+		private int m_head = 0;
+		private int m_size = 0;
+
+		void add(final long time, final byte[] blob, final int level, final long limit)
+		{
+			if( m_size == m_times.length )
+			{
+				grow();
+			}
+
+			final int index = physical(m_size);
+
+			m_times[index] = time;
+			m_blobs[index] = blob;
+			m_levels[index] = level;
+			m_limits[index] = limit;
+			m_size++;
+		}
+
+		void removeFirst()
+		{
+			m_blobs[m_head] = null;
+			m_head = physical(1);
+			m_size--;
+		}
+
+		long timeAt(final int index)
+		{
+			return m_times[physical(index)];
+		}
+
+		byte[] blobAt(final int index)
+		{
+			return m_blobs[physical(index)];
+		}
+
+		int levelAt(final int index)
+		{
+			return m_levels[physical(index)];
+		}
+
+		long limitAt(final int index)
+		{
+			return m_limits[physical(index)];
+		}
+
+		void setLevel(final int index, final int level)
+		{
+			m_levels[physical(index)] = level;
+		}
+
+		boolean matches(final int index, final EpochTimeRange range, final int rows)
+		{
+			final long time = timeAt(index);
+
+			if( time < range.from().toMilliseconds() || time > range.to().toMilliseconds() )  return false;
+
+			if( rows == ROWS_IN_MEMORY )  return BleNodeConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesMemory(levelAt(index));
+			if( rows == ROWS_ON_DISK )  return BleNodeConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesDisk(levelAt(index));
+
+			return true;
+		}
+
+		//--- Keeps the order of the rows that are left.
+		void removeAll(final boolean[] remove)
+		{
+			int kept = 0;
+
+			for( int i = 0; i < m_size; i++ )
+			{
+				if( remove[i] )  continue;
+
+				if( kept != i )
+				{
+					final int from = physical(i);
+					final int to = physical(kept);
+
+					m_times[to] = m_times[from];
+					m_blobs[to] = m_blobs[from];
+					m_levels[to] = m_levels[from];
+					m_limits[to] = m_limits[from];
+				}
+
+				kept++;
+			}
+
+			for( int i = kept; i < m_size; i++ )
+			{
+				m_blobs[physical(i)] = null;
+			}
+
+			m_size = kept;
+		}
+
+		void clear()
+		{
+			for( int i = 0; i < m_size; i++ )
+			{
+				m_blobs[physical(i)] = null;
+			}
+
+			m_head = 0;
+			m_size = 0;
+		}
+
+		private int physical(final int index)
+		{
+			final int physical = m_head + index;
+
+			return physical < m_times.length ? physical : physical - m_times.length;
+		}
+
+		private void grow()
+		{
+			final int newLength = m_times.length * 2;
+
+			final long[] times = new long[newLength];
+			final byte[][] blobs = new byte[newLength][];
+			final int[] levels = new int[newLength];
+			final long[] limits = new long[newLength];
+
+			for( int i = 0; i < m_size; i++ )
+			{
+				final int index = physical(i);
+
+				times[i] = m_times[index];
+				blobs[i] = m_blobs[index];
+				levels[i] = m_levels[index];
+				limits[i] = m_limits[index];
+			}
+
+			m_times = times;
+			m_blobs = blobs;
+			m_levels = levels;
+			m_limits = limits;
+			m_head = 0;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.idevicesinc.sweetblue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer queue of log records, drained by its own background thread. Records are preallocated,
+ * so adding one doesn't allocate anything. If the buffer is full, the record is dropped rather than blocking the thread that's logging, and
+ * the number of dropped records gets reported once there's room again.
+ */
+final class P_LogRingBuffer
+{
+	//--- How long the writer thread sleeps when there's nothing to write, in case a wakeup is missed.
+	private static final long IDLE_PARK_TIME = TimeUnit.MILLISECONDS.toNanos(100);
+
+
+	static final class Record
+	{
+		int m_level;
+		int m_threadId;
+		String m_tag;
+		String m_message;
+		Object m_arg0;
+		Object m_arg1;
+		Object m_arg2;
+		int m_argCount;
+		boolean m_hasGattStatus;
+		int m_gattStatus;
+
+		private void clear()
+		{
+			m_tag = null;
+			m_message = null;
+			m_arg0 = null;
+			m_arg1 = null;
+			m_arg2 = null;
+		}
+	}
+
+	interface Writer
+	{
+		void write(Record record);
+
+		void onDropped(long count);
+	}
+
+
+	private final Record[] m_records;
+	//--- Each slot's sequence says whether it's free to write to (== position) or ready to be read (== position + 1).
+	private final AtomicLongArray m_sequences;
+	private final int m_mask;
+	private final AtomicLong m_head = new AtomicLong();
+	private final AtomicLong m_dropped = new AtomicLong();
+	private final Writer m_writer;
+	private final Thread m_thread;
+
+	//--- Only touched by the writer thread.
+	private long m_tail = 0;
+	private long m_droppedReported = 0;
+
+	private volatile boolean m_waiting = false;
+	private volatile boolean m_running = true;
+
+
+	P_LogRingBuffer(final int capacity, final Writer writer)
+	{
+		int size = 1;
+		while( size < capacity )
+		{
+			size <<= 1;
+		}
+
+		m_records = new Record[size];
+		m_sequences = new AtomicLongArray(size);
+		m_mask = size - 1;
+
+		for( int i = 0; i < size; i++ )
+		{
+			m_records[i] = new Record();
+			m_sequences.set(i, i);
+		}
+
+		m_writer = writer;
+		m_thread = new Thread(new Runnable()
+		{
+			@Override public void run()
+			{
+				drainLoop();
+			}
+		}, "SweetBlue Logger");
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	/**
+	 * Adds a record to the buffer. Returns <code>false</code> if the buffer was full, in which case the record is dropped.
+	 */
+	boolean offer(final int level, final int threadId, final String tag, final String message, final Object arg0, final Object arg1, final Object arg2, final int argCount, final boolean hasGattStatus, final int gattStatus)
+	{
+		long position;
+		int index;
+
+		while( true )
+		{
+			position = m_head.get();
+			index = (int) (position & m_mask);
+
+			final long difference = m_sequences.get(index) - position;
+
+			if( difference == 0 )
+			{
+				if( m_head.compareAndSet(position, position + 1) )  break;
+			}
+			else if( difference < 0 )
+			{
+				m_dropped.incrementAndGet();
+
+				return false;
+			}
+		}
+
+		final Record record = m_records[index];
+		record.m_level = level;
+		record.m_threadId = threadId;
+		record.m_tag = tag;
+		record.m_message = message;
+		record.m_arg0 = arg0;
+		record.m_arg1 = arg1;
+		record.m_arg2 = arg2;
+		record.m_argCount = argCount;
+		record.m_hasGattStatus = hasGattStatus;
+		record.m_gattStatus = gattStatus;
+
+		m_sequences.lazySet(index, position + 1);
+
+		if( m_waiting )
+		{
+			LockSupport.unpark(m_thread);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the total number of records that have been dropped because the buffer was full.
+	 */
+	long getDroppedCount()
+	{
+		return m_dropped.get();
+	}
+
+	/**
+	 * Stops the writer thread once it has written out whatever is left in the buffer.
+	 */
+	void quit()
+	{
+		m_running = false;
+		LockSupport.unpark(m_thread);
+	}
+
+	private void drainLoop()
+	{
+		while( true )
+		{
+			final boolean running = m_running;
+
+			if( drain() )  continue;
+
+			if( !running )  break;
+
+			m_waiting = true;
+
+			//--- Check again now that producers know to wake us up, so a record published in between isn't left sitting there.
+			if( !isEmpty() )
+			{
+				m_waiting = false;
+				continue;
+			}
+
+			LockSupport.parkNanos(this, IDLE_PARK_TIME);
+			m_waiting = false;
+		}
+	}
+
+	private boolean isEmpty()
+	{
+		final int index = (int) (m_tail & m_mask);
+
+		return m_sequences.get(index) != m_tail + 1;
+	}
+
+	private boolean drain()
+	{
+		boolean drainedAny = false;
+
+		while( true )
+		{
+			final int index = (int) (m_tail & m_mask);
+
+			if( m_sequences.get(index) != m_tail + 1 )  break;
+
+			final Record record = m_records[index];
+
+			try
+			{
+				m_writer.write(record);
+			}
+			catch (RuntimeException e)
+			{
+				//--- A misbehaving logger shouldn't kill the thread and leave the buffer to fill up.
+			}
+
+			record.clear();
+			m_sequences.lazySet(index, m_tail + m_mask + 1);
+			m_tail++;
+			drainedAny = true;
+		}
+
+		final long dropped = m_dropped.get();
+
+		if( dropped != m_droppedReported )
+		{
+			final long newlyDropped = dropped - m_droppedReported;
+			m_droppedReported = dropped;
+
+			try
+			{
+				m_writer.onDropped(newlyDropped);
+			}
+			catch (RuntimeException e)
+			{
+			}
+		}
+
+		return drainedAny;
+	}
+}
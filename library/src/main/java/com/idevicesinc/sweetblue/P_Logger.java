@@ -21,11 +21,13 @@ import com.idevicesinc.sweetblue.utils.Utils_String;
 import com.idevicesinc.sweetblue.utils.UuidNameMap;
 import com.idevicesinc.sweetblue.utils.UuidNameMap_ListWrapper;
 
-final class P_Logger
+final class P_Logger implements P_LogRingBuffer.Writer
 {
 
 	private final static String MAIN = "MAIN(%d)";
 	private final static String UPDATE = "UPDATE(%d)";
+	//--- Number of records that can be waiting on the writer thread before new ones get dropped, when BleManagerConfig#asyncLogging is on.
+	private final static int ASYNC_BUFFER_SIZE = 1024;
 	private String[] m_debugThreadNamePool;
 	private int m_poolIndex = 0;
 	private final HashMap<Integer, String> m_threadNames = new HashMap<>();
@@ -39,15 +41,17 @@ final class P_Logger
 	private final UuidNameMap_ListWrapper m_nameMap;
 	private SweetLogger m_logger = null;
 	private final BleManager m_mgr;
+	private final P_LogRingBuffer m_buffer;
 
 
-	public P_Logger(final BleManager manager, String[] debugThreadNamePool, List<UuidNameMap> debugUuidNameDicts, boolean enabled, SweetLogger logger)
+	public P_Logger(final BleManager manager, String[] debugThreadNamePool, List<UuidNameMap> debugUuidNameDicts, boolean enabled, boolean async, SweetLogger logger)
 	{
 		m_mgr = manager;
 		m_logger = logger;
 		m_debugThreadNamePool = debugThreadNamePool;
 		m_nameMap = new UuidNameMap_ListWrapper(debugUuidNameDicts);
 		m_enabled = enabled;
+		m_buffer = enabled && async ? new P_LogRingBuffer(ASYNC_BUFFER_SIZE, this) : null;
 	}
 
 	public void printBuildInfo()
@@ -128,15 +132,11 @@ final class P_Logger
 		
 		return null;
 	}
-	
-	private String prefixMessage(String methodName, String message)
-	{
-		String threadName = getThreadName(Process.myTid());
-		message = threadName + " " + methodName + "() - " + message;
-		
-		return message;
-	}
-	
+
+	/**
+	 * Logs a message prefixed with the calling method's name, using the calling class's name as the tag. This walks the stack to find
+	 * the caller, so it's too slow for anything that runs often - use the tagged overloads below for that.
+	 */
 	public void log(int level, String message)
 	{
 		if( !m_enabled )  return;
@@ -145,7 +145,7 @@ final class P_Logger
 		String className = trace.getClassName();
 		String[] className_split = className.split("\\.");
 		className = className_split[className_split.length-1];
-		log_private(level, className, message, trace);
+		log_private(level, className, trace.getMethodName() + "() - " + message, null, null, null, 0, false, 0);
 	}
 	
 	public void log_status(int gattStatus)
@@ -177,51 +177,217 @@ final class P_Logger
 
 		log(level, message);
 	}
-	
-	public void log(int level, String tag, String message)
+
+	/**
+	 * Logs the given message with an explicit tag. Each <code>{}</code> in the message is replaced by the next argument, but only once
+	 * the record is actually written out, so nothing needs to be built up front. {@link UUID} arguments are printed with their debug name
+	 * from {@link BleManagerConfig#uuidNameMaps}. When {@link BleManagerConfig#asyncLogging} is on, this doesn't allocate anything (as
+	 * long as primitives aren't boxed to pass them in).
+	 */
+	public void log(int level, String tag, String message, Object arg0, Object arg1, Object arg2)
+	{
+		log_tagged(level, tag, message, 3, arg0, arg1, arg2);
+	}
+
+	private void log_tagged(int level, String tag, String message, int argCount, Object arg0, Object arg1, Object arg2)
 	{
 		if( !m_enabled )  return;
-		
-		StackTraceElement trace = getSoonestTrace();
-		log_private(level, tag, message, trace); 
+
+		log_private(level, tag, message, arg0, arg1, arg2, argCount, false, 0);
 	}
-	
-	private void log_private(int level, String tag, String message, StackTraceElement trace)
+
+	/**
+	 * Same as {@link #log_status(int, String)}, but with an explicit tag and a lazily formatted message, like {@link #log(int, String, String, Object, Object, Object)}.
+	 */
+	public void status(String tag, int gattStatus, String message, Object arg0)
+	{
+		if( !m_enabled )  return;
+
+		log_private(Utils.isSuccess(gattStatus) ? Log.INFO : Log.WARN, tag, message, arg0, null, null, 1, true, gattStatus);
+	}
+
+	private void log_private(int level, String tag, String message, Object arg0, Object arg1, Object arg2, int argCount, boolean hasGattStatus, int gattStatus)
 	{
-		message = prefixMessage(trace.getMethodName(), message);
+		final int threadId = Process.myTid();
+
+		if( m_buffer != null )
+		{
+			m_buffer.offer(level, threadId, tag, message, arg0, arg1, arg2, argCount, hasGattStatus, gattStatus);
+		}
+		else
+		{
+			write(level, threadId, tag, message, arg0, arg1, arg2, argCount, hasGattStatus, gattStatus);
+		}
+	}
+
+	private void write(int level, int threadId, String tag, String message, Object arg0, Object arg1, Object arg2, int argCount, boolean hasGattStatus, int gattStatus)
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append(getThreadName(threadId)).append(' ');
+
+		if( hasGattStatus )
+		{
+			builder.append(gattStatus(gattStatus)).append(' ');
+		}
+
+		appendFormatted(builder, message, arg0, arg1, arg2, argCount);
+
 		if (m_logger != null)
 		{
-			m_logger.onLogEntry(level, tag, message);
+			m_logger.onLogEntry(level, tag, builder.toString());
 		}
 		else
 		{
-			Log.println(level, tag, message);
+			Log.println(level, tag, builder.toString());
 		}
 	}
-	
+
+	private void appendFormatted(StringBuilder builder, String message, Object arg0, Object arg1, Object arg2, int argCount)
+	{
+		if( message == null )
+		{
+			builder.append("null");
+
+			return;
+		}
+
+		int start = 0;
+		int argIndex = 0;
+
+		while( argIndex < argCount )
+		{
+			final int placeholder = message.indexOf("{}", start);
+
+			if( placeholder == -1 )  break;
+
+			builder.append(message, start, placeholder);
+			appendArg(builder, argIndex == 0 ? arg0 : argIndex == 1 ? arg1 : arg2);
+			start = placeholder + 2;
+			argIndex++;
+		}
+
+		builder.append(message, start, message.length());
+	}
+
+	private void appendArg(StringBuilder builder, Object arg)
+	{
+		if( arg instanceof UUID )
+		{
+			builder.append(uuidName((UUID) arg));
+		}
+		else
+		{
+			builder.append(arg);
+		}
+	}
+
+	@Override public void write(P_LogRingBuffer.Record record)
+	{
+		write(record.m_level, record.m_threadId, record.m_tag, record.m_message, record.m_arg0, record.m_arg1, record.m_arg2, record.m_argCount, record.m_hasGattStatus, record.m_gattStatus);
+	}
+
+	@Override public void onDropped(long count)
+	{
+		write(Log.WARN, Process.myTid(), P_Logger.class.getSimpleName(), "Log buffer was full, dropped {} log records.", count, null, null, 1, false, 0);
+	}
+
+	/**
+	 * Stops the background writer thread, if {@link BleManagerConfig#asyncLogging} is on, once it has written out whatever's left.
+	 */
+	public void shutdown()
+	{
+		if( m_buffer != null )
+		{
+			m_buffer.quit();
+		}
+	}
+
+	/**
+	 * Backs the two-argument tagged overloads, which existing call sites use. They keep the <code>methodName() - </code> prefix those have
+	 * always had, so this walks the stack like {@link #log(int, String)}. Pass at least one argument to get the faster, unprefixed path.
+	 */
+	private void log_prefixed(int level, String tag, String message)
+	{
+		if( !m_enabled )  return;
+
+		final StackTraceElement trace = getSoonestTrace();
+
+		log_private(level, tag, trace.getMethodName() + "() - " + message, null, null, null, 0, false, 0);
+	}
+
 	public void d(String tag, String message)
 	{
-		log(Log.DEBUG, tag, message);
+		log_prefixed(Log.DEBUG, tag, message);
 	}
 	
 	public void i(String tag, String message)
 	{
-		log(Log.INFO, tag, message);
+		log_prefixed(Log.INFO, tag, message);
 	}
 	
 	public void v(String tag, String message)
 	{
-		log(Log.VERBOSE, tag, message);
+		log_prefixed(Log.VERBOSE, tag, message);
 	}
 	
 	public void e(String tag, String message)
 	{
-		log(Log.ERROR, tag, message);
+		log_prefixed(Log.ERROR, tag, message);
 	}
 	
 	public void w(String tag, String message)
 	{
-		log(Log.WARN, tag, message);
+		log_prefixed(Log.WARN, tag, message);
+	}
+
+	public void d(String tag, String message, Object arg0)
+	{
+		log_tagged(Log.DEBUG, tag, message, 1, arg0, null, null);
+	}
+
+	public void i(String tag, String message, Object arg0)
+	{
+		log_tagged(Log.INFO, tag, message, 1, arg0, null, null);
+	}
+
+	public void v(String tag, String message, Object arg0)
+	{
+		log_tagged(Log.VERBOSE, tag, message, 1, arg0, null, null);
+	}
+
+	public void e(String tag, String message, Object arg0)
+	{
+		log_tagged(Log.ERROR, tag, message, 1, arg0, null, null);
+	}
+
+	public void w(String tag, String message, Object arg0)
+	{
+		log_tagged(Log.WARN, tag, message, 1, arg0, null, null);
+	}
+
+	public void d(String tag, String message, Object arg0, Object arg1)
+	{
+		log_tagged(Log.DEBUG, tag, message, 2, arg0, arg1, null);
+	}
+
+	public void i(String tag, String message, Object arg0, Object arg1)
+	{
+		log_tagged(Log.INFO, tag, message, 2, arg0, arg1, null);
+	}
+
+	public void v(String tag, String message, Object arg0, Object arg1)
+	{
+		log_tagged(Log.VERBOSE, tag, message, 2, arg0, arg1, null);
+	}
+
+	public void e(String tag, String message, Object arg0, Object arg1)
+	{
+		log_tagged(Log.ERROR, tag, message, 2, arg0, arg1, null);
+	}
+
+	public void w(String tag, String message, Object arg0, Object arg1)
+	{
+		log_tagged(Log.WARN, tag, message, 2, arg0, arg1, null);
 	}
 	
 	
@@ -95,6 +95,8 @@ final class P_NativeDeviceWrapper
 	void setName_override(final String name)
 	{
 		m_name_override = name != null ? name : "";
+
+		onNameChanged();
 	}
 
 	void updateNativeName(final String name_native)
@@ -128,6 +130,15 @@ final class P_NativeDeviceWrapper
 		m_name_native = name_native;
 
 		m_name_normalized = name_normalized;
+
+		onNameChanged();
+	}
+
+	private void onNameChanged()
+	{
+		if( m_device.isNull() )  return;
+
+		m_device.getManager().m_deviceMngr.onSortKeyChanged(m_device);
 	}
 	
 	public String getAddress()
@@ -402,7 +413,12 @@ final class P_NativeDeviceWrapper
 	
 	void closeGattIfNeeded(boolean disconnectAlso)
 	{
-		m_device.m_reliableWriteMngr.onDisconnect();
+		final P_ReliableWriteManager reliableWriteMngr = m_device.reliableWriteMngr_nullable();
+
+		if( reliableWriteMngr != null )
+		{
+			reliableWriteMngr.onDisconnect();
+		}
 
 		if( gatt() == null )  return;
 
@@ -6,9 +6,11 @@ import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.le.AdvertiseData;
 import android.bluetooth.le.AdvertiseSettings;
+import android.bluetooth.le.ScanFilter;
 import android.content.Context;
 import com.idevicesinc.sweetblue.compat.L_Util;
 import com.idevicesinc.sweetblue.utils.Interval;
+import java.util.List;
 import java.util.Set;
 
 
@@ -37,8 +39,8 @@ interface P_NativeManagerLayer {
     boolean isLocationEnabledForScanning_byRuntimePermissions();
     boolean isLocationEnabledForScanning();
     boolean isBluetoothEnabled();
-    void startLScan(int scanMode, Interval delay, L_Util.ScanCallback callback);
-    void startMScan(int scanMode, Interval delay, L_Util.ScanCallback callback);
+    void startLScan(int scanMode, Interval delay, List<ScanFilter> filters, L_Util.ScanCallback callback);
+    void startMScan(int scanMode, Interval delay, List<ScanFilter> filters, L_Util.ScanCallback callback);
     boolean startLeScan(BluetoothAdapter.LeScanCallback callback);
     void stopLeScan(BluetoothAdapter.LeScanCallback callback);
     BluetoothDevice getRemoteDevice(String macAddress);
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener;
@@ -254,9 +255,15 @@ final class P_PollManager
 		}
 	}
 	
+	private static final CallbackEntry[] EMPTY_ROUTE = new CallbackEntry[0];
+
 	private final BleDevice m_device;
 	private final ArrayList<CallbackEntry> m_entries = new ArrayList<>();
 	private final Object m_entryLock = new Object();
+
+	//--- DRK > Entries by characteristic uuid, in the same order as m_entries. Each array is replaced rather than modified (only while holding m_entryLock)
+	//---		so that notifications, which can come in at a high rate, can be routed without taking the lock or copying anything.
+	private final ConcurrentHashMap<UUID, CallbackEntry[]> m_routes = new ConcurrentHashMap<>();
 	
 
 	P_PollManager(BleDevice device)
@@ -269,9 +276,50 @@ final class P_PollManager
 		synchronized (m_entryLock)
 		{
 			m_entries.clear();
+			m_routes.clear();
 		}
 	}
 
+	private CallbackEntry[] getRoute(final UUID charUuid)
+	{
+		if( charUuid == null )  return EMPTY_ROUTE;
+
+		final CallbackEntry[] route = m_routes.get(charUuid);
+
+		return route != null ? route : EMPTY_ROUTE;
+	}
+
+	//--- Must be called while holding m_entryLock, after m_entries changes for the given uuid.
+	private void reroute(final UUID charUuid)
+	{
+		if( charUuid == null )  return;
+
+		int count = 0;
+
+		for( int i = 0; i < m_entries.size(); i++ )
+		{
+			if( charUuid.equals(m_entries.get(i).m_charUuid) )  count++;
+		}
+
+		if( count == 0 )
+		{
+			m_routes.remove(charUuid);
+
+			return;
+		}
+
+		final CallbackEntry[] route = new CallbackEntry[count];
+
+		for( int i = 0, j = 0; i < m_entries.size(); i++ )
+		{
+			final CallbackEntry ithEntry = m_entries.get(i);
+
+			if( charUuid.equals(ithEntry.m_charUuid) )  route[j++] = ithEntry;
+		}
+
+		m_routes.put(charUuid, route);
+	}
+
 	final void startPoll(final UUID serviceUuid, final UUID charUuid, final DescriptorFilter decriptorFilter, double interval, ReadWriteListener listener, boolean trackChanges, boolean usingNotify)
 	{
 		if( m_device.isNull() )  return;
@@ -280,19 +328,13 @@ final class P_PollManager
 		
 		if( !allowDuplicatePollEntries )
 		{
-			final List<CallbackEntry> entryList;
-			synchronized (m_entryLock)
-			{
-				entryList = new ArrayList<>(m_entries);
-			}
-			for( int i = entryList.size()-1; i >= 0; i-- )
+			final CallbackEntry[] route = getRoute(charUuid);
+
+			for( int i = route.length-1; i >= 0; i-- )
 			{
-				CallbackEntry ithEntry = entryList.get(i);
+				CallbackEntry ithEntry = route[i];
 
-				if( ithEntry.m_charUuid.equals(charUuid) )
-				{
-					ithEntry.m_interval = interval;
-				}
+				ithEntry.m_interval = interval;
 				
 				if( ithEntry.isFor(serviceUuid, charUuid, decriptorFilter, interval, /*listener=*/null, usingNotify) )
 				{
@@ -317,6 +359,7 @@ final class P_PollManager
 		synchronized (m_entryLock)
 		{
 			m_entries.add(newEntry);
+			reroute(charUuid);
 		}
 	}
 
@@ -335,6 +378,8 @@ final class P_PollManager
 					m_entries.remove(i);
 				}
 			}
+
+			reroute(characteristicUuid);
 		}
 	}
 
@@ -354,14 +399,11 @@ final class P_PollManager
 
 	final void onCharacteristicChangedFromNativeNotify(final UUID serviceUuid, final UUID charUuid, byte[] value)
 	{
-		final List<CallbackEntry> entryList;
-		synchronized (m_entryLock)
-		{
-			entryList = new ArrayList<>(m_entries);
-		}
-		for( int i = 0; i < entryList.size(); i++ )
+		final CallbackEntry[] route = getRoute(charUuid);
+
+		for( int i = 0; i < route.length; i++ )
 		{
-			CallbackEntry ithEntry = entryList.get(i);
+			CallbackEntry ithEntry = route[i];
 
 			// An NPE was reported from a customer where it looks like the CallbackEntry here is null. Not sure how this could happen,
 			// so we're just guarding against it now
@@ -379,15 +421,11 @@ final class P_PollManager
 	{
 		int/*__E_NotifyState*/ highestState = E_NotifyState__NOT_ENABLED;
 
-		final List<CallbackEntry> entryList;
-		synchronized (m_entryLock)
-		{
-			entryList = new ArrayList<>(m_entries);
-		}
+		final CallbackEntry[] route = getRoute(charUuid);
 
-		for( int i = 0; i < entryList.size(); i++ )
+		for( int i = 0; i < route.length; i++ )
 		{
-			CallbackEntry ithEntry = entryList.get(i);
+			CallbackEntry ithEntry = route[i];
 			
 			if( ithEntry.isFor(serviceUuid, charUuid) )
 			{
@@ -403,14 +441,11 @@ final class P_PollManager
 
 	final void onNotifyStateChange(final UUID serviceUuid, final UUID charUuid, int/*__E_NotifyState*/ state)
 	{
-		final List<CallbackEntry> entryList;
-		synchronized (m_entryLock)
-		{
-			entryList = new ArrayList<>(m_entries);
-		}
-		for( int i = 0; i < entryList.size(); i++ )
+		final CallbackEntry[] route = getRoute(charUuid);
+
+		for( int i = 0; i < route.length; i++ )
 		{
-			CallbackEntry ithEntry = entryList.get(i);
+			CallbackEntry ithEntry = route[i];
 			
 			if( ithEntry.usingNotify() && ithEntry.isFor(serviceUuid, charUuid) )
 			{
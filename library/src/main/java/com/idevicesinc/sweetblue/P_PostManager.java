@@ -1,6 +1,9 @@
 package com.idevicesinc.sweetblue;
 
 
+import com.idevicesinc.sweetblue.utils.Event;
+import com.idevicesinc.sweetblue.utils.GenericListener_Void;
+import com.idevicesinc.sweetblue.utils.Interval;
 import com.idevicesinc.sweetblue.utils.Utils;
 
 final class P_PostManager
@@ -9,6 +12,8 @@ final class P_PostManager
     private final P_SweetHandler m_uiHandler;
     private final P_SweetHandler m_updateHandler;
     private final BleManager m_manager;
+    private final P_CallbackBatcher m_callbackBatcher;
+    private final P_CallbackDispatcher m_callbackDispatcher;
 
 
     P_PostManager(BleManager mgr, P_SweetHandler uiHandler, P_SweetHandler updateHandler)
@@ -16,6 +21,8 @@ final class P_PostManager
         m_uiHandler = uiHandler;
         m_updateHandler = updateHandler;
         m_manager = mgr;
+        m_callbackBatcher = new P_CallbackBatcher(uiHandler);
+        m_callbackDispatcher = new P_CallbackDispatcher(mgr);
     }
 
     public final void postToMain(Runnable action)
@@ -75,6 +82,55 @@ final class P_PostManager
         }
     }
 
+    /**
+     * If {@link BleManagerConfig#callbackExecutor} is set, hands the event off to it and returns <code>true</code>. Otherwise, if
+     * {@link BleManagerConfig#callbackBatchInterval} is enabled and the event would have been posted to the main thread, queues it up for the
+     * next batch and returns <code>true</code>. An event raised on the main thread is queued too if anything from before it is still waiting,
+     * so it can't jump ahead. Otherwise returns <code>false</code>, and the caller should post it like usual.
+     */
+    public final boolean dispatchCallbackEvent(final GenericListener_Void listener, final Event event)
+    {
+        final BleManagerConfig config = m_manager.m_config;
+
+        if (config.callbackExecutor != null)
+        {
+            m_callbackDispatcher.dispatch(listener, event, config.callbackExecutor, config.callbackTimeBudget);
+
+            return true;
+        }
+
+        if (!config.postCallbacksToMainThread || Interval.isDisabled(config.callbackBatchInterval))
+        {
+            return false;
+        }
+
+        //--- E.g. an early-out failure from a read() called on the main thread. It can only go straight to the listener if nothing's ahead of it.
+        if (Utils.isOnMainThread() && !m_callbackBatcher.hasPending_mainThread())
+        {
+            return false;
+        }
+
+        m_callbackBatcher.post(listener, event, config.callbackBatchInterval.millis(), config.latestValueOnlyNotificationUuids);
+
+        return true;
+    }
+
+    /**
+     * Watchdog for {@link BleManagerConfig#callbackExecutor}, called every update.
+     */
+    final void checkCallbackTimeBudget()
+    {
+        if (m_manager.m_config.callbackExecutor != null)
+        {
+            m_callbackDispatcher.checkTimeBudget(m_manager.m_config.callbackTimeBudget);
+        }
+    }
+
+    final CallbackBatchStats getCallbackBatchStats()
+    {
+        return m_callbackBatcher.getStats();
+    }
+
     public final void postToUpdateThread(Runnable action)
     {
         m_updateHandler.post(action);
@@ -0,0 +1,180 @@
+package com.idevicesinc.sweetblue;
+
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds notifications meant for a {@link RawNotificationListener} between the native callback (on a binder thread) and the update thread.
+ * Each slot in the ring owns a byte buffer that the payload is copied into, and which is handed to the listener as-is, so once the buffers
+ * have grown to the size of the largest payload nothing is allocated per notification. Like {@link P_ScanIngestBuffer}, the native side never
+ * waits on the update thread, and notifications are dropped if the ring is full.
+ * <br><br>
+ * {@link #offer(UUID, byte[], long)} and the getters can be called from any thread, {@link #drain(Sink)} should only be called from the update thread.
+ */
+final class P_RawNotificationBuffer
+{
+
+    //--- Big enough for a full payload at the default MTU, so most devices never need the buffers to grow.
+    static final int DEFAULT_PAYLOAD_SIZE = BleNodeConfig.DEFAULT_MTU_SIZE - 3;
+
+
+    /**
+     * Where {@link #drain(Sink)} sends each notification. The buffer is only valid until this returns.
+     */
+    interface Sink
+    {
+        void onNotification(UUID charUuid, byte[] buffer, int length, long timestamp);
+    }
+
+
+    private final Slot[] m_slots;
+    //--- Each slot's sequence says whether it's free to write to (== position) or ready to be read (== position + 1).
+    private final AtomicLongArray m_sequences;
+    private final int m_mask;
+    private final AtomicLong m_head = new AtomicLong();
+    private final AtomicLong m_received = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+    private final AtomicBoolean m_drainPending = new AtomicBoolean(false);
+
+    //--- Only touched by the update thread.
+    private long m_tail = 0;
+
+    //--- Only written by the update thread, but can be read from any thread.
+    private volatile long m_delivered = 0;
+
+
+    P_RawNotificationBuffer(final int capacity)
+    {
+        int size = 1;
+        while (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        m_slots = new Slot[size];
+        m_sequences = new AtomicLongArray(size);
+        m_mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+        {
+            m_slots[i] = new Slot();
+            m_sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Copies a notification's payload into the ring. Returns <code>true</code> if the caller should schedule a {@link #drain(Sink)}, which
+     * is only the case for the first notification since the last drain started, so at most one drain is ever waiting to run.
+     */
+    final boolean offer(final UUID charUuid, final byte[] value_nullable, final long timestamp)
+    {
+        m_received.incrementAndGet();
+
+        long position;
+        int index;
+
+        while (true)
+        {
+            position = m_head.get();
+            index = (int) (position & m_mask);
+
+            final long difference = m_sequences.get(index) - position;
+
+            if (difference == 0)
+            {
+                if (m_head.compareAndSet(position, position + 1)) break;
+            }
+            else if (difference < 0)
+            {
+                m_dropped.incrementAndGet();
+
+                //--- Whatever's already in there still needs draining.
+                return m_drainPending.compareAndSet(false, true);
+            }
+        }
+
+        final Slot slot = m_slots[index];
+        final int length = value_nullable != null ? value_nullable.length : 0;
+
+        if (slot.m_buffer.length < length)
+        {
+            slot.m_buffer = new byte[length];
+        }
+
+        if (length > 0)
+        {
+            System.arraycopy(value_nullable, 0, slot.m_buffer, 0, length);
+        }
+
+        slot.m_charUuid = charUuid;
+        slot.m_length = length;
+        slot.m_timestamp = timestamp;
+
+        m_sequences.lazySet(index, position + 1);
+
+        return m_drainPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Sends everything in the ring to the given sink, oldest first. Returns how many notifications were sent.
+     */
+    final int drain(final Sink sink)
+    {
+        //--- Cleared before reading so that anything offered from here on schedules another drain, rather than possibly being missed.
+        m_drainPending.set(false);
+
+        int count = 0;
+
+        while (true)
+        {
+            final int index = (int) (m_tail & m_mask);
+
+            if (m_sequences.get(index) != m_tail + 1) break;
+
+            final Slot slot = m_slots[index];
+
+            sink.onNotification(slot.m_charUuid, slot.m_buffer, slot.m_length, slot.m_timestamp);
+
+            slot.m_charUuid = null;
+            m_sequences.lazySet(index, m_tail + m_mask + 1);
+            m_tail++;
+            count++;
+        }
+
+        m_delivered += count;
+
+        return count;
+    }
+
+    final int getCapacity()
+    {
+        return m_slots.length;
+    }
+
+    final long getReceivedCount()
+    {
+        return m_received.get();
+    }
+
+    final long getDroppedCount()
+    {
+        return m_dropped.get();
+    }
+
+    final long getDeliveredCount()
+    {
+        return m_delivered;
+    }
+
+
+    private static final class Slot
+    {
+        private UUID m_charUuid;
+        private byte[] m_buffer = new byte[DEFAULT_PAYLOAD_SIZE];
+        private int m_length;
+        private long m_timestamp;
+    }
+}
@@ -0,0 +1,82 @@
+package com.idevicesinc.sweetblue;
+
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes notifications for characteristics that have a {@link RawNotificationListener} through a {@link P_RawNotificationBuffer}, skipping
+ * the {@link P_PollManager} and {@link BleDevice.ReadWriteListener.ReadWriteEvent} path entirely. Created the first time a raw listener is set.
+ */
+final class P_RawNotificationManager implements P_RawNotificationBuffer.Sink
+{
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+
+    private final BleDevice m_device;
+    private final ConcurrentHashMap<UUID, RawNotificationListener> m_listeners = new ConcurrentHashMap<>();
+    private final P_RawNotificationBuffer m_buffer;
+
+    //--- Posted at most once at a time, see P_RawNotificationBuffer.offer().
+    private final Runnable m_drainRunnable = new Runnable()
+    {
+        @Override public void run()
+        {
+            m_buffer.drain(P_RawNotificationManager.this);
+        }
+    };
+
+
+    P_RawNotificationManager(final BleDevice device, final int capacity)
+    {
+        m_device = device;
+        m_buffer = new P_RawNotificationBuffer(capacity);
+    }
+
+    final void setListener(final UUID charUuid, final RawNotificationListener listener_nullable)
+    {
+        if (listener_nullable == null)
+        {
+            m_listeners.remove(charUuid);
+        }
+        else
+        {
+            m_listeners.put(charUuid, listener_nullable);
+        }
+    }
+
+    /**
+     * Called from the native callback thread. Returns <code>true</code> if there's a raw listener for the characteristic, in which case the
+     * notification has been taken care of and shouldn't go through the usual path.
+     */
+    final boolean onCharacteristicChanged(final UUID charUuid, final byte[] value_nullable)
+    {
+        if (!m_listeners.containsKey(charUuid)) return false;
+
+        if (m_buffer.offer(charUuid, value_nullable, System.currentTimeMillis()))
+        {
+            m_device.getManager().getPostManager().runOrPostToUpdateThread(m_drainRunnable);
+        }
+
+        return true;
+    }
+
+    @Override public final void onNotification(final UUID charUuid, final byte[] buffer, final int length, final long timestamp)
+    {
+        //--- Same as P_PollManager, notifications that were still on their way when the device disconnected aren't passed on.
+        if (m_device.is(BleDeviceState.DISCONNECTED)) return;
+
+        final RawNotificationListener listener = m_listeners.get(charUuid);
+
+        if (listener != null)
+        {
+            listener.onNotification(m_device, charUuid, buffer, 0, length, timestamp);
+        }
+    }
+
+    final P_RawNotificationBuffer getBuffer()
+    {
+        return m_buffer;
+    }
+}
@@ -1,9 +1,11 @@
 package com.idevicesinc.sweetblue;
 
 import java.util.ArrayList;
+import java.util.List;
 import com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter;
 import com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter.Please;
 import com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter.ScanEvent;
+import com.idevicesinc.sweetblue.utils.AdvertisingCursor;
 
 
 final class P_ScanFilterManager
@@ -11,6 +13,7 @@ final class P_ScanFilterManager
 	private final ArrayList<BleManagerConfig.ScanFilter> m_filters = new ArrayList<BleManagerConfig.ScanFilter>();
 	private ScanFilter m_default;
 	private final BleManager m_mngr;
+	private final AdvertisingCursor m_cursor = new AdvertisingCursor(null);
 	
 	P_ScanFilterManager(final BleManager mngr, final ScanFilter defaultFilter)
 	{
@@ -50,6 +53,91 @@ final class P_ScanFilterManager
 		return m_default != null || m_filters.size() > 0;
 	}
 	
+	/**
+	 * Cheap check done on a newly discovered device before anything else is done with it. Returns <code>false</code> only if every active
+	 * filter is a {@link DeclarativeScanFilter} and none of them match, in which case {@link #allow(P_Logger, ScanEvent)} would ignore
+	 * the device anyway.
+	 */
+	boolean precheck(final P_NativeDeviceLayer device, final int rssi, final byte[] scanRecord)
+	{
+		if( !isDeclarativeOnly() )  return true;
+
+		final String macAddress = device.getAddress();
+
+		m_cursor.reset(scanRecord);
+
+		String name = null;
+		boolean nameLoaded = false;
+
+		for( int i = -1; i < m_filters.size(); i++ )
+		{
+			final ScanFilter ithFilter = i == -1 ? m_default : m_filters.get(i);
+
+			if( ithFilter == null )  continue;
+
+			final DeclarativeScanFilter filter = (DeclarativeScanFilter) ithFilter;
+
+			if( !filter.matchesAdvertisement(macAddress, rssi, m_cursor) )  continue;
+
+			if( !filter.hasNameCriteria() )  return true;
+
+			//--- Only ask for the name if it's actually needed, as it's not free to get.
+			if( !nameLoaded )
+			{
+				try
+				{
+					name = m_mngr.getDeviceName(device, scanRecord);
+				}
+				catch (Exception e)
+				{
+					//--- Let the normal discovery path deal with it.
+					return true;
+				}
+
+				nameLoaded = true;
+			}
+
+			if( filter.matchesName(name) )  return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the native filters to start a scan with, or <code>null</code> if the scan should be unfiltered. See {@link BleManagerConfig#useNativeScanFilters}.
+	 */
+	List<android.bluetooth.le.ScanFilter> getNativeFilters(final BleManagerConfig config)
+	{
+		if( !config.useNativeScanFilters || !isDeclarativeOnly() )  return null;
+
+		final List<android.bluetooth.le.ScanFilter> nativeFilters = new ArrayList<>();
+
+		for( int i = -1; i < m_filters.size(); i++ )
+		{
+			final ScanFilter ithFilter = i == -1 ? m_default : m_filters.get(i);
+
+			if( ithFilter == null )  continue;
+
+			if( !((DeclarativeScanFilter) ithFilter).addNativeFilters(nativeFilters) )  return null;
+		}
+
+		return nativeFilters;
+	}
+
+	private boolean isDeclarativeOnly()
+	{
+		if( !makeEvent() )  return false;
+
+		if( m_default != null && !(m_default instanceof DeclarativeScanFilter) )  return false;
+
+		for( int i = 0; i < m_filters.size(); i++ )
+		{
+			if( !(m_filters.get(i) instanceof DeclarativeScanFilter) )  return false;
+		}
+
+		return true;
+	}
+
 	BleManagerConfig.ScanFilter.Please allow(P_Logger logger, final ScanEvent e)
 	{
 		if( m_filters.size() == 0 && m_default == null )  return Please.acknowledge();
@@ -0,0 +1,241 @@
+package com.idevicesinc.sweetblue;
+
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds scan results between the native scan callbacks (on binder threads) and the update thread. Results go into a bounded, lock-free ring,
+ * so the native callbacks never wait on the update thread. If the ring is full, results are dropped rather than blocking. The update thread
+ * moves everything out of the ring at the start of each tick, into a backlog which only keeps the latest result for each mac address.
+ * <br><br>
+ * {@link #offer(BluetoothDevice, int, byte[])} and {@link #clear()} can be called from any thread, everything else should only be called from the update thread.
+ */
+final class P_ScanIngestBuffer
+{
+
+    private final Slot[] m_slots;
+    //--- Each slot's sequence says whether it's free to write to (== position) or ready to be read (== position + 1).
+    private final AtomicLongArray m_sequences;
+    private final int m_mask;
+    private final AtomicLong m_head = new AtomicLong();
+    private final AtomicLong m_received = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+
+    //--- Anything published before this position is thrown away, see clear().
+    private volatile long m_discardBefore = 0;
+    private volatile boolean m_clearRequested = false;
+
+    //--- Only touched by the update thread.
+    private long m_tail = 0;
+    private final LinkedHashMap<String, Entry> m_backlog = new LinkedHashMap<>();
+    //--- Results without a native device (i.e. from unit tests) have no mac address to coalesce by.
+    private final ArrayList<Entry> m_backlog_noAddress = new ArrayList<>();
+
+    //--- Only written by the update thread, but can be read from any thread through getStats().
+    private volatile long m_coalesced = 0;
+    private volatile long m_delivered = 0;
+    private volatile int m_backlogSize = 0;
+    private volatile int m_maxBacklog = 0;
+
+
+    P_ScanIngestBuffer(final int capacity)
+    {
+        int size = 1;
+        while (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        m_slots = new Slot[size];
+        m_sequences = new AtomicLongArray(size);
+        m_mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+        {
+            m_slots[i] = new Slot();
+            m_sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a scan result. Returns <code>false</code> if the buffer was full, in which case the result is dropped.
+     */
+    final boolean offer(final BluetoothDevice device, final int rssi, final byte[] scanRecord)
+    {
+        m_received.incrementAndGet();
+
+        long position;
+        int index;
+
+        while (true)
+        {
+            position = m_head.get();
+            index = (int) (position & m_mask);
+
+            final long difference = m_sequences.get(index) - position;
+
+            if (difference == 0)
+            {
+                if (m_head.compareAndSet(position, position + 1)) break;
+            }
+            else if (difference < 0)
+            {
+                m_dropped.incrementAndGet();
+
+                return false;
+            }
+        }
+
+        final Slot slot = m_slots[index];
+        slot.m_device = device;
+        slot.m_rssi = rssi;
+        slot.m_record = scanRecord;
+
+        m_sequences.lazySet(index, position + 1);
+
+        return true;
+    }
+
+    /**
+     * Throws away everything that's been added so far, whether it's still in the ring or already in the backlog.
+     */
+    final void clear()
+    {
+        m_discardBefore = m_head.get();
+        m_clearRequested = true;
+    }
+
+    /**
+     * Moves everything out of the ring and into the backlog, coalescing results for the same device. Returns the size of the backlog.
+     */
+    final int transfer()
+    {
+        if (m_clearRequested)
+        {
+            m_clearRequested = false;
+            m_backlog.clear();
+            m_backlog_noAddress.clear();
+            m_backlogSize = 0;
+        }
+
+        final long discardBefore = m_discardBefore;
+
+        while (true)
+        {
+            final int index = (int) (m_tail & m_mask);
+
+            if (m_sequences.get(index) != m_tail + 1) break;
+
+            final Slot slot = m_slots[index];
+
+            if (m_tail >= discardBefore)
+            {
+                addToBacklog(slot.m_device, slot.m_rssi, slot.m_record);
+            }
+
+            slot.m_device = null;
+            slot.m_record = null;
+            m_sequences.lazySet(index, m_tail + m_mask + 1);
+            m_tail++;
+        }
+
+        final int backlog = backlogSize();
+
+        m_backlogSize = backlog;
+        m_maxBacklog = Math.max(m_maxBacklog, backlog);
+
+        return backlog;
+    }
+
+    private void addToBacklog(final BluetoothDevice device, final int rssi, final byte[] scanRecord)
+    {
+        final String macAddress = device != null ? device.getAddress() : null;
+
+        if (macAddress == null)
+        {
+            m_backlog_noAddress.add(new Entry(device, rssi, scanRecord));
+
+            return;
+        }
+
+        final Entry existing = m_backlog.get(macAddress);
+
+        if (existing != null)
+        {
+            existing.m_rssi = rssi;
+            existing.m_record = scanRecord;
+            m_coalesced++;
+        }
+        else
+        {
+            m_backlog.put(macAddress, new Entry(device, rssi, scanRecord));
+        }
+    }
+
+    final int backlogSize()
+    {
+        return m_backlog.size() + m_backlog_noAddress.size();
+    }
+
+    /**
+     * Removes up to <code>max</code> entries from the backlog, oldest first, and adds them to the given list.
+     */
+    final int poll(final List<Entry> entries_out, final int max)
+    {
+        int count = 0;
+
+        while (count < max && m_backlog_noAddress.size() > 0)
+        {
+            entries_out.add(m_backlog_noAddress.remove(0));
+            count++;
+        }
+
+        final Iterator<Entry> it = m_backlog.values().iterator();
+
+        while (count < max && it.hasNext())
+        {
+            entries_out.add(it.next());
+            it.remove();
+            count++;
+        }
+
+        m_delivered += count;
+        m_backlogSize = backlogSize();
+
+        return count;
+    }
+
+    final ScanIngestStats getStats()
+    {
+        return new ScanIngestStats(m_received.get(), m_coalesced, m_dropped.get(), m_delivered, m_backlogSize, m_maxBacklog);
+    }
+
+
+    private static final class Slot
+    {
+        private BluetoothDevice m_device;
+        private int m_rssi;
+        private byte[] m_record;
+    }
+
+    static final class Entry
+    {
+        final BluetoothDevice m_device;
+        int m_rssi;
+        byte[] m_record;
+
+        private Entry(BluetoothDevice device, int rssi, byte[] record)
+        {
+            m_device = device;
+            m_rssi = rssi;
+            m_record = record;
+        }
+    }
+}
@@ -8,10 +8,8 @@ import com.idevicesinc.sweetblue.utils.Interval;
 import com.idevicesinc.sweetblue.utils.Utils;
 import com.idevicesinc.sweetblue.utils.Utils_String;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import static com.idevicesinc.sweetblue.BleManagerState.SCANNING;
 import static com.idevicesinc.sweetblue.BleManagerState.BOOST_SCANNING;
@@ -28,13 +26,24 @@ final class P_ScanManager
     private static final int Mode_CLASSIC = 1;
     private static final int Mode_BLE_POST_LOLLIPOP = 2;
 
+    //--- How many scan results can be waiting for the update thread before new ones get dropped.
+    private static final int INGEST_CAPACITY = 1024;
+    //--- Fraction of the update rate that can be spent processing scan results each tick, and the least amount of time allowed for it.
+    private static final double DRAIN_BUDGET_FRACTION = 0.5;
+    private static final long MIN_DRAIN_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    //--- Bounds for how many scan results are handed to BleManager at once.
+    private static final int MIN_DRAIN_BATCH = 4;
+    private static final int MAX_DRAIN_BATCH = 64;
+
 
     private final BleManager m_manager;
     private PreLollipopScanCallback m_preLollipopScanCallback;
     private PostLollipopScanCallback m_postLollipopScanCallback;
     private AtomicReference<BleScanApi> mCurrentApi;
     private AtomicReference<BleScanPower> mCurrentPower;
-    private Set<ScanInfo> m_scanEntries;
+    private final P_ScanIngestBuffer m_ingestBuffer;
+    private final List<P_ScanIngestBuffer.Entry> m_drainBatch = new ArrayList<>();
+    private int m_drainBatchSize = MIN_DRAIN_BATCH;
 
     private final int m_retryCountMax = 3;
     private boolean m_triedToStartScanAfterTurnedOn;
@@ -52,15 +61,13 @@ final class P_ScanManager
 
     private int m_mode;
 
-    private final Object entryLock = new Object();
-
 
     P_ScanManager(BleManager mgr)
     {
         m_manager = mgr;
         mCurrentApi = new AtomicReference<>(mgr.m_config.scanApi);
         mCurrentPower = new AtomicReference<>(BleScanPower.AUTO);
-        m_scanEntries = new HashSet<>();
+        m_ingestBuffer = new P_ScanIngestBuffer(INGEST_CAPACITY);
         m_preLollipopScanCallback = new PreLollipopScanCallback();
         if(Utils.isLollipop())
         {
@@ -164,25 +171,23 @@ final class P_ScanManager
 
     final void addScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord)
     {
-        final ScanInfo info = new ScanInfo(device, rssi, scanRecord);
-        synchronized (entryLock)
-        {
-            m_scanEntries.add(info);
-        }
+        m_ingestBuffer.offer(device, rssi, scanRecord);
     }
 
     final void addBatchScanResults(final List<L_Util.ScanResult> devices)
     {
-        synchronized (entryLock)
+        for (int i = 0; i < devices.size(); i++)
         {
-            for (L_Util.ScanResult res : devices)
-            {
-                final ScanInfo info = new ScanInfo(res.getDevice(), res.getRssi(), res.getRecord());
-                m_scanEntries.add(info);
-            }
+            final L_Util.ScanResult res = devices.get(i);
+            m_ingestBuffer.offer(res.getDevice(), res.getRssi(), res.getRecord());
         }
     }
 
+    final ScanIngestStats getIngestStats()
+    {
+        return m_ingestBuffer.getStats();
+    }
+
     final int getCurrentMode()
     {
         return m_mode;
@@ -201,9 +206,7 @@ final class P_ScanManager
             m_totalTimeScanning += timeStep;
             m_intervalTimeScanning += timeStep;
 
-            int size = m_scanEntries.size();
-
-            handleScanEntries(size);
+            handleScanEntries();
 
             if (!m_forceActualInfinite && m_doingInfiniteScan && Interval.isEnabled(m_manager.m_config.infiniteScanInterval) && m_intervalTimeScanning >= m_manager.m_config.infiniteScanInterval.secs())
             {
@@ -356,33 +359,30 @@ final class P_ScanManager
 
 
 
-    private void handleScanEntries(int size)
+    /**
+     * Hands scan results over to {@link BleManager} in batches, for as long as the time budget for this tick allows. The batch size adapts
+     * to how long each result has been taking to process, so a busy tick doesn't blow way past its budget, and a quiet one doesn't leave
+     * results waiting for no reason. Whatever isn't processed stays in the backlog (and keeps getting coalesced) until the next tick.
+     */
+    private void handleScanEntries()
     {
-        if ( size > 0 )
+        if (m_ingestBuffer.transfer() == 0) return;
+
+        final long startTime = System.nanoTime();
+        final long budget = Math.max(MIN_DRAIN_BUDGET_NANOS, (long) (TimeUnit.MILLISECONDS.toNanos(m_manager.m_config.autoUpdateRate.millis()) * DRAIN_BUDGET_FRACTION));
+
+        while (m_ingestBuffer.backlogSize() > 0 && m_manager.is(SCANNING))
         {
-            final List<ScanInfo> infos;
+            final long batchStart = System.nanoTime();
 
-            // Get our max scan entries to process based off the update loop rate, with
-            // a minimum of 5.
-            final long upRate = m_manager.m_config.autoUpdateRate.millis();
-            final int maxEntries = (int) Math.min(size, Math.max(5, upRate));
-            infos = new ArrayList<>(maxEntries);
-            synchronized (entryLock)
-            {
-                int current = 0;
-                final Iterator<ScanInfo> it = m_scanEntries.iterator();
-                while (it.hasNext() && current < maxEntries)
-                {
-                    infos.add(it.next());
-                    it.remove();
-                    current++;
-                }
-            }
+            m_drainBatch.clear();
+            final int count = m_ingestBuffer.poll(m_drainBatch, m_drainBatchSize);
 
-            final List<DiscoveryEntry> entries = new ArrayList<>(infos.size());
+            final List<DiscoveryEntry> entries = new ArrayList<>(count);
 
-            for (ScanInfo info : infos)
+            for (int i = 0; i < count; i++)
             {
+                final P_ScanIngestBuffer.Entry info = m_drainBatch.get(i);
                 final P_NativeDeviceLayer layer = m_manager.m_config.newDeviceLayer(BleDevice.NULL);
                 layer.setNativeDevice(info.m_device);
 
@@ -398,7 +398,18 @@ final class P_ScanManager
                 entries.add(DiscoveryEntry.newEntry(layer, info.m_rssi, info.m_record));
             }
 
+            m_drainBatch.clear();
+
             m_manager.onDiscoveredFromNativeStack(entries);
+
+            final long now = System.nanoTime();
+            final long remaining = budget - (now - startTime);
+
+            if (remaining <= 0) break;
+
+            final long perEntry = Math.max(1, (now - batchStart) / count);
+
+            m_drainBatchSize = (int) Math.max(MIN_DRAIN_BATCH, Math.min(MAX_DRAIN_BATCH, remaining / perEntry));
         }
     }
 
@@ -458,10 +469,7 @@ final class P_ScanManager
         }
         // Clear out the scan entries list so we don't end up caching old discoveries (it's possible there's a large amount of time between scans, so
         // what's held in the list may not actually be within range anymore, or some other data on it has changed).
-        synchronized (entryLock)
-        {
-            m_scanEntries.clear();
-        }
+        m_ingestBuffer.clear();
     }
 
     private boolean startScanPreLollipop(PA_StateTracker.E_Intent intent)
@@ -645,12 +653,12 @@ final class P_ScanManager
 
     private void startLScan(int mode)
     {
-        m_manager.managerLayer().startLScan(mode, m_manager.m_config.scanReportDelay, m_postLollipopScanCallback);
+        m_manager.managerLayer().startLScan(mode, m_manager.m_config.scanReportDelay, m_manager.m_filterMngr.getNativeFilters(m_manager.m_config), m_postLollipopScanCallback);
     }
 
     private void startMScan(int mode)
     {
-        m_manager.managerLayer().startMScan(mode, m_manager.m_config.scanReportDelay, m_postLollipopScanCallback);
+        m_manager.managerLayer().startMScan(mode, m_manager.m_config.scanReportDelay, m_manager.m_filterMngr.getNativeFilters(m_manager.m_config), m_postLollipopScanCallback);
     }
 
     private void fail()
@@ -737,45 +745,6 @@ final class P_ScanManager
         }
     }
 
-    private final static class ScanInfo
-    {
-        private final BluetoothDevice m_device;
-        private final int m_rssi;
-        private final byte[] m_record;
-
-        ScanInfo(BluetoothDevice device, int rssi, byte[] record)
-        {
-            m_device = device;
-            m_rssi = rssi;
-            m_record = record;
-        }
-
-        @Override
-        public int hashCode()
-        {
-            if (m_device != null)
-            {
-                return m_device.getAddress().hashCode();
-            }
-            return super.hashCode();
-        }
-
-        @Override
-        public boolean equals(Object obj)
-        {
-            if (obj == null)
-                return false;
-            if (obj instanceof ScanInfo)
-            {
-                ScanInfo other = (ScanInfo) obj;
-                if ((m_device == null && other.m_device != null) || (m_device != null && other.m_device == null))
-                    return false;
-                return m_device.getAddress().equals(other.m_device.getAddress());
-            }
-            return false;
-        }
-    }
-
     private final class PreLollipopScanCallback implements BluetoothAdapter.LeScanCallback
     {
 
@@ -34,6 +34,8 @@ final class P_StripedWriteDescriptorTransaction extends BleTransaction
     @Override protected final void start(BleDevice device)
     {
         final byte[] allData = m_data.getData();
+        //--- Descriptor writes are sliced up front, so a streamed source is done with right away.
+        P_DeviceServiceManager.closeIfChunked(m_data);
         int curIndex = 0;
         FutureData curData;
         while (curIndex < allData.length)
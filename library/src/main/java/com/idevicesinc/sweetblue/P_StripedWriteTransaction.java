@@ -3,26 +3,53 @@ package com.idevicesinc.sweetblue;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 
+import com.idevicesinc.sweetblue.utils.ChunkedData;
 import com.idevicesinc.sweetblue.utils.FutureData;
-import com.idevicesinc.sweetblue.utils.PresentData;
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.P_Const;
+import com.idevicesinc.sweetblue.utils.StreamData;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Stripes a write that's larger than the MTU over multiple {@link P_Task_Write}s. Chunks aren't sliced up front - each task pulls the next chunk
+ * from the source data when it actually executes, so if the data is a {@link ChunkedData}, only the chunks currently queued are ever held in memory. For {@link BleDevice.ReadWriteListener.Type#WRITE_NO_RESPONSE}, up to
+ * {@link BleDeviceConfig#stripedWriteNoResponseWindow} tasks are kept queued at once, so the next chunk is ready to go as soon as the previous one
+ * is accepted by the native stack.
+ */
 final class P_StripedWriteTransaction extends BleTransaction
 {
 
+    //--- How long to hold off on queueing more chunks after the native stack reports it's busy.
+    private static final double BUSY_BACKOFF = 0.05;
+    //--- How many times in a row a chunk can be rejected as busy before giving up on the whole write.
+    private static final int MAX_CONSECUTIVE_BUSY_RETRIES = 10;
+
 
     private final FutureData m_data;
     private final BluetoothGattCharacteristic m_characteristic;
     private final boolean m_requiresBonding;
     private final BleDevice.ReadWriteListener.Type m_writeType;
     private final BleDevice.ReadWriteListener m_listener;
-    private final List<P_Task_Write> m_writeList;
-    private final WriteListener m_internalListener;
+    private final List<Chunk> m_chunks;
     private final DescriptorFilter m_descriptorFilter;
 
+    private ChunkedData m_source;
+    private int m_totalBytes;
+    private int m_chunkSize;
+    private int m_chunkCount;
+    private int m_nextSequence;
+    private int m_ackedChunks;
+    private int m_pendingChunks;
+    private int m_maxWindow;
+    private int m_window;
+    private int m_maxPendingChunks;
+    private int m_busyRetries;
+    private int m_consecutiveBusyRetries;
+    private double m_backoffRemaining;
+
 
     P_StripedWriteTransaction(FutureData data, BluetoothGattCharacteristic characteristic, boolean requiresBonding, DescriptorFilter filter, BleDevice.ReadWriteListener.Type writeType, BleDevice.ReadWriteListener listener)
     {
@@ -32,64 +59,208 @@ final class P_StripedWriteTransaction extends BleTransaction
         m_listener = listener;
         m_descriptorFilter = filter;
         m_writeType = writeType;
-        m_writeList = new ArrayList<>();
-        m_internalListener = new WriteListener();
+        m_chunks = new ArrayList<>();
     }
 
 
     @Override protected final void start(BleDevice device)
     {
-        final byte[] allData = m_data.getData();
-        int curIndex = 0;
-        FutureData curData;
-        while (curIndex < allData.length)
-        {
-            int end = Math.min(allData.length, curIndex + device.getEffectiveWriteMtuSize());
-            curData = new PresentData(Arrays.copyOfRange(allData, curIndex, end));
-            final P_Task_Write task;
+        if (m_data instanceof ChunkedData)
+        {
+            m_source = (ChunkedData) m_data;
+        }
+        else
+        {
+            final byte[] allData = m_data.getData();
+            m_source = new StreamData(new ByteArrayInputStream(allData), allData.length);
+        }
+        m_totalBytes = m_source.length() - m_source.position();
+        m_chunkSize = Math.max(1, device.getEffectiveWriteMtuSize());
+        m_chunkCount = (m_totalBytes + m_chunkSize - 1) / m_chunkSize;
+
+        if (m_writeType == BleDevice.ReadWriteListener.Type.WRITE_NO_RESPONSE)
+        {
+            m_maxWindow = Math.max(1, BleDeviceConfig.integer(device.conf_device().stripedWriteNoResponseWindow, device.conf_mngr().stripedWriteNoResponseWindow, BleDeviceConfig.DEFAULT_STRIPED_WRITE_NO_RESPONSE_WINDOW));
+        }
+        else
+        {
+            m_maxWindow = 1;
+        }
+        m_window = m_maxWindow;
+
+        queueChunks();
+    }
+
+    @Override protected final void onEnd(BleDevice device, EndReason reason)
+    {
+        if (m_source != null)
+        {
+            m_source.close();
+        }
+    }
+
+    @Override protected final synchronized void update(double timeStep)
+    {
+        if (m_backoffRemaining > 0.0)
+        {
+            m_backoffRemaining -= timeStep;
+
+            if (m_backoffRemaining <= 0.0)
+            {
+                queueChunks();
+            }
+        }
+    }
+
+    private boolean isWindowed()
+    {
+        return m_maxWindow > 1;
+    }
+
+    private synchronized void queueChunks()
+    {
+        if (!isRunning() || m_backoffRemaining > 0.0) return;
+
+        final BleDevice device = getDevice();
+
+        while (m_pendingChunks < m_window && m_pendingChunks < m_chunkCount - m_ackedChunks)
+        {
+            final Chunk chunk = new Chunk();
             if (m_descriptorFilter == null)
             {
-                task = new P_Task_Write(device, m_characteristic, curData, m_requiresBonding, m_writeType, m_internalListener, device.m_txnMngr.getCurrent(), device.getOverrideReadWritePriority());
+                chunk.m_task = new P_Task_Write(device, m_characteristic, chunk, m_requiresBonding, m_writeType, chunk, device.m_txnMngr.getCurrent(), device.getOverrideReadWritePriority());
             }
             else
             {
-                task = new P_Task_Write(device, m_characteristic.getService().getUuid(), m_characteristic.getUuid(), m_descriptorFilter, curData, m_requiresBonding, m_writeType, m_internalListener, device.m_txnMngr.getCurrent(), device.getOverrideReadWritePriority());
+                chunk.m_task = new P_Task_Write(device, m_characteristic.getService().getUuid(), m_characteristic.getUuid(), m_descriptorFilter, chunk, m_requiresBonding, m_writeType, chunk, device.m_txnMngr.getCurrent(), device.getOverrideReadWritePriority());
             }
-            m_writeList.add(task);
+            m_chunks.add(chunk);
+            m_pendingChunks++;
+            m_maxPendingChunks = Math.max(m_maxPendingChunks, m_pendingChunks);
 
-            curIndex = end;
+            device.queue().add(chunk.m_task);
         }
-        device.queue().add(m_writeList.remove(0));
     }
 
-    private final class WriteListener implements BleDevice.ReadWriteListener
+    /**
+     * Returns the data the next executing chunk should send. Normally this is just the next chunk read from the source, but if an earlier chunk failed
+     * to go out (because the native stack was busy), its data gets picked up first, so the data always goes out in order.
+     */
+    private synchronized Chunk claimData(final Chunk claimer)
     {
+        Chunk failed = null;
+        for (int i = 0; i < m_chunks.size(); i++)
+        {
+            final Chunk ith = m_chunks.get(i);
+            if (ith.m_sequence != -1 && ith.m_task.getState() == PE_TaskState.FAILED && (failed == null || ith.m_sequence < failed.m_sequence))
+            {
+                failed = ith;
+            }
+        }
 
-        @Override public final void onEvent(BleDevice.ReadWriteListener.ReadWriteEvent e)
+        if (failed != null)
+        {
+            m_chunks.remove(failed);
+
+            claimer.m_sequence = failed.m_sequence;
+            claimer.m_chunkData = failed.m_chunkData;
+        }
+        else
         {
-            if (e.wasSuccess())
+            claimer.m_sequence = m_nextSequence++;
+            claimer.m_chunkData = m_source.nextChunk(m_chunkSize);
+        }
+
+        return claimer;
+    }
+
+    private synchronized void onChunkEvent(final Chunk chunk, final BleDevice.ReadWriteListener.ReadWriteEvent e)
+    {
+        if (!isRunning()) return;
+
+        m_pendingChunks--;
+
+        if (e.wasSuccess())
+        {
+            m_chunks.remove(chunk);
+            m_ackedChunks++;
+            m_consecutiveBusyRetries = 0;
+
+            if (m_ackedChunks >= m_chunkCount)
             {
-                if (m_writeList.size() > 0)
-                {
-                    getDevice().queue().add(m_writeList.remove(0));
-                }
-                else
+                final BleDevice device = getDevice();
+                device.onStripedWriteFinished(new WriteThroughput(m_totalBytes, m_chunkCount, m_busyRetries, m_maxPendingChunks, Interval.secs(getTime()), device.getConnectionPriority()));
+                succeed();
+                if (m_listener != null)
                 {
-                    succeed();
-                    if (m_listener != null)
-                    {
-                        m_listener.onEvent(e);
-                    }
+                    m_listener.onEvent(e);
                 }
             }
             else
             {
-                fail();
-                if (m_listener != null)
+                // Grow the window back one chunk at a time after the stack was busy
+                m_window = Math.min(m_maxWindow, m_window + 1);
+                queueChunks();
+            }
+        }
+        else if (isWindowed() && e.status() == BleDevice.ReadWriteListener.Status.FAILED_TO_SEND_OUT && m_consecutiveBusyRetries < MAX_CONSECUTIVE_BUSY_RETRIES)
+        {
+            // The native stack's buffer is full. The chunk's data gets sent again by the next task (see claimData()), so back off for
+            // a bit with only one chunk queued at a time.
+            m_busyRetries++;
+            m_consecutiveBusyRetries++;
+            m_window = 1;
+            m_backoffRemaining = BUSY_BACKOFF;
+        }
+        else
+        {
+            fail();
+            clearQueuedChunks();
+            if (m_listener != null)
+            {
+                m_listener.onEvent(e);
+            }
+        }
+    }
+
+    private void clearQueuedChunks()
+    {
+        for (int i = 0; i < m_chunks.size(); i++)
+        {
+            final P_Task_Write task = m_chunks.get(i).m_task;
+            if (task.getState() == PE_TaskState.QUEUED)
+            {
+                getDevice().queue().clearQueueOf(task);
+            }
+        }
+        m_chunks.clear();
+    }
+
+    private final class Chunk implements FutureData, BleDevice.ReadWriteListener
+    {
+        private P_Task_Write m_task;
+        private int m_sequence = -1;
+        private byte[] m_chunkData = null;
+
+        @Override public final byte[] getData()
+        {
+            // The data is only claimed once, so if this task gets interrupted and executed again, it will send the same chunk.
+            if (m_sequence == -1)
+            {
+                claimData(this);
+                if (m_chunkData == null)
                 {
-                    m_listener.onEvent(e);
+                    // If there's still data left, the source failed to read it, and the empty chunk will fail the write with Status.EMPTY_DATA.
+                    getDevice().getManager().ASSERT(m_source.position() < m_source.length(), "Striped write task executed with no data left to send.");
+                    m_chunkData = P_Const.EMPTY_BYTE_ARRAY;
                 }
             }
+            return m_chunkData;
+        }
+
+        @Override public final void onEvent(BleDevice.ReadWriteListener.ReadWriteEvent e)
+        {
+            onChunkEvent(this, e);
         }
     }
 }
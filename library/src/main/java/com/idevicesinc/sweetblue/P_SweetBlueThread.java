@@ -1,21 +1,37 @@
 package com.idevicesinc.sweetblue;
 
-import java.util.Iterator;
-import java.util.concurrent.LinkedBlockingQueue;
-
-
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Implementation of {@link P_SweetHandler} backed by its own thread. Runnables are kept in a deadline-ordered set, so the
+ * thread sleeps until either the soonest deadline comes up, or something new is posted which should run before it. This
+ * avoids polling the queue, and lets {@link #removeCallbacks(Runnable)} run in O(log n) time.
+ */
 final class P_SweetBlueThread implements P_SweetHandler
 {
 
-    private final LinkedBlockingQueue<SweetRunnable> m_runnables;
+    private final TreeSet<SweetRunnable> m_runnables;
+    private final IdentityHashMap<Runnable, ArrayList<SweetRunnable>> m_runnableIndex;
+    private final ReentrantLock m_lock;
+    private final Condition m_condition;
 
-    private Thread thread;
-    private boolean m_running;
+    private final Thread thread;
+    private volatile boolean m_running;
+    private long m_sequence;
 
 
     P_SweetBlueThread()
     {
-        m_runnables = new LinkedBlockingQueue<>();
+        m_runnables = new TreeSet<>();
+        m_runnableIndex = new IdentityHashMap<>();
+        m_lock = new ReentrantLock();
+        m_condition = m_lock.newCondition();
         m_running = true;
         thread = new Thread(new HandlerRunner());
         thread.start();
@@ -24,26 +40,55 @@ final class P_SweetBlueThread implements P_SweetHandler
 
     @Override public void post(Runnable action)
     {
-        m_runnables.add(new SweetRunnable(action, System.currentTimeMillis(), 0));
+        postDelayed(action, 0);
     }
 
     @Override public void postDelayed(Runnable action, long delay)
     {
-        m_runnables.add(new SweetRunnable(action, System.currentTimeMillis(), delay));
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        m_lock.lock();
+        try
+        {
+            final SweetRunnable run = new SweetRunnable(action, deadline, m_sequence++);
+            m_runnables.add(run);
+            ArrayList<SweetRunnable> list = m_runnableIndex.get(action);
+            if (list == null)
+            {
+                list = new ArrayList<>(1);
+                m_runnableIndex.put(action, list);
+            }
+            list.add(run);
+            // Only wake up the thread if this runnable is now the soonest one to run. Otherwise, the thread is already waiting
+            // on an earlier deadline, and will pick this one up when it gets there.
+            if (m_runnables.first() == run)
+            {
+                m_condition.signal();
+            }
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
     }
 
     @Override public void removeCallbacks(Runnable action)
     {
-        Iterator<SweetRunnable> it = m_runnables.iterator();
-        while (it.hasNext())
+        m_lock.lock();
+        try
         {
-            SweetRunnable run = it.next();
-            if (run.m_runnable == action)
+            final ArrayList<SweetRunnable> list = m_runnableIndex.remove(action);
+            if (list != null)
             {
-                run.cancel();
-                it.remove();
+                for (int i = 0; i < list.size(); i++)
+                {
+                    m_runnables.remove(list.get(i));
+                }
             }
         }
+        finally
+        {
+            m_lock.unlock();
+        }
     }
 
     @Override public Thread getThread()
@@ -53,7 +98,16 @@ final class P_SweetBlueThread implements P_SweetHandler
 
     public void quit()
     {
-        m_running = false;
+        m_lock.lock();
+        try
+        {
+            m_running = false;
+            m_condition.signal();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
         if (Thread.currentThread() != thread)
         {
             try
@@ -65,47 +119,100 @@ final class P_SweetBlueThread implements P_SweetHandler
         }
     }
 
-    private final static class SweetRunnable
+    /**
+     * Returns the number of runnables which are waiting to be run. Used for unit tests.
+     */
+    final int getPendingCount()
     {
-        private final Runnable m_runnable;
-        private final long m_postedTime;
-        private final long m_delay;
-        private boolean m_canceled;
-
-
-        public SweetRunnable(Runnable action, long postedTime, long delay)
+        m_lock.lock();
+        try
         {
-            m_runnable = action;
-            m_postedTime = postedTime;
-            m_delay = delay;
+            return m_runnables.size();
         }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
 
-        public void run()
+    /**
+     * Removes the soonest runnable, if its deadline has passed. Otherwise, this blocks until the deadline comes up, or something
+     * gets posted which should run sooner. Returns <code>null</code> if the thread has been told to quit.
+     */
+    private SweetRunnable takeNext()
+    {
+        m_lock.lock();
+        try
         {
-            if (!m_canceled)
+            while (m_running)
             {
-                m_runnable.run();
+                if (m_runnables.isEmpty())
+                {
+                    m_condition.awaitUninterruptibly();
+                }
+                else
+                {
+                    final SweetRunnable run = m_runnables.first();
+                    final long wait = run.m_deadline - System.nanoTime();
+                    if (wait <= 0)
+                    {
+                        m_runnables.pollFirst();
+                        final ArrayList<SweetRunnable> list = m_runnableIndex.get(run.m_runnable);
+                        if (list != null)
+                        {
+                            list.remove(run);
+                            if (list.isEmpty())
+                            {
+                                m_runnableIndex.remove(run.m_runnable);
+                            }
+                        }
+                        return run;
+                    }
+                    try
+                    {
+                        m_condition.awaitNanos(wait);
+                    } catch (InterruptedException e)
+                    {
+                    }
+                }
             }
+            return null;
         }
-
-        public void cancel()
+        finally
         {
-            m_canceled = true;
+            m_lock.unlock();
         }
+    }
+
+    private final static class SweetRunnable implements Comparable<SweetRunnable>
+    {
+        private final Runnable m_runnable;
+        private final long m_deadline;
+        private final long m_sequence;
+
 
-        public boolean canceled()
+        public SweetRunnable(Runnable action, long deadline, long sequence)
         {
-            return m_canceled;
+            m_runnable = action;
+            m_deadline = deadline;
+            m_sequence = sequence;
         }
 
-        public boolean ready(long curTime)
+        public void run()
         {
-            return m_canceled || (curTime - m_postedTime) > m_delay;
+            m_runnable.run();
         }
 
-        public boolean ready()
+        @Override public int compareTo(SweetRunnable other)
         {
-            return m_canceled || ready(System.currentTimeMillis());
+            // Compare the difference, rather than the raw values, as System.nanoTime() is allowed to overflow.
+            final long diff = m_deadline - other.m_deadline;
+            if (diff != 0)
+            {
+                return diff < 0 ? -1 : 1;
+            }
+            // Runnables posted for the same deadline run in the order they were posted
+            return m_sequence < other.m_sequence ? -1 : (m_sequence == other.m_sequence ? 0 : 1);
         }
     }
 
@@ -113,29 +220,10 @@ final class P_SweetBlueThread implements P_SweetHandler
     {
         @Override public void run()
         {
-            while (m_running)
+            SweetRunnable run;
+            while ((run = takeNext()) != null)
             {
-                if (!m_runnables.isEmpty())
-                {
-                    long curTime = System.currentTimeMillis();
-                    Iterator<SweetRunnable> it = m_runnables.iterator();
-                    while (it.hasNext())
-                    {
-                        SweetRunnable run = it.next();
-                        if (run.ready(curTime))
-                        {
-                            it.remove();
-                            run.run();
-                        }
-                    }
-                }
-                // Sleep for a short period, so we don't hog the cpu
-                try
-                {
-                    Thread.sleep(5);
-                } catch (Exception e)
-                {
-                }
+                run.run();
             }
         }
     }
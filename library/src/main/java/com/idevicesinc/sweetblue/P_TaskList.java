@@ -0,0 +1,450 @@
+package com.idevicesinc.sweetblue;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * The backing list of a {@link P_TaskQueue} lane. Queue order can't simply be derived from priority (tasks get interrupted back to the front,
+ * and some {@link PA_Task#isMoreImportantThan(PA_Task)} overrides break ties their own way), so this keeps tasks in an implicit treap ordered by
+ * position. Each node also tracks the lowest {@link PE_TaskPriority} in its subtree, which lets {@link #firstIndexBelow(PE_TaskPriority, int)} find
+ * where a new task goes in O(log n) time, and insertion/removal at any index is O(log n) as well. On top of that, tasks are indexed by their class,
+ * device, and server, so lookups and bulk clears only have to look at the tasks which can possibly match.
+ * <br><br>
+ * NOTE: A given task instance is only ever queued once, so tasks are looked up by identity. The device and server indexes are keyed by instance
+ * as well, which is fine as the library only ever keeps one {@link BleDevice}/{@link BleServer} instance around for a given native device/server.
+ */
+final class P_TaskList extends AbstractList<PA_Task>
+{
+	private static final class Node
+	{
+		private final PA_Task m_task;
+		private final int m_priority;
+		private final int m_heapKey;
+
+		private Node m_left;
+		private Node m_right;
+		private Node m_parent;
+		private int m_size = 1;
+		private int m_minPriority;
+
+		Node(PA_Task task, int heapKey)
+		{
+			m_task = task;
+			m_priority = task.getPriority().ordinal();
+			m_minPriority = m_priority;
+			m_heapKey = heapKey;
+		}
+	}
+
+	private final Random m_random = new Random();
+	private final IdentityHashMap<PA_Task, Node> m_nodes = new IdentityHashMap<>();
+	private final HashMap<Class<?>, LinkedHashSet<Node>> m_byClass = new HashMap<>();
+	private final HashMap<BleDevice, LinkedHashSet<Node>> m_byDevice = new HashMap<>();
+	private final HashMap<BleServer, LinkedHashSet<Node>> m_byServer = new HashMap<>();
+
+	private Node m_root;
+
+	//--- Results of split(), to avoid allocating a pair for every call.
+	private Node m_splitLeft;
+	private Node m_splitRight;
+
+
+	@Override public final int size()
+	{
+		return size(m_root);
+	}
+
+	@Override public final PA_Task get(int index)
+	{
+		checkIndex(index, size());
+
+		return nodeAt(index).m_task;
+	}
+
+	@Override public final void add(int index, PA_Task task)
+	{
+		checkIndex(index, size() + 1);
+
+		final Node node = new Node(task, m_random.nextInt());
+
+		split(m_root, index);
+		final Node right = m_splitRight;
+		setRoot(merge(merge(m_splitLeft, node), right));
+
+		m_nodes.put(task, node);
+		addToIndex(m_byClass, task.getClass(), node);
+		addToIndex(m_byDevice, task.getDevice(), node);
+		addToIndex(m_byServer, task.getServer(), node);
+
+		modCount++;
+	}
+
+	@Override public final PA_Task remove(int index)
+	{
+		checkIndex(index, size());
+
+		split(m_root, index);
+		final Node left = m_splitLeft;
+		split(m_splitRight, 1);
+		final Node node = m_splitLeft;
+		setRoot(merge(left, m_splitRight));
+
+		m_nodes.remove(node.m_task);
+		removeFromIndex(m_byClass, node.m_task.getClass(), node);
+		removeFromIndex(m_byDevice, node.m_task.getDevice(), node);
+		removeFromIndex(m_byServer, node.m_task.getServer(), node);
+
+		node.m_left = node.m_right = node.m_parent = null;
+
+		modCount++;
+
+		return node.m_task;
+	}
+
+	@Override public final void clear()
+	{
+		m_root = null;
+		m_nodes.clear();
+		m_byClass.clear();
+		m_byDevice.clear();
+		m_byServer.clear();
+
+		modCount++;
+	}
+
+	/**
+	 * Returns the index of the first task at or after <code>fromIndex</code> whose priority is lower than the one given, or -1 if there is none.
+	 */
+	final int firstIndexBelow(PE_TaskPriority priority, int fromIndex)
+	{
+		return firstIndexBelow(m_root, 0, Math.max(0, fromIndex), priority.ordinal());
+	}
+
+	/**
+	 * Returns all tasks in this list which are an instance of the given class, in queue order.
+	 */
+	final ArrayList<PA_Task> getAll(Class<? extends PA_Task> taskClass)
+	{
+		return find(taskClass, null, null, null, -1);
+	}
+
+	/**
+	 * Returns all tasks which are a match according to {@link PU_TaskQueue#isMatch(PA_Task, Class, BleManager, BleDevice, BleServer)}, in queue
+	 * order. If <code>ordinal</code> is zero or more, only tasks with an ordinal at or below it are returned.
+	 */
+	final ArrayList<PA_Task> find(Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable, int ordinal)
+	{
+		return toTasksInQueueOrder(findNodes(taskClass, mngr_nullable, device_nullable, server_nullable, ordinal));
+	}
+
+	/**
+	 * Returns the index of the first task which is a match according to {@link PU_TaskQueue#isMatch(PA_Task, Class, BleManager, BleDevice, BleServer)},
+	 * or -1 if there isn't one.
+	 */
+	final int indexOfFirst(Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable)
+	{
+		final ArrayList<Node> matches = findNodes(taskClass, mngr_nullable, device_nullable, server_nullable, -1);
+
+		int index = -1;
+
+		for( int i = 0; i < matches.size(); i++ )
+		{
+			final int rank = rankOf(matches.get(i));
+
+			index = index == -1 ? rank : Math.min(index, rank);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns the index of the given task, or -1 if it's not in this list. Unlike the default implementation, this doesn't have to walk the list.
+	 */
+	@Override public final int indexOf(Object object)
+	{
+		final Node node = m_nodes.get(object);
+
+		return node != null ? rankOf(node) : -1;
+	}
+
+	@Override public final int lastIndexOf(Object object)
+	{
+		return indexOf(object);
+	}
+
+	@Override public final boolean contains(Object object)
+	{
+		return m_nodes.containsKey(object);
+	}
+
+	@Override public final boolean remove(Object object)
+	{
+		final int index = indexOf(object);
+
+		if( index == -1 )  return false;
+
+		remove(index);
+
+		return true;
+	}
+
+	private ArrayList<Node> findNodes(Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable, int ordinal)
+	{
+		final ArrayList<Node> matches = new ArrayList<>();
+
+		if( mngr_nullable == null && device_nullable != null )
+		{
+			addMatches(m_byDevice.get(device_nullable), taskClass, mngr_nullable, device_nullable, server_nullable, ordinal, matches);
+		}
+		else if( mngr_nullable == null && server_nullable != null )
+		{
+			addMatches(m_byServer.get(server_nullable), taskClass, mngr_nullable, device_nullable, server_nullable, ordinal, matches);
+		}
+		else
+		{
+			for( Map.Entry<Class<?>, LinkedHashSet<Node>> entry : m_byClass.entrySet() )
+			{
+				if( taskClass.isAssignableFrom(entry.getKey()) )
+				{
+					addMatches(entry.getValue(), taskClass, mngr_nullable, device_nullable, server_nullable, ordinal, matches);
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	private void addMatches(LinkedHashSet<Node> nodes, Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable, int ordinal, ArrayList<Node> matches_out)
+	{
+		if( nodes == null )  return;
+
+		for( Node node : nodes )
+		{
+			if( ordinal <= -1 || node.m_task.getOrdinal() <= ordinal )
+			{
+				if( PU_TaskQueue.isMatch(node.m_task, taskClass, mngr_nullable, device_nullable, server_nullable) )
+				{
+					matches_out.add(node);
+				}
+			}
+		}
+	}
+
+	private ArrayList<PA_Task> toTasksInQueueOrder(ArrayList<Node> nodes)
+	{
+		final ArrayList<PA_Task> tasks = new ArrayList<>(nodes.size());
+
+		if( nodes.size() == 1 )
+		{
+			tasks.add(nodes.get(0).m_task);
+		}
+		else if( nodes.size() > 1 )
+		{
+			final HashMap<Node, Integer> ranks = new HashMap<>(nodes.size() * 2);
+
+			for( int i = 0; i < nodes.size(); i++ )
+			{
+				ranks.put(nodes.get(i), rankOf(nodes.get(i)));
+			}
+
+			Collections.sort(nodes, new Comparator<Node>()
+			{
+				@Override public int compare(Node lhs, Node rhs)
+				{
+					return ranks.get(lhs) - ranks.get(rhs);
+				}
+			});
+
+			for( int i = 0; i < nodes.size(); i++ )
+			{
+				tasks.add(nodes.get(i).m_task);
+			}
+		}
+
+		return tasks;
+	}
+
+	private static <K> void addToIndex(HashMap<K, LinkedHashSet<Node>> index, K key_nullable, Node node)
+	{
+		if( key_nullable == null )  return;
+
+		LinkedHashSet<Node> nodes = index.get(key_nullable);
+
+		if( nodes == null )
+		{
+			nodes = new LinkedHashSet<>();
+			index.put(key_nullable, nodes);
+		}
+
+		nodes.add(node);
+	}
+
+	private static <K> void removeFromIndex(HashMap<K, LinkedHashSet<Node>> index, K key_nullable, Node node)
+	{
+		if( key_nullable == null )  return;
+
+		final LinkedHashSet<Node> nodes = index.get(key_nullable);
+
+		if( nodes == null )  return;
+
+		nodes.remove(node);
+
+		//--- Dropping empty buckets, so we don't hang on to old devices/servers, and so class lookups don't have to skip over them.
+		if( nodes.isEmpty() )
+		{
+			index.remove(key_nullable);
+		}
+	}
+
+	private static void checkIndex(int index, int bound)
+	{
+		if( index < 0 || index >= bound )
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Bound: " + bound);
+		}
+	}
+
+	private static int size(Node node)
+	{
+		return node == null ? 0 : node.m_size;
+	}
+
+	private static int minPriority(Node node)
+	{
+		return node == null ? Integer.MAX_VALUE : node.m_minPriority;
+	}
+
+	private static void refresh(Node node)
+	{
+		node.m_size = 1 + size(node.m_left) + size(node.m_right);
+		node.m_minPriority = Math.min(node.m_priority, Math.min(minPriority(node.m_left), minPriority(node.m_right)));
+
+		if( node.m_left != null )  node.m_left.m_parent = node;
+		if( node.m_right != null )  node.m_right.m_parent = node;
+	}
+
+	private void setRoot(Node root_nullable)
+	{
+		m_root = root_nullable;
+
+		if( m_root != null )
+		{
+			m_root.m_parent = null;
+		}
+	}
+
+	private Node nodeAt(int index)
+	{
+		Node node = m_root;
+
+		while( node != null )
+		{
+			final int leftSize = size(node.m_left);
+
+			if( index < leftSize )
+			{
+				node = node.m_left;
+			}
+			else if( index == leftSize )
+			{
+				return node;
+			}
+			else
+			{
+				index -= leftSize + 1;
+				node = node.m_right;
+			}
+		}
+
+		return null;
+	}
+
+	private static int rankOf(Node node)
+	{
+		int rank = size(node.m_left);
+
+		while( node.m_parent != null )
+		{
+			if( node.m_parent.m_right == node )
+			{
+				rank += size(node.m_parent.m_left) + 1;
+			}
+
+			node = node.m_parent;
+		}
+
+		return rank;
+	}
+
+	private static int firstIndexBelow(Node node, int offset, int fromIndex, int priority)
+	{
+		if( node == null || node.m_minPriority >= priority || offset + node.m_size <= fromIndex )  return -1;
+
+		final int index = firstIndexBelow(node.m_left, offset, fromIndex, priority);
+
+		if( index != -1 )  return index;
+
+		final int position = offset + size(node.m_left);
+
+		if( position >= fromIndex && node.m_priority < priority )  return position;
+
+		return firstIndexBelow(node.m_right, position + 1, fromIndex, priority);
+	}
+
+	/**
+	 * Splits the given subtree so that the first <code>count</code> nodes end up in {@link #m_splitLeft}, and the rest in {@link #m_splitRight}.
+	 */
+	private void split(Node node, int count)
+	{
+		if( node == null )
+		{
+			m_splitLeft = m_splitRight = null;
+
+			return;
+		}
+
+		if( size(node.m_left) >= count )
+		{
+			split(node.m_left, count);
+			node.m_left = m_splitRight;
+			refresh(node);
+			m_splitRight = node;
+		}
+		else
+		{
+			split(node.m_right, count - size(node.m_left) - 1);
+			node.m_right = m_splitLeft;
+			refresh(node);
+			m_splitLeft = node;
+		}
+	}
+
+	private static Node merge(Node left, Node right)
+	{
+		if( left == null )  return right;
+		if( right == null )  return left;
+
+		if( left.m_heapKey > right.m_heapKey )
+		{
+			left.m_right = merge(left.m_right, right);
+			refresh(left);
+
+			return left;
+		}
+		else
+		{
+			right.m_left = merge(left, right.m_left);
+			refresh(right);
+
+			return right;
+		}
+	}
+}
@@ -2,23 +2,63 @@ package com.idevicesinc.sweetblue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import com.idevicesinc.sweetblue.utils.ForEach_Breakable;
 import com.idevicesinc.sweetblue.utils.Interval;
 
 
 final class P_TaskQueue
 {
-	private final ArrayList<PA_Task> m_queue = new ArrayList<PA_Task>();
-	private final AtomicReference<PA_Task> m_current;
+	private static final String TAG = P_TaskQueue.class.getSimpleName();
+
+	/**
+	 * A queue of tasks, of which only one can be current at a time. The {@link P_TaskQueue} always has one global lane. When
+	 * {@link BleManagerConfig#useDeviceTaskLanes} is enabled, each {@link BleDevice} also gets its own lane for tasks which only
+	 * require an existing connection (see {@link PA_Task#isDeviceLaneTask()}).
+	 */
+	private static final class Lane
+	{
+		private final BleDevice m_device;
+		private final P_TaskList m_queue = new P_TaskList();
+		private final AtomicReference<PA_Task> m_current = new AtomicReference<>(null);
+		private double m_timeSinceEnding = 0.0;
+
+		Lane(BleDevice device_nullable)
+		{
+			m_device = device_nullable;
+		}
+
+		PA_Task getCurrent()
+		{
+			return m_current.get();
+		}
+
+		boolean isIdle()
+		{
+			return m_current.get() == null && m_queue.isEmpty();
+		}
+
+		@Override public String toString()
+		{
+			final String current = m_current.get() != null ? m_current.get().toString() : "no current task";
+			final String queue = m_queue.size() > 0 ? m_queue.toString() : "[queue empty]";
+
+			return current + " " + queue;
+		}
+	}
+
+	private final Lane m_globalLane;
+	private final P_TaskList m_queue;
+	private final ConcurrentHashMap<BleDevice, Lane> m_deviceLanes = new ConcurrentHashMap<>();
+	private final ArrayList<Lane> m_deviceLaneList = new ArrayList<>();
+	private int m_inFlightCount;
 	private long m_updateCount;
 	private final BleManager m_mngr;
 	private double m_time = 0.0;
-	private double m_timeSinceEnding = 0.0;
 	
 	private Handler m_executeHandler = null;
 	
@@ -29,7 +69,8 @@ final class P_TaskQueue
 	{
 		m_mngr = mngr;
 
-		m_current = new AtomicReference<>(null);
+		m_globalLane = new Lane(null);
+		m_queue = m_globalLane.m_queue;
 		
 		initHandler(); 
 	}
@@ -78,16 +119,16 @@ final class P_TaskQueue
 		thread.start();
 	}
 
-	private boolean tryCancellingCurrentTask(PA_Task newTask)
+	private boolean tryCancellingCurrentTask(Lane lane, PA_Task newTask)
 	{
-		if( getCurrent() != null && getCurrent().isCancellableBy(newTask) )
+		if( lane.getCurrent() != null && lane.getCurrent().isCancellableBy(newTask) )
 		{
 //			int soonestSpot = U_BtTaskQueue.findSoonestSpot(m_queue, newTask);
 
 //			if( soonestSpot == 0 )
 			{
-				endCurrentTask(PE_TaskState.CANCELLED);
-				addAtIndex(newTask, 0);
+				endCurrentTask(lane, PE_TaskState.CANCELLED);
+				addAtIndex(lane, newTask, 0);
 
 				return true;
 			}
@@ -96,18 +137,18 @@ final class P_TaskQueue
 		return false;
 	}
 
-	private boolean tryInterruptingCurrentTask(PA_Task newTask)
+	private boolean tryInterruptingCurrentTask(Lane lane, PA_Task newTask)
 	{
-		if( getCurrent() != null && getCurrent().isInterruptableBy(newTask) )
+		if( lane.getCurrent() != null && lane.getCurrent().isInterruptableBy(newTask) )
 		{
 //			int soonestSpot = U_BtTaskQueue.findSoonestSpot(m_queue, newTask);
 
 //			if( soonestSpot == 0 )
 			{
-				PA_Task current_saved = getCurrent();
-				endCurrentTask(PE_TaskState.INTERRUPTED);
-				addAtIndex(newTask, 0);
-				addAtIndex(current_saved, 1);
+				PA_Task current_saved = lane.getCurrent();
+				endCurrentTask(lane, PE_TaskState.INTERRUPTED);
+				addAtIndex(lane, newTask, 0);
+				addAtIndex(lane, current_saved, 1);
 
 				return true;
 			}
@@ -116,13 +157,13 @@ final class P_TaskQueue
 		return false;
 	}
 
-	private boolean tryInsertingIntoQueue(PA_Task newTask)
+	private boolean tryInsertingIntoQueue(Lane lane, PA_Task newTask)
 	{
-		int soonestSpot = PU_TaskQueue.findSoonestSpot(m_queue, newTask);
+		int soonestSpot = PU_TaskQueue.findSoonestSpot(lane.m_queue, newTask);
 
 		if( soonestSpot >= 0 )
 		{
-			addAtIndex(newTask, soonestSpot);
+			addAtIndex(lane, newTask, soonestSpot);
 
 			return true;
 		}
@@ -130,9 +171,52 @@ final class P_TaskQueue
 		return false;
 	}
 
-	private void addToBack(PA_Task task)
+	private void addToBack(Lane lane, PA_Task task)
+	{
+		addAtIndex(lane, task, -1);
+	}
+
+	/**
+	 * When a global task gets added, it may need to cancel or interrupt what's currently going on in device lanes (for instance turning BLE off cancels everything,
+	 * and connecting interrupts armed reads/writes). Tasks tied to a device only affect that device's lane; manager-level tasks affect every lane.
+	 */
+	private void cancelOrInterruptDeviceLanes(PA_Task newTask)
+	{
+		if( m_deviceLaneList.isEmpty() )  return;
+
+		if( newTask.getDevice() != null )
+		{
+			final Lane lane = m_deviceLanes.get(newTask.getDevice());
+
+			if( lane != null )
+			{
+				cancelOrInterruptDeviceLane(lane, newTask);
+			}
+		}
+		else
+		{
+			for( int i = 0; i < m_deviceLaneList.size(); i++ )
+			{
+				cancelOrInterruptDeviceLane(m_deviceLaneList.get(i), newTask);
+			}
+		}
+	}
+
+	private void cancelOrInterruptDeviceLane(Lane lane, PA_Task newTask)
 	{
-		addAtIndex(task, -1);
+		final PA_Task current = lane.getCurrent();
+
+		if( current == null )  return;
+
+		if( current.isCancellableBy(newTask) )
+		{
+			endCurrentTask(lane, PE_TaskState.CANCELLED);
+		}
+		else if( current.isInterruptableBy(newTask) )
+		{
+			endCurrentTask(lane, PE_TaskState.INTERRUPTED);
+			addAtIndex(lane, current, 0);
+		}
 	}
 	
 	public final void softlyCancelTasks(final PA_Task task)
@@ -142,37 +226,69 @@ final class P_TaskQueue
 			@Override
 			public void run()
 			{
-				for( int i = 0; i < m_queue.size()-1; i++ )
+				softlyCancelTasks(m_globalLane, task);
+
+				if( m_deviceLaneList.isEmpty() )  return;
+
+				if( task.getDevice() != null )
 				{
-					PA_Task ithTask = m_queue.get(i);
-					if( ithTask.isSoftlyCancellableBy(task) )
+					final Lane lane = m_deviceLanes.get(task.getDevice());
+
+					if( lane != null )
 					{
-						ithTask.attemptToSoftlyCancel(task);
+						softlyCancelTasks(lane, task);
 					}
 				}
-
-				if( getCurrent() != null )
+				else
 				{
-					if( getCurrent().isSoftlyCancellableBy(task) )
+					for( int i = 0; i < m_deviceLaneList.size(); i++ )
 					{
-						getCurrent().attemptToSoftlyCancel(task);
+						softlyCancelTasks(m_deviceLaneList.get(i), task);
 					}
 				}
 			}
 		});
 	}
+
+	private void softlyCancelTasks(final Lane lane, final PA_Task task)
+	{
+		//--- Tasks only ever get softly cancelled by a task for the same device or server, so there's no need to look at the rest of the queue.
+		if( task.getDevice() != null || task.getServer() != null )
+		{
+			final List<PA_Task> candidates = lane.m_queue.find(PA_Task.class, null, task.getDevice(), task.getServer(), -1);
+
+			for( int i = 0; i < candidates.size(); i++ )
+			{
+				final PA_Task ithTask = candidates.get(i);
+				if( ithTask != task && ithTask.isSoftlyCancellableBy(task) )
+				{
+					ithTask.attemptToSoftlyCancel(task);
+				}
+			}
+		}
+
+		final PA_Task current = lane.getCurrent();
+
+		if( current != null )
+		{
+			if( current.isSoftlyCancellableBy(task) )
+			{
+				current.attemptToSoftlyCancel(task);
+			}
+		}
+	}
 	
-	private void addAtIndex(PA_Task task, int index)
+	private void addAtIndex(Lane lane, PA_Task task, int index)
 	{
 		if( index >= 0 )
 		{
-			m_queue.add(index, task);
+			lane.m_queue.add(index, task);
 		}
 		else
 		{
-			m_queue.add(task);
+			lane.m_queue.add(task);
 			
-			index = m_queue.size()-1;
+			index = lane.m_queue.size()-1;
 		}
 
 		task.assignDefaultOrdinal(this);
@@ -184,6 +300,34 @@ final class P_TaskQueue
 		print();
 	}
 
+	/**
+	 * Returns the lane the given task should be queued in. This creates a new device lane if needed.
+	 */
+	private Lane getLaneFor(PA_Task task)
+	{
+		final BleDevice device = task.getDevice();
+
+		if( device == null || device.isNull() || !task.isDeviceLaneTask() )  return m_globalLane;
+
+		Lane lane = m_deviceLanes.get(device);
+
+		if( lane == null )
+		{
+			if( !m_mngr.m_config.useDeviceTaskLanes )  return m_globalLane;
+
+			lane = new Lane(device);
+			m_deviceLanes.put(device, lane);
+			m_deviceLaneList.add(lane);
+		}
+
+		return lane;
+	}
+
+	private Lane getDeviceLane(BleDevice device_nullable)
+	{
+		return device_nullable != null ? m_deviceLanes.get(device_nullable) : null;
+	}
+
 	public final void add(final PA_Task newTask)
 	{
 		m_mngr.getPostManager().runOrPostToUpdateThread(new Runnable()
@@ -211,16 +355,24 @@ final class P_TaskQueue
 		// Check the idle status to ensure the new task gets executed as soon as possible (rather than
 		// waiting until the idle interval's next tick)
 		m_mngr.checkIdleStatus();
-		if( tryCancellingCurrentTask(newTask) )
+
+		final Lane lane = getLaneFor(newTask);
+
+		if( lane == m_globalLane )
+		{
+			cancelOrInterruptDeviceLanes(newTask);
+		}
+
+		if( tryCancellingCurrentTask(lane, newTask) )
 		{
-			if( getCurrent() == null )
+			if( lane.getCurrent() == null )
 			{
-				dequeue();
+				dequeue(lane);
 			}
 		}
-		else if( tryInterruptingCurrentTask(newTask) ) {}
-		else if( tryInsertingIntoQueue(newTask) ) {}
-		else { addToBack(newTask); }
+		else if( tryInterruptingCurrentTask(lane, newTask) ) {}
+		else if( tryInsertingIntoQueue(lane, newTask) ) {}
+		else { addToBack(lane, newTask); }
 
 		//--- DRK > Commenting out because of possible race condition when immediate native stack errors recurse
 		//---		back to front-end before front-end's state reflects the fact that the task (added to empty queue) is going on.
@@ -245,24 +397,47 @@ final class P_TaskQueue
 
 		m_time += timeStep;
 
-		PA_Task curTask = getCurrent();
-
-		if (curTask == null)
-			m_timeSinceEnding += timeStep;
-
 		if( m_executeHandler == null )
 		{
+			if (getCurrent() == null)
+				m_globalLane.m_timeSinceEnding += timeStep;
+
 			logger().d("Waiting for execute handler to initialize.");
 
 			return executingTask;
 		}
 
+		executingTask = update(m_globalLane, timeStep, currentTime);
+
+		//--- Lanes can get added while updating (a task ending can kick off the next one, which may queue up more tasks), so
+		//--- the size is checked on every iteration here.
+		for( int i = 0; i < m_deviceLaneList.size(); i++ )
+		{
+			executingTask |= update(m_deviceLaneList.get(i), timeStep, currentTime);
+		}
+
+		removeIdleDeviceLanes();
+
+		m_updateCount++;
+
+		return executingTask;
+	}
+
+	private boolean update(Lane lane, double timeStep, long currentTime)
+	{
+		boolean executingTask = false;
+
+		PA_Task curTask = lane.getCurrent();
+
+		if (curTask == null)
+			lane.m_timeSinceEnding += timeStep;
+
 		if( curTask == null )
 		{
-			executingTask = dequeue();
+			executingTask = dequeue(lane);
 			// As the current task could have changed at this point from the dequeue operation, we need to update our
 			// current task instance
-			curTask = getCurrent();
+			curTask = lane.getCurrent();
 		}
 
 		if( curTask != null )
@@ -271,34 +446,75 @@ final class P_TaskQueue
 			executingTask = true;
 		}
 
-		m_updateCount++;
-
 		return executingTask;
 	}
 
-	private boolean hasDelayTimePassed()
+	private void removeIdleDeviceLanes()
+	{
+		for( int i = m_deviceLaneList.size()-1; i >= 0; i-- )
+		{
+			final Lane lane = m_deviceLaneList.get(i);
+
+			//--- Lanes are kept around while the device is connected, so a busy device doesn't churn through new lanes.
+			if( lane.isIdle() && !lane.m_device.is_internal(BleDeviceState.CONNECTED) )
+			{
+				m_deviceLaneList.remove(i);
+				m_deviceLanes.remove(lane.m_device);
+			}
+		}
+	}
+
+	private boolean hasDelayTimePassed(Lane lane)
 	{
 		Interval delayTime = m_mngr.m_config.delayBetweenTasks;
 		if (Interval.isDisabled(delayTime))
 			return true;
 
-		return m_timeSinceEnding >= delayTime.secs();
+		return lane.m_timeSinceEnding >= delayTime.secs();
 	}
 
-	private synchronized boolean dequeue()
+	private boolean hasRoomForAnotherTask()
 	{
-		if ( !m_mngr.ASSERT(m_current.get() == null) )  return false;
-		if ( m_queue.size() == 0 )  return false;
-		if ( !hasDelayTimePassed() )	return false;
+		if( m_deviceLaneList.isEmpty() )  return true;
 
-		for( int i = 0; i < m_queue.size(); i++ )
+		return m_inFlightCount < Math.max(1, m_mngr.m_config.maxConcurrentTasks);
+	}
+
+	/**
+	 * Global tasks tied to a device (connecting, bonding, etc.) and the tasks in that device's lane never run at the same time.
+	 */
+	private boolean isBlockedByOtherLane(Lane lane, PA_Task task)
+	{
+		if( lane == m_globalLane )
 		{
-			PA_Task newPotentialCurrent = m_queue.get(i);
+			final Lane deviceLane = getDeviceLane(task.getDevice());
+
+			return deviceLane != null && deviceLane.getCurrent() != null;
+		}
+		else
+		{
+			final PA_Task globalCurrent = m_globalLane.getCurrent();
+
+			return globalCurrent != null && lane.m_device.equals(globalCurrent.getDevice());
+		}
+	}
+
+	private synchronized boolean dequeue(Lane lane)
+	{
+		if ( !m_mngr.ASSERT(lane.getCurrent() == null) )  return false;
+		if ( lane.m_queue.size() == 0 )  return false;
+		if ( !hasDelayTimePassed(lane) )	return false;
+		if ( !hasRoomForAnotherTask() )	return false;
+
+		for( int i = 0; i < lane.m_queue.size(); i++ )
+		{
+			PA_Task newPotentialCurrent = lane.m_queue.get(i);
 			
-			if( newPotentialCurrent.isArmable() )
+			if( newPotentialCurrent.isArmable() && !isBlockedByOtherLane(lane, newPotentialCurrent) )
 			{
-				m_queue.remove(i);
-				m_current.set(newPotentialCurrent);
+				lane.m_queue.remove(i);
+				lane.m_current.set(newPotentialCurrent);
+				m_inFlightCount++;
 				newPotentialCurrent.arm();
 				if (!newPotentialCurrent.tryExecuting())
 				{
@@ -315,30 +531,42 @@ final class P_TaskQueue
 		return m_updateCount;
 	}
 
+	/**
+	 * Returns the current task of the global queue. This does not include the current tasks of any device lanes.
+	 */
 	public final PA_Task getCurrent()
 	{
 //		return m_pendingEndingStateForCurrentTask != null ? null : m_current;
-		return m_current.get();
+		return m_globalLane.getCurrent();
+	}
+
+	/**
+	 * Returns the number of tasks currently in flight, across the global queue and all device lanes.
+	 */
+	final int getInFlightCount()
+	{
+		return m_inFlightCount;
 	}
 
-	private boolean endCurrentTask(PE_TaskState endingState)
+	private boolean endCurrentTask(final Lane lane, PE_TaskState endingState)
 	{
 		if( !m_mngr.ASSERT(endingState.isEndingState()) )	return false;
-		if( getCurrent() == null ) 							return false;
+		if( lane.getCurrent() == null ) 					return false;
 //		if( m_pendingEndingStateForCurrentTask != null )	return false;
 		
-		PA_Task current_saved = m_current.get();
-		m_current.set(null);
-		m_timeSinceEnding = 0.0;
+		PA_Task current_saved = lane.m_current.get();
+		lane.m_current.set(null);
+		m_inFlightCount--;
+		lane.m_timeSinceEnding = 0.0;
 		current_saved.setEndingState(endingState);
 
 		boolean printed = false;
 
-		if( m_queue.size() > 0 && getCurrent() == null )
+		if( lane.m_queue.size() > 0 && lane.getCurrent() == null )
 		{
 			if( endingState.canGoToNextTaskImmediately() )
 			{
-				printed = dequeue();
+				printed = dequeue(lane);
 			}
 			else
 			{
@@ -347,9 +575,9 @@ final class P_TaskQueue
 				{
 					@Override public void run()
 					{
-						if( m_queue.size() > 0 && getCurrent() == null )
+						if( lane.m_queue.size() > 0 && lane.getCurrent() == null )
 						{
-							dequeue();
+							dequeue(lane);
 						}
 					}
 				});
@@ -414,7 +642,14 @@ final class P_TaskQueue
 	{
 		if( PU_TaskQueue.isMatch(getCurrent(), taskClass, mngr_nullable, device_nullable, server_nullable ) )
 		{
-			return endCurrentTask(endingState);
+			return endCurrentTask(m_globalLane, endingState);
+		}
+
+		final Lane lane = getDeviceLane(device_nullable);
+
+		if( lane != null && PU_TaskQueue.isMatch(lane.getCurrent(), taskClass, mngr_nullable, device_nullable, server_nullable) )
+		{
+			return endCurrentTask(lane, endingState);
 		}
 		
 		return false;
@@ -433,9 +668,24 @@ final class P_TaskQueue
 
 	private void tryEndingTask_updateThread(final PA_Task task, final PE_TaskState endingState)
 	{
-		if( task != null && task == getCurrent() )
+		if( task == null )  return;
+
+		final Lane lane;
+
+		if( task == getCurrent() )
+		{
+			lane = m_globalLane;
+		}
+		else
 		{
-			if( !endCurrentTask(endingState) )
+			final Lane deviceLane = getDeviceLane(task.getDevice());
+
+			lane = deviceLane != null && task == deviceLane.getCurrent() ? deviceLane : null;
+		}
+
+		if( lane != null )
+		{
+			if( !endCurrentTask(lane, endingState) )
 			{
 				m_mngr.ASSERT(false);
 			}
@@ -449,7 +699,7 @@ final class P_TaskQueue
 
 	public final boolean isCurrent(Class<? extends PA_Task> taskClass, BleDevice device)
 	{
-		return PU_TaskQueue.isMatch(getCurrent(), taskClass, null, device, null);
+		return getCurrent(taskClass, device) != null;
 	}
 
 	public final boolean isCurrent(Class<? extends PA_Task> taskClass, BleServer server)
@@ -459,30 +709,31 @@ final class P_TaskQueue
 
 	private boolean isInQueue(Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable)
 	{
-		for( int i = 0; i < m_queue.size(); i++ )
-		{
-			if( PU_TaskQueue.isMatch(m_queue.get(i), taskClass, mngr_nullable, device_nullable, server_nullable) )
-			{
-				return true;
-			}
-		}
-		
-		return false;
+		return positionInQueue(taskClass, mngr_nullable, device_nullable, server_nullable) != -1;
 	}
 
+	/**
+	 * Returns the position of the first matching task in the global queue, or if there isn't one, its position within the device's lane.
+	 */
 	private int positionInQueue(Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable)
 	{
-		for( int i = 0; i < m_queue.size(); i++ )
-		{
-			if( PU_TaskQueue.isMatch(m_queue.get(i), taskClass, mngr_nullable, device_nullable, server_nullable) )
-			{
-				return i;
-			}
-		}
+		final int position = positionInQueue(m_queue, taskClass, mngr_nullable, device_nullable, server_nullable);
+
+		if( position != -1 )  return position;
+
+		final Lane lane = getDeviceLane(device_nullable);
+
+		return lane != null ? positionInQueue(lane.m_queue, taskClass, mngr_nullable, device_nullable, server_nullable) : -1;
+	}
 
-		return -1;
+	private int positionInQueue(P_TaskList queue, Class<? extends PA_Task> taskClass, BleManager mngr_nullable, BleDevice device_nullable, BleServer server_nullable)
+	{
+		return queue.indexOfFirst(taskClass, mngr_nullable, device_nullable, server_nullable);
 	}
 
+	/**
+	 * Returns the size of the global queue. Tasks waiting in device lanes are not counted.
+	 */
 	public final int getSize()
 	{
 		return m_queue.size();
@@ -536,17 +787,9 @@ final class P_TaskQueue
 			return (T) current;
 		}
 
-		return (T) forEach_queue(new ForEach_Breakable<PA_Task>()
-		{
-			@Override
-			public Please next(PA_Task task)
-			{
-				if (PU_TaskQueue.isMatch(task, taskClass, mngr, null, null))
-					return ForEach_Breakable.Please.doBreak();
-				else
-					return ForEach_Breakable.Please.doContinue();
-			}
-		});
+		final List<PA_Task> matches = m_queue.find(taskClass, mngr, null, null, -1);
+
+		return matches.isEmpty() ? null : (T) matches.get(0);
 	}
 
 	public final <T extends PA_Task> T getCurrent(Class<T> taskClass, BleDevice device)
@@ -557,6 +800,17 @@ final class P_TaskQueue
 			return (T) current;
 		}
 
+		final Lane lane = getDeviceLane(device);
+
+		if( lane != null )
+		{
+			final PA_Task laneCurrent = lane.getCurrent();
+			if( PU_TaskQueue.isMatch(laneCurrent, taskClass, null, device, null) )
+			{
+				return (T) laneCurrent;
+			}
+		}
+
 		return null;
 	}
 
@@ -590,19 +844,36 @@ final class P_TaskQueue
 			// crashing the app. As we're just printing to logcat, there's no reason not to continue on at this point.
 			try
 			{
-				logger().i(this.toString());
+				logger().i(TAG, "{}", this.toString());
 			}
 			catch (Exception e)
 			{
-				logger().e("Got exception when trying to print! Exception Class: " + e.getClass().getSimpleName() + " Message: " + e.getMessage());
+				logger().e(TAG, "Got exception when trying to print! Exception Class: {} Message: {}", e.getClass().getSimpleName(), e.getMessage());
 			}
 		}
 	}
 
-	private void clearQueueOf$removeFromQueue(int index)
+	private void clearQueueOf$removeFromQueue(P_TaskList queue, int index)
 	{
-		PA_Task task = m_queue.remove(index);
+		clearQueueOf$setEndingState(queue.remove(index));
+	}
+
+	/**
+	 * Removes every given task from the queue, starting from the back, same as if the queue was walked in reverse and each match removed.
+	 */
+	private void clearQueueOf$removeFromQueue(P_TaskList queue, List<PA_Task> tasks)
+	{
+		for( int i = tasks.size()-1; i >= 0; i-- )
+		{
+			if( queue.remove(tasks.get(i)) )
+			{
+				clearQueueOf$setEndingState(tasks.get(i));
+			}
+		}
+	}
 
+	private void clearQueueOf$setEndingState(final PA_Task task)
+	{
 		if( task.wasSoftlyCancelled() )
 		{
 			task.setEndingState(PE_TaskState.SOFTLY_CANCELLED);
@@ -622,13 +893,7 @@ final class P_TaskQueue
 			@Override
 			public void run()
 			{
-				for( int i = m_queue.size()-1; i >= 0; i-- )
-				{
-					if( PU_TaskQueue.isMatch(m_queue.get(i), taskClass, mngr, null, null) )
-					{
-						clearQueueOf$removeFromQueue(i);
-					}
-				}
+				clearQueueOf$removeFromQueue(m_queue, m_queue.find(taskClass, mngr, null, null, -1));
 			}
 		});
 	}
@@ -640,22 +905,23 @@ final class P_TaskQueue
 			@Override
 			public void run()
 			{
-				for( int i = m_queue.size()-1; i >= 0; i-- )
-				{
-					final PA_Task task_ith = m_queue.get(i);
+				clearQueueOf(m_queue, taskClass, device, ordinal);
 
-					if( ordinal <= -1 || ordinal >= 0 && task_ith.getOrdinal() <= ordinal )
-					{
-						if( PU_TaskQueue.isMatch(task_ith, taskClass, null, device, null) )
-						{
-							clearQueueOf$removeFromQueue(i);
-						}
-					}
+				final Lane lane = getDeviceLane(device);
+
+				if( lane != null )
+				{
+					clearQueueOf(lane.m_queue, taskClass, device, ordinal);
 				}
 			}
 		});
 	}
 
+	private void clearQueueOf(final P_TaskList queue, final Class<? extends PA_Task> taskClass, final BleDevice device, final int ordinal)
+	{
+		clearQueueOf$removeFromQueue(queue, queue.find(taskClass, null, device, null, ordinal));
+	}
+
 	public final void clearQueueOf(final Class<? extends PA_Task> taskClass, final BleServer server)
 	{
 		m_mngr.getPostManager().runOrPostToUpdateThread(new Runnable()
@@ -663,12 +929,27 @@ final class P_TaskQueue
 			@Override
 			public void run()
 			{
-				for( int i = m_queue.size()-1; i >= 0; i-- )
+				clearQueueOf$removeFromQueue(m_queue, m_queue.find(taskClass, null, null, server, -1));
+			}
+		});
+	}
+
+	/**
+	 * Removes the given task from whichever queue it's waiting in. Does nothing if the task isn't queued (for instance if it's already current).
+	 */
+	final void clearQueueOf(final PA_Task task)
+	{
+		m_mngr.getPostManager().runOrPostToUpdateThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final Lane lane = getDeviceLane(task.getDevice());
+				final P_TaskList queue = lane != null && lane.m_queue.contains(task) ? lane.m_queue : m_queue;
+
+				if( queue.remove(task) )
 				{
-					if( PU_TaskQueue.isMatch(m_queue.get(i), taskClass, null, null, server) )
-					{
-						clearQueueOf$removeFromQueue(i);
-					}
+					clearQueueOf$setEndingState(task);
 				}
 			}
 		});
@@ -690,36 +971,39 @@ final class P_TaskQueue
 	{
 		for (int i = m_queue.size() - 1; i >= 0; i-- )
 		{
-			clearQueueOf$removeFromQueue(i);
+			clearQueueOf$removeFromQueue(m_queue, i);
+		}
+
+		for( int i = 0; i < m_deviceLaneList.size(); i++ )
+		{
+			final P_TaskList laneQueue = m_deviceLaneList.get(i).m_queue;
+
+			for (int j = laneQueue.size() - 1; j >= 0; j-- )
+			{
+				clearQueueOf$removeFromQueue(laneQueue, j);
+			}
 		}
 	}
 
 	@Override public final String toString()
 	{
-		final String current = m_current.get() != null ? m_current.get().toString() : "no current task";
 //		if( m_pendingEndingStateForCurrentTask != null)
 //		{
 //			current += "(" + m_pendingEndingStateForCurrentTask.name() +")";
 //		}
 		
-		final String queue = m_queue.size() > 0 ? m_queue.toString() : "[queue empty]";
-		
-		final String toReturn = current + " " + queue;
-		
-		return toReturn;
-	}
+		String toReturn = m_globalLane.toString();
 
-
-
-	private PA_Task forEach_queue(ForEach_Breakable<PA_Task> forEach_breakable)
-	{
-		ArrayList<PA_Task> cacheList = new ArrayList<>(m_queue);
-		for (int i = 0; i < cacheList.size(); i++)
+		for( int i = 0; i < m_deviceLaneList.size(); i++ )
 		{
-			ForEach_Breakable.Please please = forEach_breakable.next(cacheList.get(i));
-			if (please.shouldBreak())
-				return cacheList.get(i);
+			final Lane lane = m_deviceLaneList.get(i);
+
+			if( !lane.isIdle() )
+			{
+				toReturn += " | " + lane.m_device.getName_debug() + ": " + lane.toString();
+			}
 		}
-		return null;
+		
+		return toReturn;
 	}
 }
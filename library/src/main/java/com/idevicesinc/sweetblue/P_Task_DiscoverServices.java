@@ -26,6 +26,9 @@ final class P_Task_DiscoverServices extends PA_Task_RequiresConnection
 
 	@Override public void execute()
 	{
+		//--- Whatever we had indexed may be about to change, so go back to reading the native lists until discovery succeeds again.
+		getDevice().serviceMngr_device().clearIndex();
+
 		if( m_gattRefresh )
 		{
 			getDevice().layerManager().refreshGatt();
@@ -19,7 +19,7 @@ final class P_Task_ExecuteReliableWrite extends PA_Task_RequiresConnection imple
 
 	private BleDevice.ReadWriteListener.ReadWriteEvent newEvent(final BleDevice.ReadWriteListener.Status status, final int gattStatus, final boolean solicited)
 	{
-		return getDevice().m_reliableWriteMngr.newEvent(status, gattStatus, solicited);
+		return getDevice().reliableWriteMngr().newEvent(status, gattStatus, solicited);
 	}
 
 	private void invokeListeners(final BleDevice.ReadWriteListener.Status status, final int gattStatus)
@@ -79,6 +79,11 @@ final class P_Task_ExecuteReliableWrite extends PA_Task_RequiresConnection imple
 		return m_priority;
 	}
 
+	@Override protected boolean isDeviceLaneTask()
+	{
+		return true;
+	}
+
 	@Override public void onStateChange(PA_Task task, PE_TaskState state)
 	{
 		if( state == PE_TaskState.TIMED_OUT )
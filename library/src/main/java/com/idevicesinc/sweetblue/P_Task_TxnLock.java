@@ -57,6 +57,11 @@ final class P_Task_TxnLock extends PA_Task_RequiresBleOn
 		return super.isInterruptableBy(task);
 	}
 
+	@Override protected boolean isDeviceLaneTask()
+	{
+		return true;
+	}
+
 	@Override protected BleTask getTaskType()
 	{
 		return null;
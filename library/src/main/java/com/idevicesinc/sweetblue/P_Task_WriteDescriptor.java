@@ -9,6 +9,7 @@ import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Status;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Target;
 import com.idevicesinc.sweetblue.BleDevice.ReadWriteListener.Type;
 import com.idevicesinc.sweetblue.BleManager.UhOhListener.UhOh;
+import com.idevicesinc.sweetblue.utils.ChunkedData;
 import com.idevicesinc.sweetblue.utils.FutureData;
 import com.idevicesinc.sweetblue.utils.Utils;
 
@@ -46,7 +47,11 @@ final class P_Task_WriteDescriptor extends PA_Task_ReadOrWrite
 
 	@Override protected void executeReadOrWrite()
 	{
-		m_data = m_futureData.getData();
+		//--- Streamed data can only be read once, so if this task was interrupted and is running again, send what was read the first time.
+		if( m_data == null || !(m_futureData instanceof ChunkedData) )
+		{
+			m_data = m_futureData.getData();
+		}
 
 		if( false == write_earlyOut(m_data) )
 		{
@@ -114,6 +119,11 @@ final class P_Task_WriteDescriptor extends PA_Task_ReadOrWrite
 			final ReadWriteEvent event = newReadWriteEvent(getCancelType(), BleStatuses.GATT_STATUS_NOT_APPLICABLE, getDefaultTarget(), getServiceUuid(), getCharUuid(), getDescUuid());
 			getDevice().invokeReadWriteCallback(m_readWriteListener, event);
 		}
+
+		if( state.isEndingState() && state != PE_TaskState.INTERRUPTED )
+		{
+			P_DeviceServiceManager.closeIfChunked(m_futureData);
+		}
 	}
 	
 	@Override protected BleTask getTaskType()
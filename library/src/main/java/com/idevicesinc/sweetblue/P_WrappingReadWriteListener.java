@@ -21,6 +21,10 @@ class P_WrappingReadWriteListener extends PA_CallbackWrapper implements ReadWrit
 	protected void onEvent(final ReadWriteListener listener, final ReadWriteEvent result)
 	{
 		if( listener == null )  return;
+
+		final BleManager manager = result.device() != null ? result.device().getManager() : null;
+
+		if( manager != null && manager.getPostManager().dispatchCallbackEvent(listener, result) )  return;
 		
 		if( postToMain() )
 		{
@@ -0,0 +1,29 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.annotations.Advanced;
+import com.idevicesinc.sweetblue.annotations.Lambda;
+
+import java.util.UUID;
+
+/**
+ * Low-level alternative to {@link NotificationListener} for characteristics that notify at a high rate (sensor streams and the like),
+ * set with {@link BleDevice#setListener_RawNotification(UUID, RawNotificationListener)}. No event objects are created and the payload
+ * isn't copied into a new array for each notification. Instead it's handed over in a buffer that SweetBlue reuses, so it's only valid
+ * until {@link #onNotification(BleDevice, UUID, byte[], int, int, long)} returns. Copy out anything you need to keep.
+ * <br><br>
+ * This is always called on SweetBlue's update thread, never posted to the main thread, regardless of {@link BleManagerConfig#postCallbacksToMainThread}.
+ */
+@Advanced
+@Lambda
+public interface RawNotificationListener
+{
+
+    /**
+     * Called for each notification or indication received for a characteristic this listener is set for, in the order they arrived.
+     *
+     * @param buffer        Holds the payload from <code>offset</code> to <code>offset + length</code>. May be longer than that, and is reused afterwards.
+     * @param timestamp     When the notification came in from the native stack, in the same units as {@link System#currentTimeMillis()}.
+     */
+    void onNotification(BleDevice device, UUID charUuid, byte[] buffer, int offset, int length, long timestamp);
+}
@@ -0,0 +1,92 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+/**
+ * Counters for the scan results coming in from the native stack, from when the {@link BleManager} was created. Handy for checking whether
+ * discovery is keeping up in crowded places. See {@link BleManager#getScanIngestStats()}.
+ */
+public final class ScanIngestStats
+{
+	private final long m_received;
+	private final long m_coalesced;
+	private final long m_dropped;
+	private final long m_delivered;
+	private final int m_backlog;
+	private final int m_maxBacklog;
+
+
+	ScanIngestStats(final long received, final long coalesced, final long dropped, final long delivered, final int backlog, final int maxBacklog)
+	{
+		m_received = received;
+		m_coalesced = coalesced;
+		m_dropped = dropped;
+		m_delivered = delivered;
+		m_backlog = backlog;
+		m_maxBacklog = maxBacklog;
+	}
+
+	/**
+	 * The total number of scan results (advertisements) received from the native stack.
+	 */
+	public final long received()
+	{
+		return m_received;
+	}
+
+	/**
+	 * The number of scan results that were replaced by a newer one for the same device before they got processed. Only the latest result for
+	 * each device is processed each time the library gets to them.
+	 */
+	public final long coalesced()
+	{
+		return m_coalesced;
+	}
+
+	/**
+	 * The number of scan results that were thrown away because they came in faster than they could be processed.
+	 */
+	public final long dropped()
+	{
+		return m_dropped;
+	}
+
+	/**
+	 * The number of scan results that were actually processed, i.e. checked against any {@link BleManagerConfig.ScanFilter}s and used to
+	 * discover or rediscover a {@link BleDevice}.
+	 */
+	public final long delivered()
+	{
+		return m_delivered;
+	}
+
+	/**
+	 * The number of devices that currently have a scan result waiting to be processed.
+	 */
+	public final int backlog()
+	{
+		return m_backlog;
+	}
+
+	/**
+	 * The largest {@link #backlog()} seen so far.
+	 */
+	public final int maxBacklog()
+	{
+		return m_maxBacklog;
+	}
+
+	@Override public final String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"received", received(),
+			"coalesced", coalesced(),
+			"dropped", dropped(),
+			"delivered", delivered(),
+			"backlog", backlog(),
+			"maxBacklog", maxBacklog()
+		);
+	}
+}
@@ -0,0 +1,355 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.annotations.Nullable;
+import com.idevicesinc.sweetblue.annotations.Nullable.Prevalence;
+import com.idevicesinc.sweetblue.utils.Event;
+import com.idevicesinc.sweetblue.utils.GenericListener_Void;
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A live view of the devices in {@link BleManager}, kept sorted by {@link BleManagerConfig#defaultListComparator}. Get it with
+ * {@link BleManager#getSortedDeviceView()}.
+ * <br><br>
+ * Unlike {@link BleManager#getDevices_List_sorted()}, this doesn't re-sort everything each time you ask for it. Devices are inserted in
+ * their sorted position when they're discovered, and only move when something that can affect their sort order (their name or rssi) changes
+ * and puts them out of order with their neighbors. Each insertion, move, and removal is reported to the {@link ChangeListener}, if any,
+ * so an adapter can update just the rows that changed instead of reloading the whole list.
+ * <br><br>
+ * If {@link BleManagerConfig#defaultListComparator} is <code>null</code>, devices are kept in the order they were discovered.
+ * <br><br>
+ * NOTE: Only name and rssi changes are tracked. If you use your own comparator that sorts on anything else, like state or bond status,
+ * call {@link #resort()} when that changes, or the view will fall out of order.
+ */
+public final class SortedDeviceView
+{
+	/**
+	 * Provide an implementation to {@link SortedDeviceView#setListener(ChangeListener)} to be notified whenever the view changes.
+	 * <br><br>
+	 * Events are posted like any other SweetBlue callback (see {@link BleManagerConfig#postCallbacksToMainThread}), so by the time one
+	 * arrives the view may already have changed again, and its positions may not match {@link SortedDeviceView#getDevices()}. They are
+	 * always delivered in the order the changes happened though, so applying each one in turn to your own copy of the list (for
+	 * example an adapter's) keeps that copy in sync with the view.
+	 */
+	@com.idevicesinc.sweetblue.annotations.Lambda
+	public static interface ChangeListener extends GenericListener_Void<ChangeListener.ChangeEvent>
+	{
+		/**
+		 * The kind of change, given by {@link ChangeEvent#type()}.
+		 */
+		public static enum Type
+		{
+			/**
+			 * A device was added at {@link ChangeEvent#toPosition()}.
+			 */
+			INSERTED,
+
+			/**
+			 * A device moved from {@link ChangeEvent#fromPosition()} to {@link ChangeEvent#toPosition()}. Note that
+			 * {@link ChangeEvent#toPosition()} is the position after the device was taken out of its old position, same as what
+			 * {@link java.util.List#add(int, Object)} expects.
+			 */
+			MOVED,
+
+			/**
+			 * A device was removed from {@link ChangeEvent#fromPosition()}.
+			 */
+			REMOVED,
+
+			/**
+			 * {@link BleManagerConfig#defaultListComparator} was changed, so the whole view was sorted again. Both positions are -1, and you
+			 * should reload everything with {@link SortedDeviceView#getDevices()}.
+			 */
+			RESORTED;
+		}
+
+		/**
+		 * Event passed to {@link ChangeListener#onEvent(Event)}.
+		 */
+		@com.idevicesinc.sweetblue.annotations.Immutable
+		public static class ChangeEvent extends Event
+		{
+			/**
+			 * The kind of change.
+			 */
+			public Type type(){  return m_type;  }
+			private final Type m_type;
+
+			/**
+			 * The device that was inserted, moved, or removed. This is {@link BleDevice#NULL} for {@link Type#RESORTED}.
+			 */
+			public @Nullable(Prevalence.NEVER) BleDevice device(){  return m_device;  }
+			private final BleDevice m_device;
+
+			/**
+			 * The position the device was at before the change, or -1 for {@link Type#INSERTED} and {@link Type#RESORTED}.
+			 */
+			public int fromPosition(){  return m_fromPosition;  }
+			private final int m_fromPosition;
+
+			/**
+			 * The position the device is at after the change, or -1 for {@link Type#REMOVED} and {@link Type#RESORTED}.
+			 */
+			public int toPosition(){  return m_toPosition;  }
+			private final int m_toPosition;
+
+			ChangeEvent(final Type type, final BleDevice device, final int fromPosition, final int toPosition)
+			{
+				m_type = type;
+				m_device = device;
+				m_fromPosition = fromPosition;
+				m_toPosition = toPosition;
+			}
+
+			@Override public String toString()
+			{
+				return Utils_String.toString
+				(
+					this.getClass(),
+					"type",			type(),
+					"device",		device().getName_debug(),
+					"fromPosition",	fromPosition(),
+					"toPosition",	toPosition()
+				);
+			}
+		}
+	}
+
+	private final BleManager m_mngr;
+	private final ArrayList<BleDevice> m_sorted = new ArrayList<BleDevice>();
+	//--- Position of each device in m_sorted, so a device whose sort key changed can be found without a linear search.
+	private final IdentityHashMap<BleDevice, Integer> m_positions = new IdentityHashMap<BleDevice, Integer>();
+
+	private Comparator<BleDevice> m_comparator;
+	private ChangeListener m_listener;
+
+
+	SortedDeviceView(final BleManager mngr)
+	{
+		m_mngr = mngr;
+		m_comparator = mngr.m_config.defaultListComparator;
+	}
+
+	/**
+	 * Sets the listener that gets told about each insertion, move, and removal. Pass <code>null</code> to stop listening.
+	 */
+	public final void setListener(@Nullable(Prevalence.NORMAL) final ChangeListener listener_nullable)
+	{
+		m_listener = listener_nullable;
+	}
+
+	/**
+	 * Returns a copy of the view's current contents, in sorted order. This may be ahead of the {@link ChangeListener.ChangeEvent}s
+	 * delivered so far, so if you're tracking changes with a {@link ChangeListener}, only use this to initialize your copy, or to reload it
+	 * on {@link ChangeListener.Type#RESORTED}.
+	 */
+	public final @Nullable(Prevalence.NEVER) List<BleDevice> getDevices()
+	{
+		synchronized (m_sorted)
+		{
+			checkComparator();
+
+			return new ArrayList<BleDevice>(m_sorted);
+		}
+	}
+
+	/**
+	 * Returns the device at the given position, or {@link BleDevice#NULL} if the position is out of range.
+	 */
+	public final @Nullable(Prevalence.NEVER) BleDevice getDeviceAt(final int position)
+	{
+		synchronized (m_sorted)
+		{
+			checkComparator();
+
+			return position >= 0 && position < m_sorted.size() ? m_sorted.get(position) : BleDevice.NULL;
+		}
+	}
+
+	/**
+	 * Returns the position of the given device, or -1 if it's not in the view.
+	 */
+	public final int getPosition(final BleDevice device)
+	{
+		synchronized (m_sorted)
+		{
+			checkComparator();
+
+			return indexOf(device);
+		}
+	}
+
+	/**
+	 * Returns the number of devices in the view.
+	 */
+	public final int getCount()
+	{
+		synchronized (m_sorted)
+		{
+			return m_sorted.size();
+		}
+	}
+
+	/**
+	 * Sorts the whole view again and reports {@link ChangeListener.Type#RESORTED}. Only needed if
+	 * {@link BleManagerConfig#defaultListComparator} sorts on something other than name or rssi and that changed.
+	 */
+	public final void resort()
+	{
+		synchronized (m_sorted)
+		{
+			if (checkComparator()) return;
+
+			sortAll();
+		}
+	}
+
+	final void add(final BleDevice device)
+	{
+		synchronized (m_sorted)
+		{
+			checkComparator();
+
+			if (indexOf(device) >= 0) return;
+
+			final int position = insertionPoint(device);
+			m_sorted.add(position, device);
+			updatePositions(position, m_sorted.size());
+
+			post(ChangeListener.Type.INSERTED, device, -1, position);
+		}
+	}
+
+	final void remove(final BleDevice device)
+	{
+		synchronized (m_sorted)
+		{
+			final int position = indexOf(device);
+
+			if (position < 0) return;
+
+			m_sorted.remove(position);
+			m_positions.remove(device);
+			updatePositions(position, m_sorted.size());
+
+			post(ChangeListener.Type.REMOVED, device, position, -1);
+		}
+	}
+
+	/**
+	 * Called when something that might affect the given device's sort order changed. The device is only moved if it's now out of order
+	 * with one of its neighbors.
+	 */
+	final void onSortKeyChanged(final BleDevice device)
+	{
+		synchronized (m_sorted)
+		{
+			if (checkComparator()) return;
+			if (m_comparator == null) return;
+
+			final int position = indexOf(device);
+
+			if (position < 0) return;
+
+			final boolean inOrderWithPrevious = position == 0 || m_comparator.compare(m_sorted.get(position - 1), device) <= 0;
+			final boolean inOrderWithNext = position == m_sorted.size() - 1 || m_comparator.compare(device, m_sorted.get(position + 1)) <= 0;
+
+			if (inOrderWithPrevious && inOrderWithNext) return;
+
+			m_sorted.remove(position);
+			final int newPosition = insertionPoint(device);
+			m_sorted.add(newPosition, device);
+			updatePositions(Math.min(position, newPosition), Math.max(position, newPosition) + 1);
+
+			if (newPosition != position)
+			{
+				post(ChangeListener.Type.MOVED, device, position, newPosition);
+			}
+		}
+	}
+
+	/**
+	 * Re-sorts everything if {@link BleManagerConfig#defaultListComparator} was swapped out. Returns <code>true</code> if it was.
+	 */
+	private boolean checkComparator()
+	{
+		final Comparator<BleDevice> comparator = m_mngr.m_config.defaultListComparator;
+
+		if (comparator == m_comparator) return false;
+
+		m_comparator = comparator;
+
+		sortAll();
+
+		return true;
+	}
+
+	private void sortAll()
+	{
+		if (m_comparator != null)
+		{
+			Collections.sort(m_sorted, m_comparator);
+			updatePositions(0, m_sorted.size());
+		}
+
+		post(ChangeListener.Type.RESORTED, BleDevice.NULL, -1, -1);
+	}
+
+	private void updatePositions(final int from, final int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			m_positions.put(m_sorted.get(i), i);
+		}
+	}
+
+	/**
+	 * Binary search for where the device should go, after any devices that compare as equal to it so that ties keep their discovery order.
+	 */
+	private int insertionPoint(final BleDevice device)
+	{
+		if (m_comparator == null) return m_sorted.size();
+
+		int low = 0;
+		int high = m_sorted.size();
+
+		while (low < high)
+		{
+			final int middle = (low + high) >>> 1;
+
+			if (m_comparator.compare(m_sorted.get(middle), device) <= 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	//--- Reads m_positions, so callers must have called updatePositions() for any range of m_sorted they changed.
+	private int indexOf(final BleDevice device)
+	{
+		final Integer position = m_positions.get(device);
+
+		return position != null ? position : -1;
+	}
+
+	private void post(final ChangeListener.Type type, final BleDevice device, final int fromPosition, final int toPosition)
+	{
+		final ChangeListener listener = m_listener;
+
+		if (listener != null)
+		{
+			m_mngr.postEvent(listener, new ChangeListener.ChangeEvent(type, device, fromPosition, toPosition));
+		}
+	}
+}
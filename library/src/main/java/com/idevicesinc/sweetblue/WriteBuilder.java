@@ -189,7 +189,8 @@ public final class WriteBuilder
     }
 
     /**
-     * Set the {@link FutureData} to write.
+     * Set the {@link FutureData} to write. For large payloads, pass in a {@link com.idevicesinc.sweetblue.utils.ChunkedData}, so the data is
+     * streamed out a chunk at a time instead of being loaded into memory all at once.
      */
     public final WriteBuilder setData(FutureData data)
     {
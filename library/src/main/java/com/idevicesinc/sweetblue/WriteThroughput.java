@@ -0,0 +1,127 @@
+package com.idevicesinc.sweetblue;
+
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Utils_String;
+
+/**
+ * Throughput numbers for a write that was striped over multiple chunks, for instance a firmware image or log upload.
+ * See {@link BleDevice#getLastStripedWriteThroughput()}.
+ */
+public final class WriteThroughput
+{
+	//--- Android doesn't tell us the actual connection interval, so these are the middle of the ranges that each
+	//--- connection priority requests (see BluetoothGatt#CONNECTION_PRIORITY_*).
+	private static final double LOW_POWER_INTERVAL	= 0.1125;
+	private static final double BALANCED_INTERVAL	= 0.040;
+	private static final double HIGH_INTERVAL		= 0.013125;
+
+	private final int m_bytes;
+	private final int m_chunks;
+	private final int m_busyRetries;
+	private final int m_maxChunksInFlight;
+	private final Interval m_time;
+	private final BleConnectionPriority m_connectionPriority;
+
+
+	WriteThroughput(final int bytes, final int chunks, final int busyRetries, final int maxChunksInFlight, final Interval time, final BleConnectionPriority connectionPriority)
+	{
+		m_bytes = bytes;
+		m_chunks = chunks;
+		m_busyRetries = busyRetries;
+		m_maxChunksInFlight = maxChunksInFlight;
+		m_time = time;
+		m_connectionPriority = connectionPriority;
+	}
+
+	/**
+	 * The total number of bytes that were written.
+	 */
+	public final int bytes()
+	{
+		return m_bytes;
+	}
+
+	/**
+	 * The number of chunks (individual writes) the data was striped over.
+	 */
+	public final int chunks()
+	{
+		return m_chunks;
+	}
+
+	/**
+	 * The number of times a chunk had to be sent again because the native stack reported it was busy.
+	 */
+	public final int busyRetries()
+	{
+		return m_busyRetries;
+	}
+
+	/**
+	 * The largest number of chunks that were queued up at once. This will be 1 unless
+	 * {@link BleDeviceConfig#stripedWriteNoResponseWindow} is larger than 1.
+	 */
+	public final int maxChunksInFlight()
+	{
+		return m_maxChunksInFlight;
+	}
+
+	/**
+	 * The time it took from queueing the first chunk to the last chunk being acknowledged.
+	 */
+	public final Interval time()
+	{
+		return m_time;
+	}
+
+	/**
+	 * The average number of bytes written per second.
+	 */
+	public final double bytesPerSecond()
+	{
+		return m_time.secs() > 0.0 ? m_bytes / m_time.secs() : 0.0;
+	}
+
+	/**
+	 * An estimate of the average number of chunks sent per connection event. As Android doesn't expose the negotiated connection interval,
+	 * this is based on the nominal interval for the device's {@link BleDevice#getConnectionPriority()}, so treat it as a rough number
+	 * for comparing settings, not an exact count.
+	 */
+	public final double chunksPerConnectionEvent()
+	{
+		final double connectionEvents = m_time.secs() / getNominalConnectionInterval();
+
+		return connectionEvents > 0.0 ? m_chunks / Math.max(1.0, connectionEvents) : 0.0;
+	}
+
+	private double getNominalConnectionInterval()
+	{
+		if( m_connectionPriority == BleConnectionPriority.HIGH )
+		{
+			return HIGH_INTERVAL;
+		}
+		else if( m_connectionPriority == BleConnectionPriority.LOW )
+		{
+			return LOW_POWER_INTERVAL;
+		}
+		else
+		{
+			return BALANCED_INTERVAL;
+		}
+	}
+
+	@Override public final String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"bytes", bytes(),
+			"chunks", chunks(),
+			"time", time(),
+			"bytesPerSecond", bytesPerSecond(),
+			"chunksPerConnectionEvent", chunksPerConnectionEvent(),
+			"maxChunksInFlight", maxChunksInFlight(),
+			"busyRetries", busyRetries()
+		);
+	}
+}
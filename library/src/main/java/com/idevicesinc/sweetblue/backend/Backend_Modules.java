@@ -2,8 +2,10 @@ package com.idevicesinc.sweetblue.backend;
 
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_Default;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_Default;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_File;
 
 /**
  * A collection of {@link java.lang.Class} instances used through {@link Class#newInstance()} to create instances of backend modules.
@@ -12,4 +14,14 @@ public class Backend_Modules
 {
 	public static Class<? extends Backend_HistoricalDataList> HISTORICAL_DATA_LIST = Backend_HistoricalDataList_Default.class;
 	public static Class<? extends Backend_HistoricalDatabase> HISTORICAL_DATABASE = Backend_HistoricalDatabase_Default.class;
+
+	/**
+	 * Switches {@link #HISTORICAL_DATA_LIST} and {@link #HISTORICAL_DATABASE} over to the file-based backend, {@link Backend_HistoricalDataList_File}
+	 * and {@link Backend_HistoricalDatabase_File}. Call this before {@link com.idevicesinc.sweetblue.BleManager#get(android.content.Context)}.
+	 */
+	public static void useFileBackend()
+	{
+		HISTORICAL_DATA_LIST = Backend_HistoricalDataList_File.class;
+		HISTORICAL_DATABASE = Backend_HistoricalDatabase_File.class;
+	}
 }
@@ -0,0 +1,392 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import com.idevicesinc.sweetblue.BleDeviceConfig;
+import com.idevicesinc.sweetblue.BleNodeConfig;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Breakable;
+import com.idevicesinc.sweetblue.utils.ForEach_Returning;
+import com.idevicesinc.sweetblue.utils.ForEach_Void;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.UpdateLoop;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Implementation of {@link Backend_HistoricalDataList} meant to go with {@link Backend_HistoricalDatabase_File}. Unlike
+ * {@link Backend_HistoricalDataList_Default} this keeps everything it's given in memory, sorted by time, and passes anything that should go
+ * to disk on to the database.
+ * <br><br>
+ * Data in memory is stored in primitive columns rather than as {@link HistoricalData} instances, so counts and lookups by time are binary
+ * searches, and cursors from {@link #getCursor(EpochTimeRange)} read rows without creating objects for them. Older data is compressed
+ * in blocks of {@link P_HistoricalDataBlock#BLOCK_ROWS} rows, usually down to a few bytes per row for small regularly-sampled values.
+ * Once a list uses more than its memory budget (see {@link BleNodeConfig#historicalDataListMemoryBudget}) the oldest data is dropped from
+ * memory (not from disk).
+ */
+public class Backend_HistoricalDataList_File implements Backend_HistoricalDataList
+{
+	private static final HistoricalDataCursor EMPTY_CURSOR = new P_HistoricalDataCursor_Empty();
+
+	private final P_HistoricalDataSeries m_data = new P_HistoricalDataSeries();
+
+	private volatile long m_memoryBudget = BleNodeConfig.DEFAULT_HISTORICAL_DATA_LIST_MEMORY_BUDGET;
+
+	private Backend_HistoricalDatabase m_database;
+	private UpdateLoop m_updateLoop;
+	private String m_macAddress;
+	private UUID m_uuid;
+
+	private volatile int m_loadState = LOAD_STATE__NOT_LOADED;
+	private final ArrayList<AsyncLoadCallback> m_loadCallbacks = new ArrayList<AsyncLoadCallback>();
+
+	public Backend_HistoricalDataList_File()
+	{
+	}
+
+	/**
+	 * Sets the most memory, in bytes, that this list can use before its oldest data is dropped from memory. Compressed data is counted by its
+	 * compressed size. SweetBlue calls this with {@link BleNodeConfig#historicalDataListMemoryBudget} when it creates the list. A new budget
+	 * applies the next time data is added.
+	 */
+	public void setMemoryBudget(final long memoryBudget)
+	{
+		m_memoryBudget = memoryBudget;
+	}
+
+	@Override public void init(final Backend_HistoricalDatabase database, final UpdateLoop updateLoop, final String macAddress, final UUID uuid, final String uuidName, final boolean hasExistingTable)
+	{
+		m_database = database;
+		m_updateLoop = updateLoop;
+		m_macAddress = macAddress;
+		m_uuid = uuid;
+	}
+
+	@Override public void add_single(final HistoricalData historicalData, final int persistenceLevel, final long limit)
+	{
+		if( BleDeviceConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesMemory(persistenceLevel) )
+		{
+			synchronized (m_data)
+			{
+				m_data.add(historicalData.getEpochTime_millis(), historicalData.getBlob());
+				m_data.trim(limit, m_memoryBudget);
+			}
+		}
+
+		if( BleDeviceConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesDisk(persistenceLevel) && m_database != null )
+		{
+			final long overLimit = m_database.getCount(m_macAddress, m_uuid, EpochTimeRange.FROM_MIN_TO_MAX) + 1 - limit;
+
+			m_database.add_single(m_macAddress, m_uuid, historicalData, Math.max(0, overLimit));
+		}
+	}
+
+	@Override public void add_multiple(final Iterator<HistoricalData> historicalData, final int persistenceLevel, final long limit)
+	{
+		add_multiple(new ForEach_Returning<HistoricalData>()
+		{
+			@Override public HistoricalData next(final int index)
+			{
+				return historicalData.hasNext() ? historicalData.next() : null;
+			}
+		}, persistenceLevel, limit);
+	}
+
+	@Override public void add_multiple(final ForEach_Returning<HistoricalData> historicalData, final int persistenceLevel, final long limit)
+	{
+		final boolean toMemory = BleDeviceConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesMemory(persistenceLevel);
+		final boolean toDisk = BleDeviceConfig.HistoricalDataLogFilter.HistoricalDataLogEvent.includesDisk(persistenceLevel) && m_database != null;
+
+		if( toDisk )
+		{
+			m_database.add_multiple_start();
+		}
+
+		try
+		{
+			for( int i = 0; ; i++ )
+			{
+				final HistoricalData next = historicalData.next(i);
+
+				if( next == null )  break;
+
+				if( toMemory )
+				{
+					synchronized (m_data)
+					{
+						m_data.add(next.getEpochTime_millis(), next.getBlob());
+					}
+				}
+
+				if( toDisk )
+				{
+					m_database.add_multiple_next(m_macAddress, m_uuid, next);
+				}
+			}
+		}
+		finally
+		{
+			if( toDisk )
+			{
+				m_database.add_multiple_end();
+			}
+		}
+
+		if( toMemory )
+		{
+			synchronized (m_data)
+			{
+				m_data.trim(limit, m_memoryBudget);
+			}
+		}
+
+		if( toDisk )
+		{
+			final long overLimit = m_database.getCount(m_macAddress, m_uuid, EpochTimeRange.FROM_MIN_TO_MAX) - limit;
+
+			if( overLimit > 0 )
+			{
+				m_database.delete_singleUuid_inRange(m_macAddress, m_uuid, EpochTimeRange.FROM_MIN_TO_MAX, overLimit);
+			}
+		}
+	}
+
+	@Override public int getCount(final EpochTimeRange range)
+	{
+		synchronized (m_data)
+		{
+			return m_data.count(range.from().toMilliseconds(), range.to().toMilliseconds());
+		}
+	}
+
+	@Override public HistoricalData get(final EpochTimeRange range, final int offset)
+	{
+		synchronized (m_data)
+		{
+			if( offset < 0 )  return HistoricalData.NULL;
+
+			final int index = m_data.lowerBound(range.from().toMilliseconds()) + offset;
+
+			//--- Checking the row's own time instead of an upperBound() keeps this to the block the row is in, rather than also decoding the block at the end of the range.
+			if( index >= m_data.size() || m_data.timeAt(index) > range.to().toMilliseconds() )  return HistoricalData.NULL;
+
+			return m_data.get(index);
+		}
+	}
+
+	@Override public Iterator<HistoricalData> getIterator(final EpochTimeRange range)
+	{
+		//--- Walks a snapshot of the range in order, so each compressed block is decoded once instead of every row looking itself up again.
+		final P_HistoricalDataSeries snapshot = snapshot(range);
+
+		return new Iterator<HistoricalData>()
+		{
+			private int m_index = 0;
+			private HistoricalData m_last = null;
+
+			@Override public boolean hasNext()
+			{
+				return m_index < snapshot.size();
+			}
+
+			@Override public HistoricalData next()
+			{
+				if( !hasNext() )  throw new NoSuchElementException();
+
+				m_last = snapshot.get(m_index);
+				m_index++;
+
+				return m_last;
+			}
+
+			@Override public void remove()
+			{
+				if( m_last == null )  throw new IllegalStateException();
+
+				synchronized (m_data)
+				{
+					final int index = m_data.indexOf(m_last.getEpochTime_millis(), m_last.getBlob());
+
+					if( index >= 0 )
+					{
+						m_data.remove(index, index + 1);
+					}
+				}
+
+				m_last = null;
+			}
+		};
+	}
+
+	@Override public boolean doForEach(final EpochTimeRange range, final Object forEach)
+	{
+		if( !(forEach instanceof ForEach_Void) && !(forEach instanceof ForEach_Breakable) )  return false;
+
+		final P_HistoricalDataSeries snapshot = snapshot(range);
+
+		for( int i = 0; i < snapshot.size(); i++ )
+		{
+			if( forEach instanceof ForEach_Void )
+			{
+				((ForEach_Void) forEach).next(snapshot.get(i));
+			}
+			else
+			{
+				final ForEach_Breakable.Please please = ((ForEach_Breakable) forEach).next(snapshot.get(i));
+
+				if( please == null || !please.shouldContinue() )  break;
+			}
+		}
+
+		return !snapshot.isEmpty();
+	}
+
+	//--- Copy of the given range, so callbacks and cursors can run without holding the lock.
+	private P_HistoricalDataSeries snapshot(final EpochTimeRange range)
+	{
+		synchronized (m_data)
+		{
+			final int from = m_data.lowerBound(range.from().toMilliseconds());
+			final int to = m_data.upperBound(range.to().toMilliseconds());
+
+			return m_data.copy(from, Math.max(from, to));
+		}
+	}
+
+	@Override public void delete_fromMemoryOnly(final EpochTimeRange range, final long count)
+	{
+		synchronized (m_data)
+		{
+			final int from = m_data.lowerBound(range.from().toMilliseconds());
+			final int to = m_data.upperBound(range.to().toMilliseconds());
+
+			m_data.remove(from, (int) Math.min(to, from + Math.max(0, count)));
+		}
+	}
+
+	@Override public void delete_fromMemoryOnlyForNowButDatabaseSoon(final EpochTimeRange range, final long count)
+	{
+		//--- The caller follows up with a database delete of its own.
+		delete_fromMemoryOnly(range, count);
+	}
+
+	@Override public void delete_fromMemoryAndDatabase(final EpochTimeRange range, final long count)
+	{
+		delete_fromMemoryOnly(range, count);
+
+		if( m_database != null )
+		{
+			m_database.delete_singleUuid_inRange(m_macAddress, m_uuid, range, count);
+		}
+	}
+
+	@Override public String getMacAddress()
+	{
+		return m_macAddress;
+	}
+
+	@Override public void load(final AsyncLoadCallback callback_nullable)
+	{
+		synchronized (m_loadCallbacks)
+		{
+			if( m_loadState == LOAD_STATE__LOADED )
+			{
+				if( callback_nullable != null )  callback_nullable.onDone();
+
+				return;
+			}
+
+			if( callback_nullable != null )  m_loadCallbacks.add(callback_nullable);
+
+			if( m_loadState == LOAD_STATE__LOADING )  return;
+
+			m_loadState = LOAD_STATE__LOADING;
+		}
+
+		final Runnable loadRunnable = new Runnable()
+		{
+			@Override public void run()
+			{
+				load_private();
+			}
+		};
+
+		if( m_updateLoop != null )
+		{
+			m_updateLoop.forcePost(loadRunnable);
+		}
+		else
+		{
+			loadRunnable.run();
+		}
+	}
+
+	private void load_private()
+	{
+		if( m_database != null )
+		{
+			m_database.load(m_macAddress, m_uuid, EpochTimeRange.FROM_MIN_TO_MAX, new ForEach_Void<HistoricalData>()
+			{
+				@Override public void next(final HistoricalData next)
+				{
+					synchronized (m_data)
+					{
+						//--- Anything added to memory since the last session may also be on disk already.
+						if( m_data.indexOf(next.getEpochTime_millis(), next.getBlob()) == -1 )
+						{
+							m_data.add(next.getEpochTime_millis(), next.getBlob());
+						}
+					}
+				}
+			});
+		}
+
+		final boolean isEmpty;
+
+		synchronized (m_data)
+		{
+			m_data.trim(Long.MAX_VALUE, m_memoryBudget);
+
+			isEmpty = m_data.isEmpty();
+		}
+
+		final AsyncLoadCallback[] callbacks;
+
+		synchronized (m_loadCallbacks)
+		{
+			m_loadState = isEmpty ? LOAD_STATE__NOT_LOADED : LOAD_STATE__LOADED;
+
+			callbacks = m_loadCallbacks.toArray(new AsyncLoadCallback[m_loadCallbacks.size()]);
+			m_loadCallbacks.clear();
+		}
+
+		for( int i = 0; i < callbacks.length; i++ )
+		{
+			callbacks[i].onDone();
+		}
+	}
+
+	@Override public int getLoadState()
+	{
+		return m_loadState;
+	}
+
+	@Override public HistoricalDataCursor getCursor(final EpochTimeRange range)
+	{
+		final P_HistoricalDataSeries snapshot = snapshot(range);
+
+		return snapshot.isEmpty() ? EMPTY_CURSOR : new P_HistoricalDataCursor_Series(snapshot);
+	}
+
+	@Override public EpochTimeRange getRange()
+	{
+		synchronized (m_data)
+		{
+			if( m_data.isEmpty() )  return EpochTimeRange.NULL;
+
+			return new EpochTimeRange(m_data.timeAt(0), m_data.timeAt(m_data.size() - 1));
+		}
+	}
+}
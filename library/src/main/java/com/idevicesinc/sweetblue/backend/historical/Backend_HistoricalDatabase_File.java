@@ -0,0 +1,321 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.idevicesinc.sweetblue.BleManager;
+import com.idevicesinc.sweetblue.utils.EmptyCursor;
+import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Void;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Implementation of {@link Backend_HistoricalDatabase} that stores historical data in plain append-only files instead of SQL, one directory
+ * per MAC-address/UUID combination. Inserts are buffered and written out in large chunks, older data is read through memory-mapped files,
+ * and time range queries binary search instead of scanning. Use {@link com.idevicesinc.sweetblue.backend.Backend_Modules#useFileBackend()}
+ * to turn it on.
+ * <br><br>
+ * {@link #query(String)} is not supported, since there's no SQL underneath, and always returns an empty {@link Cursor}.
+ * <br><br>
+ * Each MAC-address/UUID combination is locked separately, so reading or writing one doesn't wait on the others.
+ */
+public class Backend_HistoricalDatabase_File implements Backend_HistoricalDatabase
+{
+	private static final HistoricalDataCursor EMPTY_CURSOR = new P_HistoricalDataCursor_Empty();
+
+	/**
+	 * Name of the directory, inside {@link Context#getFilesDir()}, that everything is stored under.
+	 */
+	public static final String DIRECTORY_NAME = "sweetblue_historical";
+
+	//--- Only guards the map itself, each store is used while holding its own lock.
+	private final HashMap<String, P_HistoricalDataFileStore> m_stores = new HashMap<String, P_HistoricalDataFileStore>();
+
+	private File m_rootDir;
+	private volatile int m_addMultipleDepth = 0;
+
+	public Backend_HistoricalDatabase_File(final Context context)
+	{
+		m_rootDir = context != null ? new File(context.getFilesDir(), DIRECTORY_NAME) : null;
+	}
+
+	public Backend_HistoricalDatabase_File()
+	{
+	}
+
+	/**
+	 * Stores everything in the given directory instead of the default one inside {@link Context#getFilesDir()}.
+	 */
+	public Backend_HistoricalDatabase_File(final File rootDir)
+	{
+		m_rootDir = rootDir;
+	}
+
+	@Override public void init(final BleManager manager)
+	{
+		if( m_rootDir == null )
+		{
+			m_rootDir = new File(manager.getApplicationContext().getFilesDir(), DIRECTORY_NAME);
+		}
+	}
+
+	private static String getKey(final String macAddress, final UUID uuid)
+	{
+		return macAddress.replace(":", "").toUpperCase() + "_" + uuid.toString();
+	}
+
+	private synchronized P_HistoricalDataFileStore getStore(final String macAddress, final UUID uuid, final boolean createIfNeeded)
+	{
+		final String key = getKey(macAddress, uuid);
+
+		P_HistoricalDataFileStore store = m_stores.get(key);
+
+		if( store == null )
+		{
+			final File dir = new File(m_rootDir, key);
+
+			if( !createIfNeeded && !dir.exists() )  return null;
+
+			store = new P_HistoricalDataFileStore(dir);
+
+			m_stores.put(key, store);
+		}
+
+		return store;
+	}
+
+	private static void logError(final IOException e)
+	{
+		Log.e("SweetBlue", "Historical data file error: " + e.getMessage());
+	}
+
+	@Override public void add_single(final String macAddress, final UUID uuid, final HistoricalData data, final long maxCountToDelete)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/true);
+
+		synchronized(store)
+		{
+			try
+			{
+				if( maxCountToDelete > 0 )
+				{
+					store.delete(EpochTimeRange.FROM_MIN_TO_MAX, maxCountToDelete);
+				}
+
+				store.append(data.getEpochTime_millis(), data.getBlob());
+
+				if( m_addMultipleDepth == 0 )
+				{
+					store.flush();
+				}
+			}
+			catch(IOException e)
+			{
+				logError(e);
+			}
+		}
+	}
+
+	@Override public synchronized void add_multiple_start()
+	{
+		m_addMultipleDepth++;
+	}
+
+	@Override public void add_multiple_next(final String macAddress, final UUID uuid, final HistoricalData data)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/true);
+
+		synchronized(store)
+		{
+			try
+			{
+				store.append(data.getEpochTime_millis(), data.getBlob());
+			}
+			catch(IOException e)
+			{
+				logError(e);
+			}
+		}
+	}
+
+	@Override public void add_multiple_end()
+	{
+		final boolean done;
+
+		synchronized(this)
+		{
+			m_addMultipleDepth = Math.max(0, m_addMultipleDepth - 1);
+
+			done = m_addMultipleDepth == 0;
+		}
+
+		if( done )
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Makes sure anything buffered is written to disk. Normally everything is written by the end of each add call, except in the middle
+	 * of {@link #add_multiple_start()} and {@link #add_multiple_end()}.
+	 */
+	public void flush()
+	{
+		final P_HistoricalDataFileStore[] stores;
+
+		synchronized(this)
+		{
+			stores = m_stores.values().toArray(new P_HistoricalDataFileStore[m_stores.size()]);
+		}
+
+		for( int i = 0; i < stores.length; i++ )
+		{
+			synchronized(stores[i])
+			{
+				try
+				{
+					stores[i].flush();
+				}
+				catch(IOException e)
+				{
+					logError(e);
+				}
+			}
+		}
+	}
+
+	@Override public void delete_singleUuid_all(final String macAddress, final UUID uuid)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return;
+
+		//--- The store stays in the map, empty, so nothing holding onto it in the meantime ends up writing to a store that's gone.
+		synchronized(store)
+		{
+			store.deleteAll();
+		}
+	}
+
+	@Override public void delete_singleUuid_inRange(final String macAddress, final UUID uuid, final EpochTimeRange range, final long maxCountToDelete)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return;
+
+		synchronized(store)
+		{
+			try
+			{
+				store.delete(range, maxCountToDelete);
+				store.flush();
+			}
+			catch(IOException e)
+			{
+				logError(e);
+			}
+		}
+	}
+
+	@Override public void delete_singleUuid_singleDate(final String macAddress, final UUID uuid, final long date)
+	{
+		delete_singleUuid_inRange(macAddress, uuid, EpochTimeRange.instant(new EpochTime(date)), Long.MAX_VALUE);
+	}
+
+	@Override public void delete_multipleUuids(final String[] macAddresses, final UUID[] uuids, final EpochTimeRange range, final long count)
+	{
+		for( int i = 0; i < uuids.length; i++ )
+		{
+			if( macAddresses[i] == null || uuids[i] == null )  continue;
+
+			delete_singleUuid_inRange(macAddresses[i], uuids[i], range, count);
+		}
+	}
+
+	@Override public boolean doesDataExist(final String macAddress, final UUID uuid)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return false;
+
+		synchronized(store)
+		{
+			return !store.isEmpty();
+		}
+	}
+
+	@Override public void load(final String macAddress, final UUID uuid, final EpochTimeRange range, final ForEach_Void<HistoricalData> forEach)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return;
+
+		synchronized(store)
+		{
+			try
+			{
+				store.forEach(range, forEach);
+			}
+			catch(IOException e)
+			{
+				logError(e);
+			}
+		}
+	}
+
+	@Override public int getCount(final String macAddress, final UUID uuid, final EpochTimeRange range)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return 0;
+
+		synchronized(store)
+		{
+			return store.getCount(range);
+		}
+	}
+
+	@Override public HistoricalDataCursor getCursor(final String macAddress, final UUID uuid, final EpochTimeRange range)
+	{
+		final P_HistoricalDataFileStore store = getStore(macAddress, uuid, /*createIfNeeded=*/false);
+
+		if( store == null )  return EMPTY_CURSOR;
+
+		final P_HistoricalDataSeries series;
+
+		synchronized(store)
+		{
+			try
+			{
+				series = store.snapshot(range);
+			}
+			catch(IOException e)
+			{
+				logError(e);
+
+				return EMPTY_CURSOR;
+			}
+		}
+
+		return series.isEmpty() ? EMPTY_CURSOR : new P_HistoricalDataCursor_Series(series);
+	}
+
+	@Override public Cursor query(final String query)
+	{
+		return EmptyCursor.SINGLETON;
+	}
+
+	@Override public String getTableName(final String macAddress, final UUID uuid)
+	{
+		return getKey(macAddress, uuid);
+	}
+}
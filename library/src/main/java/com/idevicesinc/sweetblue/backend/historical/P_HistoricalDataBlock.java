@@ -0,0 +1,574 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An immutable, compressed block of historical data rows. Used both for older data kept in memory by {@link P_HistoricalDataSeries} and
+ * for sealed segments written by {@link P_HistoricalDataFileStore}.
+ * <br><br>
+ * Most logged data is small fixed-width samples taken at close to regular intervals, so:
+ * <ul>
+ *     <li>Timestamps are stored as the difference between consecutive deltas ("delta of delta"), which is zero or close to it for regular
+ *     intervals and fits in a single byte.</li>
+ *     <li>Fixed-width blobs are XORed with the previous one, and only the bytes that changed are written, usually one or two bytes
+ *     total per sample.</li>
+ *     <li>If there are only a few distinct blobs (e.g. an on/off state) they're written once in a dictionary and each row is just an index.</li>
+ * </ul>
+ * Whichever of the last two comes out smaller is used. Blobs that aren't all the same width are written as is.
+ * <br><br>
+ * Layout, all big-endian:
+ * <pre>
+ * int    total length of the block in bytes, including this
+ * byte   flags, see FLAG_*
+ * int    row count
+ * long   min time
+ * long   max time
+ * varint blob width, only if FLAG_FIXED_WIDTH
+ * ...    timestamps: zigzag varint first time, first delta, then deltas of deltas
+ * ...    blobs
+ * </pre>
+ */
+final class P_HistoricalDataBlock
+{
+	/**
+	 * Default number of rows per block.
+	 */
+	static final int BLOCK_ROWS = 1024;
+
+	static final int HEADER_SIZE = 4 + 1 + 4 + 8 + 8;
+
+	private static final int FLAG_SORTED		= 0x1;
+	private static final int FLAG_FIXED_WIDTH	= 0x2;
+	private static final int FLAG_DICTIONARY	= 0x4;
+
+	//--- Beyond this many distinct blobs, dictionary encoding isn't even tried.
+	private static final int MAX_DICTIONARY_SIZE = 256;
+
+	private final ByteBuffer m_data;
+	private final int m_count;
+	private final long m_minTime;
+	private final long m_maxTime;
+	private final boolean m_sorted;
+
+	private P_HistoricalDataBlock(final ByteBuffer data)
+	{
+		m_data = data;
+		m_count = data.getInt(5);
+		m_minTime = data.getLong(9);
+		m_maxTime = data.getLong(17);
+		m_sorted = (data.get(4) & FLAG_SORTED) != 0;
+	}
+
+	int getCount()
+	{
+		return m_count;
+	}
+
+	long getMinTime()
+	{
+		return m_minTime;
+	}
+
+	long getMaxTime()
+	{
+		return m_maxTime;
+	}
+
+	boolean isSorted()
+	{
+		return m_sorted;
+	}
+
+	/**
+	 * Size of the encoded block in bytes.
+	 */
+	int getByteCount()
+	{
+		return m_data.limit();
+	}
+
+	/**
+	 * Reads the block starting at the buffer's current position and advances past it. The returned block shares the buffer's content,
+	 * e.g. a memory-mapped file.
+	 */
+	static P_HistoricalDataBlock read(final ByteBuffer buffer)
+	{
+		final int start = buffer.position();
+		final int length = buffer.getInt(start);
+
+		if( length < HEADER_SIZE || length > buffer.remaining() )  throw new IllegalStateException("Corrupt historical data block.");
+
+		final ByteBuffer slice = buffer.duplicate();
+		slice.limit(start + length);
+		slice.position(start);
+
+		buffer.position(start + length);
+
+		return new P_HistoricalDataBlock(slice.slice());
+	}
+
+	/**
+	 * Writes the encoded block to the given buffer.
+	 */
+	void writeTo(final ByteBuffer dest)
+	{
+		dest.put(m_data.duplicate());
+	}
+
+	byte[] toByteArray()
+	{
+		final byte[] bytes = new byte[m_data.limit()];
+		m_data.duplicate().get(bytes);
+
+		return bytes;
+	}
+
+	/**
+	 * Appends this block's rows to the end of <code>dest</code>, in the order they were encoded.
+	 */
+	void decodeInto(final P_HistoricalDataColumns dest)
+	{
+		final ByteBuffer in = m_data.duplicate();
+		in.position(HEADER_SIZE);
+
+		final int flags = m_data.get(4);
+		final int width = (flags & FLAG_FIXED_WIDTH) != 0 ? readVarInt(in) : -1;
+
+		//--- Timestamps first, into their own array, since blobs are written after all of them.
+		final long[] times = new long[m_count];
+		long previous = 0;
+		long delta = 0;
+
+		for( int i = 0; i < m_count; i++ )
+		{
+			if( i == 0 )
+			{
+				previous = readZigZag(in);
+			}
+			else if( i == 1 )
+			{
+				delta = readZigZag(in);
+				previous += delta;
+			}
+			else
+			{
+				delta += readZigZag(in);
+				previous += delta;
+			}
+
+			times[i] = previous;
+		}
+
+		if( (flags & FLAG_DICTIONARY) != 0 )
+		{
+			final int size = readVarInt(in);
+			final byte[][] dictionary = new byte[size][];
+
+			for( int i = 0; i < size; i++ )
+			{
+				dictionary[i] = new byte[width >= 0 ? width : readVarInt(in)];
+				in.get(dictionary[i]);
+			}
+
+			for( int i = 0; i < m_count; i++ )
+			{
+				final byte[] blob = dictionary[readVarInt(in)];
+				dest.append(times[i], blob, 0, blob.length);
+			}
+		}
+		else if( width >= 0 )
+		{
+			final byte[] blob = new byte[width];
+
+			for( int i = 0; i < m_count; i++ )
+			{
+				if( i == 0 )
+				{
+					in.get(blob);
+				}
+				else
+				{
+					readXor(in, blob, width);
+				}
+
+				dest.append(times[i], blob, 0, width);
+			}
+		}
+		else
+		{
+			byte[] blob = new byte[16];
+
+			for( int i = 0; i < m_count; i++ )
+			{
+				final int length = readVarInt(in);
+
+				if( length > blob.length )  blob = new byte[length];
+
+				in.get(blob, 0, length);
+				dest.append(times[i], blob, 0, length);
+			}
+		}
+	}
+
+	/**
+	 * Encodes rows [from, to) of the given columns, in their current order.
+	 */
+	static P_HistoricalDataBlock encode(final P_HistoricalDataColumns source, final int from, final int to)
+	{
+		final int count = to - from;
+
+		int width = count > 0 ? source.blobLengthAt(from) : 0;
+		long minTime = Long.MAX_VALUE;
+		long maxTime = Long.MIN_VALUE;
+		boolean sorted = true;
+
+		for( int i = from; i < to; i++ )
+		{
+			final long time = source.timeAt(i);
+
+			if( i > from && time < source.timeAt(i - 1) )  sorted = false;
+
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+
+			if( source.blobLengthAt(i) != width )  width = -1;
+		}
+
+		final Writer values = encodeValues(source, from, to, width);
+		final Writer dictionaryValues = encodeDictionary(source, from, to, width);
+		final boolean useDictionary = dictionaryValues != null && dictionaryValues.size() < values.size();
+
+		final Writer out = new Writer(HEADER_SIZE + count * 2 + (useDictionary ? dictionaryValues.size() : values.size()));
+		out.putInt(0);
+		out.put((byte) ((sorted ? FLAG_SORTED : 0) | (width >= 0 ? FLAG_FIXED_WIDTH : 0) | (useDictionary ? FLAG_DICTIONARY : 0)));
+		out.putInt(count);
+		out.putLong(count > 0 ? minTime : 0);
+		out.putLong(count > 0 ? maxTime : 0);
+
+		if( width >= 0 )
+		{
+			out.putVarInt(width);
+		}
+
+		long previous = 0;
+		long previousDelta = 0;
+
+		for( int i = from; i < to; i++ )
+		{
+			final long time = source.timeAt(i);
+
+			if( i == from )
+			{
+				out.putZigZag(time);
+			}
+			else
+			{
+				final long delta = time - previous;
+
+				out.putZigZag(i == from + 1 ? delta : delta - previousDelta);
+
+				previousDelta = delta;
+			}
+
+			previous = time;
+		}
+
+		out.put(useDictionary ? dictionaryValues : values);
+		out.setInt(0, out.size());
+
+		return new P_HistoricalDataBlock(ByteBuffer.wrap(out.toByteArray()));
+	}
+
+	private static Writer encodeValues(final P_HistoricalDataColumns source, final int from, final int to, final int width)
+	{
+		final Writer out = new Writer(64);
+
+		if( width >= 0 )
+		{
+			final byte[] previous = new byte[width];
+			final byte[] current = new byte[width];
+
+			for( int i = from; i < to; i++ )
+			{
+				source.copyBlob(i, current, 0);
+
+				if( i == from )
+				{
+					out.put(current, 0, width);
+				}
+				else
+				{
+					writeXor(out, previous, current, width);
+				}
+
+				System.arraycopy(current, 0, previous, 0, width);
+			}
+		}
+		else
+		{
+			for( int i = from; i < to; i++ )
+			{
+				final byte[] blob = source.blobAt(i);
+
+				out.putVarInt(blob.length);
+				out.put(blob, 0, blob.length);
+			}
+		}
+
+		return out;
+	}
+
+	private static Writer encodeDictionary(final P_HistoricalDataColumns source, final int from, final int to, final int width)
+	{
+		final HashMap<BlobKey, Integer> indices = new HashMap<BlobKey, Integer>();
+		final int[] rowIndices = new int[to - from];
+		final Writer entries = new Writer(64);
+
+		for( int i = from; i < to; i++ )
+		{
+			final BlobKey key = new BlobKey(source.blobAt(i));
+			Integer index = indices.get(key);
+
+			if( index == null )
+			{
+				if( indices.size() == MAX_DICTIONARY_SIZE )  return null;
+
+				index = indices.size();
+				indices.put(key, index);
+
+				if( width < 0 )  entries.putVarInt(key.m_blob.length);
+
+				entries.put(key.m_blob, 0, key.m_blob.length);
+			}
+
+			rowIndices[i - from] = index;
+		}
+
+		final Writer out = new Writer(entries.size() + rowIndices.length + 4);
+		out.putVarInt(indices.size());
+		out.put(entries);
+
+		for( int i = 0; i < rowIndices.length; i++ )
+		{
+			out.putVarInt(rowIndices[i]);
+		}
+
+		return out;
+	}
+
+	//--- One control byte for widths up to 15: high nibble is the index of the first changed byte, low nibble how many bytes follow.
+	//--- Zero means nothing changed. Wider blobs use two varints instead.
+	private static void writeXor(final Writer out, final byte[] previous, final byte[] current, final int width)
+	{
+		int first = -1;
+		int last = -1;
+
+		for( int i = 0; i < width; i++ )
+		{
+			if( previous[i] != current[i] )
+			{
+				if( first == -1 )  first = i;
+
+				last = i;
+			}
+		}
+
+		if( first == -1 )
+		{
+			out.put((byte) 0);
+
+			return;
+		}
+
+		final int length = last - first + 1;
+
+		if( width <= 15 )
+		{
+			out.put((byte) ((first << 4) | length));
+		}
+		else
+		{
+			out.putVarInt(first + 1);
+			out.putVarInt(length);
+		}
+
+		for( int i = first; i <= last; i++ )
+		{
+			out.put((byte) (previous[i] ^ current[i]));
+		}
+	}
+
+	private static void readXor(final ByteBuffer in, final byte[] blob, final int width)
+	{
+		final int first;
+		final int length;
+
+		if( width <= 15 )
+		{
+			final int control = in.get() & 0xFF;
+
+			if( control == 0 )  return;
+
+			first = control >>> 4;
+			length = control & 0xF;
+		}
+		else
+		{
+			final int firstPlusOne = readVarInt(in);
+
+			if( firstPlusOne == 0 )  return;
+
+			first = firstPlusOne - 1;
+			length = readVarInt(in);
+		}
+
+		for( int i = first; i < first + length; i++ )
+		{
+			blob[i] ^= in.get();
+		}
+	}
+
+	private static int readVarInt(final ByteBuffer in)
+	{
+		return (int) readVarLong(in);
+	}
+
+	private static long readVarLong(final ByteBuffer in)
+	{
+		long value = 0;
+		int shift = 0;
+
+		while( true )
+		{
+			final int b = in.get();
+
+			value |= (long) (b & 0x7F) << shift;
+
+			if( (b & 0x80) == 0 )  return value;
+
+			shift += 7;
+		}
+	}
+
+	private static long readZigZag(final ByteBuffer in)
+	{
+		final long value = readVarLong(in);
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static final class BlobKey
+	{
+		private final byte[] m_blob;
+		private final int m_hashCode;
+
+		BlobKey(final byte[] blob)
+		{
+			m_blob = blob;
+			m_hashCode = Arrays.hashCode(blob);
+		}
+
+		@Override public int hashCode()
+		{
+			return m_hashCode;
+		}
+
+		@Override public boolean equals(final Object other)
+		{
+			return other instanceof BlobKey && Arrays.equals(m_blob, ((BlobKey) other).m_blob);
+		}
+	}
+
+	/**
+	 * Growable big-endian byte buffer with varint support.
+	 */
+	private static final class Writer
+	{
+		private byte[] m_bytes;
+		private int m_size = 0;
+
+		Writer(final int initialCapacity)
+		{
+			m_bytes = new byte[Math.max(16, initialCapacity)];
+		}
+
+		int size()
+		{
+			return m_size;
+		}
+
+		void put(final byte b)
+		{
+			ensureCapacity(1);
+			m_bytes[m_size++] = b;
+		}
+
+		void put(final byte[] bytes, final int offset, final int length)
+		{
+			ensureCapacity(length);
+			System.arraycopy(bytes, offset, m_bytes, m_size, length);
+			m_size += length;
+		}
+
+		void put(final Writer other)
+		{
+			put(other.m_bytes, 0, other.m_size);
+		}
+
+		void putInt(final int value)
+		{
+			ensureCapacity(4);
+			setInt(m_size, value);
+			m_size += 4;
+		}
+
+		void setInt(final int index, final int value)
+		{
+			m_bytes[index] = (byte) (value >>> 24);
+			m_bytes[index + 1] = (byte) (value >>> 16);
+			m_bytes[index + 2] = (byte) (value >>> 8);
+			m_bytes[index + 3] = (byte) value;
+		}
+
+		void putLong(final long value)
+		{
+			putInt((int) (value >>> 32));
+			putInt((int) value);
+		}
+
+		void putVarInt(final int value)
+		{
+			putVarLong(value & 0xFFFFFFFFL);
+		}
+
+		void putVarLong(long value)
+		{
+			while( (value & ~0x7FL) != 0 )
+			{
+				put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+
+			put((byte) value);
+		}
+
+		void putZigZag(final long value)
+		{
+			putVarLong((value << 1) ^ (value >> 63));
+		}
+
+		byte[] toByteArray()
+		{
+			return Arrays.copyOf(m_bytes, m_size);
+		}
+
+		private void ensureCapacity(final int extra)
+		{
+			if( m_size + extra <= m_bytes.length )  return;
+
+			m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_size + extra));
+		}
+	}
+}
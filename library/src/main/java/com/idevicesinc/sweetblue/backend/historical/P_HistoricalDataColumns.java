@@ -0,0 +1,393 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+
+import java.util.Arrays;
+
+/**
+ * Time-ordered historical data kept in primitive columns instead of one {@link HistoricalData} per row: a <code>long[]</code> of
+ * timestamps, parallel <code>int[]</code>s of offsets and lengths, and one byte array that all the blobs are packed into. Counts and
+ * lookups by time are binary searches, and removing the oldest rows just moves the head forward.
+ * <br><br>
+ * Indices passed in and out are logical, i.e. 0 is always the oldest row still kept. Not thread safe.
+ */
+final class P_HistoricalDataColumns
+{
+	//--- Rough per-row cost of the columns themselves, on top of the blob.
+	static final int ROW_OVERHEAD = 8 + 4 + 4;
+
+	private static final int INITIAL_ROWS = 16;
+	private static final int INITIAL_ARENA = 256;
+
+	private long[] m_times = new long[INITIAL_ROWS];
+	private int[] m_offsets = new int[INITIAL_ROWS];
+	private int[] m_lengths = new int[INITIAL_ROWS];
+	private byte[] m_arena = new byte[INITIAL_ARENA];
+
+	//--- Rows live in [m_head, m_head + m_size) of the columns.
+	private int m_head = 0;
+	private int m_size = 0;
+
+	//--- Blobs are appended at m_arenaEnd. m_blobBytes is how much of the arena is still referenced.
+	private int m_arenaEnd = 0;
+	private long m_blobBytes = 0;
+
+	int size()
+	{
+		return m_size;
+	}
+
+	boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	/**
+	 * Approximate memory used by the rows, counting blobs plus {@link #ROW_OVERHEAD} each.
+	 */
+	long getByteCount()
+	{
+		return m_blobBytes + (long) m_size * ROW_OVERHEAD;
+	}
+
+	long timeAt(final int index)
+	{
+		return m_times[m_head + index];
+	}
+
+	int blobLengthAt(final int index)
+	{
+		return m_lengths[m_head + index];
+	}
+
+	/**
+	 * Copies the blob at the given index into <code>dest</code> and returns its length.
+	 */
+	int copyBlob(final int index, final byte[] dest, final int destOffset)
+	{
+		final int length = m_lengths[m_head + index];
+
+		System.arraycopy(m_arena, m_offsets[m_head + index], dest, destOffset, length);
+
+		return length;
+	}
+
+	byte[] blobAt(final int index)
+	{
+		final byte[] blob = new byte[blobLengthAt(index)];
+
+		copyBlob(index, blob, 0);
+
+		return blob;
+	}
+
+	HistoricalData get(final int index)
+	{
+		return new HistoricalData(blobAt(index), timeAt(index));
+	}
+
+	/**
+	 * Index of the first row with a time >= the given time, or {@link #size()} if there isn't one.
+	 */
+	int lowerBound(final long time)
+	{
+		int low = m_head;
+		int high = m_head + m_size;
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+
+			if( m_times[middle] < time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low - m_head;
+	}
+
+	/**
+	 * Index of the first row with a time > the given time, or {@link #size()} if there isn't one.
+	 */
+	int upperBound(final long time)
+	{
+		int low = m_head;
+		int high = m_head + m_size;
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+
+			if( m_times[middle] <= time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low - m_head;
+	}
+
+	int count(final long from, final long to)
+	{
+		return Math.max(0, upperBound(to) - lowerBound(from));
+	}
+
+	/**
+	 * Adds a row in time order, after any rows with the same time. Returns the index it ended up at.
+	 */
+	int add(final long time, final byte[] blob)
+	{
+		final int index = m_size == 0 || time >= m_times[m_head + m_size - 1] ? m_size : upperBound(time);
+
+		insert(index, time, blob, 0, blob.length);
+
+		return index;
+	}
+
+	/**
+	 * Adds a row to the end regardless of its time, for callers that keep track of order themselves.
+	 */
+	void append(final long time, final byte[] blob, final int offset, final int length)
+	{
+		insert(m_size, time, blob, offset, length);
+	}
+
+	private void insert(final int index, final long time, final byte[] blob, final int offset, final int length)
+	{
+		ensureRowCapacity();
+
+		final int physical = m_head + index;
+
+		if( index < m_size )
+		{
+			final int tail = m_size - index;
+			System.arraycopy(m_times, physical, m_times, physical + 1, tail);
+			System.arraycopy(m_offsets, physical, m_offsets, physical + 1, tail);
+			System.arraycopy(m_lengths, physical, m_lengths, physical + 1, tail);
+		}
+
+		m_times[physical] = time;
+		m_offsets[physical] = appendToArena(blob, offset, length);
+		m_lengths[physical] = length;
+		m_size++;
+		m_blobBytes += length;
+	}
+
+	void clear()
+	{
+		remove(0, m_size);
+	}
+
+	/**
+	 * Removes the rows in [from, to).
+	 */
+	void remove(final int from, final int to)
+	{
+		if( to <= from )  return;
+
+		for( int i = from; i < to; i++ )
+		{
+			m_blobBytes -= m_lengths[m_head + i];
+		}
+
+		if( from == 0 )
+		{
+			m_head += to;
+		}
+		else
+		{
+			final int tail = m_size - to;
+			System.arraycopy(m_times, m_head + to, m_times, m_head + from, tail);
+			System.arraycopy(m_offsets, m_head + to, m_offsets, m_head + from, tail);
+			System.arraycopy(m_lengths, m_head + to, m_lengths, m_head + from, tail);
+		}
+
+		m_size -= to - from;
+
+		if( m_size == 0 )
+		{
+			m_head = 0;
+			m_arenaEnd = 0;
+			m_blobBytes = 0;
+		}
+	}
+
+	/**
+	 * Removes the oldest rows until there's at most <code>maxCount</code> rows and {@link #getByteCount()} is at most <code>maxBytes</code>.
+	 */
+	void trim(final long maxCount, final long maxBytes)
+	{
+		int removeCount = (int) Math.min(m_size, Math.max(0, m_size - maxCount));
+
+		long bytes = getByteCount();
+
+		for( int i = 0; i < removeCount; i++ )
+		{
+			bytes -= m_lengths[m_head + i] + ROW_OVERHEAD;
+		}
+
+		while( bytes > maxBytes && removeCount < m_size )
+		{
+			bytes -= m_lengths[m_head + removeCount] + ROW_OVERHEAD;
+			removeCount++;
+		}
+
+		remove(0, removeCount);
+	}
+
+	/**
+	 * Returns the index of a row with exactly this time and blob, or -1.
+	 */
+	int indexOf(final long time, final byte[] blob)
+	{
+		for( int i = lowerBound(time); i < m_size && timeAt(i) == time; i++ )
+		{
+			if( blobEquals(i, blob) )  return i;
+		}
+
+		return -1;
+	}
+
+	private boolean blobEquals(final int index, final byte[] blob)
+	{
+		final int length = m_lengths[m_head + index];
+
+		if( length != blob.length )  return false;
+
+		final int offset = m_offsets[m_head + index];
+
+		for( int i = 0; i < length; i++ )
+		{
+			if( m_arena[offset + i] != blob[i] )  return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns a compact copy of the rows in [from, to), which won't change when this one does.
+	 */
+	P_HistoricalDataColumns copy(final int from, final int to)
+	{
+		final P_HistoricalDataColumns copy = new P_HistoricalDataColumns();
+		final int count = Math.max(0, to - from);
+
+		int blobBytes = 0;
+
+		for( int i = from; i < to; i++ )
+		{
+			blobBytes += m_lengths[m_head + i];
+		}
+
+		copy.m_times = Arrays.copyOfRange(m_times, m_head + from, m_head + from + Math.max(count, 1));
+		copy.m_offsets = new int[copy.m_times.length];
+		copy.m_lengths = Arrays.copyOfRange(m_lengths, m_head + from, m_head + from + Math.max(count, 1));
+		copy.m_arena = new byte[Math.max(blobBytes, 1)];
+
+		int offset = 0;
+
+		for( int i = 0; i < count; i++ )
+		{
+			System.arraycopy(m_arena, m_offsets[m_head + from + i], copy.m_arena, offset, copy.m_lengths[i]);
+			copy.m_offsets[i] = offset;
+			offset += copy.m_lengths[i];
+		}
+
+		copy.m_size = count;
+		copy.m_arenaEnd = offset;
+		copy.m_blobBytes = offset;
+
+		return copy;
+	}
+
+	private void ensureRowCapacity()
+	{
+		if( m_head + m_size < m_times.length )  return;
+
+		if( m_head > 0 && m_size < m_times.length / 2 )
+		{
+			//--- Plenty of room once the rows that were trimmed off the front are reclaimed.
+			System.arraycopy(m_times, m_head, m_times, 0, m_size);
+			System.arraycopy(m_offsets, m_head, m_offsets, 0, m_size);
+			System.arraycopy(m_lengths, m_head, m_lengths, 0, m_size);
+		}
+		else
+		{
+			final int newLength = Math.max(INITIAL_ROWS, m_size * 2);
+			m_times = Arrays.copyOfRange(m_times, m_head, m_head + newLength);
+			m_offsets = Arrays.copyOfRange(m_offsets, m_head, m_head + newLength);
+			m_lengths = Arrays.copyOfRange(m_lengths, m_head, m_head + newLength);
+		}
+
+		m_head = 0;
+	}
+
+	private int appendToArena(final byte[] blob, final int blobOffset, final int length)
+	{
+		if( m_arenaEnd + length > m_arena.length )
+		{
+			final long needed = m_blobBytes + length;
+
+			if( needed <= m_arena.length / 2 )
+			{
+				//--- Mostly dead space from removed rows, so just pack what's left.
+				compactArena(m_arena);
+			}
+			else
+			{
+				final long newLength = Math.max(needed * 2, INITIAL_ARENA);
+
+				if( newLength > Integer.MAX_VALUE )  throw new OutOfMemoryError("Historical data arena too large.");
+
+				compactArena(new byte[(int) newLength]);
+			}
+		}
+
+		final int offset = m_arenaEnd;
+
+		System.arraycopy(blob, blobOffset, m_arena, offset, length);
+		m_arenaEnd += length;
+
+		return offset;
+	}
+
+	//--- Packs all live blobs, in time order, to the front of the given arena, which may be the current one.
+	private void compactArena(final byte[] dest)
+	{
+		if( dest == m_arena )
+		{
+			//--- Blobs can only move towards the front if they're copied in arena order, which isn't necessarily time order.
+			final byte[] scratch = new byte[(int) Math.max(m_blobBytes, 1)];
+			packInto(scratch);
+			System.arraycopy(scratch, 0, m_arena, 0, m_arenaEnd);
+		}
+		else
+		{
+			packInto(dest);
+			m_arena = dest;
+		}
+	}
+
+	private void packInto(final byte[] dest)
+	{
+		int offset = 0;
+
+		for( int i = m_head; i < m_head + m_size; i++ )
+		{
+			System.arraycopy(m_arena, m_offsets[i], dest, offset, m_lengths[i]);
+			m_offsets[i] = offset;
+			offset += m_lengths[i];
+		}
+
+		m_arenaEnd = offset;
+	}
+}
@@ -49,7 +49,7 @@ class P_HistoricalDataCursor_List implements HistoricalDataCursor
 		{
 			m_position = position;
 
-			return false;
+			return true;
 		}
 		else
 		{
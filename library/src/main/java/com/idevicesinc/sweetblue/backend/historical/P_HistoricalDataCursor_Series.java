@@ -0,0 +1,118 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+
+/**
+ * Cursor over a {@link P_HistoricalDataSeries}. {@link #getEpochTime()} and {@link #getBlob()} read straight from the series, decoding
+ * compressed blocks one at a time as the cursor moves through them, so walking the cursor doesn't create a {@link HistoricalData} per row
+ * unless {@link #getHistoricalData()} is called.
+ */
+class P_HistoricalDataCursor_Series implements HistoricalDataCursor
+{
+	private final P_HistoricalDataSeries m_series;
+
+	private int m_position = -1;
+
+	private boolean m_isClosed = false;
+
+	P_HistoricalDataCursor_Series(final P_HistoricalDataSeries series)
+	{
+		m_series = series;
+	}
+
+	@Override public int getCount()
+	{
+		return m_series.size();
+	}
+
+	private boolean checkPosition(final int position)
+	{
+		return position >= 0 && position < getCount();
+	}
+
+	@Override public int getPosition()
+	{
+		return m_position;
+	}
+
+	@Override public boolean move(int offset)
+	{
+		return moveToPosition(getPosition() + offset);
+	}
+
+	@Override public boolean moveToPosition(int position)
+	{
+		//--- Same as android.database.Cursor, the position is clamped to one before the first or one after the last row.
+		m_position = Math.max(-1, Math.min(position, getCount()));
+
+		return checkPosition(m_position);
+	}
+
+	@Override public boolean moveToFirst()
+	{
+		return moveToPosition(0);
+	}
+
+	@Override public boolean moveToLast()
+	{
+		return moveToPosition(getCount()-1);
+	}
+
+	@Override public boolean moveToNext()
+	{
+		return moveToPosition(getPosition()+1);
+	}
+
+	@Override public boolean moveToPrevious()
+	{
+		return moveToPosition(getPosition()-1);
+	}
+
+	@Override public boolean isFirst()
+	{
+		return getCount() > 0 && getPosition() == 0;
+	}
+
+	@Override public boolean isLast()
+	{
+		return getCount() > 0 && getPosition() == getCount()-1;
+	}
+
+	@Override public boolean isBeforeFirst()
+	{
+		return getCount() == 0 || m_position == -1;
+	}
+
+	@Override public boolean isAfterLast()
+	{
+		return getCount() == 0 || m_position >= getCount();
+	}
+
+	@Override public void close()
+	{
+		if( m_isClosed )  return;
+
+		m_isClosed = true;
+	}
+
+	@Override public boolean isClosed()
+	{
+		return m_isClosed;
+	}
+
+	@Override public long getEpochTime()
+	{
+		return checkPosition(m_position) ? m_series.timeAt(m_position) : HistoricalData.NULL.getEpochTime_millis();
+	}
+
+	@Override public byte[] getBlob()
+	{
+		return checkPosition(m_position) ? m_series.blobAt(m_position) : HistoricalData.NULL.getBlob();
+	}
+
+	@Override public HistoricalData getHistoricalData()
+	{
+		return checkPosition(m_position) ? m_series.get(m_position) : HistoricalData.NULL;
+	}
+}
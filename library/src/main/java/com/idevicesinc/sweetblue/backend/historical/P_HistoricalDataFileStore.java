@@ -0,0 +1,1036 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Void;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Append-only storage of historical data for one mac address/characteristic pair, used by {@link Backend_HistoricalDatabase_File}.
+ * <br><br>
+ * Data is split into numbered segments. New data is only ever added to the end of the last segment, which is an index file made of
+ * fixed-width records (timestamp, offset into the data file, length) and a data file holding the blobs back to back, going through a write
+ * buffer so that many small inserts turn into few file writes. Once a segment is full it's sealed: sorted by time, compressed into a file of
+ * {@link P_HistoricalDataBlock}s that replaces both, and from then on only read through a memory-mapped buffer. Each segment remembers its
+ * time range and whether its timestamps are in order, so range lookups can skip whole segments and binary search the rest.
+ * <br><br>
+ * Deleting the oldest data (by far the most common case, i.e. enforcing a limit) skips records at the front of whichever segment holds the
+ * oldest one, which works because sealed segments are always sorted. If the oldest data is in the active segment and that's out of order, it's
+ * sealed early. Segments are dropped once they're skipped entirely. Deleting anything other than the oldest data rewrites the store.
+ * <br><br>
+ * Not thread safe, {@link Backend_HistoricalDatabase_File} locks each store while it's using it.
+ */
+final class P_HistoricalDataFileStore
+{
+	static final int INDEX_RECORD_SIZE = 8 + 8 + 4;
+
+	//--- A segment is sealed once it hits either of these.
+	static final int MAX_SEGMENT_RECORDS = 16 * 1024;
+	static final long MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+	//--- Pending writes are flushed once they get this big, or when someone needs to read them.
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final String DATA_SUFFIX = ".dat";
+	private static final String BLOCK_SUFFIX = ".blk";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String META_FILE = "meta";
+
+
+	private static final class Segment
+	{
+		final int m_id;
+		final File m_indexFile;
+		final File m_dataFile;
+		final File m_blockFile;
+
+		int m_count;
+		//--- Number of records at the front that have been deleted.
+		int m_skip;
+		long m_minTime = Long.MAX_VALUE;
+		long m_maxTime = Long.MIN_VALUE;
+		boolean m_sorted = true;
+		long m_dataSize;
+
+		//--- Only for sealed segments, wrapping the memory-mapped block file.
+		P_HistoricalDataSeries m_sealed;
+
+		//--- Only for the active (last, unsealed) segment.
+		long[] m_times;
+		long[] m_offsets;
+		int[] m_lengths;
+		RandomAccessFile m_dataReader;
+		long m_flushedDataSize;
+
+		Segment(final File dir, final int id)
+		{
+			m_id = id;
+			m_indexFile = new File(dir, id + INDEX_SUFFIX);
+			m_dataFile = new File(dir, id + DATA_SUFFIX);
+			m_blockFile = new File(dir, id + BLOCK_SUFFIX);
+		}
+
+		boolean isActive()
+		{
+			return m_times != null;
+		}
+
+		boolean isFull()
+		{
+			return m_count >= MAX_SEGMENT_RECORDS || m_dataSize >= MAX_SEGMENT_BYTES;
+		}
+
+		void onAppended(final long time)
+		{
+			if( m_count > 0 && time < m_maxTime )
+			{
+				m_sorted = false;
+			}
+
+			m_minTime = Math.min(m_minTime, time);
+			m_maxTime = Math.max(m_maxTime, time);
+		}
+
+		long timeAt(final int index)
+		{
+			return isActive() ? m_times[index] : m_sealed.timeAt(index);
+		}
+
+		byte[] blobAt(final int index) throws IOException
+		{
+			if( !isActive() )  return m_sealed.blobAt(index);
+
+			final byte[] blob = new byte[m_lengths[index]];
+
+			if( blob.length == 0 )  return blob;
+
+			if( m_dataReader == null )
+			{
+				m_dataReader = new RandomAccessFile(m_dataFile, "r");
+			}
+
+			m_dataReader.seek(m_offsets[index]);
+			m_dataReader.readFully(blob);
+
+			return blob;
+		}
+
+		void close()
+		{
+			if( m_dataReader != null )
+			{
+				try
+				{
+					m_dataReader.close();
+				}
+				catch(IOException e)
+				{
+				}
+
+				m_dataReader = null;
+			}
+
+			m_sealed = null;
+		}
+	}
+
+
+	private final File m_dir;
+	private final ArrayList<Segment> m_segments = new ArrayList<Segment>();
+
+	private final Buffer m_pendingIndex = new Buffer();
+	private final Buffer m_pendingData = new Buffer();
+	private boolean m_metaDirty = false;
+
+
+	P_HistoricalDataFileStore(final File dir)
+	{
+		m_dir = dir;
+
+		open();
+	}
+
+	File getDir()
+	{
+		return m_dir;
+	}
+
+	private void open()
+	{
+		final File[] files = m_dir.listFiles();
+
+		if( files == null )  return;
+
+		final ArrayList<Integer> ids = new ArrayList<Integer>();
+		final HashMap<Integer, Integer> skips = readMeta();
+
+		for( int i = 0; i < files.length; i++ )
+		{
+			final String name = files[i].getName();
+			final String suffix = name.endsWith(INDEX_SUFFIX) ? INDEX_SUFFIX : name.endsWith(BLOCK_SUFFIX) ? BLOCK_SUFFIX : null;
+
+			if( suffix == null )
+			{
+				//--- Left over from being killed in the middle of sealing a segment.
+				if( name.endsWith(TEMP_SUFFIX) )  files[i].delete();
+
+				continue;
+			}
+
+			try
+			{
+				final Integer id = Integer.parseInt(name.substring(0, name.length() - suffix.length()));
+
+				if( !ids.contains(id) )  ids.add(id);
+			}
+			catch(NumberFormatException e)
+			{
+			}
+		}
+
+		final Integer[] sortedIds = ids.toArray(new Integer[ids.size()]);
+		Arrays.sort(sortedIds);
+
+		for( int i = 0; i < sortedIds.length; i++ )
+		{
+			final Segment segment = new Segment(m_dir, sortedIds[i]);
+
+			try
+			{
+				final boolean isLast = i == sortedIds.length - 1;
+
+				final Integer skip = skips.get(sortedIds[i]);
+
+				openSegment(segment, isLast, skip != null ? skip : 0);
+			}
+			catch(IOException e)
+			{
+				//--- Rather lose one segment than everything.
+				continue;
+			}
+
+			m_segments.add(segment);
+		}
+	}
+
+	private void openSegment(final Segment segment, final boolean mayBeActive, final int skip) throws IOException
+	{
+		if( segment.m_blockFile.exists() )
+		{
+			//--- Sealing got as far as writing the block file, so anything else is stale.
+			segment.m_indexFile.delete();
+			segment.m_dataFile.delete();
+
+			openSealed(segment);
+			segment.m_skip = Math.min(skip, segment.m_count);
+
+			return;
+		}
+
+		//--- A partial record at the end means we died in the middle of a write, so just ignore it.
+		final int count = (int) (segment.m_indexFile.length() / INDEX_RECORD_SIZE);
+		final long dataSize = segment.m_dataFile.length();
+
+		segment.m_times = new long[Math.max(16, count)];
+		segment.m_offsets = new long[segment.m_times.length];
+		segment.m_lengths = new int[segment.m_times.length];
+		segment.m_dataSize = dataSize;
+		segment.m_flushedDataSize = dataSize;
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.m_indexFile)));
+
+		try
+		{
+			for( int i = 0; i < count; i++ )
+			{
+				final long time = in.readLong();
+				segment.m_times[i] = time;
+				segment.m_offsets[i] = in.readLong();
+				segment.m_lengths[i] = in.readInt();
+				segment.m_count = i;
+				segment.onAppended(time);
+			}
+
+			segment.m_count = count;
+		}
+		finally
+		{
+			in.close();
+		}
+
+		//--- Has to be known before sealing, since sealing drops skipped records.
+		segment.m_skip = Math.min(skip, count);
+
+		if( !mayBeActive || segment.isFull() )
+		{
+			seal(segment);
+		}
+	}
+
+	private void openSealed(final Segment segment) throws IOException
+	{
+		final MappedByteBuffer map = mapFile(segment.m_blockFile, segment.m_blockFile.length());
+		final ArrayList<P_HistoricalDataBlock> blocks = new ArrayList<P_HistoricalDataBlock>();
+
+		while( map.remaining() >= P_HistoricalDataBlock.HEADER_SIZE )
+		{
+			blocks.add(P_HistoricalDataBlock.read(map));
+		}
+
+		segment.m_sealed = P_HistoricalDataSeries.ofBlocks(blocks);
+		segment.m_count = segment.m_sealed.size();
+		segment.m_dataSize = segment.m_blockFile.length();
+		segment.m_minTime = Long.MAX_VALUE;
+		segment.m_maxTime = Long.MIN_VALUE;
+		segment.m_sorted = true;
+
+		for( int i = 0; i < blocks.size(); i++ )
+		{
+			final P_HistoricalDataBlock block = blocks.get(i);
+
+			if( !block.isSorted() || (i > 0 && block.getMinTime() < blocks.get(i - 1).getMaxTime()) )
+			{
+				segment.m_sorted = false;
+			}
+
+			segment.m_minTime = Math.min(segment.m_minTime, block.getMinTime());
+			segment.m_maxTime = Math.max(segment.m_maxTime, block.getMaxTime());
+		}
+	}
+
+	private static MappedByteBuffer mapFile(final File file, final long size) throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try
+		{
+			return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		finally
+		{
+			//--- The mapping stays valid after the channel is closed.
+			raf.close();
+		}
+	}
+
+	/**
+	 * Adds a piece of data to the end of the store. It's buffered, so it won't necessarily be on disk until {@link #flush()}.
+	 */
+	void append(final long time, final byte[] blob) throws IOException
+	{
+		Segment segment = getActiveSegment();
+
+		if( segment.isFull() )
+		{
+			seal(segment);
+
+			segment = newSegment();
+		}
+
+		final int index = segment.m_count;
+
+		if( index == segment.m_times.length )
+		{
+			final int newLength = segment.m_times.length * 2;
+			segment.m_times = Arrays.copyOf(segment.m_times, newLength);
+			segment.m_offsets = Arrays.copyOf(segment.m_offsets, newLength);
+			segment.m_lengths = Arrays.copyOf(segment.m_lengths, newLength);
+		}
+
+		segment.m_times[index] = time;
+		segment.m_offsets[index] = segment.m_dataSize;
+		segment.m_lengths[index] = blob.length;
+		segment.onAppended(time);
+		segment.m_count++;
+		segment.m_dataSize += blob.length;
+
+		m_pendingIndex.putLong(time);
+		m_pendingIndex.putLong(segment.m_offsets[index]);
+		m_pendingIndex.putInt(blob.length);
+		m_pendingData.put(blob);
+
+		if( m_pendingIndex.size() + m_pendingData.size() >= WRITE_BUFFER_SIZE )
+		{
+			flush();
+		}
+	}
+
+	private Segment getActiveSegment() throws IOException
+	{
+		final Segment last = m_segments.isEmpty() ? null : m_segments.get(m_segments.size() - 1);
+
+		if( last != null && last.isActive() )  return last;
+
+		return newSegment();
+	}
+
+	private Segment newSegment()
+	{
+		final int id = m_segments.isEmpty() ? 0 : m_segments.get(m_segments.size() - 1).m_id + 1;
+		final Segment segment = new Segment(m_dir, id);
+		segment.m_times = new long[64];
+		segment.m_offsets = new long[64];
+		segment.m_lengths = new int[64];
+
+		m_segments.add(segment);
+
+		return segment;
+	}
+
+	/**
+	 * Compresses a segment into a block file, sorted by time, which replaces its index and data files. Records already skipped are left out.
+	 */
+	private void seal(final Segment segment) throws IOException
+	{
+		flush();
+
+		final P_HistoricalDataColumns rows = new P_HistoricalDataColumns();
+		final byte[] data = new byte[(int) segment.m_dataFile.length()];
+
+		if( data.length > 0 )
+		{
+			final DataInputStream in = new DataInputStream(new FileInputStream(segment.m_dataFile));
+
+			try
+			{
+				in.readFully(data);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+
+		final Integer[] order = new Integer[segment.m_count - segment.m_skip];
+
+		for( int i = 0; i < order.length; i++ )
+		{
+			order[i] = segment.m_skip + i;
+		}
+
+		if( !segment.m_sorted )
+		{
+			final long[] times = segment.m_times;
+
+			//--- Stable, so records with the same time keep the order they were added in.
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				@Override public int compare(final Integer lhs, final Integer rhs)
+				{
+					return times[lhs] < times[rhs] ? -1 : times[lhs] > times[rhs] ? 1 : 0;
+				}
+			});
+		}
+
+		for( int i = 0; i < order.length; i++ )
+		{
+			final int index = order[i];
+
+			rows.append(segment.m_times[index], data, (int) segment.m_offsets[index], segment.m_lengths[index]);
+		}
+
+		final File temp = new File(m_dir, segment.m_id + BLOCK_SUFFIX + TEMP_SUFFIX);
+		final BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+
+		try
+		{
+			for( int i = 0; i < rows.size(); i += P_HistoricalDataBlock.BLOCK_ROWS )
+			{
+				out.write(P_HistoricalDataBlock.encode(rows, i, Math.min(rows.size(), i + P_HistoricalDataBlock.BLOCK_ROWS)).toByteArray());
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		//--- Recorded before the rename, so that dying in between brings skipped records back rather than losing others.
+		if( segment.m_skip > 0 )
+		{
+			segment.m_skip = 0;
+			writeMeta();
+		}
+
+		if( !temp.renameTo(segment.m_blockFile) )  throw new IOException("Couldn't rename " + temp);
+
+		segment.close();
+		segment.m_indexFile.delete();
+		segment.m_dataFile.delete();
+		segment.m_times = null;
+		segment.m_offsets = null;
+		segment.m_lengths = null;
+
+		openSealed(segment);
+	}
+
+	/**
+	 * Writes out anything that's buffered.
+	 */
+	void flush() throws IOException
+	{
+		if( m_pendingIndex.size() > 0 || m_pendingData.size() > 0 )
+		{
+			final Segment segment = m_segments.get(m_segments.size() - 1);
+
+			m_dir.mkdirs();
+
+			//--- Data first, so that an index record never points at data that isn't there.
+			m_pendingData.writeTo(segment.m_dataFile);
+			m_pendingIndex.writeTo(segment.m_indexFile);
+
+			segment.m_flushedDataSize = segment.m_dataSize;
+		}
+
+		if( m_metaDirty )
+		{
+			writeMeta();
+		}
+	}
+
+	int getCount(final EpochTimeRange range)
+	{
+		final long from = range.from().toMilliseconds();
+		final long to = range.to().toMilliseconds();
+
+		int count = 0;
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			final Segment segment = m_segments.get(i);
+			final int live = segment.m_count - segment.m_skip;
+
+			if( live <= 0 || segment.m_maxTime < from || segment.m_minTime > to )  continue;
+
+			if( segment.m_minTime >= from && segment.m_maxTime <= to && segment.m_skip == 0 )
+			{
+				count += live;
+			}
+			else if( segment.m_sorted )
+			{
+				count += Math.max(0, upperBound(segment, to) - lowerBound(segment, from));
+			}
+			else
+			{
+				for( int j = segment.m_skip; j < segment.m_count; j++ )
+				{
+					final long time = segment.timeAt(j);
+
+					if( time >= from && time <= to )  count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Goes through everything in the given range, oldest segment first. The callback returns <code>false</code> to stop.
+	 */
+	void forEach(final EpochTimeRange range, final ForEach_Void<HistoricalData> forEach) throws IOException
+	{
+		forEach(range, new Visitor()
+		{
+			@Override public boolean visit(final long time, final byte[] blob)
+			{
+				forEach.next(new HistoricalData(blob, time));
+
+				return true;
+			}
+		});
+	}
+
+	interface Visitor
+	{
+		boolean visit(final long time, final byte[] blob);
+	}
+
+	void forEach(final EpochTimeRange range, final Visitor visitor) throws IOException
+	{
+		flushIfNeededForRead();
+
+		final long from = range.from().toMilliseconds();
+		final long to = range.to().toMilliseconds();
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			final Segment segment = m_segments.get(i);
+
+			if( segment.m_count - segment.m_skip <= 0 || segment.m_maxTime < from || segment.m_minTime > to )  continue;
+
+			final int start = segment.m_sorted ? lowerBound(segment, from) : segment.m_skip;
+			final int end = segment.m_sorted ? upperBound(segment, to) : segment.m_count;
+
+			for( int j = start; j < end; j++ )
+			{
+				final long time = segment.timeAt(j);
+
+				if( time < from || time > to )  continue;
+
+				if( !visitor.visit(time, segment.blobAt(j)) )  return;
+			}
+		}
+	}
+
+	/**
+	 * Returns everything in the given range, in the same order as {@link #forEach(EpochTimeRange, Visitor)}, as a series that doesn't change
+	 * when the store does. Sealed segments' blocks are shared rather than copied, so they're still read straight from the memory-mapped files,
+	 * and only the blocks at the edges of the range are decoded. Those mappings stay valid even if the segment is deleted later. Only rows from
+	 * the active segment, which is at most one segment's worth, are copied.
+	 */
+	P_HistoricalDataSeries snapshot(final EpochTimeRange range) throws IOException
+	{
+		flushIfNeededForRead();
+
+		final long from = range.from().toMilliseconds();
+		final long to = range.to().toMilliseconds();
+
+		final ArrayList<P_HistoricalDataBlock> blocks = new ArrayList<P_HistoricalDataBlock>();
+		final P_HistoricalDataColumns tail = new P_HistoricalDataColumns();
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			final Segment segment = m_segments.get(i);
+
+			if( segment.m_count - segment.m_skip <= 0 || segment.m_maxTime < from || segment.m_minTime > to )  continue;
+
+			if( !segment.isActive() && segment.m_sorted )
+			{
+				segment.m_sealed.copyBlocks(lowerBound(segment, from), upperBound(segment, to), blocks);
+
+				continue;
+			}
+
+			//--- The active segment, which is always last, or a sealed one from before sealing sorted them.
+			final P_HistoricalDataColumns rows = segment.isActive() ? tail : new P_HistoricalDataColumns();
+			final int start = segment.m_sorted ? lowerBound(segment, from) : segment.m_skip;
+			final int end = segment.m_sorted ? upperBound(segment, to) : segment.m_count;
+
+			for( int j = start; j < end; j++ )
+			{
+				final long time = segment.timeAt(j);
+
+				if( time < from || time > to )  continue;
+
+				final byte[] blob = segment.blobAt(j);
+
+				rows.append(time, blob, 0, blob.length);
+			}
+
+			if( rows == tail )  continue;
+
+			for( int j = 0; j < rows.size(); j += P_HistoricalDataBlock.BLOCK_ROWS )
+			{
+				blocks.add(P_HistoricalDataBlock.encode(rows, j, Math.min(rows.size(), j + P_HistoricalDataBlock.BLOCK_ROWS)));
+			}
+		}
+
+		return P_HistoricalDataSeries.ofBlocks(blocks, tail);
+	}
+
+	/**
+	 * Deletes up to <code>maxCount</code> of the oldest pieces of data in the given range.
+	 */
+	void delete(final EpochTimeRange range, final long maxCount) throws IOException
+	{
+		if( maxCount <= 0 )  return;
+
+		final long from = range.from().toMilliseconds();
+		final long to = range.to().toMilliseconds();
+
+		//--- See how much can be done by just skipping records at the front of whichever segment has the oldest one.
+		long remaining = maxCount;
+
+		while( remaining > 0 )
+		{
+			final Segment oldest = getSegmentWithOldest();
+
+			if( oldest == null )  break;
+
+			if( !oldest.m_sorted )
+			{
+				//--- Sorting the active segment is a lot cheaper than a rewrite, and only happens again if something even older comes in late.
+				if( oldest.isActive() )
+				{
+					seal(oldest);
+
+					continue;
+				}
+
+				break;
+			}
+
+			final long time = oldest.timeAt(oldest.m_skip);
+
+			if( time < from || time > to )  break;
+
+			oldest.m_skip++;
+			remaining--;
+			m_metaDirty = true;
+
+			if( oldest.m_skip >= oldest.m_count && !oldest.isActive() )
+			{
+				deleteSegment(oldest);
+			}
+		}
+
+		if( remaining > 0 && getCount(range) > 0 )
+		{
+			rewrite(from, to, remaining);
+		}
+	}
+
+	//--- The segment holding the oldest record that's left. For an unsorted segment only its minimum time is known, which may be a skipped record.
+	private Segment getSegmentWithOldest()
+	{
+		Segment oldest = null;
+		long oldestTime = Long.MAX_VALUE;
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			final Segment segment = m_segments.get(i);
+
+			if( segment.m_count - segment.m_skip <= 0 )  continue;
+
+			final long time = segment.m_sorted ? segment.timeAt(segment.m_skip) : segment.m_minTime;
+
+			if( oldest == null || time < oldestTime )
+			{
+				oldest = segment;
+				oldestTime = time;
+			}
+		}
+
+		return oldest;
+	}
+
+	private void deleteSegment(final Segment segment)
+	{
+		segment.close();
+		segment.m_indexFile.delete();
+		segment.m_dataFile.delete();
+		segment.m_blockFile.delete();
+		m_segments.remove(segment);
+		m_metaDirty = true;
+	}
+
+	//--- Slow path for deleting from the middle, or from an unsorted sealed segment. Loads everything, so avoid it for anything routine.
+	private void rewrite(final long from, final long to, final long maxCount) throws IOException
+	{
+		final long[] inRange = new long[getCount(new EpochTimeRange(from, to))];
+		final int[] found = {0};
+
+		forEach(new EpochTimeRange(from, to), new Visitor()
+		{
+			@Override public boolean visit(final long time, final byte[] blob)
+			{
+				if( found[0] < inRange.length )  inRange[found[0]++] = time;
+
+				return true;
+			}
+		});
+
+		Arrays.sort(inRange, 0, found[0]);
+
+		//--- Everything in range older than the cutoff goes, plus however many records at exactly the cutoff it takes to make up maxCount.
+		final int deleteCount = (int) Math.min(found[0], maxCount);
+
+		if( deleteCount == 0 )  return;
+
+		final long cutoff = inRange[deleteCount - 1];
+		final int[] cutoffsLeft = {0};
+
+		for( int i = deleteCount - 1; i >= 0 && inRange[i] == cutoff; i-- )
+		{
+			cutoffsLeft[0]++;
+		}
+
+		final ArrayList<HistoricalData> kept = new ArrayList<HistoricalData>();
+
+		forEach(EpochTimeRange.FROM_MIN_TO_MAX, new Visitor()
+		{
+			@Override public boolean visit(final long time, final byte[] blob)
+			{
+				final boolean delete = time >= from && time <= to && (time < cutoff || (time == cutoff && cutoffsLeft[0]-- > 0));
+
+				if( !delete )
+				{
+					kept.add(new HistoricalData(blob, time));
+				}
+
+				return true;
+			}
+		});
+
+		deleteAll();
+
+		for( int i = 0; i < kept.size(); i++ )
+		{
+			append(kept.get(i).getEpochTime_millis(), kept.get(i).getBlob());
+		}
+
+		flush();
+	}
+
+	void deleteAll()
+	{
+		for( int i = m_segments.size() - 1; i >= 0; i-- )
+		{
+			deleteSegment(m_segments.get(i));
+		}
+
+		m_pendingIndex.clear();
+		m_pendingData.clear();
+
+		new File(m_dir, META_FILE).delete();
+		m_metaDirty = false;
+		m_dir.delete();
+	}
+
+	boolean isEmpty()
+	{
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			if( m_segments.get(i).m_count > m_segments.get(i).m_skip )  return false;
+		}
+
+		return true;
+	}
+
+	void close()
+	{
+		try
+		{
+			flush();
+		}
+		catch(IOException e)
+		{
+		}
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			m_segments.get(i).close();
+		}
+	}
+
+	private void flushIfNeededForRead() throws IOException
+	{
+		if( m_pendingData.size() > 0 )
+		{
+			flush();
+		}
+	}
+
+	//--- First index with time >= the given time, for a sorted segment.
+	private static int lowerBound(final Segment segment, final long time)
+	{
+		if( !segment.isActive() )  return Math.max(segment.m_skip, segment.m_sealed.lowerBound(time));
+
+		int low = segment.m_skip;
+		int high = segment.m_count;
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+
+			if( segment.timeAt(middle) < time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	//--- First index with time > the given time, for a sorted segment.
+	private static int upperBound(final Segment segment, final long time)
+	{
+		if( !segment.isActive() )  return Math.max(segment.m_skip, segment.m_sealed.upperBound(time));
+
+		int low = segment.m_skip;
+		int high = segment.m_count;
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+
+			if( segment.timeAt(middle) <= time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	//--- The meta file records how many records at the front of each segment were deleted, as (segment id, count) pairs.
+	private void writeMeta() throws IOException
+	{
+		m_metaDirty = false;
+
+		final File meta = new File(m_dir, META_FILE);
+		boolean anySkipped = false;
+
+		for( int i = 0; i < m_segments.size(); i++ )
+		{
+			anySkipped |= m_segments.get(i).m_skip > 0;
+		}
+
+		if( !anySkipped )
+		{
+			meta.delete();
+
+			return;
+		}
+
+		m_dir.mkdirs();
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(meta)));
+
+		try
+		{
+			for( int i = 0; i < m_segments.size(); i++ )
+			{
+				final Segment segment = m_segments.get(i);
+
+				if( segment.m_skip == 0 )  continue;
+
+				out.writeInt(segment.m_id);
+				out.writeInt(segment.m_skip);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private HashMap<Integer, Integer> readMeta()
+	{
+		final HashMap<Integer, Integer> skips = new HashMap<Integer, Integer>();
+		final File meta = new File(m_dir, META_FILE);
+
+		if( !meta.exists() )  return skips;
+
+		try
+		{
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)));
+
+			try
+			{
+				//--- A partial pair at the end means we died in the middle of a write, so just ignore it.
+				for( int i = 0; i < meta.length() / 8; i++ )
+				{
+					final int id = in.readInt();
+					final int skip = in.readInt();
+
+					skips.put(id, skip);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException e)
+		{
+		}
+
+		return skips;
+	}
+
+
+	/**
+	 * Simple growable byte buffer, so pending writes can go out in one call.
+	 */
+	private static final class Buffer
+	{
+		private byte[] m_bytes = new byte[1024];
+		private int m_size = 0;
+
+		int size()
+		{
+			return m_size;
+		}
+
+		void clear()
+		{
+			m_size = 0;
+		}
+
+		void put(final byte[] bytes)
+		{
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, m_bytes, m_size, bytes.length);
+			m_size += bytes.length;
+		}
+
+		void putLong(final long value)
+		{
+			ensureCapacity(8);
+
+			for( int i = 7; i >= 0; i-- )
+			{
+				m_bytes[m_size++] = (byte) (value >>> (i * 8));
+			}
+		}
+
+		void putInt(final int value)
+		{
+			ensureCapacity(4);
+
+			for( int i = 3; i >= 0; i-- )
+			{
+				m_bytes[m_size++] = (byte) (value >>> (i * 8));
+			}
+		}
+
+		void writeTo(final File file) throws IOException
+		{
+			if( m_size == 0 )  return;
+
+			final FileOutputStream out = new FileOutputStream(file, /*append=*/true);
+
+			try
+			{
+				out.write(m_bytes, 0, m_size);
+			}
+			finally
+			{
+				out.close();
+			}
+
+			m_size = 0;
+		}
+
+		private void ensureCapacity(final int extra)
+		{
+			if( m_size + extra <= m_bytes.length )  return;
+
+			m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_size + extra));
+		}
+	}
+}
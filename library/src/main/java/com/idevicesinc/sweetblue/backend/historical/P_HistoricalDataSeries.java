@@ -0,0 +1,476 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-ordered historical data where older rows are compressed into {@link P_HistoricalDataBlock}s and only the newest ones are kept
+ * uncompressed in a {@link P_HistoricalDataColumns} tail, where new data (which may arrive slightly out of order) goes. Has the same logical,
+ * index-based view as {@link P_HistoricalDataColumns}.
+ * <br><br>
+ * The most recently used block is kept decoded, so reading rows in order (e.g. through {@link P_HistoricalDataCursor_Series}) decodes each
+ * block once, while range lookups skip whole blocks by their time range and only decode the one or two at the edges.
+ * <br><br>
+ * Every row in a block is older than or the same age as every row after it, including the tail. Not thread safe.
+ */
+final class P_HistoricalDataSeries
+{
+	private final int m_blockRows;
+
+	private final ArrayList<P_HistoricalDataBlock> m_blocks = new ArrayList<P_HistoricalDataBlock>();
+
+	//--- m_blockStarts[i] is the logical index of the first row of block i. Entry m_blocks.size() is the total row count in blocks.
+	private int[] m_blockStarts = new int[1];
+	private long m_blockBytes = 0;
+
+	private final P_HistoricalDataColumns m_tail;
+
+	//--- The one block currently kept decoded.
+	private final P_HistoricalDataColumns m_decoded = new P_HistoricalDataColumns();
+	private P_HistoricalDataBlock m_decodedBlock = null;
+
+	P_HistoricalDataSeries()
+	{
+		this(P_HistoricalDataBlock.BLOCK_ROWS);
+	}
+
+	P_HistoricalDataSeries(final int blockRows)
+	{
+		this(blockRows, new P_HistoricalDataColumns());
+	}
+
+	//--- Wraps columns that are already in order. Nothing is compressed until more rows are added.
+	P_HistoricalDataSeries(final int blockRows, final P_HistoricalDataColumns tail)
+	{
+		m_blockRows = blockRows;
+		m_tail = tail;
+	}
+
+	/**
+	 * Wraps blocks that were already encoded, e.g. read back from a file. Lookups by time assume they're in order, but reads by index don't.
+	 */
+	static P_HistoricalDataSeries ofBlocks(final List<P_HistoricalDataBlock> blocks)
+	{
+		return ofBlocks(blocks, new P_HistoricalDataColumns());
+	}
+
+	/**
+	 * Same as {@link #ofBlocks(List)}, with the given rows after the blocks.
+	 */
+	static P_HistoricalDataSeries ofBlocks(final List<P_HistoricalDataBlock> blocks, final P_HistoricalDataColumns tail)
+	{
+		final P_HistoricalDataSeries series = new P_HistoricalDataSeries(P_HistoricalDataBlock.BLOCK_ROWS, tail);
+		series.m_blocks.addAll(blocks);
+		series.onBlocksChanged();
+
+		return series;
+	}
+
+	int size()
+	{
+		return blockRowCount() + m_tail.size();
+	}
+
+	boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	int getBlockCount()
+	{
+		return m_blocks.size();
+	}
+
+	/**
+	 * Approximate memory used, i.e. compressed blocks plus the uncompressed tail.
+	 */
+	long getByteCount()
+	{
+		return m_blockBytes + m_tail.getByteCount();
+	}
+
+	private int blockRowCount()
+	{
+		return m_blockStarts[m_blocks.size()];
+	}
+
+	long timeAt(final int index)
+	{
+		final int blockRows = blockRowCount();
+
+		if( index >= blockRows )  return m_tail.timeAt(index - blockRows);
+
+		final int block = blockIndexOf(index);
+
+		return decode(block).timeAt(index - m_blockStarts[block]);
+	}
+
+	int blobLengthAt(final int index)
+	{
+		final int blockRows = blockRowCount();
+
+		if( index >= blockRows )  return m_tail.blobLengthAt(index - blockRows);
+
+		final int block = blockIndexOf(index);
+
+		return decode(block).blobLengthAt(index - m_blockStarts[block]);
+	}
+
+	int copyBlob(final int index, final byte[] dest, final int destOffset)
+	{
+		final int blockRows = blockRowCount();
+
+		if( index >= blockRows )  return m_tail.copyBlob(index - blockRows, dest, destOffset);
+
+		final int block = blockIndexOf(index);
+
+		return decode(block).copyBlob(index - m_blockStarts[block], dest, destOffset);
+	}
+
+	byte[] blobAt(final int index)
+	{
+		final byte[] blob = new byte[blobLengthAt(index)];
+
+		copyBlob(index, blob, 0);
+
+		return blob;
+	}
+
+	HistoricalData get(final int index)
+	{
+		return new HistoricalData(blobAt(index), timeAt(index));
+	}
+
+	int lowerBound(final long time)
+	{
+		//--- First block that has anything >= time.
+		final int block = firstBlockWithMaxTime(time, /*inclusive=*/true);
+
+		if( block < m_blocks.size() )  return m_blockStarts[block] + decode(block).lowerBound(time);
+
+		return blockRowCount() + m_tail.lowerBound(time);
+	}
+
+	int upperBound(final long time)
+	{
+		//--- First block that has anything > time.
+		final int block = firstBlockWithMaxTime(time, /*inclusive=*/false);
+
+		if( block < m_blocks.size() )  return m_blockStarts[block] + decode(block).upperBound(time);
+
+		return blockRowCount() + m_tail.upperBound(time);
+	}
+
+	int count(final long from, final long to)
+	{
+		return Math.max(0, upperBound(to) - lowerBound(from));
+	}
+
+	/**
+	 * Adds a row in time order. Returns the index it ended up at.
+	 */
+	int add(final long time, final byte[] blob)
+	{
+		if( !m_blocks.isEmpty() && time < m_blocks.get(m_blocks.size() - 1).getMaxTime() )
+		{
+			//--- Older than data that's already been compressed, which should be rare, so just put the affected blocks back in the tail.
+			thawFrom(firstBlockWithMaxTime(time, /*inclusive=*/false));
+		}
+
+		final int index = blockRowCount() + m_tail.add(time, blob);
+
+		sealIfNeeded();
+
+		return index;
+	}
+
+	/**
+	 * Removes the rows in [from, to).
+	 */
+	void remove(final int from, final int to)
+	{
+		if( to <= from )  return;
+
+		final int blockRows = blockRowCount();
+
+		if( to > blockRows )
+		{
+			m_tail.remove(Math.max(0, from - blockRows), to - blockRows);
+		}
+
+		if( from >= blockRows )  return;
+
+		final int firstBlock = blockIndexOf(from);
+		final int lastBlock = blockIndexOf(Math.min(to, blockRows) - 1);
+
+		final ArrayList<P_HistoricalDataBlock> replacements = new ArrayList<P_HistoricalDataBlock>();
+
+		for( int i = firstBlock; i <= lastBlock; i++ )
+		{
+			final int start = m_blockStarts[i];
+			final int end = m_blockStarts[i + 1];
+
+			if( from <= start && to >= end )  continue;
+
+			//--- Only partly removed, so re-encode whatever's left.
+			final P_HistoricalDataColumns rows = decode(i).copy(0, end - start);
+			rows.remove(Math.max(from, start) - start, Math.min(to, end) - start);
+
+			if( !rows.isEmpty() )
+			{
+				replacements.add(P_HistoricalDataBlock.encode(rows, 0, rows.size()));
+			}
+		}
+
+		for( int i = lastBlock; i >= firstBlock; i-- )
+		{
+			m_blocks.remove(i);
+		}
+
+		m_blocks.addAll(firstBlock, replacements);
+
+		onBlocksChanged();
+	}
+
+	/**
+	 * Removes the oldest rows until there's at most <code>maxCount</code> rows and {@link #getByteCount()} is at most <code>maxBytes</code>.
+	 * Going over the byte budget first compresses most of the tail, then drops whole blocks at a time.
+	 */
+	void trim(final long maxCount, final long maxBytes)
+	{
+		final int overCount = (int) Math.min(size(), Math.max(0, size() - maxCount));
+
+		remove(0, overCount);
+
+		if( getByteCount() > maxBytes )
+		{
+			//--- Compress more of the tail before dropping anything, keeping a little of it uncompressed for late arrivals.
+			final int keep = Math.max(1, m_blockRows / 4);
+			final int sealable = m_tail.size() - keep;
+
+			if( sealable >= keep )
+			{
+				for( int i = 0; i < sealable; i += m_blockRows )
+				{
+					m_blocks.add(P_HistoricalDataBlock.encode(m_tail, i, Math.min(sealable, i + m_blockRows)));
+				}
+
+				m_tail.remove(0, sealable);
+
+				onBlocksChanged();
+			}
+		}
+
+		int dropBlocks = 0;
+		long bytes = getByteCount();
+
+		while( bytes > maxBytes && dropBlocks < m_blocks.size() )
+		{
+			bytes -= m_blocks.get(dropBlocks).getByteCount();
+			dropBlocks++;
+		}
+
+		if( dropBlocks > 0 )
+		{
+			remove(0, m_blockStarts[dropBlocks]);
+		}
+
+		if( bytes > maxBytes )
+		{
+			m_tail.trim(Long.MAX_VALUE, maxBytes);
+		}
+	}
+
+	int indexOf(final long time, final byte[] blob)
+	{
+		for( int i = lowerBound(time); i < size() && timeAt(i) == time; i++ )
+		{
+			if( blobLengthAt(i) == blob.length && Arrays.equals(blobAt(i), blob) )  return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns a copy of the rows in [from, to), which won't change when this one does. Blocks that are entirely in range are shared, not
+	 * copied, since they're immutable.
+	 */
+	P_HistoricalDataSeries copy(final int from, final int to)
+	{
+		if( to <= from )  return new P_HistoricalDataSeries(m_blockRows);
+
+		final int blockRows = blockRowCount();
+		final P_HistoricalDataColumns tail = to > blockRows ? m_tail.copy(Math.max(0, from - blockRows), to - blockRows) : new P_HistoricalDataColumns();
+		final P_HistoricalDataSeries copy = new P_HistoricalDataSeries(m_blockRows, tail);
+
+		if( from < blockRows )
+		{
+			copyBlocks(from, to, copy.m_blocks);
+
+			copy.onBlocksChanged();
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Adds blocks holding the compressed rows in [from, to) to the given list, the same way as {@link #copy(int, int)}: blocks entirely in range
+	 * are shared, and only the ones at the edges are decoded and re-encoded. Rows in the tail are left out.
+	 */
+	void copyBlocks(final int from, final int to, final List<P_HistoricalDataBlock> dest)
+	{
+		final int blockRows = blockRowCount();
+
+		if( to <= from || from >= blockRows )  return;
+
+		final int firstBlock = blockIndexOf(from);
+		final int lastBlock = blockIndexOf(Math.min(to, blockRows) - 1);
+
+		for( int i = firstBlock; i <= lastBlock; i++ )
+		{
+			final int start = m_blockStarts[i];
+			final int end = m_blockStarts[i + 1];
+
+			if( from <= start && to >= end )
+			{
+				dest.add(m_blocks.get(i));
+			}
+			else
+			{
+				final P_HistoricalDataColumns decoded = decode(i);
+				dest.add(P_HistoricalDataBlock.encode(decoded, Math.max(from, start) - start, Math.min(to, end) - start));
+			}
+		}
+	}
+
+	//--- Compresses the oldest rows of the tail once there's enough for a full block, keeping a block's worth uncompressed for late arrivals.
+	private void sealIfNeeded()
+	{
+		if( m_tail.size() < m_blockRows * 2 )  return;
+
+		m_blocks.add(P_HistoricalDataBlock.encode(m_tail, 0, m_blockRows));
+		m_tail.remove(0, m_blockRows);
+
+		onBlocksChanged();
+	}
+
+	private void thawFrom(final int firstBlock)
+	{
+		if( firstBlock >= m_blocks.size() )  return;
+
+		final P_HistoricalDataColumns rows = new P_HistoricalDataColumns();
+
+		for( int i = firstBlock; i < m_blocks.size(); i++ )
+		{
+			m_blocks.get(i).decodeInto(rows);
+		}
+
+		for( int i = 0; i < m_tail.size(); i++ )
+		{
+			rows.append(m_tail.timeAt(i), m_tail.blobAt(i), 0, m_tail.blobLengthAt(i));
+		}
+
+		m_tail.clear();
+
+		for( int i = 0; i < rows.size(); i++ )
+		{
+			m_tail.append(rows.timeAt(i), rows.blobAt(i), 0, rows.blobLengthAt(i));
+		}
+
+		while( m_blocks.size() > firstBlock )
+		{
+			m_blocks.remove(m_blocks.size() - 1);
+		}
+
+		onBlocksChanged();
+	}
+
+	private void onBlocksChanged()
+	{
+		if( m_blockStarts.length < m_blocks.size() + 1 )
+		{
+			m_blockStarts = new int[Math.max(m_blocks.size() + 1, m_blockStarts.length * 2)];
+		}
+
+		int start = 0;
+		long bytes = 0;
+
+		for( int i = 0; i < m_blocks.size(); i++ )
+		{
+			m_blockStarts[i] = start;
+			start += m_blocks.get(i).getCount();
+			bytes += m_blocks.get(i).getByteCount();
+		}
+
+		m_blockStarts[m_blocks.size()] = start;
+		m_blockBytes = bytes;
+
+		if( m_decodedBlock != null && !m_blocks.contains(m_decodedBlock) )
+		{
+			m_decodedBlock = null;
+			m_decoded.clear();
+		}
+	}
+
+	private int blockIndexOf(final int index)
+	{
+		int low = 0;
+		int high = m_blocks.size() - 1;
+
+		while( low < high )
+		{
+			final int middle = (low + high + 1) >>> 1;
+
+			if( m_blockStarts[middle] <= index )
+			{
+				low = middle;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		return low;
+	}
+
+	private int firstBlockWithMaxTime(final long time, final boolean inclusive)
+	{
+		int low = 0;
+		int high = m_blocks.size();
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+			final long maxTime = m_blocks.get(middle).getMaxTime();
+
+			if( inclusive ? maxTime < time : maxTime <= time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private P_HistoricalDataColumns decode(final int block)
+	{
+		final P_HistoricalDataBlock toDecode = m_blocks.get(block);
+
+		if( m_decodedBlock != toDecode )
+		{
+			m_decoded.clear();
+			toDecode.decodeInto(m_decoded);
+			m_decodedBlock = toDecode;
+		}
+
+		return m_decoded;
+	}
+}
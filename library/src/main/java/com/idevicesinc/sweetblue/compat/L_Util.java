@@ -13,6 +13,7 @@ import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanSettings;
 import android.os.Build;
+import android.os.ParcelUuid;
 import android.util.Log;
 import com.idevicesinc.sweetblue.BleAdvertisingSettings;
 import com.idevicesinc.sweetblue.BleDevice;
@@ -20,6 +21,7 @@ import com.idevicesinc.sweetblue.BleManager;
 import com.idevicesinc.sweetblue.utils.Interval;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 
 @TargetApi(Build.VERSION_CODES.LOLLIPOP)
@@ -191,9 +193,30 @@ public class L_Util
 
     public static void startNativeScan(BluetoothAdapter adapter, int scanMode, Interval scanReportDelay, ScanCallback listener) {
 
+        startNativeScan(adapter, scanMode, scanReportDelay, null, listener);
+    }
+
+    /**
+     * Same as {@link #startNativeScan(BluetoothAdapter, int, Interval, ScanCallback)}, only the given filters are handed to the native stack,
+     * so that it only reports devices that match at least one of them. If the list is <code>null</code> or empty, the scan is unfiltered.
+     */
+    public static void startNativeScan(BluetoothAdapter adapter, int scanMode, Interval scanReportDelay, List<ScanFilter> filters, ScanCallback listener) {
+
         final ScanSettings settings = buildSettings(adapter, scanMode, scanReportDelay).build();
 
-        startScan(adapter, settings, listener);
+        startScan(adapter, settings, filters, listener);
+    }
+
+    public static ScanFilter newServiceUuidFilter(UUID serviceUuid) {
+        return new ScanFilter.Builder().setServiceUuid(new ParcelUuid(serviceUuid)).build();
+    }
+
+    public static ScanFilter newManufacturerDataFilter(int manufacturerId, byte[] data, byte[] mask) {
+        return new ScanFilter.Builder().setManufacturerData(manufacturerId, data, mask).build();
+    }
+
+    public static ScanFilter newDeviceAddressFilter(String macAddress) {
+        return new ScanFilter.Builder().setDeviceAddress(macAddress).build();
     }
 
     // TODO - Remove this in version 3.0
@@ -247,6 +270,10 @@ public class L_Util
     }
 
     static void startScan(BluetoothAdapter adapter, ScanSettings scanSettings, ScanCallback listener) {
+        startScan(adapter, scanSettings, null, listener);
+    }
+
+    static void startScan(BluetoothAdapter adapter, ScanSettings scanSettings, List<ScanFilter> filters, ScanCallback listener) {
         m_UserScanCallback = listener;
         // Add a last ditch check to make sure the adapter isn't null before trying to start the scan.
         // We check in the task, but by the time we reach this method, it could have been shut off
@@ -256,7 +283,7 @@ public class L_Util
             m_callback.onScanFailed(android.bluetooth.le.ScanCallback.SCAN_FAILED_INTERNAL_ERROR);
             return;
         }
-        adapter.getBluetoothLeScanner().startScan(getFilterList(), scanSettings, m_callback);
+        adapter.getBluetoothLeScanner().startScan(filters != null && filters.size() > 0 ? filters : getFilterList(), scanSettings, m_callback);
     }
 
     public static boolean startAdvertising(BluetoothAdapter adapter, AdvertiseSettings settings, AdvertiseData adData, AdvertisingCallback callback)
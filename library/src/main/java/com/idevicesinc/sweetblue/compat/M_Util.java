@@ -8,6 +8,7 @@ import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.os.Build;
@@ -15,6 +16,7 @@ import android.os.Build;
 import com.idevicesinc.sweetblue.BleDevice;
 import com.idevicesinc.sweetblue.BleManager;
 import com.idevicesinc.sweetblue.utils.Interval;
+import java.util.List;
 
 
 @TargetApi(Build.VERSION_CODES.M)
@@ -46,6 +48,10 @@ public class M_Util
     }
 
     public static void startNativeScan(BluetoothAdapter adapter, int scanMode, Interval scanReportDelay, L_Util.ScanCallback listener) {
+        startNativeScan(adapter, scanMode, scanReportDelay, null, listener);
+    }
+
+    public static void startNativeScan(BluetoothAdapter adapter, int scanMode, Interval scanReportDelay, List<ScanFilter> filters, L_Util.ScanCallback listener) {
         final ScanSettings.Builder builder = L_Util.buildSettings(adapter, scanMode, scanReportDelay);
 
         builder.setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES);
@@ -54,7 +60,7 @@ public class M_Util
 
         final ScanSettings scanSettings = builder.build();
 
-        L_Util.startScan(adapter, scanSettings, listener);
+        L_Util.startScan(adapter, scanSettings, filters, listener);
     }
 
     // TODO - Remove this in version 3.0
@@ -0,0 +1,387 @@
+package com.idevicesinc.sweetblue.utils;
+
+import java.util.UUID;
+
+/**
+ * A read-only view over a raw scan record, which steps through its AD structures (length, type, data) without copying anything out of it.
+ * This is meant for {@link com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter}s, which usually only need to check for a single service
+ * {@link UUID} or manufacturer id, so that they can make a decision without the whole record being parsed into a {@link BleScanRecord}.
+ * None of the methods here allocate anything. See {@link com.idevicesinc.sweetblue.BleManagerConfig.ScanFilter.ScanEvent#advertisingCursor()}.
+ * <br><br>
+ * Example of walking the record yourself:
+ * <pre>
+ * final AdvertisingCursor cursor = e.advertisingCursor();
+ * while( cursor.next() )
+ * {
+ *     if( cursor.type() == AdvertisingCursor.TYPE_MANUFACTURER_DATA &amp;&amp; cursor.manufacturerId() == MY_ID )
+ *     {
+ *         return Please.acknowledgeIf(cursor.byteAt(2) == MY_PRODUCT_TYPE);
+ *     }
+ * }
+ * return Please.ignore();
+ * </pre>
+ */
+public final class AdvertisingCursor
+{
+	public static final int TYPE_FLAGS							= 0x01;
+	public static final int TYPE_SERVICE_UUIDS_16_BIT_PARTIAL	= 0x02;
+	public static final int TYPE_SERVICE_UUIDS_16_BIT_COMPLETE	= 0x03;
+	public static final int TYPE_SERVICE_UUIDS_32_BIT_PARTIAL	= 0x04;
+	public static final int TYPE_SERVICE_UUIDS_32_BIT_COMPLETE	= 0x05;
+	public static final int TYPE_SERVICE_UUIDS_128_BIT_PARTIAL	= 0x06;
+	public static final int TYPE_SERVICE_UUIDS_128_BIT_COMPLETE	= 0x07;
+	public static final int TYPE_LOCAL_NAME_SHORT				= 0x08;
+	public static final int TYPE_LOCAL_NAME_COMPLETE			= 0x09;
+	public static final int TYPE_TX_POWER_LEVEL					= 0x0A;
+	public static final int TYPE_SERVICE_DATA					= 0x16;
+	public static final int TYPE_MANUFACTURER_DATA				= 0xFF;
+
+	//--- 00000000-0000-1000-8000-00805F9B34FB, which 16 and 32 bit UUIDs are offsets from.
+	private static final long BASE_UUID_MSB = 0x0000000000001000L;
+	private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+	private byte[] m_scanRecord;
+	private int m_structureOffset;
+	private int m_nextOffset;
+	private int m_type;
+	private int m_dataOffset;
+	private int m_dataLength;
+
+
+	public AdvertisingCursor(final byte[] scanRecord)
+	{
+		reset(scanRecord);
+	}
+
+	/**
+	 * Points this cursor at a new scan record (which may be <code>null</code>), positioned before its first AD structure.
+	 */
+	public final AdvertisingCursor reset(final byte[] scanRecord)
+	{
+		m_scanRecord = scanRecord != null ? scanRecord : P_Const.EMPTY_BYTE_ARRAY;
+
+		return rewind();
+	}
+
+	/**
+	 * Moves the cursor back to before the first AD structure.
+	 */
+	public final AdvertisingCursor rewind()
+	{
+		m_structureOffset = -1;
+		m_nextOffset = 0;
+		m_type = -1;
+		m_dataOffset = 0;
+		m_dataLength = 0;
+
+		return this;
+	}
+
+	/**
+	 * Moves to the next AD structure, returning <code>false</code> if there are no more. Malformed records are handled the same way as
+	 * {@link Utils_ScanRecord#parseScanRecord(byte[])} handles them.
+	 */
+	public final boolean next()
+	{
+		final int offset = m_nextOffset;
+
+		if( offset >= m_scanRecord.length )  return end();
+
+		final int length = m_scanRecord[offset] & 0xFF;
+
+		if( length == 0 || offset + 1 >= m_scanRecord.length - 1 )  return end();
+
+		m_structureOffset = offset;
+		m_type = m_scanRecord[offset + 1] & 0xFF;
+		m_dataOffset = offset + 2;
+		m_dataLength = Math.max(0, Math.min(length - 1, m_scanRecord.length - m_dataOffset));
+		m_nextOffset = offset + 1 + length;
+
+		return true;
+	}
+
+	private boolean end()
+	{
+		m_nextOffset = m_scanRecord.length;
+		m_structureOffset = -1;
+		m_type = -1;
+		m_dataOffset = 0;
+		m_dataLength = 0;
+
+		return false;
+	}
+
+	/**
+	 * The type of the current AD structure, for instance {@link #TYPE_MANUFACTURER_DATA}, or -1 if {@link #next()} hasn't returned <code>true</code>.
+	 */
+	public final int type()
+	{
+		return m_type;
+	}
+
+	/**
+	 * The number of data bytes in the current AD structure (not counting the length and type bytes).
+	 */
+	public final int length()
+	{
+		return m_dataLength;
+	}
+
+	/**
+	 * Returns the data byte at the given index in the current AD structure.
+	 */
+	public final byte byteAt(final int index)
+	{
+		if( index < 0 || index >= m_dataLength )
+		{
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for AD structure data of length " + m_dataLength);
+		}
+
+		return m_scanRecord[m_dataOffset + index];
+	}
+
+	/**
+	 * The offset of the current AD structure's data in {@link #scanRecord()}.
+	 */
+	public final int dataOffset()
+	{
+		return m_dataOffset;
+	}
+
+	/**
+	 * The raw scan record this cursor is walking through. This is not a copy, so don't modify it.
+	 */
+	public final byte[] scanRecord()
+	{
+		return m_scanRecord;
+	}
+
+	/**
+	 * Returns <code>true</code> if the current AD structure's data is equal to the given bytes.
+	 */
+	public final boolean dataEquals(final byte[] data)
+	{
+		return data != null && data.length == m_dataLength && regionMatches(m_dataOffset, data);
+	}
+
+	/**
+	 * Returns <code>true</code> if the current AD structure's data starts with the given bytes.
+	 */
+	public final boolean dataStartsWith(final byte[] prefix)
+	{
+		return prefix != null && prefix.length <= m_dataLength && regionMatches(m_dataOffset, prefix);
+	}
+
+	private boolean regionMatches(final int offset, final byte[] bytes)
+	{
+		for( int i = 0; i < bytes.length; i++ )
+		{
+			if( m_scanRecord[offset + i] != bytes[i] )  return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * If the current AD structure is {@link #TYPE_MANUFACTURER_DATA}, returns its (unsigned) manufacturer id, otherwise returns -1.
+	 */
+	public final int manufacturerId()
+	{
+		if( m_type != TYPE_MANUFACTURER_DATA || m_dataLength < 2 )  return -1;
+
+		return readUInt16(m_dataOffset);
+	}
+
+	/**
+	 * Returns <code>true</code> if the scan record advertises the given service {@link UUID}, in any of the 16, 32, or 128 bit service
+	 * {@link UUID} lists. This is the same list returned by {@link BleScanRecord#getServiceUUIDS()}. Note that this searches the whole record,
+	 * so the cursor's position is reset.
+	 */
+	public final boolean hasServiceUuid(final UUID uuid)
+	{
+		if( uuid == null )  return false;
+
+		final long msb = uuid.getMostSignificantBits();
+		final long lsb = uuid.getLeastSignificantBits();
+
+		rewind();
+
+		while( next() )
+		{
+			final int uuidLength = uuidLength(m_type);
+
+			if( uuidLength == 0 )  continue;
+
+			//--- Same as Utils_ScanRecord, UUIDs are read as long as they fit in the record.
+			for( int offset = m_dataOffset, remaining = m_nextOffset - m_dataOffset; remaining > 0 && offset + uuidLength <= m_scanRecord.length; offset += uuidLength, remaining -= uuidLength )
+			{
+				if( uuidEquals(offset, uuidLength, msb, lsb) )  return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns <code>true</code> if the scan record has service data for the given service {@link UUID}. The cursor is left on the matching
+	 * AD structure, so you can check the data itself with {@link #byteAt(int)} (service data starts at index 2, after the 16 bit {@link UUID}).
+	 * If there is no match, the cursor ends up past the last AD structure.
+	 */
+	public final boolean hasServiceData(final UUID uuid)
+	{
+		if( uuid == null )  return false;
+
+		final long msb = uuid.getMostSignificantBits();
+		final long lsb = uuid.getLeastSignificantBits();
+
+		rewind();
+
+		while( next() )
+		{
+			if( m_type == TYPE_SERVICE_DATA && m_dataLength >= 2 && uuidEquals(m_dataOffset, 2, msb, lsb) )  return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns <code>true</code> if the scan record has manufacturer data with the given manufacturer id. The cursor is left on the matching
+	 * AD structure, so you can check the data itself with {@link #byteAt(int)} (the data starts at index 2, after the id).
+	 * If there is no match, the cursor ends up past the last AD structure.
+	 */
+	public final boolean hasManufacturerId(final int manufacturerId)
+	{
+		rewind();
+
+		while( next() )
+		{
+			if( manufacturerId() == (manufacturerId & 0xFFFF) )  return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * If the current AD structure is one of the service {@link UUID} lists, returns the size in bytes of each {@link UUID} in it (2, 4, or 16),
+	 * otherwise returns 0. The number of {@link UUID}s in the list is {@link #length()} divided by this.
+	 */
+	public final int uuidSize()
+	{
+		return uuidLength(m_type);
+	}
+
+	/**
+	 * Returns the most significant bits of the service {@link UUID} at the given index in the current AD structure, expanded to 128 bits if it's a
+	 * 16 or 32 bit {@link UUID}. Together with {@link #uuidLsbAt(int)}, this lets you compare {@link UUID}s without creating any. See {@link #uuidSize()}.
+	 */
+	public final long uuidMsbAt(final int index)
+	{
+		final int uuidLength = uuidOffsetCheck(index);
+		final int offset = m_dataOffset + index * uuidLength;
+
+		if( uuidLength == 16 )
+		{
+			return readInt64(offset + 8);
+		}
+
+		return BASE_UUID_MSB + (shortUuidAt(offset, uuidLength) << 32);
+	}
+
+	/**
+	 * Returns the least significant bits of the service {@link UUID} at the given index in the current AD structure. See {@link #uuidMsbAt(int)}.
+	 */
+	public final long uuidLsbAt(final int index)
+	{
+		final int uuidLength = uuidOffsetCheck(index);
+
+		if( uuidLength == 16 )
+		{
+			return readInt64(m_dataOffset + index * uuidLength);
+		}
+
+		return BASE_UUID_LSB;
+	}
+
+	private int uuidOffsetCheck(final int index)
+	{
+		final int uuidLength = uuidLength(m_type);
+
+		if( uuidLength == 0 || index < 0 || (index + 1) * uuidLength > m_dataLength )
+		{
+			throw new IndexOutOfBoundsException("No UUID at index " + index + " in AD structure of type " + m_type + " and length " + m_dataLength);
+		}
+
+		return uuidLength;
+	}
+
+	private static int uuidLength(final int type)
+	{
+		switch (type)
+		{
+			case TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+			case TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+				return 2;
+			case TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+			case TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+				return 4;
+			case TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+			case TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+				return 16;
+			default:
+				return 0;
+		}
+	}
+
+	// Compares a little endian UUID in the record against the given one, the same way Utils_ScanRecord expands 16 and 32 bit UUIDs.
+	private boolean uuidEquals(final int offset, final int uuidLength, final long msb, final long lsb)
+	{
+		if( uuidLength == 16 )
+		{
+			return readInt64(offset) == lsb && readInt64(offset + 8) == msb;
+		}
+
+		return lsb == BASE_UUID_LSB && msb == BASE_UUID_MSB + (shortUuidAt(offset, uuidLength) << 32);
+	}
+
+	private long shortUuidAt(final int offset, final int uuidLength)
+	{
+		long shortUuid = readUInt16(offset);
+
+		if( uuidLength == 4 )
+		{
+			//--- Int math on purpose, to expand UUIDs exactly like Utils_ScanRecord does.
+			shortUuid += (m_scanRecord[offset + 2] & 0xFF) << 16;
+			shortUuid += (m_scanRecord[offset + 3] & 0xFF) << 24;
+		}
+
+		return shortUuid;
+	}
+
+	private int readUInt16(final int offset)
+	{
+		return (m_scanRecord[offset] & 0xFF) | ((m_scanRecord[offset + 1] & 0xFF) << 8);
+	}
+
+	private long readInt64(final int offset)
+	{
+		long value = 0;
+
+		for( int i = 7; i >= 0; i-- )
+		{
+			value = (value << 8) | (m_scanRecord[offset + i] & 0xFF);
+		}
+
+		return value;
+	}
+
+	@Override public final String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"offset", m_structureOffset,
+			"type", m_type,
+			"length", m_dataLength
+		);
+	}
+}
@@ -437,6 +437,49 @@ public final class BleScanRecord implements UsesCustomNull
         return m_completeUuidList;
     }
 
+    final void setAdvFlagsValue(int flags)
+    {
+        if (m_advFlags == null)
+        {
+            m_advFlags = new Pointer<>(flags);
+        }
+        else
+        {
+            m_advFlags.value = flags;
+        }
+    }
+
+    final void setTxPowerValue(int power)
+    {
+        if (m_txPower == null)
+        {
+            m_txPower = new Pointer<>(power);
+        }
+        else
+        {
+            m_txPower.value = power;
+        }
+    }
+
+    final void setCompleteUuidList(boolean complete)
+    {
+        m_completeUuidList = complete;
+    }
+
+    final void clearManufacturerData()
+    {
+        if (m_manufacturerDataList == null)
+        {
+            m_manufacturerDataList = new ArrayList<>();
+        }
+        else
+        {
+            m_manufacturerDataList.clear();
+        }
+        m_manufactuerId = null;
+        m_manufacturerData = null;
+    }
+
     /**
      * Returns <code>true</code> if this instance is considered null.
      */
@@ -0,0 +1,133 @@
+package com.idevicesinc.sweetblue.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A {@link FutureData} for large payloads like firmware images, which reads its data a chunk at a time instead of keeping all of it in memory.
+ * Passing one of these to {@link com.idevicesinc.sweetblue.BleDevice#write(UUID, FutureData)} (or {@link com.idevicesinc.sweetblue.WriteBuilder#setData(FutureData)})
+ * with {@link com.idevicesinc.sweetblue.BleNodeConfig#autoStripeWrites} enabled will stream the data out one MTU-sized chunk at a time. Otherwise, or
+ * if it fits in a single write, it's read into memory all at once. Either way, it's {@link #close()}d once the write is done. Striped writes
+ * can't be started from inside another transaction though, so in a {@link com.idevicesinc.sweetblue.BleTransaction.Ota} pull chunks yourself with
+ * {@link #nextChunk(int)} (using {@link com.idevicesinc.sweetblue.BleDevice#getEffectiveWriteMtuSize()}), writing the next one each time the previous
+ * write succeeds, and {@link #close()} it when the transaction ends.
+ * <br><br>
+ * Data is read sequentially, and only once, so an instance can only be used for one write.
+ *
+ * @see StreamData
+ * @see FileChannelData
+ * @see MappedFileData
+ */
+public abstract class ChunkedData implements FutureData, Closeable
+{
+	private int m_position = 0;
+	private boolean m_failed = false;
+
+
+	/**
+	 * Returns the total number of bytes this will provide.
+	 */
+	public abstract int length();
+
+	/**
+	 * Reads up to <code>count</code> bytes into the given buffer, and returns the number of bytes read, or -1 if there's no more data.
+	 */
+	protected abstract int read(byte[] buffer, int offset, int count) throws IOException;
+
+	/**
+	 * Override this to release whatever is backing the data. This gets called by the library once the write has finished, whether it
+	 * succeeded or not, and whether or not it was striped. It may be called more than once. By default, this does nothing.
+	 */
+	@Override public void close()
+	{
+	}
+
+	/**
+	 * Returns the number of bytes that have been read so far.
+	 */
+	public final int position()
+	{
+		return m_position;
+	}
+
+	/**
+	 * Returns <code>true</code> if there is more data left to read.
+	 */
+	public final boolean hasNext()
+	{
+		return !m_failed && m_position < length();
+	}
+
+	/**
+	 * Returns the next chunk of data, which will be at most <code>maxLength</code> bytes long, or <code>null</code> if there is no more data, or
+	 * the data couldn't be read.
+	 */
+	public final byte[] nextChunk(final int maxLength)
+	{
+		final int size = Math.min(maxLength, length() - m_position);
+
+		if( m_failed || size <= 0 )  return null;
+
+		final byte[] chunk = new byte[size];
+
+		if( !readFully(chunk) )  return null;
+
+		return chunk;
+	}
+
+	/**
+	 * Reads all remaining data into a single array. This defeats the purpose of this class, so it should only be used for small payloads. It's
+	 * only here so instances can still be passed anywhere a {@link FutureData} is expected.
+	 */
+	@Override public byte[] getData()
+	{
+		final byte[] data = new byte[Math.max(0, length() - m_position)];
+
+		if( !readFully(data) )  return P_Const.EMPTY_BYTE_ARRAY;
+
+		return data;
+	}
+
+	private boolean readFully(final byte[] buffer)
+	{
+		int read = 0;
+
+		try
+		{
+			while( read < buffer.length )
+			{
+				final int count = read(buffer, read, buffer.length - read);
+
+				if( count < 0 )
+				{
+					m_failed = true;
+
+					return false;
+				}
+
+				read += count;
+			}
+		}
+		catch (IOException e)
+		{
+			m_failed = true;
+
+			return false;
+		}
+
+		m_position += read;
+
+		return true;
+	}
+
+	@Override public String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"length", length(),
+			"position", position()
+		);
+	}
+}
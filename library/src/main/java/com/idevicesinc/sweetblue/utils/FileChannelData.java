@@ -0,0 +1,55 @@
+package com.idevicesinc.sweetblue.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implementation of {@link ChunkedData} which reads from a {@link FileChannel}, from its current position to the end of the file.
+ */
+public final class FileChannelData extends ChunkedData
+{
+	private final FileChannel m_channel;
+	private final int m_length;
+
+
+	/**
+	 * Reads the given file from the start. The file is kept open until {@link #close()} is called.
+	 */
+	public FileChannelData(final File file) throws IOException
+	{
+		this(new FileInputStream(file).getChannel());
+	}
+
+	/**
+	 * Reads the given channel from its current position to the end. The channel gets closed by {@link #close()}.
+	 */
+	public FileChannelData(final FileChannel channel) throws IOException
+	{
+		m_channel = channel;
+		m_length = (int) Math.min(Integer.MAX_VALUE, channel.size() - channel.position());
+	}
+
+	@Override public int length()
+	{
+		return m_length;
+	}
+
+	@Override protected int read(final byte[] buffer, final int offset, final int count) throws IOException
+	{
+		return m_channel.read(ByteBuffer.wrap(buffer, offset, count));
+	}
+
+	@Override public void close()
+	{
+		try
+		{
+			m_channel.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.idevicesinc.sweetblue.utils;
+
+import com.idevicesinc.sweetblue.BleManager;
+import com.idevicesinc.sweetblue.annotations.Immutable;
+
+import java.util.UUID;
+
+/**
+ * Result of {@link BleManager#aggregateHistoricalData(UUID, EpochTimeRange, HistoricalDataQuery.DataDecoder, int)}, i.e. summary statistics of
+ * historical data across many devices. Values are whatever {@link HistoricalDataQuery.DataDecoder} was used makes of each blob.
+ */
+@Immutable
+public final class HistoricalDataAggregate
+{
+	/**
+	 * An aggregate of nothing.
+	 */
+	public static final HistoricalDataAggregate EMPTY = new HistoricalDataAggregate(0, 0, 0, Double.NaN, Double.NaN, 0.0);
+
+	private final int m_deviceCount;
+	private final long m_count;
+	private final long m_valueCount;
+	private final double m_min;
+	private final double m_max;
+	private final double m_sum;
+
+	public HistoricalDataAggregate(final int deviceCount, final long count, final long valueCount, final double min, final double max, final double sum)
+	{
+		m_deviceCount = deviceCount;
+		m_count = count;
+		m_valueCount = valueCount;
+		m_min = min;
+		m_max = max;
+		m_sum = sum;
+	}
+
+	/**
+	 * The number of devices that had any data in the range.
+	 */
+	public int getDeviceCount()
+	{
+		return m_deviceCount;
+	}
+
+	/**
+	 * The number of {@link HistoricalData} rows in the range across all devices.
+	 */
+	public long getCount()
+	{
+		return m_count;
+	}
+
+	/**
+	 * The number of rows that decoded to a value, which is less than {@link #getCount()} if the decoder left some out.
+	 */
+	public long getValueCount()
+	{
+		return m_valueCount;
+	}
+
+	/**
+	 * The smallest value, or {@link Double#NaN} if {@link #getValueCount()} is 0.
+	 */
+	public double getMin()
+	{
+		return m_min;
+	}
+
+	/**
+	 * The largest value, or {@link Double#NaN} if {@link #getValueCount()} is 0.
+	 */
+	public double getMax()
+	{
+		return m_max;
+	}
+
+	public double getSum()
+	{
+		return m_sum;
+	}
+
+	/**
+	 * The average of all values, weighted by row rather than by device, or {@link Double#NaN} if {@link #getValueCount()} is 0.
+	 */
+	public double getAverage()
+	{
+		return m_valueCount > 0 ? m_sum / m_valueCount : Double.NaN;
+	}
+
+	/**
+	 * Returns the aggregate of both this and the other one.
+	 */
+	public HistoricalDataAggregate merge(final HistoricalDataAggregate other)
+	{
+		if( other.m_valueCount == 0 && other.m_count == 0 )  return this;
+		if( m_valueCount == 0 && m_count == 0 )  return other;
+
+		final double min = m_valueCount == 0 ? other.m_min : other.m_valueCount == 0 ? m_min : Math.min(m_min, other.m_min);
+		final double max = m_valueCount == 0 ? other.m_max : other.m_valueCount == 0 ? m_max : Math.max(m_max, other.m_max);
+
+		return new HistoricalDataAggregate(m_deviceCount + other.m_deviceCount, m_count + other.m_count, m_valueCount + other.m_valueCount, min, max, m_sum + other.m_sum);
+	}
+
+	@Override public boolean equals(final Object object)
+	{
+		if( !(object instanceof HistoricalDataAggregate) )  return false;
+
+		final HistoricalDataAggregate other = (HistoricalDataAggregate) object;
+
+		return m_deviceCount == other.m_deviceCount && m_count == other.m_count && m_valueCount == other.m_valueCount &&
+				Double.compare(m_min, other.m_min) == 0 && Double.compare(m_max, other.m_max) == 0 && Double.compare(m_sum, other.m_sum) == 0;
+	}
+
+	@Override public int hashCode()
+	{
+		return (int) (m_count * 31 + m_valueCount) ^ Double.valueOf(m_sum).hashCode();
+	}
+
+	@Override public String toString()
+	{
+		return Utils_String.toString
+		(
+			this.getClass(),
+			"devices",	getDeviceCount(),
+			"count",	getCount(),
+			"min",		getMin(),
+			"max",		getMax(),
+			"avg",		getAverage()
+		);
+	}
+}
@@ -7,11 +7,21 @@ import com.idevicesinc.sweetblue.BleServer;
 import com.idevicesinc.sweetblue.annotations.Extendable;
 import com.idevicesinc.sweetblue.annotations.Nullable;
 import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_Default;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_File;
 
+import java.util.ArrayList;
 import java.util.UUID;
 
 /**
  * Class used to construct queries for {@link BleDevice#select()}.
+ * <br><br>
+ * When the {@link Backend_HistoricalDatabase} is one of the built-in ones that don't understand SQL, queries on a {@link BleDevice} are run
+ * in-process against the same data returned by {@link BleDevice#getHistoricalData_cursor(UUID, EpochTimeRange)}. Any other database gets the
+ * SQL through {@link Backend_HistoricalDatabase#query(String)}, same as always. The in-process {@link android.database.Cursor}
+ * works out each row as it's moved to, so for example 1-minute averages over a week of data can be charted with
+ * <code>device.select().avg(HistoricalDataColumn.DATA).from(uuid).downsample(Interval.mins(1)).where().epochTime().between(lastWeek).go()</code>
+ * without that week of data ever being copied.
  */
 @com.idevicesinc.sweetblue.annotations.Alpha
 @Extendable
@@ -70,6 +80,7 @@ public class HistoricalDataQuery
 		public HistoricalDataQuery between(final EpochTimeRange range)
 		{
 			m_query.m_where += " " + m_column.getColumnName() + " BETWEEN "+range.from().toMilliseconds() + " AND " + range.to().toMilliseconds();
+			m_query.m_range = range;
 
 			return m_query;
 		}
@@ -157,29 +168,55 @@ public class HistoricalDataQuery
 			return new Part_SelectColumn(m_query);
 		}
 
+		/**
+		 * The number of rows, or per bucket if {@link HistoricalDataQuery#downsample(Interval)} is used.
+		 */
+		public Part_Function count()
+		{
+			if( !m_query.m_select.isEmpty() )
+			{
+				m_query.m_select += ",";
+			}
+
+			m_query.m_select += " count(*)";
+			m_query.m_aggregates.add(new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.COUNT, HistoricalDataColumn.EPOCH_TIME));
+
+			return new Part_Function(m_query);
+		}
+
+		/**
+		 * For {@link HistoricalDataColumn#DATA} this is the minimum value given by {@link HistoricalDataQuery#decodeDataAs(DataDecoder)}.
+		 */
 		public Part_Function min(final HistoricalDataColumn column)
 		{
-			return function("min", column);
+			return function("min", P_HistoricalDataQueryCursor.MIN, column);
 		}
 
+		/**
+		 * For {@link HistoricalDataColumn#DATA} this is the maximum value given by {@link HistoricalDataQuery#decodeDataAs(DataDecoder)}.
+		 */
 		public Part_Function max(final HistoricalDataColumn column)
 		{
-			return function("max", column);
+			return function("max", P_HistoricalDataQueryCursor.MAX, column);
 		}
 
+		/**
+		 * For {@link HistoricalDataColumn#DATA} this is the average value given by {@link HistoricalDataQuery#decodeDataAs(DataDecoder)}.
+		 */
 		public Part_Function avg(final HistoricalDataColumn column)
 		{
-			return function("avg", column);
+			return function("avg", P_HistoricalDataQueryCursor.AVG, column);
 		}
 
-		private Part_Function function(final String function, final HistoricalDataColumn column)
+		private Part_Function function(final String function, final int function_native, final HistoricalDataColumn column)
 		{
 			if( !m_query.m_select.isEmpty() )
 			{
 				m_query.m_select += ",";
 			}
 
-			m_query.m_select += " "+function+"(CAST(\"+column.getColumnName()+\" AS INTEGER))";
+			m_query.m_select += " "+function+"(CAST("+column.getColumnName()+" AS INTEGER))";
+			m_query.m_aggregates.add(new P_HistoricalDataQueryCursor.Aggregate(function_native, column));
 //			m_query.m_selectParenCount++;
 
 			return new Part_Function(m_query);
@@ -194,11 +231,70 @@ public class HistoricalDataQuery
 		}
 	}
 
+	/**
+	 * Turns the blob of a row into the number that {@link Part_AllowsSelectColumn#min(HistoricalDataColumn)} and friends work with
+	 * for {@link HistoricalDataColumn#DATA}. Return {@link Double#NaN} to leave a row out, the same way SQL leaves out <code>NULL</code>.
+	 *
+	 * @see #decodeDataAs(DataDecoder)
+	 */
+	@com.idevicesinc.sweetblue.annotations.Lambda
+	public static interface DataDecoder
+	{
+		double decode(final byte[] blob);
+	}
+
+	/**
+	 * The default for {@link #decodeDataAs(DataDecoder)} - the whole blob, up to 8 bytes, as an unsigned little-endian integer,
+	 * which is how most BLE characteristic values are laid out.
+	 */
+	public static final DataDecoder UNSIGNED_LITTLE_ENDIAN = integer(0, 8, false, false);
+
+	/**
+	 * Returns a {@link DataDecoder} for an integer field of up to 8 bytes starting at <code>offset</code>. Blobs that end
+	 * partway through the field only use the bytes that are there, and blobs that end before <code>offset</code> are left out.
+	 */
+	public static DataDecoder integer(final int offset, final int length, final boolean signed, final boolean bigEndian)
+	{
+		return new DataDecoder()
+		{
+			@Override public double decode(final byte[] blob)
+			{
+				final int available = Math.min(Math.min(length, 8), blob.length - offset);
+
+				if( available <= 0 )  return Double.NaN;
+
+				long value = 0;
+
+				for( int i = 0; i < available; i++ )
+				{
+					final int index = bigEndian ? offset + i : offset + available - 1 - i;
+
+					value = (value << 8) | (blob[index] & 0xFF);
+				}
+
+				if( signed && available < 8 )
+				{
+					final int shift = 64 - available * 8;
+
+					value = (value << shift) >> shift;
+				}
+
+				return signed || value >= 0 ? value : value + 0x1p64;
+			}
+		};
+	}
+
 	private final BleNode m_node;
 
 	private UUID m_uuid = null;
 	private String m_select = "";
 	private String m_where = "";
+	private String m_groupBy = "";
+
+	private EpochTimeRange m_range = EpochTimeRange.FROM_MIN_TO_MAX;
+	private final ArrayList<P_HistoricalDataQueryCursor.Aggregate> m_aggregates = new ArrayList<P_HistoricalDataQueryCursor.Aggregate>();
+	private DataDecoder m_decoder = UNSIGNED_LITTLE_ENDIAN;
+	private long m_bucketMillis = 0;
 
 	private String m_macAddress = "";
 
@@ -232,6 +328,29 @@ public class HistoricalDataQuery
 		return new Part_Where(this);
 	}
 
+	/**
+	 * Sets how blobs are turned into numbers for aggregates over {@link HistoricalDataColumn#DATA}. Default is {@link #UNSIGNED_LITTLE_ENDIAN}.
+	 */
+	public HistoricalDataQuery decodeDataAs(final DataDecoder decoder)
+	{
+		m_decoder = decoder != null ? decoder : UNSIGNED_LITTLE_ENDIAN;
+
+		return this;
+	}
+
+	/**
+	 * Splits time into fixed buckets of the given size, starting from the epoch, and gives one row of aggregates per bucket
+	 * instead of one for everything. The first column of each row is the bucket's start time. Empty buckets between the first
+	 * and last data points are included, with a {@link Part_AllowsSelectColumn#count()} of 0 and everything else <code>NULL</code>.
+	 */
+	public HistoricalDataQuery downsample(final Interval bucketSize)
+	{
+		m_bucketMillis = Interval.isEnabled(bucketSize) ? bucketSize.millis() : 0;
+		m_groupBy = m_bucketMillis > 0 ? " GROUP BY " + HistoricalDataColumn.EPOCH_TIME.getColumnName() + " / " + m_bucketMillis : "";
+
+		return this;
+	}
+
 	private UUID getUuidOrInvalid()
 	{
 		final UUID uuid = m_uuid != null ? m_uuid : Uuids.INVALID;
@@ -257,9 +376,51 @@ public class HistoricalDataQuery
 			query += " WHERE" + m_where;
 		}
 
+		query += m_groupBy;
+
 		return query;
 	}
 
+	//--- Only the built-in databases, which can't run SQL, are queried in-process. Anything else could have a query() of its own, so it gets the SQL.
+	private boolean canGoNative()
+	{
+		if( !(m_node instanceof BleDevice) || m_node.isNull() )  return false;
+
+		return m_database instanceof Backend_HistoricalDatabase_File || m_database instanceof Backend_HistoricalDatabase_Default;
+	}
+
+	private HistoricalDataCursor getSourceCursor(final UUID uuid)
+	{
+		if( m_node instanceof BleDevice && getMacAddress().equals(((BleDevice) m_node).getMacAddress()) )
+		{
+			return ((BleDevice) m_node).getHistoricalData_cursor(uuid, m_range);
+		}
+		else
+		{
+			return m_database.getCursor(getMacAddress(), uuid, m_range);
+		}
+	}
+
+	private BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent go_native()
+	{
+		if( !canGoNative() )  return null;
+
+		final UUID uuid = getUuidOrInvalid();
+		final HistoricalDataCursor source = getSourceCursor(uuid);
+
+		if( source.getCount() == 0 && false == m_database.doesDataExist(getMacAddress(), uuid) )
+		{
+			source.close();
+
+			return new BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent(m_node, uuid, EmptyCursor.SINGLETON, BleDevice.HistoricalDataQueryListener.Status.NO_TABLE, "");
+		}
+
+		final P_HistoricalDataQueryCursor.Aggregate[] aggregates = m_aggregates.toArray(new P_HistoricalDataQueryCursor.Aggregate[m_aggregates.size()]);
+		final P_HistoricalDataQueryCursor cursor = new P_HistoricalDataQueryCursor(source, aggregates, m_decoder, m_bucketMillis);
+
+		return new BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent(m_node, uuid, cursor, BleDevice.HistoricalDataQueryListener.Status.SUCCESS, makeQuery());
+	}
+
 	private BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent go_earlyOut()
 	{
 		final UUID uuid = getUuidOrInvalid();
@@ -274,6 +435,13 @@ public class HistoricalDataQuery
 
 	public BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent go()
 	{
+		final BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent e_native = go_native();
+
+		if( e_native != null )
+		{
+			return e_native;
+		}
+
 		final BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent e_earlyOut = go_earlyOut();
 
 		if( e_earlyOut != null )
@@ -284,8 +452,20 @@ public class HistoricalDataQuery
 		return m_node.queryHistoricalData(makeQuery());
 	}
 
+	/**
+	 * Same as {@link #go()} but performs the query on a background thread and returns the result back on the main thread
+	 * through the provided {@link BleDevice.HistoricalDataQueryListener}.
+	 */
 	public void go(final BleDevice.HistoricalDataQueryListener listener)
 	{
+		if( canGoNative() )
+		{
+			//--- Getting the source cursor can mean reading from disk, so this goes to the same background thread as SQL queries.
+			m_node.queryHistoricalData(this, listener);
+
+			return;
+		}
+
 		final BleDevice.HistoricalDataQueryListener.HistoricalDataQueryEvent e_earlyOut = go_earlyOut();
 
 		if( e_earlyOut != null )
@@ -0,0 +1,64 @@
+package com.idevicesinc.sweetblue.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implementation of {@link ChunkedData} which memory-maps a file. The mapped pages are managed by the OS rather than the Java heap, so this
+ * is generally the fastest way to stream a large image stored on disk.
+ */
+public final class MappedFileData extends ChunkedData
+{
+	private final FileChannel m_channel;
+	private final MappedByteBuffer m_buffer;
+
+
+	/**
+	 * Maps the entire given file. The file is kept open until {@link #close()} is called.
+	 */
+	public MappedFileData(final File file) throws IOException
+	{
+		m_channel = new FileInputStream(file).getChannel();
+
+		try
+		{
+			m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(Integer.MAX_VALUE, m_channel.size()));
+		}
+		catch (IOException e)
+		{
+			m_channel.close();
+
+			throw e;
+		}
+	}
+
+	@Override public int length()
+	{
+		return m_buffer.capacity();
+	}
+
+	@Override protected int read(final byte[] buffer, final int offset, final int count)
+	{
+		if( !m_buffer.hasRemaining() )  return -1;
+
+		final int read = Math.min(count, m_buffer.remaining());
+
+		m_buffer.get(buffer, offset, read);
+
+		return read;
+	}
+
+	@Override public void close()
+	{
+		try
+		{
+			m_channel.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+}
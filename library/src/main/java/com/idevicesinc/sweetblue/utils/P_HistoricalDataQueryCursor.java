@@ -0,0 +1,491 @@
+package com.idevicesinc.sweetblue.utils;
+
+import android.database.Cursor;
+
+/**
+ * {@link Cursor} returned for queries run in-process by {@link HistoricalDataQuery#go()}. It reads straight from a {@link HistoricalDataCursor}
+ * and works out each row only when the cursor is moved to it, so nothing is copied up front no matter how much data the query covers.
+ * <br><br>
+ * There are three shapes of result:
+ * <ul>
+ *     <li>No aggregates - one row per historical data point, with columns {@link HistoricalDataColumn#EPOCH_TIME} and {@link HistoricalDataColumn#DATA}.</li>
+ *     <li>Aggregates - a single row with one column per aggregate.</li>
+ *     <li>Aggregates plus {@link HistoricalDataQuery#downsample(Interval)} - one row per bucket from the first data point's bucket to the
+ *     last one's, empty buckets included, with the bucket's start time as the first column.</li>
+ * </ul>
+ */
+final class P_HistoricalDataQueryCursor extends EmptyCursor
+{
+	static final int COUNT	= 0;
+	static final int MIN	= 1;
+	static final int MAX	= 2;
+	static final int AVG	= 3;
+
+	/**
+	 * One aggregate function applied to one column.
+	 */
+	static final class Aggregate
+	{
+		private static final String[] NAMES = {"count", "min", "max", "avg"};
+
+		final int m_function;
+		final HistoricalDataColumn m_column;
+
+		Aggregate(final int function, final HistoricalDataColumn column)
+		{
+			m_function = function;
+			m_column = column;
+		}
+
+		String getName()
+		{
+			return m_function == COUNT ? NAMES[COUNT] : NAMES[m_function] + "(" + m_column.getColumnName() + ")";
+		}
+	}
+
+	private final HistoricalDataCursor m_source;
+	private final Aggregate[] m_aggregates;
+	private final HistoricalDataQuery.DataDecoder m_decoder;
+	private final long m_bucketMillis;
+	private final boolean m_decodesData;
+
+	private final String[] m_columnNames;
+	private final int m_firstAggregateColumn;
+	private final int m_count;
+	private final long m_firstBucket;
+
+	private int m_position = -1;
+	private boolean m_isClosed = false;
+
+	//--- Which row the values below are for, and where in the source the row after it starts.
+	private int m_computedPosition = -1;
+	private int m_nextSourcePosition = 0;
+
+	private long m_rowTime;
+	private long m_rowCount;
+	private long m_dataCount;
+	private double m_dataMin;
+	private double m_dataMax;
+	private double m_dataSum;
+	private long m_timeMin;
+	private long m_timeMax;
+	private double m_timeSum;
+
+	P_HistoricalDataQueryCursor(final HistoricalDataCursor source, final Aggregate[] aggregates, final HistoricalDataQuery.DataDecoder decoder, final long bucketMillis)
+	{
+		m_source = source;
+		m_aggregates = aggregates;
+		m_decoder = decoder;
+		m_bucketMillis = aggregates.length > 0 ? Math.max(0, bucketMillis) : 0;
+
+		boolean decodesData = false;
+
+		for( int i = 0; i < aggregates.length; i++ )
+		{
+			decodesData |= aggregates[i].m_function != COUNT && aggregates[i].m_column == HistoricalDataColumn.DATA;
+		}
+
+		m_decodesData = decodesData;
+
+		if( aggregates.length == 0 )
+		{
+			m_columnNames = new String[]{HistoricalDataColumn.EPOCH_TIME.getColumnName(), HistoricalDataColumn.DATA.getColumnName()};
+			m_firstAggregateColumn = 0;
+			m_count = source.getCount();
+			m_firstBucket = 0;
+		}
+		else
+		{
+			m_firstAggregateColumn = m_bucketMillis > 0 ? 1 : 0;
+			m_columnNames = new String[m_firstAggregateColumn + aggregates.length];
+
+			if( m_bucketMillis > 0 )
+			{
+				m_columnNames[0] = HistoricalDataColumn.EPOCH_TIME.getColumnName();
+			}
+
+			for( int i = 0; i < aggregates.length; i++ )
+			{
+				m_columnNames[m_firstAggregateColumn + i] = aggregates[i].getName();
+			}
+
+			if( m_bucketMillis == 0 )
+			{
+				m_count = 1;
+				m_firstBucket = 0;
+			}
+			else if( source.moveToFirst() )
+			{
+				final long firstBucket = floorDiv(source.getEpochTime(), m_bucketMillis);
+				source.moveToLast();
+				final long lastBucket = floorDiv(source.getEpochTime(), m_bucketMillis);
+
+				m_count = (int) Math.min(Integer.MAX_VALUE, lastBucket - firstBucket + 1);
+				m_firstBucket = firstBucket * m_bucketMillis;
+			}
+			else
+			{
+				m_count = 0;
+				m_firstBucket = 0;
+			}
+		}
+	}
+
+	private static long floorDiv(final long value, final long divisor)
+	{
+		final long quotient = value / divisor;
+
+		return (value % divisor != 0 && (value < 0) != (divisor < 0)) ? quotient - 1 : quotient;
+	}
+
+	private boolean isRaw()
+	{
+		return m_aggregates.length == 0;
+	}
+
+	private boolean checkPosition(final int position)
+	{
+		return position >= 0 && position < m_count;
+	}
+
+	@Override public int getCount()
+	{
+		return m_count;
+	}
+
+	@Override public int getPosition()
+	{
+		return m_position;
+	}
+
+	@Override public boolean move(int offset)
+	{
+		return moveToPosition(m_position + offset);
+	}
+
+	@Override public boolean moveToPosition(int position)
+	{
+		m_position = Math.max(-1, Math.min(position, m_count));
+
+		return checkPosition(m_position);
+	}
+
+	@Override public boolean moveToFirst()
+	{
+		return moveToPosition(0);
+	}
+
+	@Override public boolean moveToLast()
+	{
+		return moveToPosition(m_count - 1);
+	}
+
+	@Override public boolean moveToNext()
+	{
+		return moveToPosition(m_position + 1);
+	}
+
+	@Override public boolean moveToPrevious()
+	{
+		return moveToPosition(m_position - 1);
+	}
+
+	@Override public boolean isFirst()
+	{
+		return m_count > 0 && m_position == 0;
+	}
+
+	@Override public boolean isLast()
+	{
+		return m_count > 0 && m_position == m_count - 1;
+	}
+
+	@Override public boolean isBeforeFirst()
+	{
+		return m_count == 0 || m_position == -1;
+	}
+
+	@Override public boolean isAfterLast()
+	{
+		return m_count == 0 || m_position >= m_count;
+	}
+
+	@Override public int getColumnIndex(String columnName)
+	{
+		for( int i = 0; i < m_columnNames.length; i++ )
+		{
+			if( m_columnNames[i].equals(columnName) )  return i;
+		}
+
+		return -1;
+	}
+
+	@Override public int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException
+	{
+		final int index = getColumnIndex(columnName);
+
+		if( index == -1 )  throw new IllegalArgumentException("No column named " + columnName + ".");
+
+		return index;
+	}
+
+	@Override public String getColumnName(int columnIndex)
+	{
+		return m_columnNames[columnIndex];
+	}
+
+	@Override public String[] getColumnNames()
+	{
+		return m_columnNames.clone();
+	}
+
+	@Override public int getColumnCount()
+	{
+		return m_columnNames.length;
+	}
+
+	@Override public byte[] getBlob(int columnIndex)
+	{
+		if( isRaw() && columnIndex == 1 )
+		{
+			return moveSource() ? m_source.getBlob() : null;
+		}
+
+		return null;
+	}
+
+	@Override public String getString(int columnIndex)
+	{
+		final int type = getType(columnIndex);
+
+		if( type == FIELD_TYPE_INTEGER )
+		{
+			return String.valueOf(getLong(columnIndex));
+		}
+		else if( type == FIELD_TYPE_FLOAT )
+		{
+			return String.valueOf(getDouble(columnIndex));
+		}
+		else if( type == FIELD_TYPE_BLOB )
+		{
+			return Utils_Byte.bytesToHexString(getBlob(columnIndex));
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	@Override public short getShort(int columnIndex)
+	{
+		return (short) getLong(columnIndex);
+	}
+
+	@Override public int getInt(int columnIndex)
+	{
+		return (int) getLong(columnIndex);
+	}
+
+	@Override public long getLong(int columnIndex)
+	{
+		if( getType(columnIndex) == FIELD_TYPE_INTEGER )
+		{
+			if( isRaw() || (columnIndex == 0 && m_bucketMillis > 0) )
+			{
+				return isRaw() ? m_source.getEpochTime() : m_rowTime;
+			}
+
+			final Aggregate aggregate = m_aggregates[columnIndex - m_firstAggregateColumn];
+
+			if( aggregate.m_function == COUNT )  return m_rowCount;
+
+			return aggregate.m_function == MIN ? m_timeMin : m_timeMax;
+		}
+
+		return (long) getDouble(columnIndex);
+	}
+
+	@Override public float getFloat(int columnIndex)
+	{
+		return (float) getDouble(columnIndex);
+	}
+
+	@Override public double getDouble(int columnIndex)
+	{
+		final int type = getType(columnIndex);
+
+		if( type == FIELD_TYPE_INTEGER )
+		{
+			return getLong(columnIndex);
+		}
+		else if( type != FIELD_TYPE_FLOAT )
+		{
+			return 0.0;
+		}
+
+		final Aggregate aggregate = m_aggregates[columnIndex - m_firstAggregateColumn];
+
+		if( aggregate.m_column == HistoricalDataColumn.EPOCH_TIME )
+		{
+			return m_timeSum / m_rowCount;
+		}
+		else if( aggregate.m_function == MIN )
+		{
+			return m_dataMin;
+		}
+		else if( aggregate.m_function == MAX )
+		{
+			return m_dataMax;
+		}
+		else
+		{
+			return m_dataSum / m_dataCount;
+		}
+	}
+
+	@Override public int getType(int columnIndex)
+	{
+		if( isRaw() )
+		{
+			if( !moveSource() )  return FIELD_TYPE_NULL;
+
+			return columnIndex == 0 ? FIELD_TYPE_INTEGER : FIELD_TYPE_BLOB;
+		}
+
+		if( !compute() )  return FIELD_TYPE_NULL;
+
+		if( columnIndex < m_firstAggregateColumn )  return FIELD_TYPE_INTEGER;
+
+		final Aggregate aggregate = m_aggregates[columnIndex - m_firstAggregateColumn];
+
+		if( aggregate.m_function == COUNT )  return FIELD_TYPE_INTEGER;
+
+		if( aggregate.m_column == HistoricalDataColumn.EPOCH_TIME )
+		{
+			if( m_rowCount == 0 )  return FIELD_TYPE_NULL;
+
+			return aggregate.m_function == AVG ? FIELD_TYPE_FLOAT : FIELD_TYPE_INTEGER;
+		}
+
+		return m_dataCount == 0 ? FIELD_TYPE_NULL : FIELD_TYPE_FLOAT;
+	}
+
+	@Override public boolean isNull(int columnIndex)
+	{
+		return getType(columnIndex) == FIELD_TYPE_NULL;
+	}
+
+	@Override public void close()
+	{
+		if( m_isClosed )  return;
+
+		m_isClosed = true;
+
+		m_source.close();
+	}
+
+	@Override public boolean isClosed()
+	{
+		return m_isClosed;
+	}
+
+	private boolean moveSource()
+	{
+		return checkPosition(m_position) && (m_source.getPosition() == m_position || m_source.moveToPosition(m_position));
+	}
+
+	//--- Works out the values for the current row if that hasn't been done already.
+	private boolean compute()
+	{
+		if( !checkPosition(m_position) )  return false;
+
+		if( m_computedPosition == m_position )  return true;
+
+		final long from;
+		final long to;
+
+		if( m_bucketMillis > 0 )
+		{
+			from = m_firstBucket + m_position * m_bucketMillis;
+			to = from + m_bucketMillis;
+		}
+		else
+		{
+			from = Long.MIN_VALUE;
+			to = Long.MAX_VALUE;
+		}
+
+		//--- Reading through the buckets in order is the common case, so only search when jumping around.
+		int index = m_computedPosition != -1 && m_position == m_computedPosition + 1 ? m_nextSourcePosition : lowerBound(from);
+
+		m_rowTime = from;
+		m_rowCount = 0;
+		m_dataCount = 0;
+		m_dataMin = Double.MAX_VALUE;
+		m_dataMax = -Double.MAX_VALUE;
+		m_dataSum = 0.0;
+		m_timeMin = Long.MAX_VALUE;
+		m_timeMax = Long.MIN_VALUE;
+		m_timeSum = 0.0;
+
+		final int sourceCount = m_source.getCount();
+
+		for( ; index < sourceCount; index++ )
+		{
+			m_source.moveToPosition(index);
+
+			final long time = m_source.getEpochTime();
+
+			//--- Closed on both ends when there's no bucket, since Long.MAX_VALUE is a valid time.
+			if( m_bucketMillis > 0 && time >= to )  break;
+
+			m_rowCount++;
+			m_timeMin = Math.min(m_timeMin, time);
+			m_timeMax = Math.max(m_timeMax, time);
+			m_timeSum += time;
+
+			if( m_decodesData )
+			{
+				final double value = m_decoder.decode(m_source.getBlob());
+
+				if( !Double.isNaN(value) )
+				{
+					m_dataCount++;
+					m_dataMin = Math.min(m_dataMin, value);
+					m_dataMax = Math.max(m_dataMax, value);
+					m_dataSum += value;
+				}
+			}
+		}
+
+		m_computedPosition = m_position;
+		m_nextSourcePosition = index;
+
+		return true;
+	}
+
+	//--- Index of the first source row with a time >= the given time.
+	private int lowerBound(final long time)
+	{
+		int low = 0;
+		int high = m_source.getCount();
+
+		while( low < high )
+		{
+			final int middle = (low + high) >>> 1;
+
+			m_source.moveToPosition(middle);
+
+			if( m_source.getEpochTime() < time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
@@ -0,0 +1,45 @@
+package com.idevicesinc.sweetblue.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Implementation of {@link ChunkedData} which reads from an {@link InputStream}, for instance one from {@link android.content.res.AssetManager#open(String)}.
+ * As streams don't generally know their own length, it has to be provided up front.
+ */
+public final class StreamData extends ChunkedData
+{
+	private final InputStream m_stream;
+	private final int m_length;
+
+
+	/**
+	 * Reads <code>length</code> bytes from the given stream. The stream gets closed by {@link #close()}.
+	 */
+	public StreamData(final InputStream stream, final int length)
+	{
+		m_stream = stream;
+		m_length = length;
+	}
+
+	@Override public int length()
+	{
+		return m_length;
+	}
+
+	@Override protected int read(final byte[] buffer, final int offset, final int count) throws IOException
+	{
+		return m_stream.read(buffer, offset, count);
+	}
+
+	@Override public void close()
+	{
+		try
+		{
+			m_stream.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+}
@@ -179,7 +179,7 @@ public final class Utils_Byte extends Utils
 	}
 
 	// Not sure what this was added for. It seems like it's for a pretty specific case. Marking as deprecated for now,
-	// and will remove in 3.0, unless we get complaints
+	// and will remove in 3.0, unless we get complaints. To stream a firmware image without loading it all into memory, use ChunkedData.
 	@Deprecated
 	public static List<byte[]> fileToBinaryDataList(Context context, String file, int offset)
 	{
@@ -59,6 +59,15 @@ public final class Utils_ScanRecord extends Utils
 	private static final byte DATA_TYPE_SERVICE_DATA = 0x16;
 	private static final int DATA_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
 
+	//--- Groups of AD structure types which map to the same part of a BleScanRecord, used to only re-parse what changed.
+	private static final int FIELD_FLAGS = 0x01;
+	private static final int FIELD_SERVICE_UUIDS = 0x02;
+	private static final int FIELD_NAME = 0x04;
+	private static final int FIELD_TX_POWER = 0x08;
+	private static final int FIELD_SERVICE_DATA = 0x10;
+	private static final int FIELD_MANUFACTURER_DATA = 0x20;
+	private static final int ALL_FIELDS = 0x3F;
+
 	/** Length of bytes for 16 bit UUID */
 	private static final int UUID_BYTES_16_BIT = 2;
 	/** Length of bytes for 32 bit UUID */
@@ -83,30 +92,165 @@ public final class Utils_ScanRecord extends Utils
 
 	public static BleScanRecord parseScanRecord(final byte[] scanRecord)
 	{
+		if(scanRecord == null)
+		{
+			return BleScanRecord.NULL;
+		}
+
 		Pointer<Integer> txPower = new Pointer<>();
 		txPower.value = BleNodeConfig.INVALID_TX_POWER;
 
 		Pointer<Integer> advFlags = new Pointer<>();
 		advFlags.value = -1;
 
-		Map<UUID, byte[]> serviceData = new HashMap<>();
-		serviceData.clear();
+		final BleScanRecord record = new BleScanRecord(advFlags, txPower, null, false, new ArrayList<ManufacturerData>(), new HashMap<UUID, byte[]>(), null, false);
 
-		List<UUID> serviceUUIDs =  new ArrayList<>();
-		serviceUUIDs.clear();
+		parseFields(scanRecord, ALL_FIELDS, record);
 
-		boolean shortName = false;
-		boolean completeList = false;
+		return record;
+	}
 
-		List<ManufacturerData> manData = new ArrayList<>();
+	/**
+	 * Updates <code>record</code>, which was parsed from <code>previousScanRecord</code>, so that it matches <code>scanRecord</code>. Only the kinds
+	 * of AD structures whose bytes actually changed get parsed again, so nothing is allocated if, for instance, only a counter in the manufacturer
+	 * data changed, aside from the new manufacturer data itself. Returns <code>true</code> if anything in <code>record</code> changed.
+	 */
+	public static boolean updateScanRecord(final BleScanRecord record, final byte[] previousScanRecord, final byte[] scanRecord)
+	{
+		if( scanRecord == null || Arrays.equals(previousScanRecord, scanRecord) )
+		{
+			return false;
+		}
 
-		if(scanRecord == null)
+		int changedFields = 0;
+
+		for( int field = FIELD_FLAGS; field <= FIELD_MANUFACTURER_DATA; field <<= 1 )
 		{
-			return BleScanRecord.NULL;
+			if( !sameStructures(previousScanRecord, scanRecord, field) )
+			{
+				changedFields |= field;
+			}
 		}
 
+		if( changedFields == 0 )
+		{
+			return false;
+		}
+
+		resetFields(record, changedFields);
+		parseFields(scanRecord, changedFields, record);
+
+		return true;
+	}
+
+	private static int fieldOf(final int fieldType)
+	{
+		switch (fieldType)
+		{
+			case DATA_TYPE_FLAGS:
+				return FIELD_FLAGS;
+			case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+			case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+			case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+			case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+			case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+			case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+				return FIELD_SERVICE_UUIDS;
+			case DATA_TYPE_LOCAL_NAME_SHORT:
+			case DATA_TYPE_LOCAL_NAME_COMPLETE:
+				return FIELD_NAME;
+			case DATA_TYPE_TX_POWER_LEVEL:
+				return FIELD_TX_POWER;
+			case DATA_TYPE_SERVICE_DATA:
+				return FIELD_SERVICE_DATA;
+			case DATA_TYPE_MANUFACTURER_SPECIFIC_DATA:
+				return FIELD_MANUFACTURER_DATA;
+			default:
+				return 0;
+		}
+	}
+
+	// Returns the offset of the next AD structure (its length byte) at or after the given offset which holds the given field, or -1 if there isn't
+	// one. Stops at the same places as parseFields(), so structures that wouldn't be parsed aren't compared either.
+	private static int nextStructure(final byte[] scanRecord, int currentPos, final int field)
+	{
+		if( scanRecord == null )  return -1;
+
+		while( currentPos < scanRecord.length )
+		{
+			final int length = scanRecord[currentPos] & 0xFF;
+
+			if( length == 0 || currentPos + 1 >= scanRecord.length - 1 )  return -1;
+
+			if( fieldOf(scanRecord[currentPos + 1] & 0xFF) == field )  return currentPos;
+
+			currentPos += length + 1;
+		}
+
+		return -1;
+	}
+
+	private static int structureEnd(final byte[] scanRecord, final int structurePos)
+	{
+		return Math.min(scanRecord.length, structurePos + 1 + (scanRecord[structurePos] & 0xFF));
+	}
+
+	private static boolean sameStructures(final byte[] previousScanRecord, final byte[] scanRecord, final int field)
+	{
+		int previousPos = nextStructure(previousScanRecord, 0, field);
+		int currentPos = nextStructure(scanRecord, 0, field);
+
+		while( previousPos != -1 && currentPos != -1 )
+		{
+			final int previousEnd = structureEnd(previousScanRecord, previousPos);
+			final int currentEnd = structureEnd(scanRecord, currentPos);
+
+			if( previousEnd - previousPos != currentEnd - currentPos )  return false;
+
+			for( int i = 0; i < currentEnd - currentPos; i++ )
+			{
+				if( previousScanRecord[previousPos + i] != scanRecord[currentPos + i] )  return false;
+			}
+
+			previousPos = nextStructure(previousScanRecord, previousEnd, field);
+			currentPos = nextStructure(scanRecord, currentEnd, field);
+		}
+
+		return previousPos == currentPos;
+	}
+
+	private static void resetFields(final BleScanRecord record, final int fields)
+	{
+		if( (fields & FIELD_FLAGS) != 0 )
+		{
+			record.setAdvFlagsValue(-1);
+		}
+		if( (fields & FIELD_SERVICE_UUIDS) != 0 )
+		{
+			record.clearServiceUUIDs();
+			record.setCompleteUuidList(false);
+		}
+		if( (fields & FIELD_NAME) != 0 )
+		{
+			record.setName(null, false);
+		}
+		if( (fields & FIELD_TX_POWER) != 0 )
+		{
+			record.setTxPowerValue(BleNodeConfig.INVALID_TX_POWER);
+		}
+		if( (fields & FIELD_SERVICE_DATA) != 0 )
+		{
+			record.clearServiceData();
+		}
+		if( (fields & FIELD_MANUFACTURER_DATA) != 0 )
+		{
+			record.clearManufacturerData();
+		}
+	}
+
+	private static void parseFields(final byte[] scanRecord, final int fields, final BleScanRecord record)
+	{
 		int currentPos = 0;
-		String localName = null;
 		while( currentPos < scanRecord.length ) {
 			// length is unsigned int.
 			int length = scanRecord[currentPos++] & 0xFF;
@@ -124,31 +268,36 @@ public final class Utils_ScanRecord extends Utils
 			int dataLength = length - 1;
 			// fieldType is unsigned int.
 			int fieldType = scanRecord[currentPos++] & 0xFF;
+			if( (fieldOf(fieldType) & fields) == 0 )
+			{
+				currentPos += dataLength;
+				continue;
+			}
 			switch (fieldType) {
 				case DATA_TYPE_FLAGS:
-					advFlags.value = scanRecord[currentPos] & 0xFF;
+					record.setAdvFlagsValue(scanRecord[currentPos] & 0xFF);
 					break;
 				case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
-					completeList = true;
+					record.setCompleteUuidList(true);
 				case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
-					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_16_BIT, serviceUUIDs);
+					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_16_BIT, record);
 					break;
 				case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
-					completeList = true;
+					record.setCompleteUuidList(true);
 				case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
-					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_32_BIT, serviceUUIDs);
+					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_32_BIT, record);
 					break;
 				case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
-					completeList = true;
+					record.setCompleteUuidList(true);
 				case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
-					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_128_BIT, serviceUUIDs);
+					parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_128_BIT, record);
 					break;
 				case DATA_TYPE_LOCAL_NAME_SHORT:
-					shortName = true;
 				case DATA_TYPE_LOCAL_NAME_COMPLETE:
 					try
 					{
-						localName = new String(extractBytes(scanRecord, currentPos, dataLength));
+						final boolean shortName = fieldType == DATA_TYPE_LOCAL_NAME_SHORT || record.isShortName();
+						record.setName(new String(extractBytes(scanRecord, currentPos, dataLength)), shortName);
 					}
 					catch(Exception e)
 					{
@@ -156,7 +305,7 @@ public final class Utils_ScanRecord extends Utils
 					}
 					break;
 				case DATA_TYPE_TX_POWER_LEVEL:
-					txPower.value = (int) scanRecord[currentPos];
+					record.setTxPowerValue((int) scanRecord[currentPos]);
 					break;
 				case DATA_TYPE_SERVICE_DATA:
 					// The first two bytes of the service data are service data UUID in little
@@ -167,7 +316,7 @@ public final class Utils_ScanRecord extends Utils
 						byte[] serviceDataUuidBytes = extractBytes(scanRecord, currentPos, serviceUuidLength);
 						UUID serviceDataUuid = parseUuidFrom(serviceDataUuidBytes);
 						byte[] serviceDataArray = extractBytes(scanRecord, currentPos + serviceUuidLength, dataLength - serviceUuidLength);
-						serviceData.put(serviceDataUuid, serviceDataArray);
+						record.addServiceData(serviceDataUuid, serviceDataArray);
 					}
 					catch(Exception e)
 					{
@@ -181,10 +330,7 @@ public final class Utils_ScanRecord extends Utils
 					try
 					{
 						short mfgId = (short) (((scanRecord[currentPos + 1] & 0xFF) << 8) + (scanRecord[currentPos] & 0xFF));
-						ManufacturerData mdata = new ManufacturerData();
-						mdata.m_id = mfgId;
-						mdata.m_data = extractBytes(scanRecord, currentPos + 2, dataLength - 2);
-						manData.add(mdata);
+						record.addManufacturerData(mfgId, extractBytes(scanRecord, currentPos + 2, dataLength - 2));
 					}
 					catch(Exception e)
 					{
@@ -198,7 +344,6 @@ public final class Utils_ScanRecord extends Utils
 			}
 			currentPos += dataLength;
 		}
-		return new BleScanRecord(advFlags, txPower, serviceUUIDs, completeList, manData, serviceData, localName, shortName);
 	}
 
 	@Deprecated
@@ -392,6 +537,25 @@ public final class Utils_ScanRecord extends Utils
 		return currentPos;
 	}
 
+	// Same as above, but adds the UUIDs straight to the scan record.
+	private static void parseServiceUuid(byte[] scanRecord, int currentPos, int dataLength, int uuidLength, final BleScanRecord record)
+	{
+		try
+		{
+			while( dataLength > 0 )
+			{
+				record.addServiceUuid(parseUuidFrom(extractBytes(scanRecord, currentPos, uuidLength)));
+
+				dataLength -= uuidLength;
+				currentPos += uuidLength;
+			}
+		}
+		catch(Exception e)
+		{
+			Log.e(TAG, "unable to parse service uuid of length " + dataLength);
+		}
+	}
+
 	// Helper method to extract bytes from byte array.
 	private static byte[] extractBytes(byte[] scanRecord, int start, int length)
 	{
@@ -6,6 +6,7 @@ import android.bluetooth.BluetoothManager;
 import android.bluetooth.le.AdvertiseCallback;
 import android.bluetooth.le.AdvertiseData;
 import android.bluetooth.le.AdvertiseSettings;
+import android.bluetooth.le.ScanFilter;
 import android.content.Context;
 import android.text.TextUtils;
 
@@ -14,6 +15,7 @@ import com.idevicesinc.sweetblue.utils.Interval;
 import com.idevicesinc.sweetblue.utils.Util;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -197,11 +199,11 @@ public class UnitTestManagerLayer implements P_NativeManagerLayer
         return m_nativeState == BleStatuses.STATE_ON;
     }
 
-    @Override public void startLScan(int scanMode, Interval delay, L_Util.ScanCallback callback)
+    @Override public void startLScan(int scanMode, Interval delay, List<ScanFilter> filters, L_Util.ScanCallback callback)
     {
     }
 
-    @Override public void startMScan(int scanMode, Interval delay, L_Util.ScanCallback callback)
+    @Override public void startMScan(int scanMode, Interval delay, List<ScanFilter> filters, L_Util.ScanCallback callback)
     {
     }
 
@@ -0,0 +1,90 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.AdvertisingCursor;
+import com.idevicesinc.sweetblue.utils.BleScanRecord;
+import com.idevicesinc.sweetblue.utils.BleUuid;
+import com.idevicesinc.sweetblue.utils.Utils_ScanRecord;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AdvertisingCursorTest extends BaseTest
+{
+
+    private static final UUID CUSTOM_UUID = UUID.fromString("0b7a4b3e-2c1d-4f6e-9a8b-7c6d5e4f3a2b");
+    private static final UUID MEDIUM_UUID = Uuids.fromInt("1234ABCD");
+
+
+    @Test
+    public void serviceUuidTest() throws Exception
+    {
+        startTest(false);
+        final byte[] record = new BleScanRecord()
+                .setName("Johnny 5")
+                .addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT)
+                .addServiceUuid(MEDIUM_UUID, BleUuid.UuidSize.MEDIUM)
+                .addServiceUuid(CUSTOM_UUID, BleUuid.UuidSize.FULL)
+                .buildPacket();
+        final AdvertisingCursor cursor = new AdvertisingCursor(record);
+        final BleScanRecord info = Utils_ScanRecord.parseScanRecord(record);
+        for (UUID uuid : new UUID[] { Uuids.BATTERY_SERVICE_UUID, MEDIUM_UUID, CUSTOM_UUID, Uuids.DEVICE_INFORMATION_SERVICE_UUID })
+        {
+            assertEquals(info.getServiceUUIDS().contains(uuid), cursor.hasServiceUuid(uuid));
+        }
+        assertTrue(cursor.hasServiceUuid(CUSTOM_UUID));
+        assertFalse(cursor.hasServiceUuid(Uuids.DEVICE_INFORMATION_SERVICE_UUID));
+        succeed();
+    }
+
+    @Test
+    public void manufacturerAndServiceDataTest() throws Exception
+    {
+        startTest(false);
+        final short manId = (short) 0xC0DE;
+        final byte[] record = new BleScanRecord()
+                .setAdvFlags((byte) 0x6)
+                .addServiceData(Uuids.BATTERY_SERVICE_UUID, new byte[] { 100 })
+                .addManufacturerData(manId, new byte[] { 0x5, (byte) 0xAA })
+                .buildPacket();
+        final AdvertisingCursor cursor = new AdvertisingCursor(record);
+
+        assertTrue(cursor.hasManufacturerId(0xC0DE));
+        assertEquals(AdvertisingCursor.TYPE_MANUFACTURER_DATA, cursor.type());
+        assertEquals(0xC0DE, cursor.manufacturerId());
+        assertEquals((byte) 0xAA, cursor.byteAt(3));
+        assertFalse(cursor.hasManufacturerId(0x1234));
+
+        assertTrue(cursor.hasServiceData(Uuids.BATTERY_SERVICE_UUID));
+        assertEquals(100, cursor.byteAt(2));
+        assertFalse(cursor.hasServiceData(Uuids.DEVICE_INFORMATION_SERVICE_UUID));
+
+        cursor.rewind();
+        int structures = 0;
+        while (cursor.next())
+        {
+            structures++;
+        }
+        assertTrue(structures >= 3);
+        assertEquals(-1, cursor.type());
+        succeed();
+    }
+
+    @Test
+    public void malformedRecordTest() throws Exception
+    {
+        startTest(false);
+        // Claims more data than there is, same as a truncated advertisement
+        final byte[] record = new byte[] { 0x2, 0x1, 0x6, 0x11, 0x7, 0x1, 0x2, 0x3 };
+        final AdvertisingCursor cursor = new AdvertisingCursor(record);
+        assertFalse(cursor.hasServiceUuid(CUSTOM_UUID));
+        assertFalse(new AdvertisingCursor(null).next());
+        succeed();
+    }
+
+}
@@ -12,7 +12,9 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 
@@ -147,4 +149,73 @@ public class BleScanRecordTest extends BaseTest
         succeed();
     }
 
+    @Test
+    public void incrementalUpdateTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(11);
+        byte[] previous = randomRecord(random);
+        final BleScanRecord record = Utils_ScanRecord.parseScanRecord(previous);
+
+        for (int i = 0; i < 500; i++)
+        {
+            // Sometimes only tweak a byte, like an advertised counter, other times change the whole layout
+            final byte[] next = random.nextBoolean() ? previous.clone() : randomRecord(random);
+            if (next.length > 0 && random.nextBoolean())
+            {
+                next[random.nextInt(next.length)] ^= 0x1;
+            }
+
+            Utils_ScanRecord.updateScanRecord(record, previous, next);
+            assertSameRecord(Utils_ScanRecord.parseScanRecord(next), record);
+            previous = next;
+        }
+        succeed();
+    }
+
+    private static byte[] randomRecord(Random random)
+    {
+        final BleScanRecord record = new BleScanRecord();
+        if (random.nextBoolean())
+        {
+            record.setName(random.nextBoolean() ? "Johnny 5" : "Bob", random.nextBoolean());
+        }
+        if (random.nextBoolean())
+        {
+            record.setTxPower((byte) random.nextInt(20));
+        }
+        if (random.nextBoolean())
+        {
+            record.addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT);
+        }
+        if (random.nextBoolean())
+        {
+            record.addServiceData(Uuids.CURRENT_TIME_SERVICE, new byte[] { (byte) random.nextInt(), (byte) random.nextInt() });
+        }
+        if (random.nextBoolean())
+        {
+            record.addManufacturerData((short) 16454, new byte[] { (byte) random.nextInt(), 0x44, (byte) random.nextInt() });
+        }
+        record.setAdvFlags((byte) random.nextInt(8));
+        return record.buildPacket();
+    }
+
+    private static void assertSameRecord(BleScanRecord expected, BleScanRecord actual)
+    {
+        assertEquals(expected.getAdvFlags().value, actual.getAdvFlags().value);
+        assertEquals(expected.getTxPower().value, actual.getTxPower().value);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.isShortName(), actual.isShortName());
+        assertEquals(expected.isCompleteUuidList(), actual.isCompleteUuidList());
+        assertEquals(expected.getServiceUUIDS(), actual.getServiceUUIDS());
+        assertEquals(expected.getServiceData().size(), actual.getServiceData().size());
+        for (Map.Entry<UUID, byte[]> entry : expected.getServiceData().entrySet())
+        {
+            assertTrue(Arrays.equals(entry.getValue(), actual.getServiceData().get(entry.getKey())));
+        }
+        assertEquals(expected.getManufacturerId(), actual.getManufacturerId());
+        assertTrue(Arrays.equals(expected.getManufacturerData(), actual.getManufacturerData()));
+        assertEquals(expected.getManufacturerDataList().size(), actual.getManufacturerDataList().size());
+    }
+
 }
@@ -0,0 +1,192 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CallbackBatcherTest extends BaseTest
+{
+
+    private static final UUID SENSOR_UUID = Uuids.fromShort("1234");
+    private static final UUID OTHER_UUID = Uuids.fromShort("1235");
+
+
+    @Test
+    public void batchAndCoalesceTest() throws Exception
+    {
+        startTest(false);
+        final RecordingHandler handler = new RecordingHandler();
+        final P_CallbackBatcher batcher = new P_CallbackBatcher(handler);
+        final List<Byte> received = new ArrayList<>();
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                received.add(e.data().length > 0 ? e.data()[0] : -1);
+            }
+        };
+
+        // Only one message is posted however many events there are
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 1), 16, Collections.singleton(SENSOR_UUID));
+        batcher.post(listener, newNotification(OTHER_UUID, NotificationListener.Status.SUCCESS, 2), 16, Collections.singleton(SENSOR_UUID));
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 3), 16, Collections.singleton(SENSOR_UUID));
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.EMPTY_DATA, 4), 16, Collections.singleton(SENSOR_UUID));
+        batcher.post(listener, newNotification(OTHER_UUID, NotificationListener.Status.SUCCESS, 5), 16, Collections.singleton(SENSOR_UUID));
+        assertEquals(1, handler.m_posted.size());
+        assertEquals(4, batcher.getStats().queueDepth());
+
+        // The sensor's latest value took the first one's place, everything else is in order
+        handler.runAll();
+        assertArrayEquals(new Byte[]{3, 2, -1, 5}, received.toArray(new Byte[received.size()]));
+
+        // Right after a batch, the next one waits for the interval
+        batcher.post(listener, newNotification(OTHER_UUID, NotificationListener.Status.SUCCESS, 6), 16, null);
+        assertEquals(1, handler.m_posted.size());
+        assertTrue(handler.m_delays.get(0) > 0);
+        handler.runAll();
+
+        final CallbackBatchStats stats = batcher.getStats();
+        assertEquals(6, stats.queued());
+        assertEquals(1, stats.coalesced());
+        assertEquals(5, stats.dispatched());
+        assertEquals(2, stats.batches());
+        assertEquals(0, stats.queueDepth());
+        assertEquals(4, stats.maxQueueDepth());
+        succeed();
+    }
+
+    @Test
+    public void pendingTest() throws Exception
+    {
+        startTest(false);
+        final RecordingHandler handler = new RecordingHandler();
+        final P_CallbackBatcher batcher = new P_CallbackBatcher(handler);
+        final List<Boolean> pendingWhenCalled = new ArrayList<>();
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                pendingWhenCalled.add(batcher.hasPending_mainThread());
+            }
+        };
+
+        assertFalse(batcher.hasPending_mainThread());
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 1), 16, null);
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 2), 16, null);
+        assertTrue(batcher.hasPending_mainThread());
+
+        // Something raised by the first callback would still have the second one ahead of it, but not once the batch is done
+        handler.runAll();
+        assertEquals(2, pendingWhenCalled.size());
+        assertTrue(pendingWhenCalled.get(0));
+        assertFalse(pendingWhenCalled.get(1));
+        assertFalse(batcher.hasPending_mainThread());
+        succeed();
+    }
+
+    @Test
+    public void throwingListenerTest() throws Exception
+    {
+        startTest(false);
+        final RecordingHandler handler = new RecordingHandler();
+        final P_CallbackBatcher batcher = new P_CallbackBatcher(handler);
+        final List<Byte> received = new ArrayList<>();
+        final IllegalStateException failure = new IllegalStateException("first");
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                received.add(e.data()[0]);
+
+                if (e.data()[0] != 3)
+                {
+                    throw e.data()[0] == 1 ? failure : new IllegalStateException("second");
+                }
+            }
+        };
+
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 1), 16, null);
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 2), 16, null);
+        batcher.post(listener, newNotification(SENSOR_UUID, NotificationListener.Status.SUCCESS, 3), 16, null);
+
+        // Every callback in the batch still gets called, then the first exception comes out
+        try
+        {
+            handler.runAll();
+            fail("Expected the listener's exception to be rethrown");
+        }
+        catch (IllegalStateException e)
+        {
+            assertSame(failure, e);
+        }
+        assertArrayEquals(new Byte[]{1, 2, 3}, received.toArray(new Byte[received.size()]));
+        assertFalse(batcher.hasPending_mainThread());
+        assertEquals(3, batcher.getStats().dispatched());
+        succeed();
+    }
+
+    private static NotificationListener.NotificationEvent newNotification(final UUID charUuid, final NotificationListener.Status status, final int value)
+    {
+        final byte[] data = status == NotificationListener.Status.SUCCESS ? new byte[]{(byte) value} : null;
+
+        return new NotificationListener.NotificationEvent(null, Uuids.INVALID, charUuid, NotificationListener.Type.NOTIFICATION, data, status, BleStatuses.GATT_STATUS_NOT_APPLICABLE, 0.0, 0.0, /*solicited=*/true);
+    }
+
+    private static final class RecordingHandler implements P_SweetHandler
+    {
+        private final List<Runnable> m_posted = new ArrayList<>();
+        private final List<Long> m_delays = new ArrayList<>();
+
+        @Override public void post(Runnable action)
+        {
+            postDelayed(action, 0);
+        }
+
+        @Override public void postDelayed(Runnable action, long delay)
+        {
+            m_posted.add(action);
+            m_delays.add(delay);
+        }
+
+        @Override public void removeCallbacks(Runnable action)
+        {
+            m_posted.remove(action);
+        }
+
+        @Override public void quit()
+        {
+        }
+
+        @Override public Thread getThread()
+        {
+            return Thread.currentThread();
+        }
+
+        private void runAll()
+        {
+            while (!m_posted.isEmpty())
+            {
+                m_delays.remove(0);
+                m_posted.remove(0).run();
+            }
+        }
+    }
+
+}
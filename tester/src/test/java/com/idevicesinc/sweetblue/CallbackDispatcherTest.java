@@ -0,0 +1,76 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class CallbackDispatcherTest extends BaseTest
+{
+
+    @Test
+    public void laneOrderingTest() throws Exception
+    {
+        startTest(false);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final P_CallbackDispatcher dispatcher = new P_CallbackDispatcher(null);
+        final int count = 2000;
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final CountDownLatch done = new CountDownLatch(count);
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                if (concurrent.incrementAndGet() > 1)
+                {
+                    overlapped.set(true);
+                }
+                received.add((int) e.time_total().secs());
+                concurrent.decrementAndGet();
+                done.countDown();
+            }
+        };
+
+        // Events without a device all share one lane, so even on a pool they come out one at a time and in order
+        for (int i = 0; i < count; i++)
+        {
+            dispatcher.dispatch(listener, newNotification(i), executor, Interval.DISABLED);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertFalse(overlapped.get());
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(i, (int) received.get(i));
+        }
+        succeed();
+    }
+
+    private static NotificationListener.NotificationEvent newNotification(final int index)
+    {
+        return new NotificationListener.NotificationEvent(null, Uuids.INVALID, Uuids.INVALID, NotificationListener.Type.NOTIFICATION, new byte[]{1},
+                NotificationListener.Status.SUCCESS, BleStatuses.GATT_STATUS_NOT_APPLICABLE, index, 0.0, /*solicited=*/true);
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.idevicesinc.sweetblue;
+
+
+import android.util.Log;
+
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class CallbackExecutorTest extends BaseBleUnitTest
+{
+
+    private final List<String> m_warnings = Collections.synchronizedList(new ArrayList<String>());
+
+
+    @Test(timeout = 10000)
+    public void devicesRunInParallelTest() throws Exception
+    {
+        startTest(false);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final P_CallbackDispatcher dispatcher = new P_CallbackDispatcher(m_mgr);
+        final BleDevice slowDevice = m_mgr.newDevice(Util.randomMacAddress(), "Slow Device");
+        final BleDevice fastDevice = m_mgr.newDevice(Util.randomMacAddress(), "Fast Device");
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        final CountDownLatch slowDone = new CountDownLatch(3);
+        final List<Integer> slowOrder = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                if (e.device() == fastDevice)
+                {
+                    fastDone.countDown();
+                    return;
+                }
+
+                // Only gets past this if the other device's callback could run while this one was still going
+                try
+                {
+                    assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+                slowOrder.add((int) e.time_total().secs());
+                slowDone.countDown();
+            }
+        };
+
+        for (int i = 0; i < 3; i++)
+        {
+            dispatcher.dispatch(listener, newNotification(slowDevice, i), executor, Interval.DISABLED);
+        }
+        dispatcher.dispatch(listener, newNotification(fastDevice, 0), executor, Interval.DISABLED);
+
+        assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        // Still one at a time and in order for the same device
+        assertEquals(3, slowOrder.size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(i, (int) slowOrder.get(i));
+        }
+        succeed();
+    }
+
+    @Test(timeout = 10000)
+    public void watchdogTest() throws Exception
+    {
+        startTest(false);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final P_CallbackDispatcher dispatcher = new P_CallbackDispatcher(m_mgr);
+        final BleDevice device = m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+        final Interval budget = Interval.millis(50);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.dispatch(new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                started.countDown();
+                try
+                {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+                done.countDown();
+            }
+        }, newNotification(device, 0), executor, budget);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(budget.millis() * 3);
+
+        // Reported while it's still running, and only once
+        dispatcher.checkTimeBudget(budget);
+        dispatcher.checkTimeBudget(budget);
+        assertEquals(1, m_warnings.size());
+        assertTrue(m_warnings.get(0).contains("has been running for"));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, m_warnings.size());
+        succeed();
+    }
+
+    @Test(timeout = 10000)
+    public void rejectedExecutionTest() throws Exception
+    {
+        startTest(false);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        final P_CallbackDispatcher dispatcher = new P_CallbackDispatcher(m_mgr);
+        final BleDevice device = m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch done = new CountDownLatch(2);
+
+        final NotificationListener listener = new NotificationListener()
+        {
+            @Override public void onEvent(NotificationEvent e)
+            {
+                received.add((int) e.time_total().secs());
+                threads.add(Thread.currentThread());
+                done.countDown();
+            }
+        };
+
+        // With nowhere to run them, callbacks are posted like they would be without an executor, rather than getting stuck in the lane or
+        // being called on whatever thread raised them
+        dispatcher.dispatch(listener, newNotification(device, 0), executor, Interval.DISABLED);
+        dispatcher.dispatch(listener, newNotification(device, 1), executor, Interval.DISABLED);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(threads.contains(Thread.currentThread()));
+        assertEquals(2, received.size());
+        assertEquals(0, (int) received.get(0));
+        assertEquals(1, (int) received.get(1));
+        assertEquals(2, m_warnings.size());
+        succeed();
+    }
+
+    private static NotificationListener.NotificationEvent newNotification(final BleDevice device, final int index)
+    {
+        return new NotificationListener.NotificationEvent(device, Uuids.INVALID, Uuids.INVALID, NotificationListener.Type.NOTIFICATION, new byte[]{1},
+                NotificationListener.Status.SUCCESS, BleStatuses.GATT_STATUS_NOT_APPLICABLE, index, 0.0, /*solicited=*/true);
+    }
+
+    @Override public BleManagerConfig getConfig()
+    {
+        final BleManagerConfig config = super.getConfig();
+        config.loggingEnabled = true;
+        config.asyncLogging = false;
+        // So callbacks posted after a rejection go to the update thread, rather than the main looper that this test is blocking
+        config.runOnMainThread = false;
+        config.postCallbacksToMainThread = false;
+        config.logger = new SweetLogger()
+        {
+            @Override public void onLogEntry(int level, String tag, String msg)
+            {
+                if (level == Log.WARN && msg.contains("callback"))
+                {
+                    m_warnings.add(msg);
+                }
+            }
+        };
+        return config;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.ChunkedData;
+import com.idevicesinc.sweetblue.utils.FileChannelData;
+import com.idevicesinc.sweetblue.utils.MappedFileData;
+import com.idevicesinc.sweetblue.utils.StreamData;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ChunkedDataTest extends BaseTest
+{
+
+    private static final int CHUNK_SIZE = 20;
+
+
+    @Test
+    public void streamDataTest() throws Exception
+    {
+        startTest(false);
+        final byte[] data = randomData(1013);
+        checkChunks(data, new StreamData(new ByteArrayInputStream(data), data.length));
+        succeed();
+    }
+
+    @Test
+    public void fileDataTest() throws Exception
+    {
+        startTest(false);
+        final byte[] data = randomData(4099);
+        final File file = File.createTempFile("sweetblue", ".bin");
+        try
+        {
+            final FileOutputStream out = new FileOutputStream(file);
+            out.write(data);
+            out.close();
+
+            checkChunks(data, new FileChannelData(file));
+            checkChunks(data, new MappedFileData(file));
+        }
+        finally
+        {
+            file.delete();
+        }
+        succeed();
+    }
+
+    @Test
+    public void readFailureTest() throws Exception
+    {
+        startTest(false);
+        // The stream claims to be longer than it actually is
+        final ChunkedData data = new StreamData(new ByteArrayInputStream(randomData(30)), 50);
+        assertEquals(CHUNK_SIZE, data.nextChunk(CHUNK_SIZE).length);
+        assertNull(data.nextChunk(CHUNK_SIZE));
+        assertFalse(data.hasNext());
+
+        final ChunkedData broken = new StreamData(new InputStream()
+        {
+            @Override public int read() throws IOException
+            {
+                throw new IOException();
+            }
+        }, 10);
+        assertNull(broken.nextChunk(CHUNK_SIZE));
+        assertEquals(0, broken.position());
+        succeed();
+    }
+
+    private static void checkChunks(byte[] expected, ChunkedData data)
+    {
+        assertEquals(expected.length, data.length());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (data.hasNext())
+        {
+            final byte[] chunk = data.nextChunk(CHUNK_SIZE);
+            assertTrue(chunk.length <= CHUNK_SIZE);
+            out.write(chunk, 0, chunk.length);
+        }
+        assertNull(data.nextChunk(CHUNK_SIZE));
+        assertEquals(expected.length, data.position());
+        assertArrayEquals(expected, out.toByteArray());
+        data.close();
+    }
+
+    private static byte[] randomData(int length)
+    {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+}
@@ -10,6 +10,7 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -962,6 +963,63 @@ public class ConnectTest extends BaseBleUnitTest
         reacquire();
     }
 
+    @Test(timeout = 12000)
+    public void unintentionalDisconnectThenReconnectTest() throws Exception
+    {
+        m_device = null;
+
+        startTest(false);
+
+        m_config.runOnMainThread = false;
+        m_config.loggingEnabled = true;
+        m_mgr.setConfig(m_config);
+
+        m_mgr.setListener_Discovery(new BleManager.DiscoveryListener()
+        {
+
+            boolean hasConnected = false;
+            boolean wasReconnecting = false;
+
+            @Override public void onEvent(DiscoveryEvent e)
+            {
+                if (e.was(LifeCycle.DISCOVERED))
+                {
+                    m_device = e.device();
+                    m_device.connect(new BleDevice.StateListener()
+                    {
+                        @Override public void onEvent(StateEvent e)
+                        {
+                            if (e.didEnter(BleDeviceState.INITIALIZED))
+                            {
+                                if (!hasConnected)
+                                {
+                                    hasConnected = true;
+                                    // The short term reconnect manager hasn't been created yet at this point, the disconnect creates it
+                                    NativeUtil.setToDisconnected(m_device, BleStatuses.GATT_ERROR);
+                                }
+                                else
+                                {
+                                    assertTrue(wasReconnecting);
+                                    // Reliable write was never used, so disconnecting shouldn't have created its manager
+                                    assertNull(m_device.reliableWriteMngr_nullable());
+                                    succeed();
+                                }
+                            }
+                            else if (hasConnected && e.didEnter(BleDeviceState.RECONNECTING_SHORT_TERM))
+                            {
+                                wasReconnecting = true;
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+
+        reacquire();
+    }
+
 
 
     @Override public BleManagerConfig getConfig()
@@ -0,0 +1,98 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.AdvertisingCursor;
+import com.idevicesinc.sweetblue.utils.BleScanRecord;
+import com.idevicesinc.sweetblue.utils.BleUuid;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+
+import java.util.UUID;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class DeclarativeScanFilterTest extends BaseTest
+{
+
+    private static final String MAC = "C4:BE:84:12:34:56";
+    private static final UUID CUSTOM_UUID = UUID.fromString("0b7a4b3e-2c1d-4f6e-9a8b-7c6d5e4f3a2b");
+
+
+    @Test
+    public void serviceUuidTest() throws Exception
+    {
+        startTest(false);
+        final DeclarativeScanFilter filter = new DeclarativeScanFilter()
+                .addServiceUuid(Uuids.BATTERY_SERVICE_UUID)
+                .addServiceUuid(CUSTOM_UUID);
+
+        // The same UUID should match whether it's advertised as a 16 or 128 bit UUID
+        assertTrue(matches(filter, new BleScanRecord().addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT), -50));
+        assertTrue(matches(filter, new BleScanRecord().addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.FULL), -50));
+        assertTrue(matches(filter, new BleScanRecord().addServiceUuid(CUSTOM_UUID, BleUuid.UuidSize.FULL), -50));
+        assertFalse(matches(filter, new BleScanRecord().addServiceUuid(Uuids.DEVICE_INFORMATION_SERVICE_UUID, BleUuid.UuidSize.SHORT), -50));
+        assertFalse(matches(filter, new BleScanRecord(), -50));
+        succeed();
+    }
+
+    @Test
+    public void manufacturerDataMaskTest() throws Exception
+    {
+        startTest(false);
+        final DeclarativeScanFilter filter = new DeclarativeScanFilter()
+                .addManufacturerData(0xC0DE, new byte[] { 0x10, 0x20 }, new byte[] { (byte) 0xF0, (byte) 0xFF });
+
+        assertTrue(matches(filter, new BleScanRecord().addManufacturerData((short) 0xC0DE, new byte[] { 0x1A, 0x20, 0x7F }), -50));
+        assertFalse(matches(filter, new BleScanRecord().addManufacturerData((short) 0xC0DE, new byte[] { 0x2A, 0x20, 0x7F }), -50));
+        assertFalse(matches(filter, new BleScanRecord().addManufacturerData((short) 0xC0DE, new byte[] { 0x10 }), -50));
+        assertFalse(matches(filter, new BleScanRecord().addManufacturerData((short) 0xBEEF, new byte[] { 0x10, 0x20 }), -50));
+
+        filter.addManufacturerId(0xBEEF);
+        assertTrue(matches(filter, new BleScanRecord().addManufacturerData((short) 0xBEEF, new byte[] { 0x10, 0x20 }), -50));
+        succeed();
+    }
+
+    @Test
+    public void criteriaAreCombinedTest() throws Exception
+    {
+        startTest(false);
+        final DeclarativeScanFilter filter = new DeclarativeScanFilter()
+                .addServiceUuid(Uuids.BATTERY_SERVICE_UUID)
+                .addManufacturerId(0xC0DE)
+                .addMacPrefix("c4:be:84")
+                .setMinRssi(-70);
+        final BleScanRecord record = new BleScanRecord()
+                .addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT)
+                .addManufacturerData((short) 0xC0DE, new byte[] { 0x1 });
+
+        assertTrue(matches(filter, record, -60));
+        assertFalse(matches(filter, record, -80));
+        assertFalse(filter.matchesAdvertisement("00:11:22:33:44:55", -60, new AdvertisingCursor(record.buildPacket())));
+        assertFalse(matches(filter, new BleScanRecord().addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT), -60));
+        succeed();
+    }
+
+    @Test
+    public void nameTest() throws Exception
+    {
+        startTest(false);
+        final DeclarativeScanFilter filter = new DeclarativeScanFilter();
+        assertFalse(filter.hasNameCriteria());
+        assertTrue(filter.matchesName(null));
+
+        filter.addNamePrefix("johnny").setNamePattern("Robot-[0-9]+");
+        assertTrue(filter.hasNameCriteria());
+        assertTrue(filter.matchesName("Johnny 5"));
+        assertTrue(filter.matchesName("Robot-42"));
+        assertFalse(filter.matchesName("Robot-X"));
+        assertFalse(filter.matchesName(null));
+        succeed();
+    }
+
+    private static boolean matches(DeclarativeScanFilter filter, BleScanRecord record, int rssi)
+    {
+        return filter.matchesAdvertisement(MAC, rssi, new AdvertisingCursor(record.buildPacket()));
+    }
+
+}
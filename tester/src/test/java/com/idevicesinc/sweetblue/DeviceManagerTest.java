@@ -1,14 +1,30 @@
 package com.idevicesinc.sweetblue;
 
 
+import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.HistoricalDataAggregate;
 import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Semaphore;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 
 @Config(manifest = Config.NONE, sdk = 25)
 @RunWith(RobolectricTestRunner.class)
@@ -58,4 +74,139 @@ public class DeviceManagerTest extends BaseBleUnitTest
         startTest();
     }
 
+    @Test(timeout = 10000)
+    public void sortedDeviceViewTest() throws Exception
+    {
+        final SortedDeviceView view = m_mgr.getSortedDeviceView();
+        view.setListener(new SortedDeviceView.ChangeListener()
+        {
+            private int m_inserted = 0;
+
+            @Override public void onEvent(ChangeEvent e)
+            {
+                if (e.type() == Type.INSERTED && ++m_inserted == 3)
+                {
+                    // Devices should come out sorted by name, no matter the order they were added in
+                    final List<BleDevice> sorted = view.getDevices();
+                    assertTrue(sorted.get(0).getName_native().equals("Alpha"));
+                    assertTrue(sorted.get(1).getName_native().equals("Bravo"));
+                    assertTrue(sorted.get(2).getName_native().equals("Charlie"));
+                    assertTrue(view.getPosition(sorted.get(2)) == 2);
+                    succeed();
+                }
+            }
+        });
+        m_mgr.newDevice(Util.randomMacAddress(), "Charlie");
+        m_mgr.newDevice(Util.randomMacAddress(), "Alpha");
+        m_mgr.newDevice(Util.randomMacAddress(), "Bravo");
+        startTest();
+    }
+
+    @Test(timeout = 10000)
+    public void sortedDeviceViewMoveAndRemoveTest() throws Exception
+    {
+        // Strongest signal first
+        m_config.defaultListComparator = new Comparator<BleDevice>()
+        {
+            @Override public int compare(BleDevice lhs, BleDevice rhs)
+            {
+                return rhs.getRssi() - lhs.getRssi();
+            }
+        };
+        m_mgr.setConfig(m_config);
+
+        final SortedDeviceView view = m_mgr.getSortedDeviceView();
+        final BleDevice first = m_mgr.newDevice(Util.randomMacAddress(), "First");
+        final BleDevice second = m_mgr.newDevice(Util.randomMacAddress(), "Second");
+        final BleDevice third = m_mgr.newDevice(Util.randomMacAddress(), "Third");
+        first.updateRssi(-50, false);
+        second.updateRssi(-60, false);
+        third.updateRssi(-70, false);
+        assertEquals(Arrays.asList(first, second, third), view.getDevices());
+
+        final List<SortedDeviceView.ChangeListener.ChangeEvent> events = Collections.synchronizedList(new ArrayList<SortedDeviceView.ChangeListener.ChangeEvent>());
+        view.setListener(new SortedDeviceView.ChangeListener()
+        {
+            @Override public void onEvent(ChangeEvent e)
+            {
+                events.add(e);
+
+                if (e.type() == Type.REMOVED)
+                {
+                    succeed();
+                }
+            }
+        });
+
+        // Still in order with its neighbors, so nothing moves
+        second.updateRssi(-55, false);
+        assertEquals(1, view.getPosition(second));
+
+        third.updateRssi(-40, false);
+        assertEquals(Arrays.asList(third, first, second), view.getDevices());
+        assertEquals(0, view.getPosition(third));
+        assertEquals(2, view.getPosition(second));
+
+        first.undiscover();
+        startTest();
+
+        assertEquals(Arrays.asList(third, second), view.getDevices());
+        assertEquals(-1, view.getPosition(first));
+        assertEquals(1, view.getPosition(second));
+
+        assertEquals(2, events.size());
+        assertEquals(SortedDeviceView.ChangeListener.Type.MOVED, events.get(0).type());
+        assertEquals(third, events.get(0).device());
+        assertEquals(2, events.get(0).fromPosition());
+        assertEquals(0, events.get(0).toPosition());
+        assertEquals(SortedDeviceView.ChangeListener.Type.REMOVED, events.get(1).type());
+        assertEquals(first, events.get(1).device());
+        assertEquals(1, events.get(1).fromPosition());
+    }
+
+    @Test(timeout = 10000)
+    public void customComparatorSortsOnDemandTest() throws Exception
+    {
+        startTest(false);
+        // Keyed on something the view doesn't know about
+        final Map<String, Integer> ranks = new HashMap<>();
+        ranks.put("Alpha", 1);
+        ranks.put("Bravo", 2);
+        m_config.defaultListComparator = new Comparator<BleDevice>()
+        {
+            @Override public int compare(BleDevice lhs, BleDevice rhs)
+            {
+                return ranks.get(lhs.getName_native()) - ranks.get(rhs.getName_native());
+            }
+        };
+        m_mgr.setConfig(m_config);
+
+        final BleDevice alpha = m_mgr.newDevice(Util.randomMacAddress(), "Alpha");
+        final BleDevice bravo = m_mgr.newDevice(Util.randomMacAddress(), "Bravo");
+        assertEquals(Arrays.asList(alpha, bravo), m_mgr.getDevices_List_sorted());
+
+        // The getters still sort every time, the view needs to be told
+        ranks.put("Alpha", 3);
+        assertEquals(Arrays.asList(bravo, alpha), m_mgr.getDevices_List_sorted());
+        assertEquals(Arrays.asList(alpha, bravo), m_mgr.getSortedDeviceView().getDevices());
+        m_mgr.getSortedDeviceView().resort();
+        assertEquals(Arrays.asList(bravo, alpha), m_mgr.getSortedDeviceView().getDevices());
+        succeed();
+    }
+
+    @Test(timeout = 10000)
+    public void aggregateDoesNotCreateHistoricalDataManagersTest() throws Exception
+    {
+        startTest(false);
+        final UUID uuid = Uuids.BATTERY_LEVEL;
+        final BleDevice withData = m_mgr.newDevice(Util.randomMacAddress(), "With Data");
+        final BleDevice withoutData = m_mgr.newDevice(Util.randomMacAddress(), "Without Data");
+        withData.addHistoricalData(uuid, new byte[]{50}, new EpochTime(1000));
+
+        final HistoricalDataAggregate aggregate = m_mgr.aggregateHistoricalData(uuid, EpochTimeRange.FROM_MIN_TO_MAX).get();
+        assertEquals(1, aggregate.getCount());
+        assertNull(withoutData.historicalDataMngr_nullable());
+        succeed();
+    }
+
 }
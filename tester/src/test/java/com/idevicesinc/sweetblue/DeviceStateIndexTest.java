@@ -0,0 +1,59 @@
+package com.idevicesinc.sweetblue;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class DeviceStateIndexTest extends BaseTest
+{
+
+    @Test
+    public void lookupTest() throws Exception
+    {
+        startTest(false);
+        final P_DeviceStateIndex index = new P_DeviceStateIndex();
+        index.reset(4);
+        index.set(0, BleDeviceState.DISCOVERED.bit() | BleDeviceState.DISCONNECTED.bit());
+        index.set(1, BleDeviceState.DISCOVERED.bit() | BleDeviceState.CONNECTED.bit());
+        index.set(2, BleDeviceState.DISCOVERED.bit() | BleDeviceState.DISCONNECTED.bit());
+        index.set(3, BleDeviceState.DISCOVERED.bit() | BleDeviceState.CONNECTED.bit());
+
+        assertEquals(4, index.count(BleDeviceState.DISCOVERED.bit()));
+        assertEquals(2, index.count(BleDeviceState.CONNECTED.bit()));
+        assertEquals(1, index.nextMatch(BleDeviceState.CONNECTED.bit(), 0));
+        assertEquals(3, index.nextMatch(BleDeviceState.CONNECTED.bit(), 2));
+        assertEquals(-1, index.nextMatch(BleDeviceState.CONNECTED.bit(), 4));
+        assertEquals(0, index.count(BleDeviceState.BONDED.bit()));
+
+        // Moving a device from one state to another should only update the bits that changed
+        index.set(1, BleDeviceState.DISCOVERED.bit() | BleDeviceState.DISCONNECTED.bit());
+        assertEquals(1, index.count(BleDeviceState.CONNECTED.bit()));
+        assertEquals(3, index.count(BleDeviceState.DISCONNECTED.bit()));
+        assertEquals(3, index.nextMatch(BleDeviceState.CONNECTED.bit(), 0));
+
+        // Masks with several states match any of them
+        assertEquals(4, index.count(BleDeviceState.CONNECTED.bit() | BleDeviceState.DISCONNECTED.bit()));
+        succeed();
+    }
+
+    @Test
+    public void resetTest() throws Exception
+    {
+        startTest(false);
+        final P_DeviceStateIndex index = new P_DeviceStateIndex();
+        index.reset(3);
+        index.set(2, BleDeviceState.CONNECTED.bit());
+
+        index.reset(2);
+        assertEquals(2, index.size());
+        assertEquals(0, index.count(BleDeviceState.CONNECTED.bit()));
+        assertEquals(0x0, index.getMask(1));
+
+        index.set(1, BleDeviceState.CONNECTED.bit());
+        assertEquals(1, index.nextMatch(BleDeviceState.CONNECTED.bit(), 0));
+        succeed();
+    }
+
+}
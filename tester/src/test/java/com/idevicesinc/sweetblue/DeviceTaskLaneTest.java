@@ -0,0 +1,140 @@
+package com.idevicesinc.sweetblue;
+
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import com.idevicesinc.sweetblue.utils.GattDatabase;
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class DeviceTaskLaneTest extends BaseBleUnitTest
+{
+
+    private static final UUID mTestService = Uuids.fromShort("12BA");
+    private static final UUID mTestChar = Uuids.fromShort("12BC");
+
+    private final GattDatabase db = new GattDatabase().addService(mTestService)
+            .addCharacteristic(mTestChar).setProperties().write().setPermissions().write().completeService();
+
+    private final AtomicInteger m_inFlightWrites = new AtomicInteger();
+    private final AtomicInteger m_maxInFlightWrites = new AtomicInteger();
+
+
+    @Test(timeout = 20000)
+    public void lanesRunInParallelTest() throws Exception
+    {
+        m_config.useDeviceTaskLanes = true;
+        m_config.maxConcurrentTasks = 4;
+        m_mgr.setConfig(m_config);
+
+        writeToTwoDevices(2);
+
+        startTest();
+    }
+
+    @Test(timeout = 20000)
+    public void concurrentTaskCapTest() throws Exception
+    {
+        m_config.useDeviceTaskLanes = true;
+        m_config.maxConcurrentTasks = 1;
+        m_mgr.setConfig(m_config);
+
+        writeToTwoDevices(1);
+
+        startTest();
+    }
+
+    @Test(timeout = 20000)
+    public void lanesDisabledTest() throws Exception
+    {
+        m_config.useDeviceTaskLanes = false;
+        m_mgr.setConfig(m_config);
+
+        writeToTwoDevices(1);
+
+        startTest();
+    }
+
+    private void writeToTwoDevices(final int expectedMaxInFlight)
+    {
+        final AtomicInteger initializedCount = new AtomicInteger();
+        final AtomicInteger writeCount = new AtomicInteger();
+        final BleDevice device1 = m_mgr.newDevice(Util.randomMacAddress(), "Test Device 1");
+        final BleDevice device2 = m_mgr.newDevice(Util.randomMacAddress(), "Test Device 2");
+
+        final BleDevice.ReadWriteListener writeListener = new BleDevice.ReadWriteListener()
+        {
+            @Override public void onEvent(ReadWriteEvent e)
+            {
+                assertTrue("Write failed with status " + e.status(), e.wasSuccess());
+                if (writeCount.incrementAndGet() == 2)
+                {
+                    assertEquals(expectedMaxInFlight, m_maxInFlightWrites.get());
+                    succeed();
+                }
+            }
+        };
+
+        final BleDevice.StateListener stateListener = new BleDevice.StateListener()
+        {
+            @Override public void onEvent(StateEvent e)
+            {
+                if (e.didEnter(BleDeviceState.INITIALIZED))
+                {
+                    // Wait until both devices are ready, so that the writes have a chance to overlap
+                    if (initializedCount.incrementAndGet() == 2)
+                    {
+                        device1.write(mTestChar, new byte[] { 0x1, 0x2 }, writeListener);
+                        device2.write(mTestChar, new byte[] { 0x3, 0x4 }, writeListener);
+                    }
+                }
+            }
+        };
+
+        device1.connect(stateListener);
+        device2.connect(stateListener);
+    }
+
+    @Override public P_GattLayer getGattLayer(BleDevice device)
+    {
+        return new LaneGatt(device);
+    }
+
+    private final class LaneGatt extends UnitTestGatt
+    {
+
+        public LaneGatt(BleDevice device)
+        {
+            super(device, db);
+            setDelayTime(Interval.millis(500));
+        }
+
+        @Override public boolean writeCharacteristic(BluetoothGattCharacteristic characteristic)
+        {
+            final int inFlight = m_inFlightWrites.incrementAndGet();
+            if (inFlight > m_maxInFlightWrites.get())
+            {
+                m_maxInFlightWrites.set(inFlight);
+            }
+            getBleDevice().getManager().getPostManager().postToUpdateThreadDelayed(new Runnable()
+            {
+                @Override public void run()
+                {
+                    m_inFlightWrites.decrementAndGet();
+                }
+            }, 400);
+            return super.writeCharacteristic(characteristic);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.State;
+import com.idevicesinc.sweetblue.utils.Util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class DiskOptionsManagerTest extends BaseBleUnitTest
+{
+
+    @Test(timeout = 10000)
+    public void writeBehindTest() throws Exception
+    {
+        startTest(false);
+        final String mac = Util.randomMacAddress();
+
+        final P_DiskOptionsManager disk = new P_DiskOptionsManager(m_activity.getApplicationContext());
+        disk.saveName(mac, "Johnny 5", true);
+        disk.saveNeedsBonding(mac, true);
+        disk.saveLastDisconnect(mac, State.ChangeIntent.INTENTIONAL, true);
+
+        // Saved values should be visible right away, before they've been written
+        assertEquals("Johnny 5", disk.loadName(mac, true));
+        assertTrue(disk.loadNeedsBonding(mac, true));
+        disk.shutdown();
+
+        // A new instance should pick everything up from disk once it's been flushed
+        final P_DiskOptionsManager disk2 = new P_DiskOptionsManager(m_activity.getApplicationContext());
+        assertEquals("Johnny 5", disk2.loadName(mac, true));
+        assertTrue(disk2.loadNeedsBonding(mac, true));
+        assertEquals(State.ChangeIntent.INTENTIONAL, disk2.loadLastDisconnect(mac, true));
+        // Not hitting disk only looks at what was saved this session
+        assertNull(disk2.loadName(mac, false));
+
+        disk2.clear(mac);
+        assertNull(disk2.loadName(mac, true));
+        assertFalse(disk2.loadNeedsBonding(mac, true));
+        disk2.shutdown();
+
+        final P_DiskOptionsManager disk3 = new P_DiskOptionsManager(m_activity.getApplicationContext());
+        assertEquals(State.ChangeIntent.NULL, disk3.loadLastDisconnect(mac, true));
+        disk3.shutdown();
+        succeed();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.idevicesinc.sweetblue;
+
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import com.idevicesinc.sweetblue.utils.GattDatabase;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class GattAttributeIndexTest extends BaseBleUnitTest
+{
+
+    private final static UUID mTestService = Uuids.fromShort("ABCD");
+    private final static UUID mOtherService = Uuids.fromShort("ABCE");
+    private final static UUID mTestChar = Uuids.fromShort("1234");
+    private final static UUID mOtherChar = Uuids.fromShort("1235");
+    private final static UUID mTestDesc = Uuids.CHARACTERISTIC_PRESENTATION_FORMAT_DESCRIPTOR_UUID;
+
+    private BleDevice m_device;
+
+    private GattDatabase db = new GattDatabase().addService(mTestService)
+            .addCharacteristic(mTestChar).setValue(new byte[] { 0x1 }).setProperties().readWriteNotify().setPermissions().readWrite().build()
+            .addDescriptor(mTestDesc).setValue(new byte[] { 0x1 }).setPermissions().read().completeChar()
+            .addCharacteristic(mTestChar).setValue(new byte[] { 0x2 }).setProperties().readWriteNotify().setPermissions().readWrite().build()
+            .addDescriptor(mTestDesc).setValue(new byte[] { 0x2 }).setPermissions().read().completeService()
+            .addService(mOtherService)
+            .addCharacteristic(mOtherChar).setValue(new byte[] { 0x3 }).setProperties().readWrite().setPermissions().readWrite().completeService();
+
+
+    @Test
+    public void indexLifecycleTest() throws Exception
+    {
+        m_device = null;
+
+        m_mgr.setListener_Discovery(new BleManager.DiscoveryListener()
+        {
+            @Override public void onEvent(DiscoveryEvent e)
+            {
+                if (e.was(LifeCycle.DISCOVERED))
+                {
+                    m_device = e.device();
+                    assertNull(m_device.serviceMngr_device().getIndex());
+
+                    m_device.connect(new BleDevice.StateListener()
+                    {
+                        @Override public void onEvent(StateEvent e)
+                        {
+                            if (e.didEnter(BleDeviceState.INITIALIZED))
+                            {
+                                final P_GattAttributeIndex index = m_device.serviceMngr_device().getIndex();
+                                assertNotNull(index);
+                                assertEquals(2, index.getServiceCount());
+                                assertEquals(3, index.getCharacteristicCount());
+
+                                // Both duplicates are kept, in order, and plain lookups still return the first one like a scan would
+                                assertEquals(2, index.get(mTestService, mTestChar).length);
+                                assertEquals(2, index.get(null, mTestChar).length);
+                                assertEquals(0, index.get(mOtherService, mTestChar).length);
+                                assertSame(index.get(null, mTestChar)[0].m_characteristic, m_device.getNativeBleCharacteristic(mTestService, mTestChar));
+                                assertEquals(0x3, m_device.getNativeCharacteristic(mOtherChar).getValue()[0]);
+                                assertTrue(m_device.getNativeBleCharacteristic(mOtherService, mTestChar).isNull());
+
+                                final BluetoothGattCharacteristic second = m_device.getNativeCharacteristic(null, mTestChar, new DescriptorFilter()
+                                {
+                                    @Override public Please onEvent(DescriptorEvent event)
+                                    {
+                                        return Please.acceptIf(event.value()[0] == 0x2);
+                                    }
+
+                                    @Override public UUID descriptorUuid()
+                                    {
+                                        return mTestDesc;
+                                    }
+                                });
+                                assertSame(index.get(mTestService, mTestChar)[1].m_characteristic.getCharacteristic(), second);
+
+                                m_device.disconnect();
+                            }
+                            else if (e.didEnter(BleDeviceState.DISCONNECTED) && e.didExit(BleDeviceState.INITIALIZED))
+                            {
+                                assertNull(m_device.serviceMngr_device().getIndex());
+                                succeed();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+
+        startTest();
+    }
+
+    @Override public BleManagerConfig getConfig()
+    {
+        BleManagerConfig config = super.getConfig();
+        config.gattLayerFactory = new P_GattLayerFactory()
+        {
+            @Override public P_GattLayer newInstance(BleDevice device)
+            {
+                return new UnitTestGatt(device, db);
+            }
+        };
+        config.loggingEnabled = true;
+        return config;
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Returning;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataAggregate;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests {@link P_HistoricalDataAggregation} against in-memory lists standing in for devices, and prints how it scales with the number of threads.
+ */
+public class HistoricalDataAggregationTest extends BaseTest
+{
+
+    private static final int DEVICES = 200;
+    private static final int SAMPLES_PER_DEVICE = 24 * 60;
+
+
+    @Test
+    public void aggregateTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File[] lists = newLists(DEVICES, SAMPLES_PER_DEVICE);
+
+        // A day of battery readings per device, where device i reads i % 100
+        final HistoricalDataAggregate all = new P_HistoricalDataAggregation(DEVICES, sources(lists, EpochTimeRange.FROM_MIN_TO_MAX), null, 4).start().get();
+        assertEquals(DEVICES, all.getDeviceCount());
+        assertEquals(DEVICES * SAMPLES_PER_DEVICE, all.getCount());
+        assertEquals(0.0, all.getMin(), 0.0);
+        assertEquals(99.0, all.getMax(), 0.0);
+        assertEquals(49.5, all.getAverage(), 0.0001);
+
+        // Only the first hour
+        final HistoricalDataAggregate hour = new P_HistoricalDataAggregation(DEVICES, sources(lists, new EpochTimeRange(0, 60 * 60 * 1000 - 1)), null, 0).start().get();
+        assertEquals(DEVICES * 60, hour.getCount());
+
+        // Nothing to do
+        assertEquals(HistoricalDataAggregate.EMPTY, new P_HistoricalDataAggregation(0, sources(lists, EpochTimeRange.FROM_MIN_TO_MAX), null, 4).start().get());
+        succeed();
+    }
+
+    @Test(timeout = 10000)
+    public void cancelTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File[] lists = newLists(4, 100);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sourcesRead = new AtomicInteger(0);
+
+        final P_HistoricalDataAggregation aggregation = new P_HistoricalDataAggregation(lists.length, new ForEach_Returning<HistoricalDataCursor>()
+        {
+            @Override public HistoricalDataCursor next(int index)
+            {
+                sourcesRead.incrementAndGet();
+                started.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                }
+                return lists[index].getCursor(EpochTimeRange.FROM_MIN_TO_MAX);
+            }
+        }, null, 1);
+        assertEquals(1, aggregation.getWorkerCount());
+        aggregation.start();
+
+        started.await();
+        assertFalse(aggregation.isDone());
+
+        // cancel() waits for the worker to stop, so it has to be let go from somewhere else
+        new Thread(new Runnable()
+        {
+            @Override public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                }
+                release.countDown();
+            }
+        }).start();
+
+        assertTrue(aggregation.cancel(false));
+        assertTrue(aggregation.isDone());
+        assertTrue(aggregation.isCancelled());
+        assertFalse(aggregation.cancel(false));
+
+        // The worker stopped after the source it was on
+        assertEquals(1, sourcesRead.get());
+
+        try
+        {
+            aggregation.get();
+            fail();
+        }
+        catch (CancellationException e)
+        {
+        }
+        succeed();
+    }
+
+    @Test
+    public void scalingBenchmarkTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File[] lists = newLists(DEVICES, SAMPLES_PER_DEVICE * 7);
+        final int cores = Runtime.getRuntime().availableProcessors();
+
+        // Warm up
+        new P_HistoricalDataAggregation(DEVICES, sources(lists, EpochTimeRange.FROM_MIN_TO_MAX), null, 0).start().get();
+
+        HistoricalDataAggregate expected = null;
+        double singleThreadMillis = 0;
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2)
+        {
+            final long start = System.nanoTime();
+            final HistoricalDataAggregate result = new P_HistoricalDataAggregation(DEVICES, sources(lists, EpochTimeRange.FROM_MIN_TO_MAX), null, parallelism).start().get();
+            final double millis = (System.nanoTime() - start) / 1e6;
+
+            if (expected == null)
+            {
+                expected = result;
+                singleThreadMillis = millis;
+            }
+            assertEquals(expected.getCount(), result.getCount());
+            assertEquals(expected.getAverage(), result.getAverage(), 0.0001);
+
+            System.out.println("Aggregated " + result.getCount() + " samples from " + DEVICES + " devices with " + parallelism + " thread(s) in " + millis + "ms (" + (singleThreadMillis / millis) + "x)");
+        }
+        succeed();
+    }
+
+    private static ForEach_Returning<HistoricalDataCursor> sources(final Backend_HistoricalDataList_File[] lists, final EpochTimeRange range)
+    {
+        return new ForEach_Returning<HistoricalDataCursor>()
+        {
+            @Override public HistoricalDataCursor next(int index)
+            {
+                return lists[index].getCursor(range);
+            }
+        };
+    }
+
+    private static Backend_HistoricalDataList_File[] newLists(int count, int samples)
+    {
+        final Backend_HistoricalDataList_File[] lists = new Backend_HistoricalDataList_File[count];
+        for (int i = 0; i < count; i++)
+        {
+            lists[i] = new Backend_HistoricalDataList_File();
+            lists[i].init(null, null, "00:11:22:33:44:" + i, Uuids.BATTERY_LEVEL, "battery", false);
+            for (int j = 0; j < samples; j++)
+            {
+                lists[i].add_single(new HistoricalData(new byte[]{(byte) (i % 100)}, j * 60 * 1000L), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+            }
+        }
+        return lists;
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDatabase_File;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.ForEach_Void;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HistoricalDataFileBackendTest extends BaseTest
+{
+
+    private static File newTempDir() throws Exception
+    {
+        final File dir = File.createTempFile("sweetblue", "historical");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    @Test
+    public void appendAndQueryTest() throws Exception
+    {
+        startTest(false);
+        final File dir = newTempDir();
+        final String mac = Util.randomMacAddress();
+        final UUID uuid = Uuids.BATTERY_LEVEL;
+
+        final Backend_HistoricalDatabase_File db = new Backend_HistoricalDatabase_File(dir);
+        assertFalse(db.doesDataExist(mac, uuid));
+
+        // Enough to spill over into a few segments
+        final int count = 40000;
+        db.add_multiple_start();
+        for (int i = 0; i < count; i++)
+        {
+            db.add_multiple_next(mac, uuid, new HistoricalData(new byte[]{(byte) i}, 1000L + i));
+        }
+        db.add_multiple_end();
+
+        assertTrue(db.doesDataExist(mac, uuid));
+        assertEquals(count, db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(101, db.getCount(mac, uuid, new EpochTimeRange(20000L, 20100L)));
+
+        final HistoricalDataCursor cursor = db.getCursor(mac, uuid, new EpochTimeRange(30000L, 30009L));
+        assertEquals(10, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(30000L, cursor.getEpochTime());
+        assertArrayEquals(new byte[]{(byte) 29000}, cursor.getBlob());
+
+        // Deleting the oldest data shouldn't touch anything else
+        db.delete_singleUuid_inRange(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX, 20000);
+        assertEquals(count - 20000, db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(0, db.getCount(mac, uuid, new EpochTimeRange(0L, 20999L)));
+
+        // Everything should still be there when opened again
+        final Backend_HistoricalDatabase_File db2 = new Backend_HistoricalDatabase_File(dir);
+        assertEquals(count - 20000, db2.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+
+        final ArrayList<HistoricalData> loaded = new ArrayList<>();
+        db2.load(mac, uuid, new EpochTimeRange(40990L, Long.MAX_VALUE), new ForEach_Void<HistoricalData>()
+        {
+            @Override public void next(HistoricalData next)
+            {
+                loaded.add(next);
+            }
+        });
+        assertEquals(10, loaded.size());
+        assertEquals(40999L, loaded.get(9).getEpochTime_millis());
+
+        db2.delete_singleUuid_all(mac, uuid);
+        assertFalse(db2.doesDataExist(mac, uuid));
+        succeed();
+    }
+
+    @Test
+    public void cursorAcrossSegmentsTest() throws Exception
+    {
+        startTest(false);
+        final File dir = newTempDir();
+        final String mac = Util.randomMacAddress();
+        final UUID uuid = Uuids.BATTERY_LEVEL;
+
+        final Backend_HistoricalDatabase_File db = new Backend_HistoricalDatabase_File(dir);
+
+        // Two sealed segments, and the rest in the active one
+        final int count = 40000;
+        db.add_multiple_start();
+        for (int i = 0; i < count; i++)
+        {
+            db.add_multiple_next(mac, uuid, new HistoricalData(new byte[]{(byte) i, (byte) (i >> 8)}, i));
+        }
+        db.add_multiple_end();
+
+        // Starts and ends partway through blocks, so both ends of each sealed segment get cut
+        final long from = 1500;
+        final long to = 39500;
+        final HistoricalDataCursor cursor = db.getCursor(mac, uuid, new EpochTimeRange(from, to));
+        assertEquals((int) (to - from + 1), cursor.getCount());
+
+        // Changing the store afterwards doesn't change what the cursor sees
+        db.add_single(mac, uuid, new HistoricalData(new byte[]{1, 2}, 20000), 0);
+        db.delete_singleUuid_inRange(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX, 25000);
+        assertEquals((int) (to - from + 1), cursor.getCount());
+
+        long expected = from;
+        while (cursor.moveToNext())
+        {
+            assertEquals(expected, cursor.getEpochTime());
+            assertArrayEquals(new byte[]{(byte) expected, (byte) (expected >> 8)}, cursor.getBlob());
+            expected++;
+        }
+        assertEquals(to + 1, expected);
+
+        // Reading backwards works too
+        assertTrue(cursor.moveToLast());
+        assertEquals(to, cursor.getEpochTime());
+        assertTrue(cursor.moveToPosition(0));
+        assertEquals(from, cursor.getEpochTime());
+        cursor.close();
+
+        db.delete_singleUuid_all(mac, uuid);
+        succeed();
+    }
+
+    @Test
+    public void deleteInMiddleTest() throws Exception
+    {
+        startTest(false);
+        final File dir = newTempDir();
+        final String mac = Util.randomMacAddress();
+        final UUID uuid = Uuids.BATTERY_LEVEL;
+
+        final Backend_HistoricalDatabase_File db = new Backend_HistoricalDatabase_File(dir);
+        for (int i = 0; i < 100; i++)
+        {
+            db.add_single(mac, uuid, new HistoricalData(new byte[]{(byte) i}, i), 0);
+        }
+
+        db.delete_singleUuid_singleDate(mac, uuid, 50);
+        assertEquals(99, db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(0, db.getCount(mac, uuid, new EpochTimeRange(50L, 50L)));
+
+        // Passing a max count to delete when adding should drop the oldest
+        db.add_single(mac, uuid, new HistoricalData(new byte[]{100}, 100), 9);
+        assertEquals(91, db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(0, db.getCount(mac, uuid, new EpochTimeRange(0L, 8L)));
+        assertEquals(1, db.getCount(mac, uuid, new EpochTimeRange(9L, 9L)));
+
+        // Deleting from the middle should still take the oldest in range, even when they weren't added first
+        db.add_single(mac, uuid, new HistoricalData(new byte[]{0}, 50), 0);
+        db.add_single(mac, uuid, new HistoricalData(new byte[]{0}, 49), 0);
+        db.delete_singleUuid_inRange(mac, uuid, new EpochTimeRange(40L, 60L), 12);
+        assertEquals(0, db.getCount(mac, uuid, new EpochTimeRange(40L, 50L)));
+        assertEquals(10, db.getCount(mac, uuid, new EpochTimeRange(51L, 60L)));
+
+        db.delete_singleUuid_all(mac, uuid);
+        succeed();
+    }
+
+    @Test(timeout = 30000)
+    public void outOfOrderAtLimitTest() throws Exception
+    {
+        startTest(false);
+        final File dir = newTempDir();
+        final String mac = Util.randomMacAddress();
+        final UUID uuid = Uuids.BATTERY_LEVEL;
+        final int limit = 20000;
+        final int count = 40000;
+
+        final Backend_HistoricalDatabase_File db = new Backend_HistoricalDatabase_File(dir);
+        final ArrayList<Long> added = new ArrayList<>();
+
+        // Enforcing the limit on every add, the way Backend_HistoricalDataList_File does, with every 100th row arriving late
+        for (int i = 0; i < count; i++)
+        {
+            final long time = i == count / 2 ? 0L : i % 100 == 99 ? i * 10L - 5005 : i * 10L + 100000;
+            final long overLimit = db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX) + 1 - limit;
+
+            db.add_single(mac, uuid, new HistoricalData(new byte[]{(byte) i}, time), Math.max(0, overLimit));
+            added.add(time);
+        }
+
+        assertEquals(limit, db.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+
+        // What's left should be the newest by time, not by when it was added. The row at time 0 came in older than everything,
+        // so the next add should have dropped it.
+        Collections.sort(added);
+        final long oldestKept = added.get(count - limit);
+        final ArrayList<Long> kept = new ArrayList<>();
+        db.load(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX, new ForEach_Void<HistoricalData>()
+        {
+            @Override public void next(HistoricalData next)
+            {
+                kept.add(next.getEpochTime_millis());
+            }
+        });
+        Collections.sort(kept);
+        assertEquals(added.subList(count - limit, count), kept);
+        assertEquals(0, db.getCount(mac, uuid, new EpochTimeRange(0L, oldestKept - 1)));
+
+        // Skips in every segment should survive opening it again
+        final Backend_HistoricalDatabase_File db2 = new Backend_HistoricalDatabase_File(dir);
+        assertEquals(limit, db2.getCount(mac, uuid, EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(0, db2.getCount(mac, uuid, new EpochTimeRange(0L, oldestKept - 1)));
+
+        db2.delete_singleUuid_all(mac, uuid);
+        succeed();
+    }
+
+    @Test
+    public void memoryListTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = new Backend_HistoricalDataList_File();
+        list.init(null, null, Util.randomMacAddress(), Uuids.BATTERY_LEVEL, "", false);
+        final int memory = BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY;
+
+        // Out of order data should still end up sorted by time
+        list.add_single(new HistoricalData(new byte[]{3}, 30), memory, Long.MAX_VALUE);
+        list.add_single(new HistoricalData(new byte[]{1}, 10), memory, Long.MAX_VALUE);
+        list.add_single(new HistoricalData(new byte[]{2}, 20), memory, Long.MAX_VALUE);
+        list.add_single(new HistoricalData(new byte[]{4}, 40), memory, Long.MAX_VALUE);
+
+        assertEquals(4, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(2, list.getCount(new EpochTimeRange(15L, 35L)));
+        assertEquals(30L, list.get(new EpochTimeRange(15L, 35L), 1).getEpochTime_millis());
+        assertTrue(list.get(new EpochTimeRange(15L, 35L), 2).isNull());
+        assertEquals(10L, list.getRange().from().toMilliseconds());
+        assertEquals(40L, list.getRange().to().toMilliseconds());
+
+        final HistoricalDataCursor cursor = list.getCursor(new EpochTimeRange(20L, 40L));
+        assertEquals(3, cursor.getCount());
+        int i = 0;
+        while (cursor.moveToNext())
+        {
+            assertEquals(20L + i * 10, cursor.getEpochTime());
+            assertArrayEquals(new byte[]{(byte) (i + 2)}, cursor.getBlob());
+            i++;
+        }
+        assertEquals(3, i);
+        assertTrue(cursor.isAfterLast());
+
+        // Limit by count
+        list.add_single(new HistoricalData(new byte[]{5}, 50), memory, 3);
+        assertEquals(3, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(30L, list.getRange().from().toMilliseconds());
+
+        // Limit by memory, oldest data should go first
+        list.setMemoryBudget(10 * (100 + 16));
+        for (int j = 0; j < 50; j++)
+        {
+            list.add_single(new HistoricalData(new byte[100], 100 + j), memory, Long.MAX_VALUE);
+        }
+        assertEquals(10, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(140L, list.getRange().from().toMilliseconds());
+
+        list.delete_fromMemoryOnly(new EpochTimeRange(140L, 144L), Long.MAX_VALUE);
+        assertEquals(5, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        succeed();
+    }
+
+    @Test
+    public void iterateAcrossBlocksTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = new Backend_HistoricalDataList_File();
+        list.init(null, null, Util.randomMacAddress(), Uuids.BATTERY_LEVEL, "", false);
+        final int memory = BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY;
+        final int count = 10000;
+
+        // Enough rows that most of them end up in compressed blocks
+        for (int i = 0; i < count; i++)
+        {
+            list.add_single(new HistoricalData(new byte[]{(byte) i, (byte) (i >> 8)}, i), memory, Long.MAX_VALUE);
+        }
+
+        // A range that starts and ends in the middle of blocks
+        final EpochTimeRange range = new EpochTimeRange(500L, 8499L);
+        final Iterator<HistoricalData> iterator = list.getIterator(range);
+        long expected = 500;
+        while (iterator.hasNext())
+        {
+            final HistoricalData next = iterator.next();
+            assertEquals(expected, next.getEpochTime_millis());
+            assertArrayEquals(new byte[]{(byte) expected, (byte) (expected >> 8)}, next.getBlob());
+
+            if (expected % 1000 == 0)
+            {
+                iterator.remove();
+            }
+            expected++;
+        }
+        assertEquals(8500L, expected);
+
+        // Removing through the iterator took out every thousandth row in range, 1000 through 8000
+        assertEquals(count - 8, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(1001L, list.get(new EpochTimeRange(1000L, 1001L), 0).getEpochTime_millis());
+        assertEquals(2002L, list.get(new EpochTimeRange(1999L, 2010L), 2).getEpochTime_millis());
+        assertTrue(list.get(new EpochTimeRange(1999L, 2010L), 11).isNull());
+        assertTrue(list.get(range, -1).isNull());
+        succeed();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class HistoricalDataIngestStatsTest extends BaseBleUnitTest
+{
+
+    private static final UUID SENSOR_UUID = Uuids.fromShort("1234");
+
+
+    @Test(timeout = 10000)
+    public void queuedThenReadTest() throws Exception
+    {
+        startTest(false);
+        final BleDevice device = m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+
+        // Nothing to count before any historical data is added
+        HistoricalDataIngestStats stats = device.getHistoricalDataIngestStats();
+        assertEquals(0, stats.queued());
+        assertEquals(0, stats.queueDepth());
+
+        for (int i = 0; i < 5; i++)
+        {
+            device.addHistoricalData(SENSOR_UUID, new byte[]{(byte) i}, new EpochTime(1000 + i));
+        }
+
+        stats = device.getHistoricalDataIngestStats();
+        assertEquals(5, stats.queued());
+        assertEquals(0, stats.flushed());
+        assertEquals(5, stats.queueDepth());
+
+        // Reading includes what's queued, without writing it out
+        assertEquals(5, device.getHistoricalDataCount(SENSOR_UUID));
+        assertEquals(1002, device.getHistoricalData_atOffset(SENSOR_UUID, 2).getEpochTime_millis());
+
+        stats = device.getHistoricalDataIngestStats();
+        assertEquals(5, stats.queued());
+        assertEquals(0, stats.flushed());
+        assertEquals(0, stats.dropped());
+        assertEquals(5, stats.queueDepth());
+
+        // Deleting takes it out of the queue
+        device.clearHistoricalData(SENSOR_UUID);
+        assertEquals(0, device.getHistoricalDataCount(SENSOR_UUID));
+        assertEquals(0, device.getHistoricalDataIngestStats().queueDepth());
+        succeed();
+    }
+
+    @Override public BleManagerConfig getConfig()
+    {
+        final BleManagerConfig config = super.getConfig();
+        config.historicalDataQueueBatchSize = 10;
+        config.historicalDataQueueFlushRate = Interval.secs(60);
+        return config;
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
+import com.idevicesinc.sweetblue.utils.EpochTime;
+import com.idevicesinc.sweetblue.utils.EpochTimeRange;
+import com.idevicesinc.sweetblue.utils.HistoricalData;
+import com.idevicesinc.sweetblue.utils.HistoricalDataCursor;
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HistoricalDataQueueTest extends BaseTest
+{
+
+    private static final BleNodeConfig.HistoricalDataFactory FACTORY = new BleNodeConfig.HistoricalDataFactory()
+    {
+        @Override public HistoricalData newHistoricalData(byte[] data, EpochTime epochTime)
+        {
+            return new HistoricalData(data, epochTime);
+        }
+    };
+
+
+    @Test
+    public void batchTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = newList();
+        final P_HistoricalDataManager_Queue queue = new P_HistoricalDataManager_Queue(list, FACTORY);
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i + 1, queue.offer(i, new byte[]{(byte) i}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false));
+        }
+
+        // Nothing written until the queue is flushed
+        assertEquals(0, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+
+        assertEquals(100, queue.flush());
+        assertEquals(0, queue.size());
+        assertEquals(100, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertArrayEquals(new byte[]{42}, list.get(EpochTimeRange.FROM_MIN_TO_MAX, 42).getBlob());
+
+        // A different limit starts a new run, which is applied when that run is written
+        queue.offer(100, new byte[]{100}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        queue.offer(101, new byte[]{101}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, 10, 1000, false);
+        assertEquals(2, queue.flush());
+        assertEquals(10, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(101, list.getRange().to().toMilliseconds());
+
+        assertEquals(0, queue.flush());
+        assertEquals(102, queue.getQueuedCount());
+        assertEquals(102, queue.getFlushedCount());
+        assertEquals(0, queue.getDroppedCount());
+        succeed();
+    }
+
+    @Test
+    public void overflowTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = newList();
+        final P_HistoricalDataManager_Queue queue = new P_HistoricalDataManager_Queue(list, FACTORY);
+
+        // Back-pressure leaves it up to the caller
+        for (int i = 0; i < 50; i++)
+        {
+            queue.offer(i, new byte[]{(byte) i}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 50, false);
+        }
+        assertEquals(P_HistoricalDataManager_Queue.FULL, queue.offer(50, new byte[]{50}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 50, false));
+        assertEquals(50, queue.size());
+
+        // Dropping the oldest wraps around the ring
+        for (int i = 50; i < 130; i++)
+        {
+            assertEquals(50, queue.offer(i, new byte[]{(byte) i}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 50, true));
+        }
+        assertEquals(80, queue.getDroppedCount());
+
+        assertEquals(50, queue.flush());
+        assertEquals(50, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(80, list.get(EpochTimeRange.FROM_MIN_TO_MAX, 0).getEpochTime_millis());
+        assertEquals(129, list.get(EpochTimeRange.FROM_MIN_TO_MAX, 49).getEpochTime_millis());
+        assertEquals(130, queue.getQueuedCount());
+        assertEquals(50, queue.getFlushedCount());
+        succeed();
+    }
+
+    @Test
+    public void mergedCursorTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = newList();
+        final P_HistoricalDataManager_Queue queue = new P_HistoricalDataManager_Queue(list, FACTORY);
+
+        for (int i = 0; i < 10; i++)
+        {
+            queue.offer(i * 10, new byte[]{(byte) i}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        }
+        queue.flush();
+
+        // Queued out of order, one tied with a written row, and one that's only meant for disk
+        queue.offer(95, new byte[]{95}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        queue.offer(5, new byte[]{5}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        queue.offer(50, new byte[]{50}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_BOTH, Long.MAX_VALUE, 1000, false);
+        queue.offer(60, new byte[]{60}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_DISK, Long.MAX_VALUE, 1000, false);
+
+        assertEquals(3, queue.count(EpochTimeRange.FROM_MIN_TO_MAX, P_HistoricalDataManager_Queue.ROWS_IN_MEMORY));
+        assertEquals(4, queue.count(EpochTimeRange.FROM_MIN_TO_MAX, P_HistoricalDataManager_Queue.ROWS_ALL));
+        assertEquals(2, queue.count(EpochTimeRange.FROM_MIN_TO_MAX, P_HistoricalDataManager_Queue.ROWS_ON_DISK));
+
+        final List<HistoricalData> queued = queue.snapshot(EpochTimeRange.FROM_MIN_TO_MAX, P_HistoricalDataManager_Queue.ROWS_IN_MEMORY);
+        final HistoricalDataCursor cursor = new P_HistoricalDataManager_MergedCursor(list.getCursor(EpochTimeRange.FROM_MIN_TO_MAX), queued);
+
+        final long[] expected = {0, 5, 10, 20, 30, 40, 50, 50, 60, 70, 80, 90, 95};
+        assertEquals(expected.length, cursor.getCount());
+        assertTrue(cursor.isBeforeFirst());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertTrue(cursor.moveToNext());
+            assertEquals(expected[i], cursor.getEpochTime());
+        }
+        assertFalse(cursor.moveToNext());
+        assertTrue(cursor.isAfterLast());
+
+        // The written row comes before a queued one with the same time
+        assertTrue(cursor.moveToPosition(7));
+        assertArrayEquals(new byte[]{50}, cursor.getBlob());
+        assertTrue(cursor.moveToPosition(6));
+        assertArrayEquals(new byte[]{5}, cursor.getBlob());
+
+        // Nothing was written to get there
+        assertEquals(10, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(4, queue.size());
+        succeed();
+    }
+
+    @Test
+    public void deleteTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = newList();
+        final P_HistoricalDataManager_Queue queue = new P_HistoricalDataManager_Queue(list, FACTORY);
+
+        queue.offer(30, new byte[]{30}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        queue.offer(10, new byte[]{10}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_BOTH, Long.MAX_VALUE, 1000, false);
+        queue.offer(20, new byte[]{20}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+        queue.offer(40, new byte[]{40}, BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE, 1000, false);
+
+        // The oldest go first, whatever order they were queued in
+        assertEquals(2, queue.delete(EpochTimeRange.FROM_MIN_TO_MAX, 2, true));
+
+        // The one that was also meant for disk is still queued, just not for memory anymore
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.count(EpochTimeRange.FROM_MIN_TO_MAX, P_HistoricalDataManager_Queue.ROWS_IN_MEMORY));
+
+        assertEquals(1, queue.delete(new EpochTimeRange(new EpochTime(35), new EpochTime(100)), Long.MAX_VALUE, false));
+        assertEquals(2, queue.size());
+
+        assertEquals(2, queue.flush());
+        assertEquals(1, list.getCount(EpochTimeRange.FROM_MIN_TO_MAX));
+        assertEquals(30, list.get(EpochTimeRange.FROM_MIN_TO_MAX, 0).getEpochTime_millis());
+        succeed();
+    }
+
+    private static Backend_HistoricalDataList_File newList()
+    {
+        final Backend_HistoricalDataList_File list = new Backend_HistoricalDataList_File();
+        list.init(null, null, "00:11:22:33:44:55", Uuids.BATTERY_LEVEL, "battery", false);
+        return list;
+    }
+
+}
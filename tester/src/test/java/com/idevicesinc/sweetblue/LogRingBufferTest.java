@@ -0,0 +1,120 @@
+package com.idevicesinc.sweetblue;
+
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class LogRingBufferTest extends BaseTest
+{
+
+    @Test(timeout = 10000)
+    public void multipleProducersTest() throws Exception
+    {
+        startTest(false);
+        final int producers = 4;
+        final int recordsEach = 5000;
+        final CountDownLatch done = new CountDownLatch(producers * recordsEach);
+        final int[][] lastSeen = new int[producers][1];
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        final P_LogRingBuffer buffer = new P_LogRingBuffer(64, new P_LogRingBuffer.Writer()
+        {
+            @Override public void write(P_LogRingBuffer.Record record)
+            {
+                // Records from any one thread have to come out in the order they went in
+                final int producer = record.m_threadId;
+                final int index = (Integer) record.m_arg0;
+                if (index != lastSeen[producer][0])
+                {
+                    errors.add("Producer " + producer + " expected " + lastSeen[producer][0] + " but got " + index);
+                }
+                lastSeen[producer][0] = index + 1;
+                done.countDown();
+            }
+
+            @Override public void onDropped(long count)
+            {
+            }
+        });
+
+        for (int p = 0; p < producers; p++)
+        {
+            final int producer = p;
+            new Thread(new Runnable()
+            {
+                @Override public void run()
+                {
+                    for (int i = 0; i < recordsEach; i++)
+                    {
+                        // Keep retrying, so nothing gets dropped, to be able to check ordering
+                        while (!buffer.offer(2, producer, "tag", "{}", i, null, null, 1, false, 0))
+                        {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(errors.toString(), errors.isEmpty());
+        buffer.quit();
+        succeed();
+    }
+
+    @Test(timeout = 10000)
+    public void dropsWhenFullTest() throws Exception
+    {
+        startTest(false);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final CountDownLatch reported = new CountDownLatch(1);
+        final P_LogRingBuffer buffer = new P_LogRingBuffer(8, new P_LogRingBuffer.Writer()
+        {
+            @Override public void write(P_LogRingBuffer.Record record)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                }
+                written.incrementAndGet();
+            }
+
+            @Override public void onDropped(long count)
+            {
+                dropped.addAndGet(count);
+                reported.countDown();
+            }
+        });
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++)
+        {
+            if (buffer.offer(2, 0, "tag", "message", null, null, null, 0, false, 0))
+            {
+                accepted++;
+            }
+        }
+
+        // The writer may have pulled at most one record out before blocking, so no more than the capacity plus one can get in
+        assertTrue(accepted <= 9);
+        assertEquals(100 - accepted, buffer.getDroppedCount());
+
+        release.countDown();
+        assertTrue(reported.await(2, TimeUnit.SECONDS));
+        buffer.quit();
+        succeed();
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.UuidNameMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LoggerFormatTest extends BaseTest
+{
+
+    @Test
+    public void prefixTest() throws Exception
+    {
+        startTest(false);
+        final List<String> messages = new ArrayList<>();
+        final P_Logger logger = new P_Logger(null, new String[]{"THREAD"}, new ArrayList<UuidNameMap>(), true, false, new SweetLogger()
+        {
+            @Override public void onLogEntry(int level, String tag, String msg)
+            {
+                messages.add(msg);
+            }
+        });
+
+        // The plain tagged overloads keep the calling method's name, like they always have
+        logger.i("Tag", "hello {}");
+        assertTrue(messages.get(0).endsWith("prefixTest() - hello {}"));
+
+        // Passing arguments takes the fast path, which fills in placeholders and doesn't walk the stack
+        logger.i("Tag", "hello {}", 42);
+        assertTrue(messages.get(1).endsWith(" hello 42"));
+        assertFalse(messages.get(1).contains("prefixTest()"));
+        assertEquals(2, messages.size());
+        succeed();
+    }
+
+}
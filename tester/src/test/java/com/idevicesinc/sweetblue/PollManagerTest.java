@@ -0,0 +1,133 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Interval;
+import com.idevicesinc.sweetblue.utils.Util;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+
+
+@Config(manifest = Config.NONE, sdk = 25)
+@RunWith(RobolectricTestRunner.class)
+public class PollManagerTest extends BaseBleUnitTest
+{
+
+    private static final UUID mTestChar = Uuids.fromShort("12BC");
+    private static final UUID mOtherChar = Uuids.fromShort("12BD");
+
+    private final BleDevice.ReadWriteListener m_firstListener = new NoOpListener();
+    private final BleDevice.ReadWriteListener m_secondListener = new NoOpListener();
+
+
+    @Test
+    public void notifyEnabledAndDisabledTest() throws Exception
+    {
+        startTest(false);
+        final P_PollManager pollMngr = newPollManager();
+
+        pollMngr.startPoll(null, mTestChar, null, Interval.INFINITE.secs(), m_firstListener, /*trackChanges=*/true, /*usingNotify=*/true);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLING);
+        assertEquals(P_PollManager.E_NotifyState__ENABLING, pollMngr.getNotifyState(null, mTestChar));
+
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+        assertEquals(P_PollManager.E_NotifyState__ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        // Only the entries for that characteristic are touched
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mOtherChar));
+
+        // Once the notify is stopped nothing is routed for the characteristic anymore, so a late state change has nowhere to go
+        pollMngr.stopPoll(null, mTestChar, null, null, m_firstListener, /*usingNotify=*/true);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        // Enabling again starts from scratch
+        pollMngr.startPoll(null, mTestChar, null, Interval.INFINITE.secs(), m_firstListener, /*trackChanges=*/true, /*usingNotify=*/true);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+        assertEquals(P_PollManager.E_NotifyState__ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        succeed();
+    }
+
+    @Test
+    public void pollAddedWhileNotifyActiveTest() throws Exception
+    {
+        startTest(false);
+        final P_PollManager pollMngr = newPollManager();
+
+        pollMngr.startPoll(null, mTestChar, null, Interval.INFINITE.secs(), m_firstListener, /*trackChanges=*/true, /*usingNotify=*/true);
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+
+        // A notify added while one is already enabled picks up its state...
+        pollMngr.startPoll(null, mTestChar, null, Interval.INFINITE.secs(), m_secondListener, /*trackChanges=*/true, /*usingNotify=*/true);
+
+        // ...so it keeps the characteristic enabled after the first one is gone
+        pollMngr.stopPoll(null, mTestChar, null, null, m_firstListener, /*usingNotify=*/true);
+        assertEquals(P_PollManager.E_NotifyState__ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        // A plain poll on the same characteristic shares its route, but doesn't take part in notify state
+        pollMngr.startPoll(null, mTestChar, null, Interval.ONE_SEC.secs(), m_firstListener, /*trackChanges=*/false, /*usingNotify=*/false);
+        assertEquals(P_PollManager.E_NotifyState__ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        pollMngr.stopPoll(null, mTestChar, null, null, m_secondListener, /*usingNotify=*/true);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        succeed();
+    }
+
+    @Test
+    public void pollRemovedWhileNotifyActiveTest() throws Exception
+    {
+        startTest(false);
+        final P_PollManager pollMngr = newPollManager();
+
+        pollMngr.startPoll(null, mTestChar, null, Interval.ONE_SEC.secs(), m_secondListener, /*trackChanges=*/false, /*usingNotify=*/false);
+        pollMngr.startPoll(null, mTestChar, null, Interval.INFINITE.secs(), m_firstListener, /*trackChanges=*/true, /*usingNotify=*/true);
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+
+        // Taking the poll out leaves the notify routed, and still enabled
+        pollMngr.stopPoll(null, mTestChar, null, null, m_secondListener, /*usingNotify=*/false);
+        assertEquals(P_PollManager.E_NotifyState__ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLING);
+        assertEquals(P_PollManager.E_NotifyState__ENABLING, pollMngr.getNotifyState(null, mTestChar));
+
+        // Like on a disconnect
+        pollMngr.resetNotifyStates();
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+
+        pollMngr.clear();
+        pollMngr.onNotifyStateChange(null, mTestChar, P_PollManager.E_NotifyState__ENABLED);
+        assertEquals(P_PollManager.E_NotifyState__NOT_ENABLED, pollMngr.getNotifyState(null, mTestChar));
+        succeed();
+    }
+
+    private P_PollManager newPollManager()
+    {
+        return new P_PollManager(m_mgr.newDevice(Util.randomMacAddress(), "Poll Tester"));
+    }
+
+    @Override public BleManagerConfig getConfig()
+    {
+        final BleManagerConfig config = super.getConfig();
+        // Otherwise a second notify for the same characteristic would just be merged into the first entry
+        config.allowDuplicatePollEntries = true;
+        return config;
+    }
+
+
+    private static final class NoOpListener implements BleDevice.ReadWriteListener
+    {
+        @Override public void onEvent(ReadWriteEvent e)
+        {
+        }
+    }
+
+}
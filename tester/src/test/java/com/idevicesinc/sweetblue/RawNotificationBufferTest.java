@@ -0,0 +1,168 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.Uuids;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests {@link P_RawNotificationBuffer}, and prints how many notifications a second it can move compared to building the events that a
+ * {@link NotificationListener} gets, along with how much each one allocates.
+ */
+public class RawNotificationBufferTest extends BaseTest
+{
+
+    private static final UUID CHAR_UUID = Uuids.fromShort("1234");
+
+
+    @Test
+    public void offerAndDrainTest() throws Exception
+    {
+        startTest(false);
+        final P_RawNotificationBuffer buffer = new P_RawNotificationBuffer(4);
+        final int[] count = {0};
+
+        // Only the first offer since the last drain asks for a drain to be scheduled
+        assertTrue(buffer.offer(CHAR_UUID, new byte[]{1}, 10));
+        assertFalse(buffer.offer(CHAR_UUID, null, 11));
+        assertFalse(buffer.offer(CHAR_UUID, new byte[64], 12));
+
+        assertEquals(3, buffer.drain(new P_RawNotificationBuffer.Sink()
+        {
+            @Override public void onNotification(UUID charUuid, byte[] data, int length, long timestamp)
+            {
+                assertEquals(CHAR_UUID, charUuid);
+                assertEquals(10 + count[0], timestamp);
+                assertEquals(count[0] == 0 ? 1 : count[0] == 1 ? 0 : 64, length);
+                assertTrue(data.length >= length);
+                count[0]++;
+            }
+        }));
+        assertEquals(3, count[0]);
+
+        // Full, so the rest are dropped, but a drain is still asked for
+        for (int i = 0; i < 4; i++)
+        {
+            buffer.offer(CHAR_UUID, new byte[]{(byte) i}, i);
+        }
+        assertFalse(buffer.offer(CHAR_UUID, new byte[]{4}, 4));
+        assertEquals(4, buffer.drain(new P_RawNotificationBuffer.Sink()
+        {
+            @Override public void onNotification(UUID charUuid, byte[] data, int length, long timestamp)
+            {
+                assertEquals(timestamp, data[0]);
+            }
+        }));
+        assertTrue(buffer.offer(CHAR_UUID, new byte[]{5}, 5));
+
+        assertEquals(9, buffer.getReceivedCount());
+        assertEquals(1, buffer.getDroppedCount());
+        assertEquals(7, buffer.getDeliveredCount());
+        succeed();
+    }
+
+    @Test
+    public void throughputBenchmarkTest() throws Exception
+    {
+        startTest(false);
+        final int notifications = 2000000;
+        final int batch = 64;
+        final byte[] payload = new byte[P_RawNotificationBuffer.DEFAULT_PAYLOAD_SIZE];
+        final long[] checksum = {0};
+
+        final P_RawNotificationBuffer buffer = new P_RawNotificationBuffer(P_RawNotificationManager.DEFAULT_CAPACITY);
+        final P_RawNotificationBuffer.Sink sink = new P_RawNotificationBuffer.Sink()
+        {
+            @Override public void onNotification(UUID charUuid, byte[] data, int length, long timestamp)
+            {
+                checksum[0] += data[length - 1];
+            }
+        };
+
+        // Part of what happens today for each notification before an app gets it: the value is cloned, a runnable is posted to the update thread,
+        // then events are built from it. Only the NotificationEvent is built here since a ReadWriteEvent needs a real device, so this flatters it.
+        final Runnable[] posted = new Runnable[batch];
+        final Object[] events = new Object[1];
+
+        for (int pass = 0; pass < 2; pass++)
+        {
+            final boolean warmUp = pass == 0;
+            final int count = warmUp ? notifications / 10 : notifications;
+
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+            {
+                payload[payload.length - 1] = (byte) i;
+                buffer.offer(CHAR_UUID, payload, i);
+
+                if ((i + 1) % batch == 0) buffer.drain(sink);
+            }
+            buffer.drain(sink);
+            final double rawSeconds = (System.nanoTime() - start) / 1e9;
+            final long rawAllocated = allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+            {
+                payload[payload.length - 1] = (byte) i;
+                final byte[] value = payload.clone();
+                final int index = i;
+
+                posted[i % batch] = new Runnable()
+                {
+                    @Override public void run()
+                    {
+                        final NotificationListener.NotificationEvent event = new NotificationListener.NotificationEvent(null, Uuids.INVALID, CHAR_UUID,
+                                NotificationListener.Type.NOTIFICATION, value, NotificationListener.Status.SUCCESS, BleStatuses.GATT_STATUS_NOT_APPLICABLE, 0.0, 0.0, /*solicited=*/true);
+                        events[0] = event;
+                        checksum[0] += value[value.length - 1] + index;
+                    }
+                };
+
+                if ((i + 1) % batch == 0)
+                {
+                    for (Runnable runnable : posted)
+                    {
+                        runnable.run();
+                    }
+                }
+            }
+            final double eventSeconds = (System.nanoTime() - start) / 1e9;
+            final long eventAllocated = allocatedBytes() - allocated;
+
+            if (!warmUp)
+            {
+                System.out.println("Raw: " + (long) (count / rawSeconds) + " notifications/sec, " + (rawAllocated / count) + " bytes allocated per notification");
+                System.out.println("Events: " + (long) (count / eventSeconds) + " notifications/sec, " + (eventAllocated / count) + " bytes allocated per notification");
+            }
+        }
+
+        assertEquals(0, buffer.getDroppedCount());
+        assertTrue(checksum[0] != 0 || events[0] != null);
+        succeed();
+    }
+
+    private static long allocatedBytes()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+}
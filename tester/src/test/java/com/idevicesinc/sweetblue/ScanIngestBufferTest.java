@@ -0,0 +1,108 @@
+package com.idevicesinc.sweetblue;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ScanIngestBufferTest extends BaseTest
+{
+
+    @Test
+    public void dropsWhenFullTest() throws Exception
+    {
+        startTest(false);
+        final P_ScanIngestBuffer buffer = new P_ScanIngestBuffer(8);
+        for (int i = 0; i < 8; i++)
+        {
+            assertTrue(buffer.offer(null, -50, new byte[] { (byte) i }));
+        }
+        assertFalse(buffer.offer(null, -50, new byte[0]));
+
+        assertEquals(8, buffer.transfer());
+
+        final List<P_ScanIngestBuffer.Entry> entries = new ArrayList<>();
+        assertEquals(3, buffer.poll(entries, 3));
+        // Results come out in the order they went in
+        assertEquals(0, entries.get(0).m_record[0]);
+        assertEquals(2, entries.get(2).m_record[0]);
+        assertEquals(5, buffer.backlogSize());
+
+        // There's room again now that the ring was drained
+        assertTrue(buffer.offer(null, -50, new byte[0]));
+
+        final ScanIngestStats stats = buffer.getStats();
+        assertEquals(10, stats.received());
+        assertEquals(1, stats.dropped());
+        assertEquals(3, stats.delivered());
+        assertEquals(8, stats.maxBacklog());
+        succeed();
+    }
+
+    @Test
+    public void clearTest() throws Exception
+    {
+        startTest(false);
+        final P_ScanIngestBuffer buffer = new P_ScanIngestBuffer(16);
+        buffer.offer(null, -50, new byte[0]);
+        buffer.transfer();
+        buffer.offer(null, -50, new byte[0]);
+        buffer.clear();
+        buffer.offer(null, -60, new byte[0]);
+
+        // Only what came in after the clear is left
+        assertEquals(1, buffer.transfer());
+        final List<P_ScanIngestBuffer.Entry> entries = new ArrayList<>();
+        buffer.poll(entries, 10);
+        assertEquals(-60, entries.get(0).m_rssi);
+        succeed();
+    }
+
+    @Test
+    public void concurrentProducersTest() throws Exception
+    {
+        startTest(false);
+        final int producers = 4;
+        final int perProducer = 5000;
+        final P_ScanIngestBuffer buffer = new P_ScanIngestBuffer(256);
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override public void run()
+                {
+                    for (int i = 0; i < perProducer; i++)
+                    {
+                        buffer.offer(null, -50, new byte[0]);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long taken = 0;
+        final List<P_ScanIngestBuffer.Entry> entries = new ArrayList<>();
+        while (done.getCount() > 0 || buffer.transfer() > 0)
+        {
+            buffer.transfer();
+            entries.clear();
+            taken += buffer.poll(entries, Integer.MAX_VALUE);
+        }
+
+        final ScanIngestStats stats = buffer.getStats();
+        // Everything is either processed or counted as dropped, nothing gets lost in between
+        assertEquals(producers * perProducer, stats.received());
+        assertEquals(stats.received(), taken + stats.dropped());
+        assertEquals(taken, stats.delivered());
+        succeed();
+    }
+
+}
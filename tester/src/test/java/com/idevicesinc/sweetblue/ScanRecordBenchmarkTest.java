@@ -0,0 +1,102 @@
+package com.idevicesinc.sweetblue;
+
+
+import com.idevicesinc.sweetblue.utils.BleScanInfo;
+import com.idevicesinc.sweetblue.utils.BleScanRecord;
+import com.idevicesinc.sweetblue.utils.BleUuid;
+import com.idevicesinc.sweetblue.utils.Utils_ScanRecord;
+import com.idevicesinc.sweetblue.utils.Uuids;
+import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Rough microbenchmark comparing how much gets allocated per rediscovery when the scan record is fully parsed every time (the old behavior), vs.
+ * diffing it against the last one. Uses HotSpot's per-thread allocation counter, so it's skipped on VMs that don't have one.
+ */
+public class ScanRecordBenchmarkTest extends BaseTest
+{
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+
+    @Test
+    public void rediscoveryAllocationTest() throws Exception
+    {
+        startTest(false);
+
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            succeed();
+            return;
+        }
+        final com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean) bean;
+
+        // Two versions of the same advertisement, where only a counter in the manufacturer data changes
+        final byte[] recordA = newRecord((byte) 1);
+        final byte[] recordB = newRecord((byte) 2);
+
+        runFullParse(recordA, WARMUP);
+        runDiff(recordA, recordA, WARMUP);
+        runDiff(recordA, recordB, WARMUP);
+
+        long start = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        runFullParse(recordA, ITERATIONS);
+        final long fullParse = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        start = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        runDiff(recordA, recordA, ITERATIONS);
+        final long unchanged = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        start = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        runDiff(recordA, recordB, ITERATIONS);
+        final long counterChanged = allocBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        System.out.println("Bytes allocated per rediscovery: full parse=" + fullParse / ITERATIONS + " unchanged=" + unchanged / ITERATIONS + " counter changed=" + counterChanged / ITERATIONS);
+
+        assertTrue(unchanged < fullParse / 10);
+        assertTrue(counterChanged < fullParse / 2);
+        succeed();
+    }
+
+    private static void runFullParse(byte[] record, int iterations)
+    {
+        for (int i = 0; i < iterations; i++)
+        {
+            // What BleDevice.onDiscovered_private() used to do for every advertisement
+            new BleScanInfo(Utils_ScanRecord.parseScanRecord(record));
+        }
+    }
+
+    private static void runDiff(byte[] recordA, byte[] recordB, int iterations)
+    {
+        final BleScanRecord record = Utils_ScanRecord.parseScanRecord(recordA);
+        byte[] previous = recordA;
+        for (int i = 0; i < iterations; i++)
+        {
+            final byte[] next = (i & 1) == 0 ? recordB : recordA;
+            if (!Arrays.equals(previous, next))
+            {
+                Utils_ScanRecord.updateScanRecord(record, previous, next);
+            }
+            previous = next;
+        }
+    }
+
+    private static byte[] newRecord(byte counter)
+    {
+        return new BleScanRecord()
+                .setName("Johnny 5")
+                .setAdvFlags((byte) 0x6)
+                .setTxPower((byte) 10)
+                .addServiceUuid(Uuids.BATTERY_SERVICE_UUID, BleUuid.UuidSize.SHORT)
+                .addManufacturerData((short) 16454, new byte[] { counter, 0x44, (byte) 0xB3 })
+                .buildPacket();
+    }
+
+}
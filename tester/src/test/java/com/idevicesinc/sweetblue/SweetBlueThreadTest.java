@@ -0,0 +1,104 @@
+package com.idevicesinc.sweetblue;
+
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class SweetBlueThreadTest extends BaseTest
+{
+
+    @Test(timeout = 5000)
+    public void runsInDeadlineOrderTest() throws Exception
+    {
+        startTest(false);
+        final P_SweetBlueThread thread = new P_SweetBlueThread();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(4);
+
+        thread.postDelayed(new OrderRunnable(order, latch, 3), 150);
+        thread.postDelayed(new OrderRunnable(order, latch, 2), 75);
+        thread.post(new OrderRunnable(order, latch, 0));
+        thread.post(new OrderRunnable(order, latch, 1));
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(4, order.size());
+        for (int i = 0; i < order.size(); i++)
+        {
+            assertEquals(i, (int) order.get(i));
+        }
+        thread.quit();
+        succeed();
+    }
+
+    @Test(timeout = 5000)
+    public void removeCallbacksTest() throws Exception
+    {
+        startTest(false);
+        final P_SweetBlueThread thread = new P_SweetBlueThread();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Runnable canceled = new OrderRunnable(order, latch, -1);
+
+        thread.postDelayed(canceled, 100);
+        thread.postDelayed(canceled, 50);
+        thread.postDelayed(new OrderRunnable(order, latch, 0), 200);
+        thread.removeCallbacks(canceled);
+        assertEquals(1, thread.getPendingCount());
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(1, order.size());
+        assertEquals(0, (int) order.get(0));
+        assertEquals(0, thread.getPendingCount());
+        thread.quit();
+        succeed();
+    }
+
+    @Test(timeout = 5000)
+    public void wakesForSoonerPostTest() throws Exception
+    {
+        startTest(false);
+        final P_SweetBlueThread thread = new P_SweetBlueThread();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // The thread is now waiting on a deadline 10 seconds out, so this post must wake it up
+        thread.postDelayed(new OrderRunnable(order, latch, 1), 10000);
+        Thread.sleep(20);
+        final long start = System.currentTimeMillis();
+        thread.post(new OrderRunnable(order, latch, 0));
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(0, (int) order.get(0));
+        thread.quit();
+        succeed();
+    }
+
+    private static final class OrderRunnable implements Runnable
+    {
+        private final List<Integer> m_order;
+        private final CountDownLatch m_latch;
+        private final int m_index;
+
+        OrderRunnable(List<Integer> order, CountDownLatch latch, int index)
+        {
+            m_order = order;
+            m_latch = latch;
+            m_index = index;
+        }
+
+        @Override public void run()
+        {
+            m_order.add(m_index);
+            m_latch.countDown();
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.idevicesinc.sweetblue;
+
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class TaskListTest extends BaseTest
+{
+
+    @Test
+    public void matchesArrayListTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(42);
+        final P_TaskList list = new P_TaskList();
+        final ArrayList<PA_Task> expected = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++)
+        {
+            if (expected.size() > 0 && random.nextInt(3) == 0)
+            {
+                final int index = random.nextInt(expected.size());
+                assertTrue(expected.remove(index) == list.remove(index));
+            }
+            else
+            {
+                final int index = random.nextInt(expected.size() + 1);
+                final PA_Task task = new TestTask(randomPriority(random));
+                expected.add(index, task);
+                list.add(index, task);
+            }
+        }
+
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertTrue(expected.get(i) == list.get(i));
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+        succeed();
+    }
+
+    @Test
+    public void findSoonestSpotTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(7);
+        final P_TaskList list = new P_TaskList();
+        final ArrayList<PA_Task> expected = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            final PA_Task task = new TestTask(randomPriority(random));
+            final int spot = PU_TaskQueue.findSoonestSpot(list, task);
+            assertEquals(findSoonestSpot_linear(expected, task), spot);
+
+            // Mix in some insertions which don't respect priority, like interrupted tasks being put back at the front
+            final int index = random.nextInt(10) == 0 ? 0 : (spot >= 0 ? spot : expected.size());
+            expected.add(index, task);
+            list.add(index, task);
+        }
+        succeed();
+    }
+
+    @Test
+    public void findAndRemoveTest() throws Exception
+    {
+        startTest(false);
+        final P_TaskList list = new P_TaskList();
+        final PA_Task low = new TestTask(PE_TaskPriority.LOW);
+        final PA_Task high = new TestTask(PE_TaskPriority.HIGH);
+        final PA_Task other = new OtherTestTask(PE_TaskPriority.LOW);
+        list.add(low);
+        list.add(other);
+        list.add(0, high);
+
+        // Subclasses match too, same as PU_TaskQueue.isMatch()
+        final List<PA_Task> testTasks = list.find(TestTask.class, null, null, null, -1);
+        assertEquals(3, testTasks.size());
+        assertTrue(testTasks.get(0) == high);
+        assertTrue(testTasks.get(1) == low);
+        assertTrue(testTasks.get(2) == other);
+        assertEquals(1, list.getAll(OtherTestTask.class).size());
+        assertEquals(2, list.indexOfFirst(OtherTestTask.class, null, null, null));
+
+        assertTrue(list.remove(high));
+        assertFalse(list.contains(high));
+        assertEquals(-1, list.indexOf(high));
+        assertEquals(0, list.indexOf(low));
+        assertEquals(2, list.find(TestTask.class, null, null, null, -1).size());
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(0, list.getAll(PA_Task.class).size());
+        succeed();
+    }
+
+    private static int findSoonestSpot_linear(List<PA_Task> taskList, PA_Task taskToAdd)
+    {
+        if (taskList.size() == 0) return 0;
+
+        for (int i = 0; i < taskList.size(); i++)
+        {
+            if (taskToAdd.isMoreImportantThan(taskList.get(i)))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static PE_TaskPriority randomPriority(Random random)
+    {
+        return PE_TaskPriority.values()[random.nextInt(PE_TaskPriority.values().length)];
+    }
+
+    private static class TestTask extends PA_Task
+    {
+        private final PE_TaskPriority m_priority;
+
+        TestTask(PE_TaskPriority priority)
+        {
+            super((BleManager) null, null);
+            m_priority = priority;
+        }
+
+        @Override protected BleTask getTaskType()
+        {
+            return null;
+        }
+
+        @Override void execute()
+        {
+        }
+
+        @Override public PE_TaskPriority getPriority()
+        {
+            return m_priority;
+        }
+    }
+
+    private static final class OtherTestTask extends TestTask
+    {
+        OtherTestTask(PE_TaskPriority priority)
+        {
+            super(priority);
+        }
+    }
+
+}
@@ -6,17 +6,22 @@ import android.bluetooth.BluetoothGattDescriptor;
 
 import com.idevicesinc.sweetblue.utils.ByteBuffer;
 import com.idevicesinc.sweetblue.utils.GattDatabase;
+import com.idevicesinc.sweetblue.utils.StreamData;
 import com.idevicesinc.sweetblue.utils.Util;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
+import java.io.ByteArrayInputStream;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -37,6 +42,9 @@ public class WriteStripeTest extends BaseBleUnitTest
             .addDescriptor(tempDescUuid).setPermissions().write().completeService();
 
     private ByteBuffer m_buffer;
+    private int m_busyEvery;
+    private int m_writeCount;
+    private int m_maxWriteLength;
 
 
     @Test
@@ -129,6 +137,101 @@ public class WriteStripeTest extends BaseBleUnitTest
         startTest();
     }
 
+    @Test
+    public void windowedNoResponseStripedWriteTest() throws Exception
+    {
+        m_buffer = new ByteBuffer();
+        // Every 3rd write gets rejected as busy, which should be retried without messing up the order of the data
+        m_busyEvery = 3;
+
+        m_config.stripedWriteNoResponseWindow = 4;
+
+        m_mgr.setConfig(m_config);
+
+        m_device = m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+        m_device.connect(new BleDevice.StateListener()
+        {
+            @Override public void onEvent(StateEvent e)
+            {
+                if (e.didEnter(BleDeviceState.INITIALIZED))
+                {
+                    final byte[] data = new byte[1000];
+                    new Random().nextBytes(data);
+                    final WriteBuilder builder = new WriteBuilder(tempUuid).setBytes(data).setWriteType(BleDevice.ReadWriteListener.Type.WRITE_NO_RESPONSE);
+                    m_device.write(builder, new BleDevice.ReadWriteListener()
+                    {
+                        @Override public void onEvent(ReadWriteEvent e)
+                        {
+                            assertTrue(e.wasSuccess());
+                            assertArrayEquals(data, m_buffer.bytesAndClear());
+                            assertTrue(m_maxWriteLength <= m_device.getEffectiveWriteMtuSize());
+
+                            final WriteThroughput throughput = m_device.getLastStripedWriteThroughput();
+                            assertNotNull(throughput);
+                            assertEquals(data.length, throughput.bytes());
+                            assertTrue(throughput.busyRetries() > 0);
+                            assertTrue(throughput.maxChunksInFlight() > 1);
+                            assertTrue(throughput.bytesPerSecond() > 0.0);
+                            succeed();
+                        }
+                    });
+                }
+            }
+        });
+
+        startTest();
+    }
+
+    @Test
+    public void unstripedChunkedDataClosedTest() throws Exception
+    {
+        m_buffer = new ByteBuffer();
+
+        // Written in one go, so it's up to the write task to close the source
+        m_config.autoStripeWrites = false;
+
+        m_mgr.setConfig(m_config);
+
+        final byte[] data = new byte[100];
+        new Random().nextBytes(data);
+        final AtomicInteger done = new AtomicInteger();
+        final StreamData source = new StreamData(new ByteArrayInputStream(data)
+        {
+            @Override public void close()
+            {
+                if (done.incrementAndGet() == 2)
+                {
+                    succeed();
+                }
+            }
+        }, data.length);
+
+        m_device = m_mgr.newDevice(Util.randomMacAddress(), "Test Device");
+        m_device.connect(new BleDevice.StateListener()
+        {
+            @Override public void onEvent(StateEvent e)
+            {
+                if (e.didEnter(BleDeviceState.INITIALIZED))
+                {
+                    m_device.write(tempUuid, source, new BleDevice.ReadWriteListener()
+                    {
+                        @Override public void onEvent(ReadWriteEvent e)
+                        {
+                            assertTrue(e.wasSuccess());
+                            assertArrayEquals(data, m_buffer.bytesAndClear());
+                            if (done.incrementAndGet() == 2)
+                            {
+                                succeed();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        startTest();
+    }
+
     @Override public P_GattLayer getGattLayer(BleDevice device)
     {
         return new StripeGatt(device);
@@ -144,10 +247,17 @@ public class WriteStripeTest extends BaseBleUnitTest
         }
 
         @Override
-        public boolean setCharValue(BluetoothGattCharacteristic characteristic, byte[] data)
+        public boolean writeCharacteristic(BluetoothGattCharacteristic characteristic)
         {
-            m_buffer.append(data);
-            return super.setCharValue(characteristic, data);
+            m_writeCount++;
+            m_maxWriteLength = Math.max(m_maxWriteLength, characteristic.getValue().length);
+            // Simulate the native stack's buffer being full, in which case the write is rejected without being sent
+            if (m_busyEvery > 0 && m_writeCount % m_busyEvery == 0)
+            {
+                return false;
+            }
+            m_buffer.append(characteristic.getValue());
+            return super.writeCharacteristic(characteristic);
         }
 
         @Override
@@ -0,0 +1,97 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+
+import com.idevicesinc.sweetblue.BaseTest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Rough benchmark of how small typical logged samples get when compressed into blocks, and how fast they decode through a cursor,
+ * compared to the uncompressed columns.
+ */
+public class HistoricalDataBlockBenchmarkTest extends BaseTest
+{
+
+    private static final int SAMPLES = 100000;
+    private static final int DECODE_PASSES = 20;
+
+
+    @Test
+    public void bytesPerSampleTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(1);
+
+        // A 2-byte temperature reading once a second that drifts slowly
+        final P_HistoricalDataSeries temperature = new P_HistoricalDataSeries();
+        int value = 2200;
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            value += random.nextInt(3) - 1;
+            temperature.add(1500000000000L + i * 1000L + random.nextInt(3), new byte[]{(byte) (value >> 8), (byte) value});
+        }
+
+        // An on/off state
+        final P_HistoricalDataSeries state = new P_HistoricalDataSeries();
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            state.add(1500000000000L + i * 500L, new byte[]{(byte) (i / 100 % 2)});
+        }
+
+        final double temperatureBytes = (double) temperature.getByteCount() / SAMPLES;
+        final double stateBytes = (double) state.getByteCount() / SAMPLES;
+        final double uncompressedBytes = P_HistoricalDataColumns.ROW_OVERHEAD + 2;
+
+        System.out.println("Bytes per sample: temperature=" + temperatureBytes + " state=" + stateBytes + " uncompressed=" + uncompressedBytes);
+
+        assertTrue(temperatureBytes < uncompressedBytes / 3);
+        assertTrue(stateBytes < uncompressedBytes / 5);
+        succeed();
+    }
+
+    @Test
+    public void decodeRateTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(2);
+        final P_HistoricalDataSeries series = new P_HistoricalDataSeries();
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            series.add(1500000000000L + i * 1000L, new byte[]{(byte) random.nextInt(4), 0x22, 0x33, 0x44});
+        }
+
+        // Warm up
+        walk(series.copy(0, series.size()));
+
+        final long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < DECODE_PASSES; i++)
+        {
+            checksum += walk(series.copy(0, series.size()));
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final double samplesPerSecond = (double) SAMPLES * DECODE_PASSES / (elapsed / 1e9);
+        System.out.println("Decoded samples per second through a cursor: " + (long) samplesPerSecond + " (checksum " + checksum + ")");
+
+        assertTrue(checksum != 0);
+        succeed();
+    }
+
+    private static long walk(P_HistoricalDataSeries series)
+    {
+        final P_HistoricalDataCursor_Series cursor = new P_HistoricalDataCursor_Series(series);
+        long checksum = 0;
+        while (cursor.moveToNext())
+        {
+            checksum += cursor.getEpochTime();
+        }
+        return checksum;
+    }
+
+}
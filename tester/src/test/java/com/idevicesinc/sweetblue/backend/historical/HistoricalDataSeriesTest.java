@@ -0,0 +1,144 @@
+package com.idevicesinc.sweetblue.backend.historical;
+
+
+import com.idevicesinc.sweetblue.BaseTest;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HistoricalDataSeriesTest extends BaseTest
+{
+
+    @Test
+    public void blockRoundTripTest() throws Exception
+    {
+        startTest(false);
+        final Random random = new Random(42);
+
+        // Fixed width samples with jittery timestamps
+        final P_HistoricalDataColumns fixed = new P_HistoricalDataColumns();
+        long time = 1500000000000L;
+        for (int i = 0; i < 1000; i++)
+        {
+            time += 1000 + random.nextInt(5) - 2;
+            fixed.append(time, new byte[]{(byte) random.nextInt(4), 0x10, (byte) (i >> 4)}, 0, 3);
+        }
+        checkRoundTrip(fixed);
+
+        // Only a couple distinct values, which should pick the dictionary encoding
+        final P_HistoricalDataColumns dictionary = new P_HistoricalDataColumns();
+        for (int i = 0; i < 1000; i++)
+        {
+            final byte[] blob = (i & 1) == 0 ? new byte[20] : new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20};
+            dictionary.append(i * 10, blob, 0, blob.length);
+        }
+        checkRoundTrip(dictionary);
+
+        // Different widths, out of order
+        final P_HistoricalDataColumns variable = new P_HistoricalDataColumns();
+        for (int i = 0; i < 500; i++)
+        {
+            final byte[] blob = new byte[random.nextInt(30)];
+            random.nextBytes(blob);
+            variable.append(random.nextLong(), blob, 0, blob.length);
+        }
+        final P_HistoricalDataBlock block = checkRoundTrip(variable);
+        assertFalse(block.isSorted());
+        succeed();
+    }
+
+    private static P_HistoricalDataBlock checkRoundTrip(P_HistoricalDataColumns rows)
+    {
+        final P_HistoricalDataBlock block = P_HistoricalDataBlock.encode(rows, 0, rows.size());
+
+        // Read it back the same way as from a file, with another block right after it
+        final ByteBuffer buffer = ByteBuffer.allocate(block.getByteCount() * 2);
+        block.writeTo(buffer);
+        block.writeTo(buffer);
+        buffer.flip();
+        final P_HistoricalDataBlock read = P_HistoricalDataBlock.read(buffer);
+        assertEquals(block.getByteCount(), buffer.position());
+
+        final P_HistoricalDataColumns decoded = new P_HistoricalDataColumns();
+        read.decodeInto(decoded);
+        assertEquals(rows.size(), decoded.size());
+        for (int i = 0; i < rows.size(); i++)
+        {
+            assertEquals(rows.timeAt(i), decoded.timeAt(i));
+            assertArrayEquals(rows.blobAt(i), decoded.blobAt(i));
+        }
+        return read;
+    }
+
+    @Test
+    public void seriesTest() throws Exception
+    {
+        startTest(false);
+        final P_HistoricalDataSeries series = new P_HistoricalDataSeries(100);
+        for (int i = 0; i < 1000; i++)
+        {
+            series.add(i * 10, new byte[]{(byte) i});
+        }
+
+        // Most of it should be compressed by now
+        assertEquals(1000, series.size());
+        assertTrue(series.getBlockCount() >= 8);
+        assertEquals(1000, series.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(11, series.count(1000, 1100));
+        assertEquals(100, series.lowerBound(1000));
+        assertEquals(111, series.upperBound(1100));
+        assertEquals(5000, series.timeAt(500));
+        assertArrayEquals(new byte[]{(byte) 500}, series.blobAt(500));
+
+        // Something older than what's been compressed
+        series.add(15, new byte[]{-1});
+        assertEquals(2, series.lowerBound(15));
+        assertEquals(15, series.timeAt(2));
+        assertEquals(1001, series.size());
+
+        // Removing from the middle of a block
+        series.remove(2, 3);
+        series.remove(150, 160);
+        assertEquals(990, series.size());
+        assertEquals(1500 + 100, series.timeAt(150));
+
+        // Snapshot shares full blocks but doesn't change with the original
+        final P_HistoricalDataSeries copy = series.copy(series.lowerBound(1000), series.upperBound(5000));
+        assertEquals(series.count(1000, 5000), copy.size());
+        series.trim(10, Long.MAX_VALUE);
+        assertEquals(10, series.size());
+        assertEquals(9990, series.timeAt(9));
+        assertEquals(1000, copy.timeAt(0));
+        assertEquals(5000, copy.timeAt(copy.size() - 1));
+
+        assertEquals(1, copy.indexOf(1010, new byte[]{101}));
+        assertEquals(-1, copy.indexOf(1010, new byte[]{100}));
+        succeed();
+    }
+
+    @Test
+    public void byteBudgetTest() throws Exception
+    {
+        startTest(false);
+        final P_HistoricalDataSeries series = new P_HistoricalDataSeries(100);
+        for (int i = 0; i < 5000; i++)
+        {
+            series.add(i * 1000, new byte[]{(byte) (i & 0x3), 0x22});
+            series.trim(Long.MAX_VALUE, 2000);
+        }
+        assertTrue(series.getByteCount() <= 2000);
+        assertEquals(4999 * 1000, series.timeAt(series.size() - 1));
+        // Compressed data is much smaller, so this should hold a lot more than 2000 / 18 rows
+        assertTrue(series.size() > 200);
+        succeed();
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.idevicesinc.sweetblue.utils;
+
+
+import android.database.Cursor;
+
+import com.idevicesinc.sweetblue.BaseTest;
+import com.idevicesinc.sweetblue.BleNodeConfig;
+import com.idevicesinc.sweetblue.backend.historical.Backend_HistoricalDataList_File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HistoricalDataQueryCursorTest extends BaseTest
+{
+
+    private static final long MINUTE = 60 * 1000;
+
+
+    @Test
+    public void aggregateTest() throws Exception
+    {
+        startTest(false);
+        // Values 0..99, one every 10 seconds
+        final Backend_HistoricalDataList_File list = newList(100, 10 * 1000);
+
+        final Cursor cursor = new P_HistoricalDataQueryCursor(list.getCursor(EpochTimeRange.FROM_MIN_TO_MAX), new P_HistoricalDataQueryCursor.Aggregate[]
+        {
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.COUNT, HistoricalDataColumn.EPOCH_TIME),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.MIN, HistoricalDataColumn.DATA),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.MAX, HistoricalDataColumn.EPOCH_TIME),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.AVG, HistoricalDataColumn.DATA),
+        }, HistoricalDataQuery.UNSIGNED_LITTLE_ENDIAN, 0);
+
+        assertEquals(1, cursor.getCount());
+        assertArrayEquals(new String[]{"count", "min(data)", "max(date)", "avg(data)"}, cursor.getColumnNames());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(100, cursor.getLong(0));
+        assertEquals(0.0, cursor.getDouble(1), 0.0);
+        assertEquals(990 * 1000, cursor.getLong(2));
+        assertEquals(49.5, cursor.getDouble(3), 0.0001);
+        assertFalse(cursor.moveToNext());
+        succeed();
+    }
+
+    @Test
+    public void downsampleTest() throws Exception
+    {
+        startTest(false);
+        // 3 rows a minute for 5 minutes, then a gap of 2 minutes, then one more
+        final Backend_HistoricalDataList_File list = newList(15, 20 * 1000);
+        list.add_single(new HistoricalData(new byte[]{(byte) 200}, 7 * MINUTE + 5), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+
+        final Cursor cursor = new P_HistoricalDataQueryCursor(list.getCursor(EpochTimeRange.FROM_MIN_TO_MAX), new P_HistoricalDataQueryCursor.Aggregate[]
+        {
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.COUNT, HistoricalDataColumn.EPOCH_TIME),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.AVG, HistoricalDataColumn.DATA),
+        }, HistoricalDataQuery.UNSIGNED_LITTLE_ENDIAN, MINUTE);
+
+        assertEquals(8, cursor.getCount());
+        assertEquals("date", cursor.getColumnName(0));
+
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(cursor.moveToNext());
+            assertEquals(i * MINUTE, cursor.getLong(0));
+            assertEquals(3, cursor.getLong(1));
+            assertEquals(i * 3 + 1, cursor.getDouble(2), 0.0001);
+        }
+
+        // Empty buckets are still there
+        assertTrue(cursor.moveToNext());
+        assertEquals(0, cursor.getLong(1));
+        assertTrue(cursor.isNull(2));
+
+        // Jumping around gives the same answers as reading in order
+        assertTrue(cursor.moveToLast());
+        assertEquals(7 * MINUTE, cursor.getLong(0));
+        assertEquals(200.0, cursor.getDouble(2), 0.0);
+        assertTrue(cursor.moveToPosition(2));
+        assertEquals(7.0, cursor.getDouble(2), 0.0001);
+        succeed();
+    }
+
+    @Test
+    public void rawAndDecoderTest() throws Exception
+    {
+        startTest(false);
+        final Backend_HistoricalDataList_File list = newList(0, 0);
+        list.add_single(new HistoricalData(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF}, 1), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+        list.add_single(new HistoricalData(new byte[]{0x01, 0x02, 0x00}, 2), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+        list.add_single(new HistoricalData(new byte[]{0x01}, 3), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+
+        final Cursor raw = new P_HistoricalDataQueryCursor(list.getCursor(EpochTimeRange.FROM_MIN_TO_MAX), new P_HistoricalDataQueryCursor.Aggregate[0], HistoricalDataQuery.UNSIGNED_LITTLE_ENDIAN, MINUTE);
+        assertEquals(3, raw.getCount());
+        assertTrue(raw.moveToPosition(1));
+        assertEquals(2, raw.getLong(0));
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x00}, raw.getBlob(1));
+
+        // A signed 16-bit little-endian field after a 1-byte header, which the last row doesn't have
+        final HistoricalDataQuery.DataDecoder decoder = HistoricalDataQuery.integer(1, 2, true, false);
+        assertEquals(-1.0, decoder.decode(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF}), 0.0);
+        assertEquals(65535.0, HistoricalDataQuery.integer(1, 2, false, false).decode(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF}), 0.0);
+        assertEquals(0x0102, HistoricalDataQuery.integer(0, 2, false, true).decode(new byte[]{0x01, 0x02}), 0.0);
+
+        final Cursor cursor = new P_HistoricalDataQueryCursor(list.getCursor(EpochTimeRange.FROM_MIN_TO_MAX), new P_HistoricalDataQueryCursor.Aggregate[]
+        {
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.COUNT, HistoricalDataColumn.EPOCH_TIME),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.MIN, HistoricalDataColumn.DATA),
+            new P_HistoricalDataQueryCursor.Aggregate(P_HistoricalDataQueryCursor.AVG, HistoricalDataColumn.DATA),
+        }, decoder, 0);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(3, cursor.getLong(0));
+        assertEquals(-1.0, cursor.getDouble(1), 0.0);
+        assertEquals(0.5, cursor.getDouble(2), 0.0);
+        succeed();
+    }
+
+    private static Backend_HistoricalDataList_File newList(int count, long spacing)
+    {
+        final Backend_HistoricalDataList_File list = new Backend_HistoricalDataList_File();
+        list.init(null, null, "00:11:22:33:44:55", Uuids.BATTERY_LEVEL, "battery", false);
+        for (int i = 0; i < count; i++)
+        {
+            list.add_single(new HistoricalData(new byte[]{(byte) i}, i * spacing), BleNodeConfig.HistoricalDataLogFilter.PersistenceLevel_MEMORY, Long.MAX_VALUE);
+        }
+        return list;
+    }
+
+}